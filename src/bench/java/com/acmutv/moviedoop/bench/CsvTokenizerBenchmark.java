@@ -0,0 +1,125 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link CsvTokenizer}, one record per operation.
+ * Records are the same of {@link RecordParserBenchmark}, as {@link Text} read by mappers.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvTokenizerBenchmark {
+
+  /**
+   * The tokenizer.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The movie title.
+   */
+  private Text title = new Text();
+
+  /**
+   * The rating records.
+   */
+  private Text[] ratings;
+
+  /**
+   * The movie records.
+   */
+  private Text[] movies;
+
+  /**
+   * The next rating record.
+   */
+  private int nextRating;
+
+  /**
+   * The next movie record.
+   */
+  private int nextMovie;
+
+  /**
+   * Generates the records.
+   */
+  @Setup
+  public void setup() {
+    this.ratings = Arrays.stream(MovieLens.ratings(MovieLens.SMALL_RATINGS, 1L)).map(Text::new).toArray(Text[]::new);
+    this.movies = Arrays.stream(MovieLens.movies(MovieLens.SMALL_MOVIES, 2L)).map(Text::new).toArray(Text[]::new);
+  }
+
+  /**
+   * Tokenizes a rating record and parses its movie id, score and timestamp.
+   *
+   * @return the parsed score.
+   */
+  @Benchmark
+  public double tokenizeRating() {
+    Text record = this.ratings[this.nextRating];
+    this.nextRating = (this.nextRating + 1) % this.ratings.length;
+    this.tokenizer.tokenize(record);
+    return this.tokenizer.getLong(1) + this.tokenizer.getDouble(2) + this.tokenizer.getLong(3);
+  }
+
+  /**
+   * Tokenizes a movie record and copies its title.
+   *
+   * @return the movie title.
+   */
+  @Benchmark
+  public Text tokenizeMovie() {
+    Text record = this.movies[this.nextMovie];
+    this.nextMovie = (this.nextMovie + 1) % this.movies.length;
+    this.tokenizer.tokenize(record);
+    this.tokenizer.getText(1, this.title);
+    return this.title;
+  }
+}
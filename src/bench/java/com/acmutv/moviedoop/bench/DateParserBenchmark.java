@@ -0,0 +1,114 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import com.acmutv.moviedoop.common.util.DateParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link DateParser#toSeconds(String)} and {@link DateParser#toSeconds(LocalDateTime)},
+ * one date per operation.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParserBenchmark {
+
+  /**
+   * The number of dates.
+   */
+  private static final int DATES = 10000;
+
+  /**
+   * The dates as strings.
+   */
+  private String[] strings;
+
+  /**
+   * The parsed dates.
+   */
+  private LocalDateTime[] dates;
+
+  /**
+   * The next date.
+   */
+  private int next;
+
+  /**
+   * Generates the dates.
+   */
+  @Setup
+  public void setup() {
+    this.strings = MovieLens.dates(DATES, 3L);
+    this.dates = new LocalDateTime[DATES];
+    for (int i = 0; i < DATES; i++) {
+      this.dates[i] = DateParser.parse(this.strings[i]);
+    }
+  }
+
+  /**
+   * Converts a date string to seconds from epoch.
+   *
+   * @return the seconds from epoch.
+   */
+  @Benchmark
+  public long toSecondsString() {
+    String date = this.strings[this.next];
+    this.next = (this.next + 1) % DATES;
+    return DateParser.toSeconds(date);
+  }
+
+  /**
+   * Converts a parsed date to seconds from epoch.
+   *
+   * @return the seconds from epoch.
+   */
+  @Benchmark
+  public long toSecondsDate() {
+    LocalDateTime date = this.dates[this.next];
+    this.next = (this.next + 1) % DATES;
+    return DateParser.toSeconds(date);
+  }
+}
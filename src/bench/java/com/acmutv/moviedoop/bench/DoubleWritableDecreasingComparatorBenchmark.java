@@ -0,0 +1,115 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import com.acmutv.moviedoop.common.util.DoubleWritableDecreasingComparator;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.DoubleWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link DoubleWritableDecreasingComparator}, one comparison of serialized keys per
+ * operation, as done by the shuffle sort of average ratings.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoubleWritableDecreasingComparatorBenchmark {
+
+  /**
+   * The size of a serialized {@link DoubleWritable}.
+   */
+  private static final int KEY_SIZE = 8;
+
+  /**
+   * The comparator.
+   */
+  private DoubleWritableDecreasingComparator comparator = new DoubleWritableDecreasingComparator();
+
+  /**
+   * The serialized keys.
+   */
+  private byte[] keys;
+
+  /**
+   * The number of keys.
+   */
+  private int size;
+
+  /**
+   * The next key.
+   */
+  private int next;
+
+  /**
+   * Serializes the average ratings of all movies.
+   *
+   * @throws IOException when keys cannot be serialized.
+   */
+  @Setup
+  public void setup() throws IOException {
+    double[] averages = MovieLens.averages(MovieLens.LARGE_MOVIES, 5L);
+    DataOutputBuffer out = new DataOutputBuffer(averages.length * KEY_SIZE);
+    DoubleWritable key = new DoubleWritable();
+    for (double average : averages) {
+      key.set(average);
+      key.write(out);
+    }
+    this.keys = out.getData();
+    this.size = averages.length;
+  }
+
+  /**
+   * Compares two serialized keys.
+   *
+   * @return the comparison result.
+   */
+  @Benchmark
+  public int compare() {
+    int s1 = this.next * KEY_SIZE;
+    this.next = (this.next + 1) % (this.size - 1);
+    return this.comparator.compare(this.keys, s1, KEY_SIZE, this.keys, s1 + KEY_SIZE, KEY_SIZE);
+  }
+}
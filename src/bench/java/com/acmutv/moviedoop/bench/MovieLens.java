@@ -0,0 +1,178 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+/**
+ * Synthetic MovieLens-like records for benchmarks.
+ * Sizes follow the MovieLens datasets the queries run on: the small dataset (100,004 ratings of
+ * 9,125 movies) and the 20M dataset (27,278 movies).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieLens {
+
+  /**
+   * The number of ratings in the small dataset.
+   */
+  public static final int SMALL_RATINGS = 100004;
+
+  /**
+   * The number of movies in the small dataset.
+   */
+  public static final int SMALL_MOVIES = 9125;
+
+  /**
+   * The number of movies in the 20M dataset.
+   */
+  public static final int LARGE_MOVIES = 27278;
+
+  /**
+   * The number of users in the small dataset.
+   */
+  private static final int SMALL_USERS = 671;
+
+  /**
+   * The first rating timestamp (09/01/1995).
+   */
+  private static final long FIRST_TIMESTAMP = 789652009L;
+
+  /**
+   * The last rating timestamp (16/10/2016).
+   */
+  private static final long LAST_TIMESTAMP = 1476640644L;
+
+  /**
+   * The genres.
+   */
+  private static final String[] GENRES = {
+      "Action", "Adventure", "Animation", "Children", "Comedy", "Crime", "Documentary", "Drama",
+      "Fantasy", "Film-Noir", "Horror", "Musical", "Mystery", "Romance", "Sci-Fi", "Thriller", "War", "Western"
+  };
+
+  /**
+   * Returns {@code n} rating records (userId,movieId,rating,timestamp).
+   *
+   * @param n the number of records.
+   * @param seed the random seed.
+   * @return the rating records.
+   */
+  public static String[] ratings(int n, long seed) {
+    Random rnd = new Random(seed);
+    String[] records = new String[n];
+    for (int i = 0; i < n; i++) {
+      records[i] = (1 + rnd.nextInt(SMALL_USERS)) + "," + (1 + rnd.nextInt(SMALL_MOVIES)) + "," +
+          ((1 + rnd.nextInt(10)) / 2.0) + "," + timestamp(rnd);
+    }
+    return records;
+  }
+
+  /**
+   * Returns {@code n} movie records (movieId,title,genres), with quoted titles containing commas.
+   *
+   * @param n the number of records.
+   * @param seed the random seed.
+   * @return the movie records.
+   */
+  public static String[] movies(int n, long seed) {
+    Random rnd = new Random(seed);
+    String[] records = new String[n];
+    for (int i = 0; i < n; i++) {
+      StringBuilder genres = new StringBuilder(GENRES[rnd.nextInt(GENRES.length)]);
+      for (int g = rnd.nextInt(3); g > 0; g--) {
+        genres.append("|").append(GENRES[rnd.nextInt(GENRES.length)]);
+      }
+      records[i] = (i + 1) + ",\"Title" + i + ", The (" + (1920 + rnd.nextInt(97)) + ")\"," + genres;
+    }
+    return records;
+  }
+
+  /**
+   * Returns {@code n} dates (dd/mm/yyyy or dd/mm/yyyyThh:mm:ss) within the ratings period.
+   *
+   * @param n the number of dates.
+   * @param seed the random seed.
+   * @return the dates.
+   */
+  public static String[] dates(int n, long seed) {
+    Random rnd = new Random(seed);
+    String[] dates = new String[n];
+    for (int i = 0; i < n; i++) {
+      LocalDateTime date = LocalDateTime.ofEpochSecond(timestamp(rnd), 0, ZoneOffset.UTC);
+      dates[i] = String.format((i % 2 == 0) ? "%02d/%02d/%04d" : "%02d/%02d/%04dT%02d:%02d:%02d",
+          date.getDayOfMonth(), date.getMonthValue(), date.getYear(),
+          date.getHour(), date.getMinute(), date.getSecond());
+    }
+    return dates;
+  }
+
+  /**
+   * Returns {@code n} average ratings in [0.5,5.0].
+   *
+   * @param n the number of average ratings.
+   * @param seed the random seed.
+   * @return the average ratings.
+   */
+  public static double[] averages(int n, long seed) {
+    Random rnd = new Random(seed);
+    double[] averages = new double[n];
+    for (int i = 0; i < n; i++) {
+      averages[i] = 0.5 + 4.5 * rnd.nextDouble();
+    }
+    return averages;
+  }
+
+  /**
+   * Returns {@code n} genres, one of every movie genre.
+   *
+   * @param n the number of genres.
+   * @param seed the random seed.
+   * @return the genres.
+   */
+  public static String[] genres(int n, long seed) {
+    Random rnd = new Random(seed);
+    String[] genres = new String[n];
+    for (int i = 0; i < n; i++) {
+      genres[i] = GENRES[rnd.nextInt(GENRES.length)];
+    }
+    return genres;
+  }
+
+  /**
+   * Returns a random rating timestamp.
+   *
+   * @param rnd the random generator.
+   * @return the rating timestamp (seconds from epoch).
+   */
+  private static long timestamp(Random rnd) {
+    return FIRST_TIMESTAMP + (long) (rnd.nextDouble() * (LAST_TIMESTAMP - FIRST_TIMESTAMP));
+  }
+}
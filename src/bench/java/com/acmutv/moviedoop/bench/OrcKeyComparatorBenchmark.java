@@ -0,0 +1,167 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.orc.OrcConf;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link OrcKeyComparator} against the default {@link OrcKey} comparator, which
+ * deserializes both keys, one comparison of serialized keys per operation, as done by the shuffle
+ * sort of movie id and genre keys.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrcKeyComparatorBenchmark {
+
+  /**
+   * The key schema.
+   */
+  @Param({"struct<id:bigint>", "struct<genre:string>"})
+  private String schema;
+
+  /**
+   * The raw comparator.
+   */
+  private WritableComparator raw;
+
+  /**
+   * The default comparator.
+   */
+  private WritableComparator deserializing;
+
+  /**
+   * The serialized keys.
+   */
+  private byte[] keys;
+
+  /**
+   * The offset of every key, followed by the end of the last key.
+   */
+  private int[] offsets;
+
+  /**
+   * The next key.
+   */
+  private int next;
+
+  /**
+   * Serializes a key for every movie.
+   * Comparators are configured by a {@link JobConf}, as in the shuffle.
+   *
+   * @throws IOException when keys cannot be serialized.
+   */
+  @Setup
+  public void setup() throws IOException {
+    TypeDescription type = TypeDescription.fromString(this.schema);
+    JobConf conf = new JobConf();
+    OrcConf.MAPRED_SHUFFLE_KEY_SCHEMA.setString(conf, this.schema);
+    this.raw = ReflectionUtils.newInstance(OrcKeyComparator.class, conf);
+    this.deserializing = WritableComparator.get(OrcKey.class, conf);
+
+    String[] genres = MovieLens.genres(MovieLens.LARGE_MOVIES, 6L);
+    DataOutputBuffer out = new DataOutputBuffer();
+    OrcStruct struct = (OrcStruct) OrcStruct.createValue(type);
+    OrcKey key = new OrcKey(struct);
+    this.offsets = new int[MovieLens.LARGE_MOVIES + 1];
+    for (int i = 0; i < MovieLens.LARGE_MOVIES; i++) {
+      this.offsets[i] = out.getLength();
+      if (type.getChildren().get(0).getCategory() == TypeDescription.Category.LONG) {
+        struct.setFieldValue(0, new LongWritable((i * 7919L) % MovieLens.LARGE_MOVIES));
+      } else {
+        struct.setFieldValue(0, new Text(genres[i]));
+      }
+      key.write(out);
+    }
+    this.offsets[MovieLens.LARGE_MOVIES] = out.getLength();
+    this.keys = out.getData();
+  }
+
+  /**
+   * Compares two serialized keys with {@link OrcKeyComparator}.
+   *
+   * @return the comparison result.
+   */
+  @Benchmark
+  public int compareRaw() {
+    return this.compare(this.raw);
+  }
+
+  /**
+   * Compares two serialized keys with the default comparator.
+   *
+   * @return the comparison result.
+   */
+  @Benchmark
+  public int compareDeserializing() {
+    return this.compare(this.deserializing);
+  }
+
+  /**
+   * Compares the next two serialized keys.
+   *
+   * @param comparator the comparator.
+   * @return the comparison result.
+   */
+  private int compare(WritableComparator comparator) {
+    int i = this.next;
+    this.next = (this.next + 1) % (this.offsets.length - 2);
+    return comparator.compare(
+        this.keys, this.offsets[i], this.offsets[i + 1] - this.offsets[i],
+        this.keys, this.offsets[i + 1], this.offsets[i + 2] - this.offsets[i + 1]);
+  }
+}
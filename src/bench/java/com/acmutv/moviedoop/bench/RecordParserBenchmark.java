@@ -0,0 +1,120 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bench;
+
+import com.acmutv.moviedoop.common.util.RecordParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link RecordParser#parse(String, String[], String)}, one record per operation.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordParserBenchmark {
+
+  /**
+   * The rating attributes.
+   */
+  private static final String[] RATING_ATTRIBUTES = {"userId","movieId","score","timestamp"};
+
+  /**
+   * The movie attributes.
+   */
+  private static final String[] MOVIE_ATTRIBUTES = {"id","title","genres"};
+
+  /**
+   * The rating records.
+   */
+  private String[] ratings;
+
+  /**
+   * The movie records.
+   */
+  private String[] movies;
+
+  /**
+   * The next rating record.
+   */
+  private int nextRating;
+
+  /**
+   * The next movie record.
+   */
+  private int nextMovie;
+
+  /**
+   * Generates the records.
+   */
+  @Setup
+  public void setup() {
+    this.ratings = MovieLens.ratings(MovieLens.SMALL_RATINGS, 1L);
+    this.movies = MovieLens.movies(MovieLens.SMALL_MOVIES, 2L);
+  }
+
+  /**
+   * Parses a rating record with the simple delimiter.
+   *
+   * @return the parsed record.
+   */
+  @Benchmark
+  public Map<String,String> parseRating() {
+    String record = this.ratings[this.nextRating];
+    this.nextRating = (this.nextRating + 1) % this.ratings.length;
+    return RecordParser.parse(record, RATING_ATTRIBUTES, RecordParser.DELIMITER);
+  }
+
+  /**
+   * Parses a movie record with the escaped delimiter.
+   *
+   * @return the parsed record.
+   */
+  @Benchmark
+  public Map<String,String> parseMovie() {
+    String record = this.movies[this.nextMovie];
+    this.nextMovie = (this.nextMovie + 1) % this.movies.length;
+    return RecordParser.parse(record, MOVIE_ATTRIBUTES, RecordParser.ESCAPED_DELIMITER);
+  }
+}
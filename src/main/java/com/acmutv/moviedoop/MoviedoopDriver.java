@@ -25,9 +25,16 @@
  */
 package com.acmutv.moviedoop;
 
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import com.acmutv.moviedoop.datagen.DataGenerator;
+import com.acmutv.moviedoop.eval.Evaluation;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query1.*;
 import com.acmutv.moviedoop.query2.*;
 import com.acmutv.moviedoop.query3.*;
+import com.acmutv.moviedoop.queryall.QueryAll;
+import com.acmutv.moviedoop.server.QueryServer;
 import com.acmutv.moviedoop.test.*;
 import org.apache.hadoop.util.ProgramDriver;
 import org.apache.log4j.Logger;
@@ -86,6 +93,16 @@ public class MoviedoopDriver {
               "The program leverages inner joins (replication joins as distributed caching on reduce)," +
               "optimizations on average computation (type 2) and ORC serialization.");
 
+      driver.addClass("query1_7", Query1_7.class,
+          "A map/reduce program that selects movies according to their rating and period. " +
+              "The program leverages prefix sums over the rating cube (periods of whole days or months)," +
+              "inner joins (replication joins as distributed caching on map) and ORC serialization.");
+
+      driver.addClass("query1_8", Query1_8.class,
+          "A map/reduce program that selects movies according to their rating and period. " +
+              "The program leverages inner joins (sort-merge joins on map over ratings and movies bucketed by movieId, " +
+              "with no shuffle) and ORC serialization.");
+
       /* *******************************************************************************************
        * QUERY 2
        ********************************************************************************************/
@@ -121,6 +138,12 @@ public class MoviedoopDriver {
                       "and optimizations (aggregations in a single tupla) on average - stdDev computation." +
                       "Data beetween mapreduce's steps with ORC serialization" );
 
+      driver.addClass("query2_6", Query2_6.class,
+              "A map/reduce program that returns for each genre of the movies with the follow statistics: " +
+                      "average and standard deviation of rating. " +
+                      "The program leverages a single job with inner joins (replication joins as distributed caching on map) " +
+                      "and aggregations of ratings by movie and by genre on map, with ORC serialization." );
+
       /* *******************************************************************************************
        * QUERY 3
        ********************************************************************************************/
@@ -130,7 +153,7 @@ public class MoviedoopDriver {
               "and `ratingTimestampTopKUB`; and\n" +
               "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
               "and `ratingTimestampRankUB`.\n" +
-              "The program leverages BestMap for top-k ranking and inner joins (replication joins as distributed caching on map).");
+              "The program leverages TopK (binary heap) for top-k ranking and inner joins (replication joins as distributed caching on map).");
 
       driver.addClass("query3_2", Query3_2.class,
           "A map/reduce program that returns the comparison between " +
@@ -138,7 +161,7 @@ public class MoviedoopDriver {
               "and `ratingTimestampTopKUB`; and\n" +
               "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
               "and `ratingTimestampRankUB`.\n" +
-              "The program leverages BestMap for top-k ranking, inner joins (replication joins as distributed caching on map) and" +
+              "The program leverages TopK (binary heap) for top-k ranking, inner joins (replication joins as distributed caching on map) and" +
               "optimizations on average computation (1).");
 
       driver.addClass("query3_3", Query3_3.class,
@@ -147,7 +170,7 @@ public class MoviedoopDriver {
               "and `ratingTimestampTopKUB`; and\n" +
               "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
               "and `ratingTimestampRankUB`.\n" +
-              "The program leverages BestMap for top-k ranking, inner joins (replication joins as distributed caching on map)," +
+              "The program leverages TopK (binary heap) for top-k ranking, inner joins (replication joins as distributed caching on map)," +
               "optimizations on average computation (2).");
 
       driver.addClass("query3_4", Query3_4.class,
@@ -156,7 +179,7 @@ public class MoviedoopDriver {
               "and `ratingTimestampTopKUB`; and\n" +
               "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
               "and `ratingTimestampRankUB`.\n" +
-              "The program leverages BestMap for top-k ranking (aggregated ranking), inner joins (replication joins as distributed caching on map)," +
+              "The program leverages TopK (binary heap) for top-k ranking (aggregated ranking), inner joins (replication joins as distributed caching on map)," +
               "optimizations on average computation (2) and ORC serialization.");
 
       driver.addClass("query3_5", Query3_5.class,
@@ -165,9 +188,75 @@ public class MoviedoopDriver {
               "and `ratingTimestampTopKUB`; and\n" +
               "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
               "and `ratingTimestampRankUB`.\n" +
-              "The program leverages BestMap for top-k ranking (aggregated ranking), inner joins (replication joins as distributed caching on map)," +
+              "The program leverages TopK (binary heap) for top-k ranking (aggregated ranking), inner joins (replication joins as distributed caching on map)," +
               "optimizations on average computation (2), ORC serialization and parallel jobs.");
 
+      driver.addClass("query3_6", Query3_6.class,
+          "A map/reduce program that returns the comparison between " +
+              "(i) the top-`rankSize` movies, considering average ratings in period from `ratingTimestampTopKLB` \n" +
+              "and `ratingTimestampTopKUB`; and\n" +
+              "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
+              "and `ratingTimestampRankUB`.\n" +
+              "The program leverages prefix sums over the rating cube (periods of whole days or months), TopK (binary heap) for top-k ranking," +
+              "inner joins (replication joins as distributed caching on map), ORC serialization and parallel jobs.");
+
+      driver.addClass("query3_7", Query3_7.class,
+          "A map/reduce program that returns the comparison between " +
+              "(i) the top-`rankSize` movies, considering average ratings in period from `ratingTimestampTopKLB` \n" +
+              "and `ratingTimestampTopKUB`; and\n" +
+              "(ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`\n" +
+              "and `ratingTimestampRankUB`.\n" +
+              "The program leverages TopK (binary heap) for top-k ranking, rank by counting (no total sort of movies)," +
+              "inner joins (replication joins as distributed caching on reduce), optimizations on average computation (2) " +
+              "and ORC serialization.");
+
+      /* *******************************************************************************************
+       * QUERY ALL
+       ********************************************************************************************/
+      driver.addClass("query_all", QueryAll.class,
+          "A map/reduce program that answers Query1, Query2 and Query3 with a single scan of ratings.\n" +
+              "The program leverages one map phase that aggregates ratings for all the queries (tagged histograms)," +
+              "multiple outputs to fan out per-query results, ORC serialization and parallel jobs.");
+
+      /* *******************************************************************************************
+       * QUERY SERVER
+       ********************************************************************************************/
+      driver.addClass("query_server", QueryServer.class,
+          "A long-running program that answers Query1, Query2 and Query3 over HTTP from the rating cube " +
+              "and the movie index loaded in memory.");
+
+      /* *******************************************************************************************
+       * MOVIE INDEX
+       ********************************************************************************************/
+      driver.addClass("movie_index", MovieIndexJob.class,
+          "A map/reduce program that compiles movies into the memory-mapped index used by cached joins.");
+
+      /* *******************************************************************************************
+       * RATING CUBE
+       ********************************************************************************************/
+      driver.addClass("rating_cube", RatingCubeJob.class,
+          "A map/reduce program that materializes ratings into a (movie, day or month) cube of cumulative rating histograms.");
+
+      /* *******************************************************************************************
+       * BUCKETS
+       ********************************************************************************************/
+      driver.addClass("bucket", BucketJob.class,
+          "A map/reduce program that writes ratings and movies into ORC buckets by movieId, sorted by movieId, for merge joins.");
+
+      /* *******************************************************************************************
+       * DATA GENERATION
+       ********************************************************************************************/
+      driver.addClass("datagen", DataGenerator.class,
+          "A multithreaded program that generates synthetic ratings and movies (CSV and ORC), with Zipfian " +
+              "movie popularity and user activity, Poisson genre counts and configurable timestamp ranges and splits.");
+
+      /* *******************************************************************************************
+       * EVALUATION
+       ********************************************************************************************/
+      driver.addClass("eval", Evaluation.class,
+          "A program that runs query programs in-process on synthetic datasets at several scales and reduce " +
+              "cardinalities, reporting wall time, phase times, GC time and counters of every job as CSV.");
+
       /* *******************************************************************************************
        * TESTS
        ********************************************************************************************/
@@ -0,0 +1,316 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bucket;
+
+import com.acmutv.moviedoop.bucket.map.RatingsBucketMapper;
+import com.acmutv.moviedoop.bucket.map.RatingsBucketMapperORC;
+import com.acmutv.moviedoop.bucket.reduce.MoviesBucketReducerORC;
+import com.acmutv.moviedoop.bucket.reduce.RatingsBucketReducerORC;
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.common.util.SharedOutput;
+import com.acmutv.moviedoop.index.map.MoviesIndexMapper;
+import com.acmutv.moviedoop.index.map.MoviesIndexMapperORC;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapred.OrcValue;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * A map/reduce program that buckets ratings and movies (CSV or ORC) by movieId: both tables are
+ * written as ORC files {@code ratings/part-r-i.orc} and {@code movies/part-r-i.orc}, i in [0,N),
+ * sorted by movieId.
+ * Both tables are partitioned by the same function of movieId into the same number of buckets, so
+ * the i-th bucket of ratings only joins with the i-th bucket of movies, and a single mapper can
+ * merge-join them with no shuffle and constant memory.
+ * Buckets are built once: {@link #ensure(Configuration, Path, Path)} reuses buckets newer than
+ * ratings and movies.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class BucketJob extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(BucketJob.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "Bucket";
+
+  /**
+   * The directory of rating buckets.
+   */
+  public static final String RATINGS = "ratings";
+
+  /**
+   * The directory of movie buckets.
+   */
+  public static final String MOVIES = "movies";
+
+  /**
+   * The default number of buckets.
+   */
+  private static final int BUCKET_CARDINALITY = 4;
+
+  /**
+   * The suffix of the default buckets directory (sibling of the ratings path).
+   */
+  private static final String BUCKETS_SUFFIX = "_buckets_";
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+    final Path output = new Path(args[2]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.bucket.cardinality", String.valueOf(BUCKET_CARDINALITY));
+
+    return build(config, inputRatings, inputMovies, output) ? 0 : 1;
+  }
+
+  /**
+   * Returns the buckets directory for ratings and movies, building it if missing or older than
+   * ratings or movies.
+   * The buckets directory is {@code moviedoop.ratings.buckets}, by default a sibling of ratings
+   * named after the number of buckets {@code moviedoop.bucket.cardinality}.
+   * Buckets are built into a temporary directory, and published only if no fresh buckets appeared
+   * meanwhile (see {@link SharedOutput}).
+   *
+   * @param config the configuration.
+   * @param inputRatings the ratings path.
+   * @param inputMovies the movies path.
+   * @return the buckets directory.
+   * @throws Exception when the buckets cannot be built.
+   */
+  public static Path ensure(Configuration config, Path inputRatings, Path inputMovies) throws Exception {
+    config.setIfUnset("moviedoop.bucket.cardinality", String.valueOf(BUCKET_CARDINALITY));
+    final Path buckets = new Path(config.get("moviedoop.ratings.buckets",
+        new Path(inputRatings.getParent(),
+            inputRatings.getName() + BUCKETS_SUFFIX + config.get("moviedoop.bucket.cardinality")).toString()));
+    FileSystem fs = buckets.getFileSystem(config);
+
+    final long lastModified = SharedOutput.lastModified(config, inputRatings, inputMovies);
+    final Path success = new Path(new Path(buckets, MOVIES), "_SUCCESS");
+    if (!SharedOutput.isFresh(config, success, lastModified)) {
+      final Path tmp = SharedOutput.temporary(buckets);
+      if (!build(config, inputRatings, inputMovies, tmp)) {
+        fs.delete(tmp, true);
+        throw new IOException("Cannot build the buckets " + buckets);
+      }
+      if (!SharedOutput.publish(config, tmp, buckets, success, lastModified)) {
+        LOG.info("Reusing buckets " + buckets + " built concurrently");
+      }
+    } else {
+      LOG.info("Reusing buckets " + buckets);
+    }
+    return buckets;
+  }
+
+  /**
+   * Configures the rating buckets as input of the job, and the movie buckets for the merge join
+   * ({@code moviedoop.bucket.movies}).
+   * Buckets are not split, so that every mapper reads a whole bucket in order of movieId.
+   *
+   * @param job the job.
+   * @param buckets the buckets directory.
+   * @throws IOException when the input cannot be configured.
+   */
+  public static void setInput(Job job, Path buckets) throws IOException {
+    job.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(job, new Path(buckets, RATINGS));
+    FileInputFormat.setMinInputSplitSize(job, Long.MAX_VALUE);
+    job.getConfiguration().set("moviedoop.bucket.movies", new Path(buckets, MOVIES).toString());
+  }
+
+  /**
+   * Runs the jobs bucketing ratings and movies.
+   *
+   * @param config the configuration.
+   * @param inputRatings the ratings path.
+   * @param inputMovies the movies path.
+   * @param output the buckets directory.
+   * @return true if both jobs succeeded; false, otherwise.
+   * @throws Exception when the jobs cannot be executed.
+   */
+  private static boolean build(Configuration config, Path inputRatings, Path inputMovies, Path output) throws Exception {
+    final boolean orcRatings = OrcPushdown.isOrc(config, inputRatings);
+    final boolean orcMovies = OrcPushdown.isOrc(config, inputMovies);
+
+    // OTHER CONFIGURATION
+    final int bucketCardinality = Integer.valueOf(config.get("moviedoop.bucket.cardinality"));
+
+    // CONFIGURATION RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings + (orcRatings ? " (ORC)" : " (CSV)"));
+    System.out.println("Input Movies: " + inputMovies + (orcMovies ? " (ORC)" : " (CSV)"));
+    System.out.println("Output: " + output);
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Bucket Cardinality: " + bucketCardinality);
+    System.out.println("############################################################################");
+
+    /* *********************************************************************************************
+     * RATINGS BUCKETS
+     **********************************************************************************************/
+
+    // JOB CONFIGURATION
+    Job job = Job.getInstance(config, PROGRAM_NAME + "_RATINGS");
+    job.setJarByClass(BucketJob.class);
+
+    // INPUT/MAP CONFIGURATION
+    setInput(job, inputRatings, orcRatings, RatingsBucketMapperORC.class, RatingsBucketMapper.class);
+    job.setMapOutputKeyClass(LongWritable.class);
+    job.setMapOutputValueClass(OrcValue.class);
+    job.getConfiguration().setIfUnset("orc.mapred.map.output.value.schema",
+        RatingsBucketReducerORC.ORC_SCHEMA.toString());
+
+    // REDUCE/OUTPUT CONFIGURATION
+    setOutput(job, new Path(output, RATINGS), bucketCardinality,
+        RatingsBucketReducerORC.class, RatingsBucketReducerORC.ORC_SCHEMA);
+
+    // JOB EXECUTION
+    if (!job.waitForCompletion(VERBOSE)) {
+      return false;
+    }
+
+    /* *********************************************************************************************
+     * MOVIES BUCKETS
+     **********************************************************************************************/
+
+    // JOB CONFIGURATION
+    Job job2 = Job.getInstance(config, PROGRAM_NAME + "_MOVIES");
+    job2.setJarByClass(BucketJob.class);
+
+    // INPUT/MAP CONFIGURATION
+    setInput(job2, inputMovies, orcMovies, MoviesIndexMapperORC.class, MoviesIndexMapper.class);
+    job2.setMapOutputKeyClass(LongWritable.class);
+    job2.setMapOutputValueClass(MovieWritable.class);
+
+    // REDUCE/OUTPUT CONFIGURATION
+    setOutput(job2, new Path(output, MOVIES), bucketCardinality,
+        MoviesBucketReducerORC.class, MoviesBucketReducerORC.ORC_SCHEMA);
+
+    // JOB EXECUTION
+    return job2.waitForCompletion(VERBOSE);
+  }
+
+  /**
+   * Configures the CSV or ORC input of a bucketing job.
+   *
+   * @param job the job.
+   * @param input the input path.
+   * @param orc true if the input is ORC; false, if CSV.
+   * @param orcMapper the mapper for ORC input.
+   * @param csvMapper the mapper for CSV input.
+   * @throws IOException when the input cannot be configured.
+   */
+  @SuppressWarnings("rawtypes")
+  private static void setInput(Job job, Path input, boolean orc,
+                               Class<? extends Mapper> orcMapper, Class<? extends Mapper> csvMapper) throws IOException {
+    if (orc) {
+      job.setInputFormatClass(OrcBatchInputFormat.class);
+      OrcBatchInputFormat.addInputPath(job, input);
+      job.setMapperClass(orcMapper);
+    } else {
+      job.setInputFormatClass(TextInputFormat.class);
+      TextInputFormat.addInputPath(job, input);
+      job.setMapperClass(csvMapper);
+    }
+  }
+
+  /**
+   * Configures the reduce phase and the ORC output of a bucketing job.
+   * Both jobs partition movieId with the same {@link HashPartitioner} into the same number of
+   * reducers, so that the i-th buckets of ratings and movies hold the same movies.
+   *
+   * @param job the job.
+   * @param output the output directory.
+   * @param bucketCardinality the number of buckets.
+   * @param reducer the reducer.
+   * @param schema the ORC output schema.
+   */
+  @SuppressWarnings("rawtypes")
+  private static void setOutput(Job job, Path output, int bucketCardinality,
+                                Class<? extends Reducer> reducer, TypeDescription schema) {
+    job.setPartitionerClass(HashPartitioner.class);
+    job.setReducerClass(reducer);
+    job.setNumReduceTasks(bucketCardinality);
+    job.setOutputKeyClass(NullWritable.class);
+    job.setOutputValueClass(OrcStruct.class);
+    job.setOutputFormatClass(OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(job, output);
+    job.getConfiguration().setIfUnset("orc.mapred.output.schema", schema.toString());
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new BucketJob(), args);
+    System.exit(res);
+  }
+}
@@ -23,42 +23,34 @@
   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
   THE SOFTWARE.
  */
-package com.acmutv.moviedoop.query2.map;
+package com.acmutv.moviedoop.bucket.map;
 
-import com.acmutv.moviedoop.query2.Query2_2;
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.bucket.reduce.RatingsBucketReducerORC;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.orc.TypeDescription;
-import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
 import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
 
 /**
- * The mapper for the {@link Query2_2} job.
- * It emits (movieId,'M'movieTitle).
+ * The mapper for the {@link BucketJob} job on CSV ratings.
+ * It emits (movieId,(userId,movieId,rating,timestamp)).
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateGenresIdentityMapper2ORC extends Mapper<Object, OrcStruct, OrcKey, OrcValue> {
+public class RatingsBucketMapper extends Mapper<Object,Text,LongWritable,OrcValue> {
 
   /**
-   * The ORC schema for key.
-   */
-  public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<genre:string>");
-
-  /**
-   * The ORC schema for value.
-   */
-  public static final TypeDescription ORC_SCHEMA_VALUE = TypeDescription.fromString("struct<ratings:string>");
-
-  /**
-   * The key ORC wrapper
+   * The movieId to emit.
    */
-  private OrcKey keywrapper = new OrcKey();
+  private LongWritable movieId = new LongWritable();
 
   /**
    * The value ORC wrapper.
@@ -66,24 +58,14 @@ public class AggregateGenresIdentityMapper2ORC extends Mapper<Object, OrcStruct,
   private OrcValue valuewrapper = new OrcValue();
 
   /**
-   * The ORC struct for key.
-   */
-  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
-
-  /**
-   * The ORC struct for value.
-   */
-  private OrcStruct valueStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_VALUE);
-
-  /**
-   * The movieId to emit.
+   * The ORC tuple (userId,movieId,rating,timestamp) to emit.
    */
-  private Text genre = (Text) keyStruct.getFieldValue(0);
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(RatingsBucketReducerORC.ORC_SCHEMA);
 
   /**
-   * The tuple {rating=repetitions,...,rating=repetitions} to emit.
+   * The tokenizer for input records.
    */
-  private Text ratings = (Text) valueStruct.getFieldValue(0);
+  private CsvTokenizer tokenizer = new CsvTokenizer();
 
   /**
    * The mapping routine.
@@ -94,13 +76,15 @@ public class AggregateGenresIdentityMapper2ORC extends Mapper<Object, OrcStruct,
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
-    String genre = String.valueOf(value.getFieldValue(0).toString());
-    String ratings = String.valueOf(value.getFieldValue(1).toString());
-    this.genre.set(genre);
-    this.ratings.set(ratings);
-    this.keywrapper.key = this.keyStruct;
-    this.valuewrapper.value = this.valueStruct;
-    ctx.write(this.keywrapper,this.valuewrapper);
+  public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
+    this.tokenizer.tokenize(value);
+
+    this.movieId.set(this.tokenizer.getLong(1));
+    ((LongWritable) this.tuple.getFieldValue(0)).set(this.tokenizer.getLong(0));
+    ((LongWritable) this.tuple.getFieldValue(1)).set(this.movieId.get());
+    ((DoubleWritable) this.tuple.getFieldValue(2)).set(this.tokenizer.getDouble(2));
+    ((LongWritable) this.tuple.getFieldValue(3)).set(this.tokenizer.getLong(3));
+    this.valuewrapper.value = this.tuple;
+    ctx.write(this.movieId, this.valuewrapper);
   }
 }
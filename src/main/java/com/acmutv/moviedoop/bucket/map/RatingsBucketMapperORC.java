@@ -0,0 +1,92 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bucket.map;
+
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.bucket.reduce.RatingsBucketReducerORC;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapred.OrcValue;
+
+import java.io.IOException;
+
+/**
+ * The mapper for the {@link BucketJob} job on ORC ratings.
+ * It emits (movieId,(userId,movieId,rating,timestamp)).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingsBucketMapperORC extends Mapper<NullWritable,VectorizedRowBatch,LongWritable,OrcValue> {
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = new LongWritable();
+
+  /**
+   * The value ORC wrapper.
+   */
+  private OrcValue valuewrapper = new OrcValue();
+
+  /**
+   * The ORC tuple (userId,movieId,rating,timestamp) to emit.
+   */
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(RatingsBucketReducerORC.ORC_SCHEMA);
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector userIds = value.cols[0];
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    ColumnVector timestamps = value.cols[3];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      this.movieId.set(ColumnVectorParser.getLong(movieIds, row));
+      ((LongWritable) this.tuple.getFieldValue(0)).set(ColumnVectorParser.getLong(userIds, row));
+      ((LongWritable) this.tuple.getFieldValue(1)).set(this.movieId.get());
+      ((DoubleWritable) this.tuple.getFieldValue(2)).set(ColumnVectorParser.getDouble(scores, row));
+      ((LongWritable) this.tuple.getFieldValue(3)).set(ColumnVectorParser.getLong(timestamps, row));
+      this.valuewrapper.value = this.tuple;
+      ctx.write(this.movieId, this.valuewrapper);
+    }
+  }
+}
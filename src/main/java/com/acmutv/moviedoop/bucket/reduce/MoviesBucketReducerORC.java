@@ -0,0 +1,96 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.bucket.reduce;
+
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The reducer for the {@link BucketJob} job on movies.
+ * It emits (movieId,title,genres) in order of movieId.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MoviesBucketReducerORC extends Reducer<LongWritable,MovieWritable,NullWritable,OrcStruct> {
+
+  /**
+   * The null writable value.
+   */
+  private static final NullWritable NULL = NullWritable.get();
+
+  /**
+   * The ORC schema.
+   */
+  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<id:bigint,title:string,genres:string>");
+
+  /**
+   * The ORC tuple (movieId,title,genres) to emit.
+   */
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA);
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = (LongWritable) tuple.getFieldValue(0);
+
+  /**
+   * The title to emit.
+   */
+  private Text title = (Text) tuple.getFieldValue(1);
+
+  /**
+   * The genres (genre1|genre2|...|genreN) to emit.
+   */
+  private Text genres = (Text) tuple.getFieldValue(2);
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(LongWritable key, Iterable<MovieWritable> values, Context ctx) throws IOException, InterruptedException {
+    for (MovieWritable movie : values) {
+      this.movieId.set(key.get());
+      this.title.set(movie.title);
+      this.genres.set(String.join("|", movie.genres));
+      ctx.write(NULL, this.tuple);
+    }
+  }
+}
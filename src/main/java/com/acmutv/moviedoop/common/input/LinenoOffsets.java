@@ -0,0 +1,188 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.input;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utility to number records globally across splits, in two phases.
+ * First, the job producing the input records the number of records of every output file as a
+ * side file (e.g. the sort reducers); files without side file are counted by a cheap pass when
+ * computing splits.
+ * Then, every split is assigned the number of records preceding it, in (path,start) order.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ * @see LinenoSplit
+ */
+public class LinenoOffsets {
+
+  /**
+   * The prefix of record count side files (hidden to input formats).
+   */
+  public static final String PREFIX = "_lineno-";
+
+  /**
+   * The configuration key enabling record count side files.
+   */
+  public static final String RECORD_COUNTING = "moviedoop.lineno.count";
+
+  /**
+   * The reader factory for the counting pass.
+   */
+  public interface ReaderFactory {
+
+    /**
+     * Creates an uninitialized record reader.
+     *
+     * @return the record reader.
+     */
+    RecordReader<?,?> create();
+  }
+
+  /**
+   * Enables (or disables) record count side files for the job producing the input.
+   *
+   * @param conf the job configuration.
+   * @param enabled true to record counts; false, otherwise.
+   */
+  public static void setRecordCounting(Configuration conf, boolean enabled) {
+    conf.setBoolean(RECORD_COUNTING, enabled);
+  }
+
+  /**
+   * Checks if record count side files are enabled.
+   *
+   * @param conf the job configuration.
+   * @return true if record counts must be recorded; false, otherwise.
+   */
+  public static boolean isRecordCounting(Configuration conf) {
+    return conf.getBoolean(RECORD_COUNTING, false);
+  }
+
+  /**
+   * Writes the number of records of the task output file as a side file in the task output
+   * directory.
+   *
+   * @param ctx the task context.
+   * @param records the number of records written by the task.
+   * @throws IOException when the side file cannot be written.
+   * @throws InterruptedException when the task output directory cannot be resolved.
+   */
+  public static void writeRecordCount(TaskInputOutputContext<?,?,?,?> ctx, long records)
+      throws IOException, InterruptedException {
+    Path path = new Path(FileOutputFormat.getWorkOutputPath(ctx),
+        PREFIX + FileOutputFormat.getUniqueFile(ctx, ctx.getConfiguration().get("mapreduce.output.basename", "part"), ""));
+    try (FSDataOutputStream out = path.getFileSystem(ctx.getConfiguration()).create(path, true)) {
+      out.writeLong(records);
+    }
+  }
+
+  /**
+   * Reads the number of records of {@code file} from its side file.
+   *
+   * @param conf the configuration.
+   * @param file the file.
+   * @return the number of records; -1 if there is no side file.
+   * @throws IOException when the side file cannot be read.
+   */
+  public static long readRecordCount(Configuration conf, Path file) throws IOException {
+    Path path = new Path(file.getParent(), PREFIX + file.getName());
+    FileSystem fs = path.getFileSystem(conf);
+    if (!fs.exists(path)) return -1;
+    try (FSDataInputStream in = fs.open(path)) {
+      return in.readLong();
+    }
+  }
+
+  /**
+   * Assigns to every split the number of records preceding it.
+   * Splits must cover whole files.
+   *
+   * @param job the job context.
+   * @param splits the file splits.
+   * @param factory the record reader factory, for files without side file.
+   * @return the numbered splits, in (path,start) order.
+   * @throws IOException when splits cannot be counted.
+   */
+  public static List<InputSplit> assign(JobContext job, List<InputSplit> splits, ReaderFactory factory) throws IOException {
+    List<FileSplit> files = new ArrayList<>();
+    for (InputSplit split : splits) {
+      files.add((FileSplit) split);
+    }
+    files.sort(Comparator.comparing((FileSplit split) -> split.getPath().toString()).thenComparingLong(FileSplit::getStart));
+    List<InputSplit> numbered = new ArrayList<>(files.size());
+    long offset = 0;
+    for (FileSplit split : files) {
+      numbered.add(new LinenoSplit(split, offset));
+      long records = readRecordCount(job.getConfiguration(), split.getPath());
+      offset += (records >= 0) ? records : count(job, split, factory);
+    }
+    return numbered;
+  }
+
+  /**
+   * Counts the records in {@code split}.
+   *
+   * @param job the job context.
+   * @param split the split.
+   * @param factory the record reader factory.
+   * @return the number of records.
+   * @throws IOException when the split cannot be read.
+   */
+  private static long count(JobContext job, FileSplit split, ReaderFactory factory) throws IOException {
+    TaskAttemptContext ctx = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+    long records = 0;
+    try (RecordReader<?,?> reader = factory.create()) {
+      reader.initialize(split, ctx);
+      while (reader.nextKeyValue()) {
+        records++;
+      }
+    } catch (InterruptedException exc) {
+      throw new IOException(exc);
+    }
+    return records;
+  }
+}
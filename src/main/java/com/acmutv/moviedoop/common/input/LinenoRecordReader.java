@@ -54,7 +54,7 @@ public class LinenoRecordReader extends RecordReader<LongWritable, Text> {
   public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) throws IOException, InterruptedException {
     this.lrr = new LineRecordReader();
     this.lrr.initialize(inputSplit, taskAttemptContext);
-    this.lineno = 1;
+    this.lineno = 1 + ((inputSplit instanceof LinenoSplit) ? ((LinenoSplit) inputSplit).getOffset() : 0);
     this.key = new LongWritable();
     this.value = new Text();
   }
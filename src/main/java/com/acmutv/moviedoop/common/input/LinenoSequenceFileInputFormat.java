@@ -32,13 +32,17 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileRecordReader;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * An input reader for sequence files that emits the record number as key and the record content as
  * value.
+ * Records are numbered globally across files, in path order, and files are read in parallel (see
+ * {@link LinenoOffsets}).
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
@@ -52,6 +56,11 @@ public class LinenoSequenceFileInputFormat extends SequenceFileInputFormat<LongW
     return new LinenoSequenceRecordReader();
   }
 
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    return LinenoOffsets.assign(job, super.getSplits(job), SequenceFileRecordReader::new);
+  }
+
   @Override
   protected boolean isSplitable(JobContext context, Path file) {
     return false;
@@ -54,7 +54,7 @@ public class LinenoSequenceRecordReader extends RecordReader<LongWritable, Text>
   public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) throws IOException, InterruptedException {
     this.rr = new SequenceFileRecordReader<>();
     this.rr.initialize(inputSplit, taskAttemptContext);
-    this.lineno = 1;
+    this.lineno = 1 + ((inputSplit instanceof LinenoSplit) ? ((LinenoSplit) inputSplit).getOffset() : 0);
     this.key = new LongWritable();
     this.value = new Text();
   }
@@ -0,0 +1,94 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.input;
+
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A file split that carries the number of records preceding it in the job input, so that record
+ * readers can number records globally while splits are processed in parallel.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ * @see LinenoOffsets
+ */
+public class LinenoSplit extends FileSplit {
+
+  /**
+   * The number of records preceding the split.
+   */
+  private long offset;
+
+  /**
+   * Creates an empty split (for deserialization).
+   */
+  public LinenoSplit() {
+    super();
+  }
+
+  /**
+   * Creates a split from {@code split}.
+   *
+   * @param split the file split.
+   * @param offset the number of records preceding the split.
+   * @throws IOException when the split locations cannot be read.
+   */
+  public LinenoSplit(FileSplit split, long offset) throws IOException {
+    super(split.getPath(), split.getStart(), split.getLength(), split.getLocations());
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the number of records preceding the split.
+   *
+   * @return the number of records preceding the split.
+   */
+  public long getOffset() {
+    return this.offset;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    super.write(out);
+    out.writeLong(this.offset);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    super.readFields(in);
+    this.offset = in.readLong();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "@" + this.offset;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.input;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.orc.Reader;
+
+import java.io.IOException;
+
+/**
+ * A record reader for ORC files that emits whole row batches as values.
+ * The same batch is reused across calls.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ * @see OrcBatchInputFormat
+ */
+public class OrcBatchRecordReader extends RecordReader<NullWritable, VectorizedRowBatch> {
+
+  private org.apache.orc.RecordReader rr;
+  private VectorizedRowBatch value;
+
+  /**
+   * Constructs a new record reader.
+   *
+   * @param file the ORC file reader.
+   * @param options the ORC read options (range, projection, search argument).
+   * @throws IOException when the file cannot be read.
+   */
+  public OrcBatchRecordReader(Reader file, Reader.Options options) throws IOException {
+    this.rr = file.rows(options);
+    this.value = file.getSchema().createRowBatch();
+  }
+
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext taskAttemptContext) {
+    // the reader is opened by the input format.
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    return this.rr.nextBatch(this.value) && this.value.size > 0;
+  }
+
+  @Override
+  public NullWritable getCurrentKey() {
+    return NullWritable.get();
+  }
+
+  @Override
+  public VectorizedRowBatch getCurrentValue() {
+    return this.value;
+  }
+
+  @Override
+  public float getProgress() throws IOException {
+    return this.rr.getProgress();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (null != this.rr) {
+      this.rr.close();
+      this.rr = null;
+    }
+
+    this.value = null;
+  }
+}
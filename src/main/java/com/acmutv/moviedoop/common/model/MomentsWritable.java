@@ -0,0 +1,262 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.model;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The record representing the first two moments of a set of scores: count, mean and sum of squared
+ * deviations from the mean (M2).
+ * Scores are added with Welford's update and records are merged with Chan's parallel formula, so
+ * that mean and variance stay accurate regardless of how many ratings are merged, and in which
+ * order (e.g. across combiners and reducers).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MomentsWritable implements Writable {
+
+  /**
+   * The number of scores.
+   */
+  private long count;
+
+  /**
+   * The mean of scores.
+   */
+  private double mean;
+
+  /**
+   * The sum of squared deviations from the mean.
+   */
+  private double m2;
+
+  /**
+   * Constructs new empty moments.
+   */
+  public MomentsWritable() {
+    this.clear();
+  }
+
+  /**
+   * Returns the number of scores.
+   *
+   * @return the number of scores.
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the mean of scores.
+   *
+   * @return the mean of scores; NaN if there are no scores.
+   */
+  public double getMean() {
+    return (this.count == 0) ? Double.NaN : this.mean;
+  }
+
+  /**
+   * Returns the sum of squared deviations from the mean.
+   *
+   * @return the sum of squared deviations from the mean.
+   */
+  public double getM2() {
+    return this.m2;
+  }
+
+  /**
+   * Returns the sample variance of scores.
+   *
+   * @return the sample variance; NaN if there are less than two scores.
+   */
+  public double getVariance() {
+    return (this.count < 2) ? Double.NaN : this.m2 / (this.count - 1);
+  }
+
+  /**
+   * Returns the sample standard deviation of scores.
+   *
+   * @return the sample standard deviation; NaN if there are less than two scores.
+   */
+  public double getStandardDeviation() {
+    return Math.sqrt(this.getVariance());
+  }
+
+  /**
+   * Adds a score.
+   *
+   * @param score the score.
+   */
+  public void add(double score) {
+    this.count++;
+    double delta = score - this.mean;
+    this.mean += delta / this.count;
+    this.m2 += delta * (score - this.mean);
+  }
+
+  /**
+   * Adds {@code repetitions} times the same score.
+   *
+   * @param score the score.
+   * @param repetitions the repetitions.
+   */
+  public void add(double score, long repetitions) {
+    this.merge(repetitions, score, 0.0);
+  }
+
+  /**
+   * Merges {@code other} into these moments.
+   *
+   * @param other the moments to merge.
+   */
+  public void merge(MomentsWritable other) {
+    this.merge(other.count, other.mean, other.m2);
+  }
+
+  /**
+   * Merges the scores of {@code ratings} into these moments.
+   *
+   * @param ratings the histogram of ratings to merge.
+   */
+  public void merge(RatingHistogramWritable ratings) {
+    for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+      this.add(RatingHistogramWritable.score(b), ratings.getRepetitions(b));
+    }
+  }
+
+  /**
+   * Merges the moments (count,mean,m2) into these moments.
+   *
+   * @param count the number of scores to merge.
+   * @param mean the mean of scores to merge.
+   * @param m2 the sum of squared deviations from the mean of scores to merge.
+   */
+  private void merge(long count, double mean, double m2) {
+    if (count == 0) return;
+    if (this.count == 0) {
+      this.count = count;
+      this.mean = mean;
+      this.m2 = m2;
+      return;
+    }
+    long total = this.count + count;
+    double delta = mean - this.mean;
+    double weight = (double) count / total;
+    this.mean += delta * weight;
+    this.m2 += m2 + delta * delta * this.count * weight;
+    this.count = total;
+  }
+
+  /**
+   * Copies {@code other} into these moments.
+   *
+   * @param other the moments to copy.
+   */
+  public void set(MomentsWritable other) {
+    this.count = other.count;
+    this.mean = other.mean;
+    this.m2 = other.m2;
+  }
+
+  /**
+   * Resets the moments.
+   */
+  public void clear() {
+    this.count = 0L;
+    this.mean = 0.0;
+    this.m2 = 0.0;
+  }
+
+  /**
+   * Checks if there are no scores.
+   *
+   * @return true if there are no scores; false, otherwise.
+   */
+  public boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  /**
+   * Reads the fields.
+   * The format is: count (vlong), mean (double), m2 (double).
+   *
+   * @param in the input.
+   * @throws IOException when the input cannot be read.
+   */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.count = WritableUtils.readVLong(in);
+    this.mean = in.readDouble();
+    this.m2 = in.readDouble();
+  }
+
+  /**
+   * Writes the fields.
+   *
+   * @param out the output.
+   * @throws IOException when the output cannot be written.
+   */
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVLong(out, this.count);
+    out.writeDouble(this.mean);
+    out.writeDouble(this.m2);
+  }
+
+  /**
+   * Returns the string representation (count,mean,m2).
+   * @return the string representation.
+   */
+  @Override
+  public String toString() {
+    return this.count + "," + this.mean + "," + this.m2;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    MomentsWritable other = (MomentsWritable) o;
+    return this.count == other.count
+        && Double.compare(this.mean, other.mean) == 0
+        && Double.compare(this.m2, other.m2) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Long.hashCode(this.count);
+    result = 31 * result + Double.hashCode(this.mean);
+    result = 31 * result + Double.hashCode(this.m2);
+    return result;
+  }
+}
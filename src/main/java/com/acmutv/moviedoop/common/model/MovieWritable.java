@@ -68,7 +68,7 @@ public class MovieWritable implements WritableComparable<MovieWritable> {
   public void readFields(DataInput in) throws IOException {
     this.id = in.readLong();
     this.title = in.readUTF();
-    this.genres = Arrays.asList(in.readUTF().split("|"));
+    this.genres = Arrays.asList(in.readUTF().split("\\|"));
   }
 
   /**
@@ -95,7 +95,7 @@ public class MovieWritable implements WritableComparable<MovieWritable> {
 
     this.id = Long.valueOf(parts[0]);
     this.title = parts[1];
-    this.genres = Arrays.asList(parts[2].split("|"));
+    this.genres = Arrays.asList(parts[2].split("\\|"));
   }
 
   /**
@@ -0,0 +1,429 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.model;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * The record representing the histogram of the ratings of a movie, with one bucket for each
+ * half-star score (0.5, 1.0, ..., 5.0).
+ * It replaces the string format {score=repetitions,...,score=repetitions} in shuffle and staging.
+ * The record carries an optional tag (e.g. the bitmask of the time intervals the ratings belong to).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingHistogramWritable implements WritableComparable<RatingHistogramWritable> {
+
+  /**
+   * The number of half-star buckets.
+   */
+  public static final int BUCKETS = 10;
+
+  /**
+   * The minimum score.
+   */
+  public static final double SCORE_MIN = 0.5;
+
+  /**
+   * The maximum score.
+   */
+  public static final double SCORE_MAX = 5.0;
+
+  /**
+   * The tag.
+   */
+  private byte tag;
+
+  /**
+   * The repetitions for each bucket.
+   */
+  private long[] repetitions = new long[BUCKETS];
+
+  /**
+   * Constructs a new empty histogram.
+   */
+  public RatingHistogramWritable() {
+    this.tag = 0;
+  }
+
+  /**
+   * Returns the bucket index for {@code score}.
+   *
+   * @param score the score.
+   * @return the bucket index.
+   * @throws IllegalArgumentException when {@code score} is not a half-star score in [0.5,5.0].
+   */
+  public static int bucket(double score) {
+    double scaled = score * 2;
+    int bucket = (int) scaled - 1;
+    if (bucket < 0 || bucket >= BUCKETS || scaled != (bucket + 1)) {
+      throw new IllegalArgumentException("Invalid rating score: " + score);
+    }
+    return bucket;
+  }
+
+  /**
+   * Returns the score represented by {@code bucket}.
+   *
+   * @param bucket the bucket index.
+   * @return the score.
+   */
+  public static double score(int bucket) {
+    return (bucket + 1) * 0.5;
+  }
+
+  /**
+   * Returns the tag.
+   *
+   * @return the tag.
+   */
+  public byte getTag() {
+    return this.tag;
+  }
+
+  /**
+   * Sets the tag.
+   *
+   * @param tag the tag.
+   */
+  public void setTag(byte tag) {
+    this.tag = tag;
+  }
+
+  /**
+   * Returns the repetitions of the specified bucket.
+   *
+   * @param bucket the bucket index.
+   * @return the repetitions.
+   */
+  public long getRepetitions(int bucket) {
+    return this.repetitions[bucket];
+  }
+
+  /**
+   * Sets the repetitions of the specified bucket.
+   *
+   * @param bucket the bucket index.
+   * @param repetitions the repetitions.
+   */
+  public void setRepetitions(int bucket, long repetitions) {
+    this.repetitions[bucket] = repetitions;
+  }
+
+  /**
+   * Adds a rating with the specified score.
+   *
+   * @param score the score.
+   */
+  public void add(double score) {
+    this.repetitions[bucket(score)]++;
+  }
+
+  /**
+   * Adds {@code repetitions} ratings with the specified score.
+   *
+   * @param score the score.
+   * @param repetitions the repetitions.
+   */
+  public void add(double score, long repetitions) {
+    this.repetitions[bucket(score)] += repetitions;
+  }
+
+  /**
+   * Merges the repetitions of {@code other} into this histogram (the tag is left unchanged).
+   *
+   * @param other the histogram to merge.
+   */
+  public void merge(RatingHistogramWritable other) {
+    for (int b = 0; b < BUCKETS; b++) {
+      this.repetitions[b] += other.repetitions[b];
+    }
+  }
+
+  /**
+   * Subtracts the repetitions of {@code other} from this histogram (the tag is left unchanged).
+   * It is the inverse of {@link #merge(RatingHistogramWritable)}, e.g. to compute a window from
+   * two cumulative histograms.
+   *
+   * @param other the histogram to subtract.
+   */
+  public void subtract(RatingHistogramWritable other) {
+    for (int b = 0; b < BUCKETS; b++) {
+      this.repetitions[b] -= other.repetitions[b];
+    }
+  }
+
+  /**
+   * Copies {@code other} into this histogram.
+   *
+   * @param other the histogram to copy.
+   */
+  public void set(RatingHistogramWritable other) {
+    this.tag = other.tag;
+    System.arraycopy(other.repetitions, 0, this.repetitions, 0, BUCKETS);
+  }
+
+  /**
+   * Resets the histogram.
+   */
+  public void clear() {
+    this.tag = 0;
+    Arrays.fill(this.repetitions, 0L);
+  }
+
+  /**
+   * Checks if the histogram has no ratings.
+   *
+   * @return true if the histogram has no ratings; false, otherwise.
+   */
+  public boolean isEmpty() {
+    for (long r : this.repetitions) {
+      if (r != 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of ratings.
+   *
+   * @return the number of ratings.
+   */
+  public long getCount() {
+    long count = 0L;
+    for (long r : this.repetitions) {
+      count += r;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the sum of scores.
+   *
+   * @return the sum of scores.
+   */
+  public double getSum() {
+    double sum = 0.0;
+    for (int b = 0; b < BUCKETS; b++) {
+      sum += score(b) * this.repetitions[b];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the sum of squared scores.
+   *
+   * @return the sum of squared scores.
+   */
+  public double getSumOfSquares() {
+    double sum = 0.0;
+    for (int b = 0; b < BUCKETS; b++) {
+      double score = score(b);
+      sum += score * score * this.repetitions[b];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the average score.
+   *
+   * @return the average score; NaN if the histogram is empty.
+   */
+  public double getAverage() {
+    return this.getSum() / this.getCount();
+  }
+
+  /**
+   * Reads the fields.
+   * The format is: tag (byte), bitmask of non empty buckets (vint), repetitions of non empty
+   * buckets (vlong).
+   *
+   * @param in the input.
+   * @throws IOException when the input cannot be read.
+   */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.tag = in.readByte();
+    int mask = WritableUtils.readVInt(in);
+    for (int b = 0; b < BUCKETS; b++) {
+      this.repetitions[b] = ((mask & (1 << b)) != 0) ? WritableUtils.readVLong(in) : 0L;
+    }
+  }
+
+  /**
+   * Writes the fields.
+   *
+   * @param out the output.
+   * @throws IOException when the output cannot be written.
+   */
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeByte(this.tag);
+    int mask = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      if (this.repetitions[b] != 0) mask |= (1 << b);
+    }
+    WritableUtils.writeVInt(out, mask);
+    for (int b = 0; b < BUCKETS; b++) {
+      if (this.repetitions[b] != 0) WritableUtils.writeVLong(out, this.repetitions[b]);
+    }
+  }
+
+  /**
+   * Reads the histogram from its serialized bytes (e.g. an ORC binary field).
+   *
+   * @param bytes the serialized bytes.
+   * @throws IOException when the bytes cannot be read.
+   */
+  public void readFrom(BytesWritable bytes) throws IOException {
+    this.readFrom(bytes.getBytes(), 0, bytes.getLength());
+  }
+
+  /**
+   * Reads the histogram from its serialized bytes (e.g. an entry of an ORC binary column vector).
+   *
+   * @param bytes the buffer.
+   * @param start the offset of the serialized bytes.
+   * @param length the length of the serialized bytes.
+   * @throws IOException when the bytes cannot be read.
+   */
+  public void readFrom(byte[] bytes, int start, int length) throws IOException {
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(bytes, start, length);
+    this.readFields(in);
+  }
+
+  /**
+   * Writes the histogram as serialized bytes (e.g. into an ORC binary field).
+   *
+   * @param bytes the destination.
+   * @throws IOException when the bytes cannot be written.
+   */
+  public void writeTo(BytesWritable bytes) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    this.write(out);
+    bytes.set(out.getData(), 0, out.getLength());
+  }
+
+  /**
+   * Returns the string representation (score=repetitions,...,score=repetitions).
+   * @return the string representation.
+   */
+  @Override
+  public String toString() {
+    StringJoiner sj = new StringJoiner(",");
+    for (int b = 0; b < BUCKETS; b++) {
+      if (this.repetitions[b] != 0) sj.add(score(b) + "=" + this.repetitions[b]);
+    }
+    return sj.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RatingHistogramWritable other = (RatingHistogramWritable) o;
+    return this.tag == other.tag && Arrays.equals(this.repetitions, other.repetitions);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.tag + Arrays.hashCode(this.repetitions);
+  }
+
+  /**
+   * Compares this histogram with the specified one, by tag and then by bucket repetitions.
+   *
+   * @param o the object to be compared.
+   * @return a negative integer, zero, or a positive integer as this object
+   * is less than, equal to, or greater than the specified object.
+   */
+  @Override
+  public int compareTo(RatingHistogramWritable o) {
+    if (this.tag != o.tag) return Byte.compare(this.tag, o.tag);
+    for (int b = 0; b < BUCKETS; b++) {
+      int cmp = Long.compare(this.repetitions[b], o.repetitions[b]);
+      if (cmp != 0) return cmp;
+    }
+    return 0;
+  }
+
+  /**
+   * A raw comparator for {@link RatingHistogramWritable}, that compares the serialized bytes
+   * without deserializing the histograms.
+   */
+  public static class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(RatingHistogramWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      if (b1[s1] != b2[s2]) return Byte.compare(b1[s1], b2[s2]);
+      try {
+        int i1 = s1 + 1;
+        int i2 = s2 + 1;
+        int mask1 = (int) readVLong(b1, i1);
+        int mask2 = (int) readVLong(b2, i2);
+        i1 += WritableUtils.decodeVIntSize(b1[i1]);
+        i2 += WritableUtils.decodeVIntSize(b2[i2]);
+        for (int b = 0; b < BUCKETS; b++) {
+          long r1 = 0L;
+          long r2 = 0L;
+          if ((mask1 & (1 << b)) != 0) {
+            r1 = readVLong(b1, i1);
+            i1 += WritableUtils.decodeVIntSize(b1[i1]);
+          }
+          if ((mask2 & (1 << b)) != 0) {
+            r2 = readVLong(b2, i2);
+            i2 += WritableUtils.decodeVIntSize(b2[i2]);
+          }
+          if (r1 != r2) return Long.compare(r1, r2);
+        }
+        return 0;
+      } catch (IOException exc) {
+        throw new IllegalArgumentException(exc);
+      }
+    }
+  }
+
+  static {
+    WritableComparator.define(RatingHistogramWritable.class, new Comparator());
+  }
+}
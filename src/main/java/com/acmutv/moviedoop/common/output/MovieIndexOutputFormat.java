@@ -0,0 +1,84 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.output;
+
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * The output format that writes movies as a {@link MovieIndex} file.
+ * Records must come sorted by movie id (e.g. from the reduce phase); duplicate ids are skipped.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieIndexOutputFormat extends FileOutputFormat<LongWritable,MovieWritable> {
+
+  /**
+   * Returns the record writer.
+   *
+   * @param ctx the task context.
+   * @return the record writer.
+   * @throws IOException when the index file cannot be created.
+   */
+  @Override
+  public RecordWriter<LongWritable,MovieWritable> getRecordWriter(TaskAttemptContext ctx) throws IOException {
+    Path file = super.getDefaultWorkFile(ctx, MovieIndex.EXTENSION);
+    FileSystem fs = file.getFileSystem(ctx.getConfiguration());
+    final MovieIndex.Writer writer = new MovieIndex.Writer(fs.create(file, false));
+
+    return new RecordWriter<LongWritable,MovieWritable>() {
+
+      /**
+       * The last written movie id.
+       */
+      private long lastMovieId;
+
+      @Override
+      public void write(LongWritable key, MovieWritable value) throws IOException {
+        if (writer.size() > 0 && key.get() == this.lastMovieId) {
+          return;
+        }
+        writer.append(key.get(), value.title, String.join("|", value.genres));
+        this.lastMovieId = key.get();
+      }
+
+      @Override
+      public void close(TaskAttemptContext ctx) throws IOException {
+        writer.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,142 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.reduce;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The combiner for jobs shuffling ratings as text (aggregation type 1), with any key type.
+ * Values are formatted as {@code [header:]score[,repetitions]}, where the optional header (e.g.
+ * {@code 1;2:}, the time intervals the ratings belong to) ends with the last colon, and
+ * repetitions default to 1.
+ * It emits (key,[header:]score,repetitions) for every distinct header and score.
+ * Merging is associative, so it can be applied any number of times, across spills and merges.
+ *
+ * @param <K> the key type.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Aggregate1RatingCombiner<K> extends Reducer<K,Text,K,Text> {
+
+  /**
+   * The initial capacity of headers.
+   */
+  private static final int INITIAL_CAPACITY = 4;
+
+  /**
+   * The distinct headers of the current key.
+   */
+  private Text[] headers = new Text[INITIAL_CAPACITY];
+
+  /**
+   * The repetitions of every score bucket, by header.
+   */
+  private long[][] repetitions = new long[INITIAL_CAPACITY][RatingHistogramWritable.BUCKETS];
+
+  /**
+   * The number of headers of the current key.
+   */
+  private int size;
+
+  /**
+   * The tokenizer for values.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The tuple ([header:]score,repetitions) to emit.
+   */
+  private Text tuple = new Text();
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(K key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
+    this.size = 0;
+    for (Text value : values) {
+      byte[] bytes = value.getBytes();
+      int length = value.getLength();
+      int start = length;
+      while (start > 0 && bytes[start - 1] != ':') start--;
+      long[] repetitions = this.repetitions(bytes, start);
+      this.tokenizer.tokenize(bytes, start, length - start);
+      double score = this.tokenizer.getDouble(0);
+      repetitions[RatingHistogramWritable.bucket(score)] += (this.tokenizer.size() > 1) ? this.tokenizer.getLong(1) : 1L;
+    }
+    for (int h = 0; h < this.size; h++) {
+      String header = this.headers[h].toString();
+      for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+        if (this.repetitions[h][b] == 0) continue;
+        this.tuple.set(header + RatingHistogramWritable.score(b) + "," + this.repetitions[h][b]);
+        ctx.write(key, this.tuple);
+      }
+    }
+  }
+
+  /**
+   * Returns the repetitions for the header {@code bytes[0,length)}, adding the header if new.
+   *
+   * @param bytes the value bytes.
+   * @param length the header length.
+   * @return the repetitions of every score bucket.
+   */
+  private long[] repetitions(byte[] bytes, int length) {
+    for (int h = 0; h < this.size; h++) {
+      Text header = this.headers[h];
+      if (WritableComparator.compareBytes(header.getBytes(), 0, header.getLength(), bytes, 0, length) == 0) {
+        return this.repetitions[h];
+      }
+    }
+    if (this.size == this.headers.length) {
+      this.headers = Arrays.copyOf(this.headers, this.size * 2);
+      this.repetitions = Arrays.copyOf(this.repetitions, this.size * 2);
+      for (int h = this.size; h < this.repetitions.length; h++) {
+        this.repetitions[h] = new long[RatingHistogramWritable.BUCKETS];
+      }
+    }
+    if (this.headers[this.size] == null) {
+      this.headers[this.size] = new Text();
+    }
+    this.headers[this.size].set(bytes, 0, length);
+    Arrays.fill(this.repetitions[this.size], 0L);
+    return this.repetitions[this.size++];
+  }
+}
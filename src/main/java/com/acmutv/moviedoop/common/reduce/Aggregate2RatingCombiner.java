@@ -0,0 +1,107 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.reduce;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * The combiner for jobs shuffling histograms of ratings (aggregation type 2), with any key type
+ * (e.g. movie id, movie title, genre, or their {@link org.apache.orc.mapred.OrcKey}).
+ * It emits (key,ratings) where ratings is the merged histogram of ratings, one for every tag.
+ * Merging is associative, so it can be applied any number of times, across spills and merges.
+ *
+ * @param <K> the key type.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Aggregate2RatingCombiner<K> extends Reducer<K,RatingHistogramWritable,K,RatingHistogramWritable> {
+
+  /**
+   * The number of tags.
+   */
+  private static final int TAGS = 256;
+
+  /**
+   * The merged histograms of ratings to emit, by tag.
+   */
+  private RatingHistogramWritable[] ratings = new RatingHistogramWritable[TAGS];
+
+  /**
+   * The tags of the current key, in order of appearance.
+   */
+  private int[] tags = new int[TAGS];
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(K key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    int size = 0;
+    for (RatingHistogramWritable value : values) {
+      int tag = value.getTag() & 0xFF;
+      RatingHistogramWritable merged = this.ratings[tag];
+      if (merged == null) {
+        merged = new RatingHistogramWritable();
+        this.ratings[tag] = merged;
+      }
+      if (!this.contains(tag, size)) {
+        merged.clear();
+        merged.setTag(value.getTag());
+        this.tags[size++] = tag;
+      }
+      merged.merge(value);
+    }
+    for (int i = 0; i < size; i++) {
+      ctx.write(key, this.ratings[this.tags[i]]);
+    }
+  }
+
+  /**
+   * Checks if {@code tag} is among the first {@code size} tags of the current key.
+   *
+   * @param tag the tag.
+   * @param size the number of tags of the current key.
+   * @return true if the tag has already been seen; false, otherwise.
+   */
+  private boolean contains(int tag, int size) {
+    for (int i = 0; i < size; i++) {
+      if (this.tags[i] == tag) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
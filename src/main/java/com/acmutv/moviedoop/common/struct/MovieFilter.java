@@ -0,0 +1,305 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.JobContext;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * A Bloom filter of movie ids, used to drop ratings of movies that cannot join (semi-join) before
+ * they are aggregated or shuffled.
+ * It has no false negatives, and false positives are dropped anyway by the exact join downstream.
+ * Bit positions are derived from a single 64-bit mix of the movie id (double hashing), so probes
+ * allocate nothing.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieFilter implements Writable {
+
+  /**
+   * The Hadoop counters reporting the effect of the filter.
+   */
+  public enum Counter {
+    DROPPED_RATINGS
+  }
+
+  /**
+   * The filter file extension.
+   */
+  public static final String EXTENSION = ".bloom";
+
+  /**
+   * The default false positive probability.
+   */
+  public static final double FPP = 0.01;
+
+  /**
+   * The number of bits.
+   */
+  private long numBits;
+
+  /**
+   * The number of hash functions.
+   */
+  private int numHashes;
+
+  /**
+   * The bits.
+   */
+  private long[] words;
+
+  /**
+   * Constructs a new empty filter, to be read with {@link #readFields(DataInput)}.
+   */
+  public MovieFilter() {
+    this.numBits = Long.SIZE;
+    this.numHashes = 1;
+    this.words = new long[1];
+  }
+
+  /**
+   * Constructs a new filter sized for {@code expectedSize} movie ids with false positive
+   * probability {@code fpp}.
+   *
+   * @param expectedSize the expected number of movie ids.
+   * @param fpp the false positive probability, in (0,1).
+   */
+  public MovieFilter(int expectedSize, double fpp) {
+    if (fpp <= 0.0 || fpp >= 1.0) {
+      throw new IllegalArgumentException("Invalid false positive probability: " + fpp);
+    }
+    int n = Math.max(1, expectedSize);
+    long bits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    int words = (int) ((Math.max(Long.SIZE, bits) + Long.SIZE - 1) / Long.SIZE);
+    this.numBits = (long) words * Long.SIZE;
+    this.numHashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    this.words = new long[words];
+  }
+
+  /**
+   * Builds the filter of the movies with at least one genre.
+   *
+   * @param index the movie index.
+   * @param fpp the false positive probability.
+   * @return the filter.
+   */
+  public static MovieFilter ofGenres(MovieIndex index, double fpp) {
+    int size = 0;
+    for (int i = 0; i < index.size(); i++) {
+      if (!index.getGenresAt(i).isEmpty()) {
+        size++;
+      }
+    }
+    MovieFilter filter = new MovieFilter(size, fpp);
+    for (int i = 0; i < index.size(); i++) {
+      if (!index.getGenresAt(i).isEmpty()) {
+        filter.add(index.getMovieIdAt(i));
+      }
+    }
+    return filter;
+  }
+
+  /**
+   * Adds the movie.
+   *
+   * @param movieId the movie id.
+   */
+  public void add(long movieId) {
+    long hash = mix(movieId);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= this.numHashes; i++) {
+      long bit = this.position(h1 + i * h2);
+      this.words[(int) (bit >>> 6)] |= (1L << bit);
+    }
+  }
+
+  /**
+   * Checks if the movie may have been added.
+   *
+   * @param movieId the movie id.
+   * @return false if the movie has certainly not been added; true, otherwise.
+   */
+  public boolean mightContain(long movieId) {
+    long hash = mix(movieId);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= this.numHashes; i++) {
+      long bit = this.position(h1 + i * h2);
+      if ((this.words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of bits.
+   *
+   * @return the number of bits.
+   */
+  public long getNumBits() {
+    return this.numBits;
+  }
+
+  /**
+   * Returns the number of hash functions.
+   *
+   * @return the number of hash functions.
+   */
+  public int getNumHashes() {
+    return this.numHashes;
+  }
+
+  /**
+   * Returns the bit position for the combined hash.
+   *
+   * @param combined the combined hash.
+   * @return the bit position, in [0,numBits).
+   */
+  private long position(int combined) {
+    return ((combined < 0) ? ~combined : combined) % this.numBits;
+  }
+
+  /**
+   * Mixes the bits of the movie id (MurmurHash3 finalizer).
+   *
+   * @param movieId the movie id.
+   * @return the mixed bits.
+   */
+  private static long mix(long movieId) {
+    long h = movieId;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Reads the fields.
+   * The format is: number of hash functions (vint), number of words (vint), words (long).
+   *
+   * @param in the input.
+   * @throws IOException when the input cannot be read.
+   */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    this.numHashes = WritableUtils.readVInt(in);
+    int words = WritableUtils.readVInt(in);
+    if (this.numHashes < 1 || words < 1) {
+      throw new IOException("Not a movie filter");
+    }
+    this.words = new long[words];
+    for (int w = 0; w < words; w++) {
+      this.words[w] = in.readLong();
+    }
+    this.numBits = (long) words * Long.SIZE;
+  }
+
+  /**
+   * Writes the fields.
+   *
+   * @param out the output.
+   * @throws IOException when the output cannot be written.
+   */
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, this.numHashes);
+    WritableUtils.writeVInt(out, this.words.length);
+    for (long word : this.words) {
+      out.writeLong(word);
+    }
+  }
+
+  /**
+   * Writes the filter to {@code path}.
+   *
+   * @param conf the configuration.
+   * @param path the filter file.
+   * @throws IOException when the file cannot be written.
+   */
+  public void save(Configuration conf, Path path) throws IOException {
+    try (FSDataOutputStream out = path.getFileSystem(conf).create(path, true)) {
+      this.write(out);
+    }
+  }
+
+  /**
+   * Reads the filter at {@code uri}.
+   * The file localized by the distributed cache (symlinked in the working directory) is preferred.
+   *
+   * @param conf the configuration.
+   * @param uri the filter file URI.
+   * @return the filter.
+   * @throws IOException when the file cannot be read.
+   */
+  public static MovieFilter open(Configuration conf, URI uri) throws IOException {
+    Path path = new Path(uri);
+    File local = new File(path.getName());
+    if (local.isFile()) {
+      path = new Path(local.getAbsolutePath());
+    }
+    MovieFilter filter = new MovieFilter();
+    try (FSDataInputStream in = path.getFileSystem(conf).open(path)) {
+      filter.readFields(in);
+    }
+    return filter;
+  }
+
+  /**
+   * Opens the first filter file among the cache files of the job.
+   *
+   * @param ctx the job context.
+   * @return the filter; null if there is no filter file in the distributed cache.
+   * @throws IOException when the filter cannot be read.
+   */
+  public static MovieFilter open(JobContext ctx) throws IOException {
+    URI[] uris = ctx.getCacheFiles();
+    if (uris != null) {
+      for (URI uri : uris) {
+        if (uri.getPath().endsWith(EXTENSION)) {
+          return open(ctx.getConfiguration(), uri);
+        }
+      }
+    }
+    return null;
+  }
+}
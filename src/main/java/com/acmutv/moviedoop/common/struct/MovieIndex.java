@@ -0,0 +1,389 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A read-only, memory-mapped index movieId->(title,genres).
+ * The index is a single file, laid out as:
+ * <ul>
+ *   <li>the UTF-8 blob: title and genres of each movie, in movie id order;</li>
+ *   <li>the sorted movie ids ({@code long[size]});</li>
+ *   <li>the blob offsets ({@code int[2*size+1]}): title i starts at {@code 2i}, genres i starts at
+ *   {@code 2i+1} and ends at {@code 2i+2};</li>
+ *   <li>the footer: size, blob length and magic number ({@code int}s).</li>
+ * </ul>
+ * Lookups are binary searches on the mapped ids, so opening the index parses nothing and the pages
+ * are shared by all the tasks on the same node.
+ * Instances are not thread-safe.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieIndex {
+
+  /**
+   * The index file extension.
+   */
+  public static final String EXTENSION = ".idx";
+
+  /**
+   * The magic number closing the index file.
+   */
+  private static final int MAGIC = 0x4d564958;
+
+  /**
+   * The footer size (bytes).
+   */
+  private static final int FOOTER_BYTES = 3 * Integer.BYTES;
+
+  /**
+   * The mapped index file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of movies.
+   */
+  private final int size;
+
+  /**
+   * The position of the sorted ids.
+   */
+  private final int idsPosition;
+
+  /**
+   * The position of the blob offsets.
+   */
+  private final int offsetsPosition;
+
+  /**
+   * The buffer to decode strings.
+   */
+  private byte[] bytes = new byte[256];
+
+  /**
+   * Constructs a new index on the mapped file.
+   *
+   * @param buffer the mapped file.
+   * @throws IOException when the buffer is not a movie index.
+   */
+  private MovieIndex(ByteBuffer buffer) throws IOException {
+    int limit = buffer.limit();
+    if (limit < FOOTER_BYTES || buffer.getInt(limit - Integer.BYTES) != MAGIC) {
+      throw new IOException("Not a movie index");
+    }
+    this.buffer = buffer;
+    this.size = buffer.getInt(limit - FOOTER_BYTES);
+    this.idsPosition = buffer.getInt(limit - FOOTER_BYTES + Integer.BYTES);
+    this.offsetsPosition = this.idsPosition + this.size * Long.BYTES;
+  }
+
+  /**
+   * Opens the index file as a read-only mapped buffer.
+   *
+   * @param file the index file.
+   * @return the index.
+   * @throws IOException when the file cannot be mapped.
+   */
+  public static MovieIndex open(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new MovieIndex(buffer);
+    }
+  }
+
+  /**
+   * Opens the index file at {@code uri}.
+   * The file localized by the distributed cache (symlinked in the working directory) is preferred;
+   * otherwise, remote files are copied to a local temporary file.
+   *
+   * @param conf the configuration.
+   * @param uri the index file URI.
+   * @return the index.
+   * @throws IOException when the file cannot be mapped.
+   */
+  public static MovieIndex open(Configuration conf, URI uri) throws IOException {
+    Path path = new Path(uri);
+    File local = new File(path.getName());
+    if (!local.isFile()) {
+      FileSystem fs = path.getFileSystem(conf);
+      if (fs instanceof LocalFileSystem) {
+        local = ((LocalFileSystem) fs).pathToFile(path);
+      } else {
+        local = File.createTempFile("movies", EXTENSION);
+        local.deleteOnExit();
+        fs.copyToLocalFile(false, path, new Path(local.getAbsolutePath()), true);
+      }
+    }
+    return open(local);
+  }
+
+  /**
+   * Opens the first index file among the cache files of the job.
+   *
+   * @param ctx the job context.
+   * @return the index.
+   * @throws IOException when there is no index file, or it cannot be mapped.
+   */
+  public static MovieIndex open(JobContext ctx) throws IOException {
+    URI[] uris = ctx.getCacheFiles();
+    if (uris != null) {
+      for (URI uri : uris) {
+        if (uri.getPath().endsWith(EXTENSION)) {
+          return open(ctx.getConfiguration(), uri);
+        }
+      }
+    }
+    throw new FileNotFoundException("No movie index in the distributed cache");
+  }
+
+  /**
+   * Returns the number of movies.
+   *
+   * @return the number of movies.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Checks if the movie is in the index.
+   *
+   * @param movieId the movie id.
+   * @return true if the movie is in the index; false, otherwise.
+   */
+  public boolean contains(long movieId) {
+    return this.indexOf(movieId) >= 0;
+  }
+
+  /**
+   * Returns the title of the movie.
+   *
+   * @param movieId the movie id.
+   * @return the title; null if the movie is not in the index.
+   */
+  public String getTitle(long movieId) {
+    int i = this.indexOf(movieId);
+    return (i < 0) ? null : this.decode(2 * i);
+  }
+
+  /**
+   * Returns the title of the movie, or {@code defaultTitle} if the movie is not in the index.
+   *
+   * @param movieId the movie id.
+   * @param defaultTitle the default title.
+   * @return the title; {@code defaultTitle} if the movie is not in the index.
+   */
+  public String getTitle(long movieId, String defaultTitle) {
+    String title = this.getTitle(movieId);
+    return (title == null) ? defaultTitle : title;
+  }
+
+  /**
+   * Returns the genres of the movie (genre1|genre2|...|genreN).
+   *
+   * @param movieId the movie id.
+   * @return the genres (empty if no genre is listed); null if the movie is not in the index.
+   */
+  public String getGenres(long movieId) {
+    int i = this.indexOf(movieId);
+    return (i < 0) ? null : this.decode(2 * i + 1);
+  }
+
+  /**
+   * Returns the id of the movie at {@code position} in the sorted ids.
+   *
+   * @param position the position, in [0,size).
+   * @return the movie id.
+   */
+  public long getMovieIdAt(int position) {
+    return this.buffer.getLong(this.idsPosition + position * Long.BYTES);
+  }
+
+  /**
+   * Returns the genres of the movie at {@code position} in the sorted ids.
+   *
+   * @param position the position, in [0,size).
+   * @return the genres (empty if no genre is listed).
+   */
+  public String getGenresAt(int position) {
+    return this.decode(2 * position + 1);
+  }
+
+  /**
+   * Returns the position of the movie in the sorted ids.
+   *
+   * @param movieId the movie id.
+   * @return the position; -1 if the movie is not in the index.
+   */
+  private int indexOf(long movieId) {
+    int lo = 0;
+    int hi = this.size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long id = this.buffer.getLong(this.idsPosition + mid * Long.BYTES);
+      if (id < movieId) {
+        lo = mid + 1;
+      } else if (id > movieId) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the UTF-8 string between the {@code o}-th and the {@code (o+1)}-th blob offsets.
+   *
+   * @param o the offset index.
+   * @return the decoded string.
+   */
+  private String decode(int o) {
+    int start = this.buffer.getInt(this.offsetsPosition + o * Integer.BYTES);
+    int end = this.buffer.getInt(this.offsetsPosition + (o + 1) * Integer.BYTES);
+    int length = end - start;
+    if (this.bytes.length < length) {
+      this.bytes = new byte[Math.max(length, this.bytes.length << 1)];
+    }
+    for (int i = 0; i < length; i++) {
+      this.bytes[i] = this.buffer.get(start + i);
+    }
+    return new String(this.bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The writer of index files.
+   * Movies must be appended in strictly ascending id order.
+   */
+  public static class Writer implements AutoCloseable {
+
+    /**
+     * The output stream.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The appended movie ids.
+     */
+    private long[] ids = new long[1024];
+
+    /**
+     * The blob offsets.
+     */
+    private int[] offsets = new int[2 * 1024 + 1];
+
+    /**
+     * The number of appended movies.
+     */
+    private int size;
+
+    /**
+     * Constructs a new writer.
+     *
+     * @param out the output stream.
+     */
+    public Writer(OutputStream out) {
+      this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Returns the number of appended movies.
+     *
+     * @return the number of appended movies.
+     */
+    public int size() {
+      return this.size;
+    }
+
+    /**
+     * Appends a movie.
+     *
+     * @param movieId the movie id.
+     * @param title the movie title.
+     * @param genres the movie genres (genre1|genre2|...|genreN).
+     * @throws IOException when the movie cannot be written.
+     * @throws IllegalArgumentException when the movie id is not greater than the last one.
+     */
+    public void append(long movieId, String title, String genres) throws IOException {
+      if (this.size > 0 && movieId <= this.ids[this.size - 1]) {
+        throw new IllegalArgumentException("Movie ids must be strictly ascending: " + movieId);
+      }
+      if (this.size == this.ids.length) {
+        this.ids = Arrays.copyOf(this.ids, this.size << 1);
+        this.offsets = Arrays.copyOf(this.offsets, 2 * (this.size << 1) + 1);
+      }
+      this.ids[this.size] = movieId;
+      this.offsets[2 * this.size] = this.out.size();
+      this.out.write(title.getBytes(StandardCharsets.UTF_8));
+      this.offsets[2 * this.size + 1] = this.out.size();
+      this.out.write(genres.getBytes(StandardCharsets.UTF_8));
+      this.size++;
+    }
+
+    /**
+     * Writes ids, offsets and footer, and closes the stream.
+     *
+     * @throws IOException when the index cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+      int blobBytes = this.out.size();
+      this.offsets[2 * this.size] = blobBytes;
+      for (int i = 0; i < this.size; i++) {
+        this.out.writeLong(this.ids[i]);
+      }
+      for (int o = 0; o <= 2 * this.size; o++) {
+        this.out.writeInt(this.offsets[o]);
+      }
+      this.out.writeInt(this.size);
+      this.out.writeInt(blobBytes);
+      this.out.writeInt(MAGIC);
+      this.out.close();
+    }
+  }
+}
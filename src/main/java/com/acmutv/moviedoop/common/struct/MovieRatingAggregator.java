@@ -0,0 +1,428 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.util.Arrays;
+
+/**
+ * A primitive table movieId->(score,repetitions) for the map-side aggregation of ratings.
+ * It is an open-addressing (linear probing) table with long keys, where each movie owns
+ * {@link RatingHistogramWritable#BUCKETS} int counters in a flat array.
+ * No object is allocated per movie or per rating: the only allocations are the backing arrays,
+ * which are tracked by the allocation counters.
+ * The table can be bounded by a memory budget: when growing would exceed the budget, the table is
+ * full and the owner is expected to flush and clear it.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieRatingAggregator {
+
+  /**
+   * The Hadoop counters reporting the allocations of the aggregator.
+   */
+  public enum Counter {
+    ALLOCATIONS,
+    ALLOCATED_BYTES,
+    REHASHES,
+    SPILLS
+  }
+
+  /**
+   * Default expected number of movies.
+   */
+  private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+  /**
+   * The marker for empty slots (not a valid movie id).
+   */
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  /**
+   * The number of counters per movie.
+   */
+  private static final int BUCKETS = RatingHistogramWritable.BUCKETS;
+
+  /**
+   * The movie ids (one for each slot).
+   */
+  private long[] keys;
+
+  /**
+   * The repetitions (BUCKETS for each slot).
+   */
+  private int[] counts;
+
+  /**
+   * The slot mask (capacity - 1).
+   */
+  private int mask;
+
+  /**
+   * The number of movies.
+   */
+  private int size;
+
+  /**
+   * The number of movies that triggers the rehash.
+   */
+  private int threshold;
+
+  /**
+   * The memory budget (bytes) for the backing arrays.
+   */
+  private long maxMemoryBytes = Long.MAX_VALUE;
+
+  /**
+   * The number of array allocations.
+   */
+  private long allocations;
+
+  /**
+   * The number of bytes allocated for arrays.
+   */
+  private long allocatedBytes;
+
+  /**
+   * The number of rehashes.
+   */
+  private long rehashes;
+
+  /**
+   * Constructs a new aggregator.
+   */
+  public MovieRatingAggregator() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Constructs a new aggregator.
+   *
+   * @param expectedSize the expected number of movies.
+   */
+  public MovieRatingAggregator(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+    this.allocate(capacity);
+  }
+
+  /**
+   * Adds a rating.
+   *
+   * @param movieId the movie id.
+   * @param score the score.
+   * @throws IllegalArgumentException when {@code score} is not a half-star score.
+   */
+  public void add(long movieId, double score) {
+    this.add(movieId, RatingHistogramWritable.bucket(score), 1);
+  }
+
+  /**
+   * Adds {@code repetitions} ratings to the specified bucket.
+   *
+   * @param movieId the movie id.
+   * @param bucket the bucket index.
+   * @param repetitions the repetitions.
+   */
+  public void add(long movieId, int bucket, int repetitions) {
+    if (movieId == EMPTY) {
+      throw new IllegalArgumentException("Invalid movie id: " + movieId);
+    }
+    int slot = this.slot(movieId);
+    if (this.keys[slot] == EMPTY) {
+      if (this.size >= this.threshold) {
+        this.rehash(this.keys.length << 1);
+        slot = this.slot(movieId);
+      }
+      this.keys[slot] = movieId;
+      this.size++;
+    }
+    this.counts[slot * BUCKETS + bucket] += repetitions;
+  }
+
+  /**
+   * Returns the repetitions of the specified bucket for the specified movie.
+   *
+   * @param movieId the movie id.
+   * @param bucket the bucket index.
+   * @return the repetitions; 0 if the movie is not in the table.
+   */
+  public int getRepetitions(long movieId, int bucket) {
+    int slot = this.slot(movieId);
+    return (this.keys[slot] == EMPTY) ? 0 : this.counts[slot * BUCKETS + bucket];
+  }
+
+  /**
+   * Checks if the specified movie is in the table.
+   *
+   * @param movieId the movie id.
+   * @return true if the movie is in the table; false, otherwise.
+   */
+  public boolean contains(long movieId) {
+    return movieId != EMPTY && this.keys[this.slot(movieId)] != EMPTY;
+  }
+
+  /**
+   * Checks if the table is full, i.e. if adding a new movie would make it grow over the memory
+   * budget.
+   *
+   * @return true if the table is full; false, otherwise.
+   */
+  public boolean isFull() {
+    return this.size >= this.threshold && memoryBytes(this.keys.length << 1) > this.maxMemoryBytes;
+  }
+
+  /**
+   * Returns the memory budget (bytes) for the backing arrays.
+   *
+   * @return the memory budget (bytes).
+   */
+  public long getMaxMemoryBytes() {
+    return this.maxMemoryBytes;
+  }
+
+  /**
+   * Sets the memory budget (bytes) for the backing arrays.
+   *
+   * @param maxMemoryBytes the memory budget (bytes).
+   */
+  public void setMaxMemoryBytes(long maxMemoryBytes) {
+    this.maxMemoryBytes = maxMemoryBytes;
+  }
+
+  /**
+   * Returns the number of movies.
+   *
+   * @return the number of movies.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Checks if the table is empty.
+   *
+   * @return true if the table is empty; false, otherwise.
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Removes all the movies, keeping the backing arrays.
+   */
+  public void clear() {
+    Arrays.fill(this.keys, EMPTY);
+    Arrays.fill(this.counts, 0);
+    this.size = 0;
+  }
+
+  /**
+   * Returns the number of array allocations.
+   *
+   * @return the number of array allocations.
+   */
+  public long getAllocations() {
+    return this.allocations;
+  }
+
+  /**
+   * Returns the number of bytes allocated for arrays.
+   *
+   * @return the number of bytes allocated for arrays.
+   */
+  public long getAllocatedBytes() {
+    return this.allocatedBytes;
+  }
+
+  /**
+   * Returns the number of rehashes.
+   *
+   * @return the number of rehashes.
+   */
+  public long getRehashes() {
+    return this.rehashes;
+  }
+
+  /**
+   * Adds the allocation counters to the Hadoop counters of the task.
+   *
+   * @param ctx the task context.
+   */
+  public void report(TaskAttemptContext ctx) {
+    ctx.getCounter(Counter.ALLOCATIONS).increment(this.allocations);
+    ctx.getCounter(Counter.ALLOCATED_BYTES).increment(this.allocatedBytes);
+    ctx.getCounter(Counter.REHASHES).increment(this.rehashes);
+  }
+
+  /**
+   * Returns the number of bytes currently held by the backing arrays.
+   *
+   * @return the number of bytes currently held by the backing arrays.
+   */
+  public long getMemoryBytes() {
+    return memoryBytes(this.keys.length);
+  }
+
+  /**
+   * Returns a cursor over the movies of the table.
+   * The table must not be modified while iterating.
+   *
+   * @return the cursor.
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Finds the slot of the specified movie, or the empty slot where it should be inserted.
+   *
+   * @param movieId the movie id.
+   * @return the slot.
+   */
+  private int slot(long movieId) {
+    int slot = mix(movieId) & this.mask;
+    while (this.keys[slot] != EMPTY && this.keys[slot] != movieId) {
+      slot = (slot + 1) & this.mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Allocates the backing arrays with the specified capacity.
+   *
+   * @param capacity the capacity (power of 2).
+   */
+  private void allocate(int capacity) {
+    this.keys = new long[capacity];
+    this.counts = new int[capacity * BUCKETS];
+    Arrays.fill(this.keys, EMPTY);
+    this.mask = capacity - 1;
+    this.threshold = capacity >> 1;
+    this.allocations += 2;
+    this.allocatedBytes += this.getMemoryBytes();
+  }
+
+  /**
+   * Moves all the movies into new backing arrays with the specified capacity.
+   *
+   * @param capacity the new capacity (power of 2).
+   */
+  private void rehash(int capacity) {
+    long[] oldKeys = this.keys;
+    int[] oldCounts = this.counts;
+    this.allocate(capacity);
+    for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+      if (oldKeys[oldSlot] == EMPTY) continue;
+      int slot = this.slot(oldKeys[oldSlot]);
+      this.keys[slot] = oldKeys[oldSlot];
+      System.arraycopy(oldCounts, oldSlot * BUCKETS, this.counts, slot * BUCKETS, BUCKETS);
+    }
+    this.rehashes++;
+  }
+
+  /**
+   * Returns the number of bytes held by the backing arrays with the specified capacity.
+   *
+   * @param capacity the capacity.
+   * @return the number of bytes.
+   */
+  private static long memoryBytes(int capacity) {
+    return (8L + 4L * BUCKETS) * capacity;
+  }
+
+  /**
+   * Spreads the bits of the key (MurmurHash3 finalizer).
+   *
+   * @param key the key.
+   * @return the hash.
+   */
+  private static int mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  /**
+   * A cursor over the movies of the table.
+   */
+  public class Cursor {
+
+    /**
+     * The current slot.
+     */
+    private int slot = -1;
+
+    /**
+     * Moves to the next movie.
+     *
+     * @return true if there is a next movie; false, otherwise.
+     */
+    public boolean next() {
+      while (++this.slot < keys.length) {
+        if (keys[this.slot] != EMPTY) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Returns the current movie id.
+     *
+     * @return the current movie id.
+     */
+    public long getMovieId() {
+      return keys[this.slot];
+    }
+
+    /**
+     * Returns the repetitions of the specified bucket for the current movie.
+     *
+     * @param bucket the bucket index.
+     * @return the repetitions.
+     */
+    public int getRepetitions(int bucket) {
+      return counts[this.slot * BUCKETS + bucket];
+    }
+
+    /**
+     * Copies the repetitions of the current movie into {@code histogram} (the tag is left unchanged).
+     *
+     * @param histogram the destination histogram.
+     */
+    public void get(RatingHistogramWritable histogram) {
+      int offset = this.slot * BUCKETS;
+      for (int b = 0; b < BUCKETS; b++) {
+        histogram.setRepetitions(b, counts[offset + b]);
+      }
+    }
+  }
+}
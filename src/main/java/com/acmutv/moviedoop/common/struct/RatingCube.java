@@ -0,0 +1,262 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An in-memory rating cube: for every movie, the cumulative histograms of ratings by time bucket,
+ * as written by the rating cube job (movieId,bucket,ratings).
+ * The cube is held in primitive arrays: movies sorted by id, their buckets in ascending order and
+ * the repetitions of the cumulative histograms, {@link RatingHistogramWritable#BUCKETS} per bucket.
+ * The cube is immutable once loaded, so it can be queried by concurrent threads.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCube {
+
+  /**
+   * The histogram buckets.
+   */
+  private static final int H = RatingHistogramWritable.BUCKETS;
+
+  /**
+   * The movie ids (sorted).
+   */
+  private final long[] movieIds;
+
+  /**
+   * The offsets of the buckets of every movie (the i-th movie owns rows [offsets[i],offsets[i+1])).
+   */
+  private final int[] offsets;
+
+  /**
+   * The time buckets (ascending within every movie).
+   */
+  private final long[] buckets;
+
+  /**
+   * The repetitions of the cumulative histograms ({@link #H} per row).
+   */
+  private final long[] repetitions;
+
+  /**
+   * Constructs a new cube.
+   *
+   * @param movieIds the movie ids (sorted).
+   * @param offsets the offsets of the buckets of every movie.
+   * @param buckets the time buckets.
+   * @param repetitions the repetitions of the cumulative histograms.
+   */
+  private RatingCube(long[] movieIds, int[] offsets, long[] buckets, long[] repetitions) {
+    this.movieIds = movieIds;
+    this.offsets = offsets;
+    this.buckets = buckets;
+    this.repetitions = repetitions;
+  }
+
+  /**
+   * Loads the cube from the ORC files in the cube directory.
+   * Every file must hold whole movies, sorted by (movieId,bucket).
+   *
+   * @param conf the configuration.
+   * @param cube the cube directory.
+   * @return the cube.
+   * @throws IOException when the cube cannot be read.
+   */
+  public static RatingCube load(Configuration conf, Path cube) throws IOException {
+    FileSystem fs = cube.getFileSystem(conf);
+    RatingHistogramWritable histogram = new RatingHistogramWritable();
+    int rows = 0;
+    long[] buckets = new long[1024];
+    long[] repetitions = new long[1024 * H];
+    int movies = 0;
+    long[] movieIds = new long[256];
+    int[] starts = new int[256];
+
+    for (FileStatus status : fs.listStatus(cube)) {
+      String name = status.getPath().getName();
+      if (!status.isFile() || status.getLen() == 0 || name.startsWith("_") || name.startsWith(".")) {
+        continue;
+      }
+      Reader reader = OrcFile.createReader(status.getPath(), OrcFile.readerOptions(conf).filesystem(fs));
+      VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+      try (RecordReader records = reader.rows()) {
+        boolean first = true;
+        while (records.nextBatch(batch)) {
+          LongColumnVector cvMovieId = (LongColumnVector) batch.cols[0];
+          LongColumnVector cvBucket = (LongColumnVector) batch.cols[1];
+          BytesColumnVector cvRatings = (BytesColumnVector) batch.cols[2];
+          for (int r = 0; r < batch.size; r++) {
+            long movieId = cvMovieId.vector[cvMovieId.isRepeating ? 0 : r];
+            if (first || movieId != movieIds[movies - 1]) {
+              if (movies == movieIds.length) {
+                movieIds = Arrays.copyOf(movieIds, movies << 1);
+                starts = Arrays.copyOf(starts, movies << 1);
+              }
+              movieIds[movies] = movieId;
+              starts[movies] = rows;
+              movies++;
+              first = false;
+            }
+            if (rows == buckets.length) {
+              buckets = Arrays.copyOf(buckets, rows << 1);
+              repetitions = Arrays.copyOf(repetitions, (rows << 1) * H);
+            }
+            int h = cvRatings.isRepeating ? 0 : r;
+            histogram.readFrom(cvRatings.vector[h], cvRatings.start[h], cvRatings.length[h]);
+            buckets[rows] = cvBucket.vector[cvBucket.isRepeating ? 0 : r];
+            for (int b = 0; b < H; b++) {
+              repetitions[rows * H + b] = histogram.getRepetitions(b);
+            }
+            rows++;
+          }
+        }
+      }
+    }
+
+    // movies are sorted within every file: sort them across files
+    final long[] ids = movieIds;
+    Integer[] order = new Integer[movies];
+    for (int i = 0; i < movies; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (i1, i2) -> Long.compare(ids[i1], ids[i2]));
+
+    long[] sortedMovieIds = new long[movies];
+    int[] offsets = new int[movies + 1];
+    long[] sortedBuckets = new long[rows];
+    long[] sortedRepetitions = new long[rows * H];
+    int row = 0;
+    for (int i = 0; i < movies; i++) {
+      int m = order[i];
+      int start = starts[m];
+      int end = (m + 1 < movies) ? starts[m + 1] : rows;
+      sortedMovieIds[i] = movieIds[m];
+      offsets[i] = row;
+      System.arraycopy(buckets, start, sortedBuckets, row, end - start);
+      System.arraycopy(repetitions, start * H, sortedRepetitions, row * H, (end - start) * H);
+      row += end - start;
+    }
+    offsets[movies] = row;
+
+    return new RatingCube(sortedMovieIds, offsets, sortedBuckets, sortedRepetitions);
+  }
+
+  /**
+   * Returns the number of movies.
+   *
+   * @return the number of movies.
+   */
+  public int size() {
+    return this.movieIds.length;
+  }
+
+  /**
+   * Returns the id of the i-th movie (by ascending id).
+   *
+   * @param movie the movie position.
+   * @return the movie id.
+   */
+  public long getMovieId(int movie) {
+    return this.movieIds[movie];
+  }
+
+  /**
+   * Returns the position of the movie.
+   *
+   * @param movieId the movie id.
+   * @return the movie position; a negative value if the movie is not in the cube.
+   */
+  public int indexOf(long movieId) {
+    return Arrays.binarySearch(this.movieIds, movieId);
+  }
+
+  /**
+   * Computes the histogram of ratings of the i-th movie in the period of buckets [lb,ub].
+   *
+   * @param movie the movie position.
+   * @param lowerBound the first bucket of the period.
+   * @param upperBound the last bucket of the period.
+   * @param window the histogram to fill.
+   */
+  public void window(int movie, long lowerBound, long upperBound, RatingHistogramWritable window) {
+    window.clear();
+    int start = this.offsets[movie];
+    int end = this.offsets[movie + 1];
+    int upto = this.search(start, end, upperBound, true) - 1;
+    int before = this.search(start, end, lowerBound, false) - 1;
+    if (upto < start || upto <= before) {
+      return;
+    }
+    for (int b = 0; b < H; b++) {
+      long repetitions = this.repetitions[upto * H + b];
+      if (before >= start) {
+        repetitions -= this.repetitions[before * H + b];
+      }
+      window.setRepetitions(b, repetitions);
+    }
+  }
+
+  /**
+   * Returns the first row in [start,end) whose bucket is after {@code bucket} (or equal to it, if
+   * not {@code inclusive}).
+   *
+   * @param start the first row.
+   * @param end the row after the last one.
+   * @param bucket the bucket.
+   * @param inclusive true to skip the rows of {@code bucket}; false, otherwise.
+   * @return the row; {@code end} if there is no such row.
+   */
+  private int search(int start, int end, long bucket, boolean inclusive) {
+    int lo = start;
+    int hi = end;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.buckets[mid] < bucket || (inclusive && this.buckets[mid] == bucket)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+
+/**
+ * The histogram of ratings of a movie in a period of buckets [lb,ub], computed as the difference of
+ * two prefix sums over a rating cube: the cumulative histogram at the last bucket within ub, minus
+ * the cumulative histogram at the last bucket before lb.
+ * Cumulative histograms of a movie must be accepted in ascending order of bucket.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeWindow {
+
+  /**
+   * The first bucket of the period.
+   */
+  private final long lowerBound;
+
+  /**
+   * The last bucket of the period.
+   */
+  private final long upperBound;
+
+  /**
+   * The cumulative histogram at the last bucket before the period.
+   */
+  private RatingHistogramWritable before = new RatingHistogramWritable();
+
+  /**
+   * The cumulative histogram at the last bucket within the period upper bound.
+   */
+  private RatingHistogramWritable upto = new RatingHistogramWritable();
+
+  /**
+   * Creates a new window over the period of buckets [lb,ub].
+   *
+   * @param lowerBound the first bucket of the period.
+   * @param upperBound the last bucket of the period.
+   */
+  public RatingCubeWindow(long lowerBound, long upperBound) {
+    this.lowerBound = lowerBound;
+    this.upperBound = upperBound;
+  }
+
+  /**
+   * Returns the last bucket of the period.
+   *
+   * @return the last bucket of the period.
+   */
+  public long getUpperBound() {
+    return this.upperBound;
+  }
+
+  /**
+   * Accepts the cumulative histogram of the current movie at the given bucket.
+   *
+   * @param bucket the bucket.
+   * @param cumulative the cumulative histogram up to {@code bucket} (inclusive).
+   */
+  public void accept(long bucket, RatingHistogramWritable cumulative) {
+    if (bucket < this.lowerBound) {
+      this.before.set(cumulative);
+    }
+    if (bucket <= this.upperBound) {
+      this.upto.set(cumulative);
+    }
+  }
+
+  /**
+   * Returns the histogram of ratings in the period for the current movie.
+   *
+   * @param window the histogram to fill.
+   */
+  public void get(RatingHistogramWritable window) {
+    window.set(this.upto);
+    window.subtract(this.before);
+  }
+
+  /**
+   * Resets the window, to accept the cumulative histograms of the next movie.
+   */
+  public void clear() {
+    this.before.clear();
+    this.upto.clear();
+  }
+}
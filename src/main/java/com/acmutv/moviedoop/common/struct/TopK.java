@@ -0,0 +1,301 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.apache.hadoop.io.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A rank of the best `capacity` (id,score) pairs, backed by a primitive binary min-heap: the root is
+ * the worst pair in the rank, so inserts cost O(log capacity).
+ * A pair is better than another one if it has a greater score, or the same score and a lower id.
+ * Ids are expected to be unique.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class TopK implements Writable {
+
+  /**
+   * Default rank size.
+   */
+  private static final int DEFAULT_CAPACITY = 10;
+
+  /**
+   * The rank size.
+   */
+  private int capacity;
+
+  /**
+   * The number of pairs in the rank.
+   */
+  private int size;
+
+  /**
+   * The heap of ids.
+   */
+  private long[] ids;
+
+  /**
+   * The heap of scores.
+   */
+  private double[] scores;
+
+  /**
+   * The heap indices by rank position (null if not computed).
+   */
+  private int[] order;
+
+  /**
+   * Constructs a new rank.
+   */
+  public TopK() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new rank.
+   *
+   * @param capacity the rank size.
+   */
+  public TopK(int capacity) {
+    this.setCapacity(capacity);
+  }
+
+  /**
+   * Returns the rank size.
+   *
+   * @return the rank size.
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Sets the rank size, and clears the rank.
+   *
+   * @param capacity the rank size.
+   */
+  public void setCapacity(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Negative rank size: " + capacity);
+    }
+    this.capacity = capacity;
+    this.ids = new long[capacity];
+    this.scores = new double[capacity];
+    this.clear();
+  }
+
+  /**
+   * Returns the number of pairs in the rank.
+   *
+   * @return the number of pairs in the rank.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Clears the rank.
+   */
+  public void clear() {
+    this.size = 0;
+    this.order = null;
+  }
+
+  /**
+   * Adds the pair (id,score), if it ranks within the best `capacity` pairs.
+   *
+   * @param id the id.
+   * @param score the score.
+   * @return true if the pair has been added; false, otherwise.
+   */
+  public boolean add(long id, double score) {
+    if (this.size < this.capacity) {
+      this.ids[this.size] = id;
+      this.scores[this.size] = score;
+      this.siftUp(this.size++);
+    } else if (this.size > 0 && worse(this.ids[0], this.scores[0], id, score)) {
+      this.ids[0] = id;
+      this.scores[0] = score;
+      this.siftDown(0);
+    } else {
+      return false;
+    }
+    this.order = null;
+    return true;
+  }
+
+  /**
+   * Adds all pairs of {@code other}.
+   *
+   * @param other the rank to merge.
+   */
+  public void merge(TopK other) {
+    for (int i = 0; i < other.size; i++) {
+      this.add(other.ids[i], other.scores[i]);
+    }
+  }
+
+  /**
+   * Returns the id at the given rank position.
+   *
+   * @param position the rank position (0 is the best).
+   * @return the id.
+   */
+  public long getId(int position) {
+    return this.ids[this.order()[position]];
+  }
+
+  /**
+   * Returns the score at the given rank position.
+   *
+   * @param position the rank position (0 is the best).
+   * @return the score.
+   */
+  public double getScore(int position) {
+    return this.scores[this.order()[position]];
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(this.capacity);
+    out.writeInt(this.size);
+    for (int i = 0; i < this.size; i++) {
+      out.writeLong(this.ids[i]);
+      out.writeDouble(this.scores[i]);
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    int capacity = in.readInt();
+    if (capacity != this.capacity) {
+      this.setCapacity(capacity);
+    }
+    this.size = in.readInt();
+    for (int i = 0; i < this.size; i++) {
+      this.ids[i] = in.readLong();
+      this.scores[i] = in.readDouble();
+    }
+    this.order = null;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int p = 0; p < this.size; p++) {
+      if (p > 0) sb.append(",");
+      sb.append(this.getId(p)).append("=").append(this.getScore(p));
+    }
+    return sb.append("]").toString();
+  }
+
+  /**
+   * Returns the heap indices by rank position.
+   *
+   * @return the heap indices by rank position.
+   */
+  private int[] order() {
+    if (this.order == null) {
+      Integer[] positions = new Integer[this.size];
+      for (int i = 0; i < this.size; i++) {
+        positions[i] = i;
+      }
+      Arrays.sort(positions, (i, j) -> {
+        int cmp = Double.compare(this.scores[j], this.scores[i]);
+        return (cmp != 0) ? cmp : Long.compare(this.ids[i], this.ids[j]);
+      });
+      this.order = new int[this.size];
+      for (int p = 0; p < this.size; p++) {
+        this.order[p] = positions[p];
+      }
+    }
+    return this.order;
+  }
+
+  /**
+   * Moves up the pair at index {@code i}, until the heap property holds.
+   *
+   * @param i the heap index.
+   */
+  private void siftUp(int i) {
+    long id = this.ids[i];
+    double score = this.scores[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!worse(id, score, this.ids[parent], this.scores[parent])) break;
+      this.ids[i] = this.ids[parent];
+      this.scores[i] = this.scores[parent];
+      i = parent;
+    }
+    this.ids[i] = id;
+    this.scores[i] = score;
+  }
+
+  /**
+   * Moves down the pair at index {@code i}, until the heap property holds.
+   *
+   * @param i the heap index.
+   */
+  private void siftDown(int i) {
+    long id = this.ids[i];
+    double score = this.scores[i];
+    int half = this.size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      int right = child + 1;
+      if (right < this.size && worse(this.ids[right], this.scores[right], this.ids[child], this.scores[child])) {
+        child = right;
+      }
+      if (!worse(this.ids[child], this.scores[child], id, score)) break;
+      this.ids[i] = this.ids[child];
+      this.scores[i] = this.scores[child];
+      i = child;
+    }
+    this.ids[i] = id;
+    this.scores[i] = score;
+  }
+
+  /**
+   * Checks if the pair (id1,score1) is worse than the pair (id2,score2).
+   *
+   * @param id1 the first id.
+   * @param score1 the first score.
+   * @param id2 the second id.
+   * @param score2 the second score.
+   * @return true if the first pair is worse; false, otherwise.
+   */
+  private static boolean worse(long id1, double score1, long id2, double score2) {
+    int cmp = Double.compare(score1, score2);
+    return cmp < 0 || (cmp == 0 && id1 > id2);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility to read primitive values from ORC column vectors.
+ * Numeric vectors are read directly; string vectors (e.g. the Hive tables where every column is a
+ * string) are parsed from their bytes, without allocating strings.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class ColumnVectorParser {
+
+  /**
+   * The maximum number of digits that fits a long without overflow.
+   */
+  private static final int MAX_LONG_DIGITS = 18;
+
+  /**
+   * The maximum number of digits whose mantissa is exactly represented by a double.
+   */
+  private static final int MAX_DOUBLE_DIGITS = 15;
+
+  /**
+   * Checks if the value at {@code row} is null.
+   *
+   * @param col the column vector.
+   * @param row the row index.
+   * @return true if the value is null; false, otherwise.
+   */
+  public static boolean isNull(ColumnVector col, int row) {
+    return !col.noNulls && col.isNull[col.isRepeating ? 0 : row];
+  }
+
+  /**
+   * Reads the value at {@code row} as a long.
+   *
+   * @param col the column vector.
+   * @param row the row index.
+   * @return the value.
+   * @throws NumberFormatException when a string value cannot be parsed.
+   * @throws IllegalArgumentException when the column vector type is not supported.
+   */
+  public static long getLong(ColumnVector col, int row) {
+    int i = col.isRepeating ? 0 : row;
+    if (col instanceof LongColumnVector) {
+      return ((LongColumnVector) col).vector[i];
+    } else if (col instanceof BytesColumnVector) {
+      BytesColumnVector bytes = (BytesColumnVector) col;
+      return parseLong(bytes.vector[i], bytes.start[i], bytes.length[i]);
+    } else if (col instanceof DoubleColumnVector) {
+      return (long) ((DoubleColumnVector) col).vector[i];
+    }
+    throw new IllegalArgumentException("Unsupported column vector: " + col.getClass().getSimpleName());
+  }
+
+  /**
+   * Reads the value at {@code row} as a double.
+   *
+   * @param col the column vector.
+   * @param row the row index.
+   * @return the value.
+   * @throws NumberFormatException when a string value cannot be parsed.
+   * @throws IllegalArgumentException when the column vector type is not supported.
+   */
+  public static double getDouble(ColumnVector col, int row) {
+    int i = col.isRepeating ? 0 : row;
+    if (col instanceof DoubleColumnVector) {
+      return ((DoubleColumnVector) col).vector[i];
+    } else if (col instanceof BytesColumnVector) {
+      BytesColumnVector bytes = (BytesColumnVector) col;
+      return parseDouble(bytes.vector[i], bytes.start[i], bytes.length[i]);
+    } else if (col instanceof LongColumnVector) {
+      return ((LongColumnVector) col).vector[i];
+    }
+    throw new IllegalArgumentException("Unsupported column vector: " + col.getClass().getSimpleName());
+  }
+
+  /**
+   * Parses the decimal digits in {@code bytes[start,start+length)} as a long.
+   *
+   * @param bytes the bytes to parse.
+   * @param start the start offset.
+   * @param length the number of bytes.
+   * @return the parsed value.
+   * @throws NumberFormatException when the bytes are not a valid long.
+   */
+  public static long parseLong(byte[] bytes, int start, int length) {
+    int i = start;
+    int end = start + length;
+    boolean negative = false;
+    if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+      negative = bytes[i] == '-';
+      i++;
+    }
+    if (i == end || end - i > MAX_LONG_DIGITS) {
+      return Long.parseLong(new String(bytes, start, length, StandardCharsets.UTF_8));
+    }
+    long value = 0L;
+    for (; i < end; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("For input string: \"" + new String(bytes, start, length, StandardCharsets.UTF_8) + "\"");
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses the plain decimal number (e.g. 3, 3.5, -0.25) in {@code bytes[start,start+length)} as a
+   * double. Other formats (e.g. exponents) and longer mantissas, which could not be rounded
+   * correctly, fall back to {@link Double#parseDouble(String)}.
+   *
+   * @param bytes the bytes to parse.
+   * @param start the start offset.
+   * @param length the number of bytes.
+   * @return the parsed value.
+   * @throws NumberFormatException when the bytes are not a valid double.
+   */
+  public static double parseDouble(byte[] bytes, int start, int length) {
+    int i = start;
+    int end = start + length;
+    boolean negative = false;
+    if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+      negative = bytes[i] == '-';
+      i++;
+    }
+    long mantissa = 0L;
+    int digits = 0;
+    int decimals = -1;
+    for (; i < end; i++) {
+      byte b = bytes[i];
+      if (b == '.' && decimals < 0) {
+        decimals = 0;
+      } else if (b >= '0' && b <= '9' && digits < MAX_DOUBLE_DIGITS) {
+        mantissa = mantissa * 10 + (b - '0');
+        digits++;
+        if (decimals >= 0) decimals++;
+      } else {
+        return Double.parseDouble(new String(bytes, start, length, StandardCharsets.UTF_8));
+      }
+    }
+    if (digits == 0) {
+      return Double.parseDouble(new String(bytes, start, length, StandardCharsets.UTF_8));
+    }
+    double value = (decimals > 0) ? mantissa / Math.pow(10, decimals) : mantissa;
+    return negative ? -value : value;
+  }
+}
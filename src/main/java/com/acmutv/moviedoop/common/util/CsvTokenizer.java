@@ -0,0 +1,278 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.io.Text;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Utility to split CSV records directly on their bytes (e.g. the bytes of a {@link Text}).
+ * Fields may be enclosed in double quotes, so that they can contain delimiters; a double quote
+ * within a quoted field is escaped by doubling it. Numeric fields are parsed in place, without
+ * allocating strings. A tokenizer is meant to be reused for every record of a task.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class CsvTokenizer {
+
+  /**
+   * The default fields delimiter.
+   */
+  public static final byte DELIMITER = ',';
+
+  /**
+   * The quote character.
+   */
+  public static final byte QUOTE = '"';
+
+  /**
+   * The initial capacity of fields.
+   */
+  private static final int INITIAL_CAPACITY = 8;
+
+  /**
+   * The fields delimiter.
+   */
+  private final byte delimiter;
+
+  /**
+   * The bytes of the current record.
+   */
+  private byte[] bytes;
+
+  /**
+   * The start offset of every field, quotes excluded.
+   */
+  private int[] starts = new int[INITIAL_CAPACITY];
+
+  /**
+   * The length of every field, quotes excluded.
+   */
+  private int[] lengths = new int[INITIAL_CAPACITY];
+
+  /**
+   * Whether every field contains escaped quotes.
+   */
+  private boolean[] escaped = new boolean[INITIAL_CAPACITY];
+
+  /**
+   * The number of fields in the current record.
+   */
+  private int size = 0;
+
+  /**
+   * Creates a new tokenizer with the default delimiter.
+   */
+  public CsvTokenizer() {
+    this(DELIMITER);
+  }
+
+  /**
+   * Creates a new tokenizer.
+   *
+   * @param delimiter the fields delimiter.
+   */
+  public CsvTokenizer(byte delimiter) {
+    this.delimiter = delimiter;
+  }
+
+  /**
+   * Splits {@code line} into fields.
+   * The tokenizer refers to the bytes of {@code line}, until the next call.
+   *
+   * @param line the record to split.
+   * @return the number of fields.
+   */
+  public int tokenize(Text line) {
+    return this.tokenize(line.getBytes(), 0, line.getLength());
+  }
+
+  /**
+   * Splits {@code bytes[start,start+length)} into fields.
+   * The tokenizer refers to {@code bytes}, until the next call.
+   *
+   * @param bytes the record to split.
+   * @param start the start offset.
+   * @param length the number of bytes.
+   * @return the number of fields.
+   */
+  public int tokenize(byte[] bytes, int start, int length) {
+    this.bytes = bytes;
+    this.size = 0;
+    int end = start + length;
+    int i = start;
+    while (true) {
+      if (this.size == this.starts.length) {
+        this.grow();
+      }
+      boolean escapes = false;
+      int fieldStart;
+      int fieldEnd;
+      if (i < end && bytes[i] == QUOTE) {
+        fieldStart = ++i;
+        while (i < end && (bytes[i] != QUOTE || (i + 1 < end && bytes[i + 1] == QUOTE))) {
+          if (bytes[i] == QUOTE) {
+            escapes = true;
+            i++;
+          }
+          i++;
+        }
+        fieldEnd = i;
+        while (i < end && bytes[i] != this.delimiter) i++;
+      } else {
+        fieldStart = i;
+        while (i < end && bytes[i] != this.delimiter) i++;
+        fieldEnd = i;
+      }
+      this.starts[this.size] = fieldStart;
+      this.lengths[this.size] = fieldEnd - fieldStart;
+      this.escaped[this.size] = escapes;
+      this.size++;
+      if (i >= end) {
+        return this.size;
+      }
+      i++;
+    }
+  }
+
+  /**
+   * Returns the number of fields in the current record.
+   *
+   * @return the number of fields.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the start offset of {@code field}, quotes excluded.
+   *
+   * @param field the field index.
+   * @return the start offset.
+   */
+  public int getStart(int field) {
+    this.check(field);
+    return this.starts[field];
+  }
+
+  /**
+   * Returns the length of {@code field}, quotes excluded.
+   *
+   * @param field the field index.
+   * @return the number of bytes.
+   */
+  public int getLength(int field) {
+    this.check(field);
+    return this.lengths[field];
+  }
+
+  /**
+   * Parses {@code field} as a long.
+   *
+   * @param field the field index.
+   * @return the parsed value.
+   * @throws NumberFormatException when the field is not a valid long.
+   */
+  public long getLong(int field) {
+    this.check(field);
+    return ColumnVectorParser.parseLong(this.bytes, this.starts[field], this.lengths[field]);
+  }
+
+  /**
+   * Parses {@code field} as a double.
+   *
+   * @param field the field index.
+   * @return the parsed value.
+   * @throws NumberFormatException when the field is not a valid double.
+   */
+  public double getDouble(int field) {
+    this.check(field);
+    return ColumnVectorParser.parseDouble(this.bytes, this.starts[field], this.lengths[field]);
+  }
+
+  /**
+   * Copies {@code field} into {@code text}, unescaping quotes.
+   *
+   * @param field the field index.
+   * @param text the text to set.
+   */
+  public void getText(int field, Text text) {
+    this.check(field);
+    int start = this.starts[field];
+    int end = start + this.lengths[field];
+    if (!this.escaped[field]) {
+      text.set(this.bytes, start, end - start);
+      return;
+    }
+    text.clear();
+    int from = start;
+    for (int i = start; i < end; i++) {
+      if (this.bytes[i] == QUOTE) {
+        text.append(this.bytes, from, i + 1 - from);
+        from = ++i + 1;
+      }
+    }
+    text.append(this.bytes, from, end - from);
+  }
+
+  /**
+   * Returns {@code field} as a string, unescaping quotes.
+   *
+   * @param field the field index.
+   * @return the field value.
+   */
+  public String getString(int field) {
+    this.check(field);
+    String value = new String(this.bytes, this.starts[field], this.lengths[field], StandardCharsets.UTF_8);
+    return this.escaped[field] ? value.replace("\"\"", "\"") : value;
+  }
+
+  /**
+   * Checks that {@code field} exists in the current record.
+   *
+   * @param field the field index.
+   * @throws IndexOutOfBoundsException when the field does not exist.
+   */
+  private void check(int field) {
+    if (field < 0 || field >= this.size) {
+      throw new IndexOutOfBoundsException("Field " + field + " out of " + this.size);
+    }
+  }
+
+  /**
+   * Doubles the capacity of fields.
+   */
+  private void grow() {
+    int capacity = this.starts.length * 2;
+    this.starts = Arrays.copyOf(this.starts, capacity);
+    this.lengths = Arrays.copyOf(this.lengths, capacity);
+    this.escaped = Arrays.copyOf(this.escaped, capacity);
+  }
+}
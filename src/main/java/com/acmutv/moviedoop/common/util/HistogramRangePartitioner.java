@@ -0,0 +1,251 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A range partitioner for (avgRating,"movieId,avgRating") tuples sorted by decreasing average rating.
+ * The ranges are cut on the exact histogram of average ratings, recorded as side files by the job that
+ * produces the tuples, so that no sampling pass is needed.
+ * Ties are split across ranges by a hash of movieId: a range boundary is a pair (avgRating,fraction),
+ * and a tuple with the boundary average rating falls before the boundary iff the hash of its movieId,
+ * mapped to [0,1), is lower than fraction. So, every reducer receives about the same number of tuples,
+ * even when many movies share the same average rating.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class HistogramRangePartitioner extends Partitioner<DoubleWritable,Text> implements Configurable {
+
+  /**
+   * The prefix of histogram side files (hidden to input formats).
+   */
+  public static final String HISTOGRAM_PREFIX = "_histogram-";
+
+  /**
+   * The configuration key enabling histogram side files.
+   */
+  public static final String HISTOGRAM_ENABLED = "moviedoop.sort.partition.histogram";
+
+  /**
+   * The configuration key for range boundaries, as a list of `avgRating:fraction`.
+   */
+  public static final String CUTS = "moviedoop.sort.partition.cuts";
+
+  /**
+   * The configuration.
+   */
+  private Configuration conf;
+
+  /**
+   * The average ratings of range boundaries, in decreasing order.
+   */
+  private double[] cutScores = new double[0];
+
+  /**
+   * The movieId fractions of range boundaries.
+   */
+  private double[] cutFractions = new double[0];
+
+  /**
+   * Enables (or disables) histogram side files for the job producing tuples to partition.
+   *
+   * @param conf the job configuration.
+   * @param enabled true to record histograms; false, otherwise.
+   */
+  public static void setHistogramEnabled(Configuration conf, boolean enabled) {
+    conf.setBoolean(HISTOGRAM_ENABLED, enabled);
+  }
+
+  /**
+   * Checks if histogram side files are enabled.
+   *
+   * @param conf the job configuration.
+   * @return true if histograms must be recorded; false, otherwise.
+   */
+  public static boolean isHistogramEnabled(Configuration conf) {
+    return conf.getBoolean(HISTOGRAM_ENABLED, false);
+  }
+
+  /**
+   * Writes the histogram of average ratings of a task as a side file in the task output directory.
+   * The side file is committed with the task output.
+   *
+   * @param ctx the task context.
+   * @param histogram the map between average rating and number of movies.
+   * @throws IOException when the side file cannot be written.
+   * @throws InterruptedException when the task output directory cannot be resolved.
+   */
+  public static void writeHistogram(TaskInputOutputContext<?,?,?,?> ctx, Map<Double,Long> histogram)
+      throws IOException, InterruptedException {
+    Path path = new Path(FileOutputFormat.getWorkOutputPath(ctx),
+        HISTOGRAM_PREFIX + ctx.getTaskAttemptID().getTaskID().toString());
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(ctx.getConfiguration(),
+        SequenceFile.Writer.file(path),
+        SequenceFile.Writer.keyClass(DoubleWritable.class),
+        SequenceFile.Writer.valueClass(LongWritable.class))) {
+      DoubleWritable score = new DoubleWritable();
+      LongWritable count = new LongWritable();
+      for (Map.Entry<Double,Long> entry : histogram.entrySet()) {
+        score.set(entry.getKey());
+        count.set(entry.getValue());
+        writer.append(score, count);
+      }
+    }
+  }
+
+  /**
+   * Reads and merges the histogram side files in {@code dir}.
+   *
+   * @param conf the configuration.
+   * @param dir the output directory of the job that recorded histograms.
+   * @return the map between average rating and number of movies, by decreasing average rating.
+   * @throws IOException when side files cannot be read.
+   */
+  public static NavigableMap<Double,Long> readHistogram(Configuration conf, Path dir) throws IOException {
+    NavigableMap<Double,Long> histogram = new TreeMap<>(Collections.reverseOrder());
+    FileSystem fs = dir.getFileSystem(conf);
+    for (FileStatus status : fs.listStatus(dir, path -> path.getName().startsWith(HISTOGRAM_PREFIX))) {
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(status.getPath()))) {
+        DoubleWritable score = new DoubleWritable();
+        LongWritable count = new LongWritable();
+        while (reader.next(score, count)) {
+          histogram.merge(score.get(), count.get(), Long::sum);
+        }
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * Cuts the histogram into {@code partitions} ranges with the same number of movies.
+   *
+   * @param histogram the map between average rating and number of movies, by decreasing average rating.
+   * @param partitions the number of ranges.
+   * @return the range boundaries, as a list of `avgRating:fraction`.
+   */
+  public static String cut(NavigableMap<Double,Long> histogram, int partitions) {
+    long total = histogram.values().stream().mapToLong(Long::longValue).sum();
+    List<String> cuts = new ArrayList<>();
+    long cumulative = 0;
+    int next = 1;
+    for (Map.Entry<Double,Long> entry : histogram.entrySet()) {
+      long count = entry.getValue();
+      while (next < partitions && total * next <= (cumulative + count) * partitions) {
+        double target = (double) total * next / partitions;
+        cuts.add(entry.getKey() + ":" + ((target - cumulative) / count));
+        next++;
+      }
+      cumulative += count;
+    }
+    return String.join(",", cuts);
+  }
+
+  /**
+   * Configures {@code job} to partition tuples by the histogram recorded in {@code dir}.
+   *
+   * @param job the sorting job.
+   * @param dir the output directory of the job that recorded histograms.
+   * @throws IOException when side files cannot be read.
+   */
+  public static void setPartitionCuts(Job job, Path dir) throws IOException {
+    NavigableMap<Double,Long> histogram = readHistogram(job.getConfiguration(), dir);
+    job.getConfiguration().set(CUTS, cut(histogram, job.getNumReduceTasks()));
+    job.setPartitionerClass(HistogramRangePartitioner.class);
+  }
+
+  /**
+   * Maps a movieId to [0,1), uniformly.
+   *
+   * @param movieId the movieId.
+   * @return the movieId fraction.
+   */
+  public static double fraction(long movieId) {
+    long z = movieId + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return (z >>> 11) * 0x1.0p-53;
+  }
+
+  @Override
+  public int getPartition(DoubleWritable key, Text value, int numPartitions) {
+    double score = key.get();
+    int comma = value.find(",");
+    long movieId = ColumnVectorParser.parseLong(value.getBytes(), 0, (comma < 0) ? value.getLength() : comma);
+    double fraction = fraction(movieId);
+    int lb = 0;
+    int ub = this.cutScores.length;
+    while (lb < ub) {
+      int mid = (lb + ub) >>> 1;
+      boolean before = score > this.cutScores[mid] || (score == this.cutScores[mid] && fraction < this.cutFractions[mid]);
+      if (before) ub = mid;
+      else lb = mid + 1;
+    }
+    return Math.min(lb, numPartitions - 1);
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    String cuts = conf.get(CUTS, "");
+    String[] entries = cuts.isEmpty() ? new String[0] : cuts.split(",");
+    this.cutScores = new double[entries.length];
+    this.cutFractions = new double[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      String[] cut = entries[i].split(":");
+      this.cutScores[i] = Double.valueOf(cut[0]);
+      this.cutFractions[i] = Double.valueOf(cut[1]);
+    }
+  }
+
+  @Override
+  public Configuration getConf() {
+    return this.conf;
+  }
+}
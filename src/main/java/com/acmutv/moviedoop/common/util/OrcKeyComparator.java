@@ -0,0 +1,205 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.orc.OrcConf;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A raw comparator for {@link OrcKey} wrapping a struct of primitive fields, e.g.
+ * {@code struct<id:bigint>} or {@code struct<genre:string>}.
+ * It compares the serialized keys field by field, with the same order of
+ * {@link org.apache.orc.mapred.OrcStruct#compareTo} (null fields last), without deserializing them.
+ * The struct schema is read from {@code orc.mapred.map.output.key.schema}; supported fields are
+ * int, bigint, double and string.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class OrcKeyComparator extends WritableComparator implements Configurable {
+
+  /**
+   * The configuration.
+   */
+  private Configuration conf;
+
+  /**
+   * The type of every struct field.
+   */
+  private TypeDescription.Category[] fields;
+
+  /**
+   * Creates a new comparator, whose schema is read from the configuration.
+   */
+  public OrcKeyComparator() {
+    super(OrcKey.class);
+  }
+
+  /**
+   * Creates a new comparator.
+   *
+   * @param schema the key schema.
+   * @throws IllegalArgumentException when the schema is not supported.
+   */
+  public OrcKeyComparator(TypeDescription schema) {
+    super(OrcKey.class);
+    this.setSchema(schema);
+  }
+
+  /**
+   * Sets the configuration, reading the key schema.
+   *
+   * @param conf the configuration.
+   * @throws IllegalArgumentException when the schema is not supported.
+   */
+  @Override
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+    this.setSchema(TypeDescription.fromString(OrcConf.MAPRED_SHUFFLE_KEY_SCHEMA.getString(conf)));
+  }
+
+  /**
+   * Returns the configuration.
+   *
+   * @return the configuration.
+   */
+  @Override
+  public Configuration getConf() {
+    return this.conf;
+  }
+
+  /**
+   * Compares two serialized keys.
+   *
+   * @param b1 the first key bytes.
+   * @param s1 the first key offset.
+   * @param l1 the first key length.
+   * @param b2 the second key bytes.
+   * @param s2 the second key offset.
+   * @param l2 the second key length.
+   * @return a negative integer, zero, or a positive integer as the first key is less than, equal
+   * to, or greater than the second.
+   */
+  @Override
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    int i1 = s1;
+    int i2 = s2;
+    for (TypeDescription.Category field : this.fields) {
+      boolean present1 = b1[i1++] != 0;
+      boolean present2 = b2[i2++] != 0;
+      if (!present1 || !present2) {
+        if (present1 != present2) {
+          return present1 ? -1 : 1;
+        }
+        continue;
+      }
+      int cmp;
+      switch (field) {
+        case INT:
+          cmp = Integer.compare(readInt(b1, i1), readInt(b2, i2));
+          i1 += Integer.BYTES;
+          i2 += Integer.BYTES;
+          break;
+        case LONG:
+          cmp = Long.compare(readLong(b1, i1), readLong(b2, i2));
+          i1 += Long.BYTES;
+          i2 += Long.BYTES;
+          break;
+        case DOUBLE:
+          double d1 = readDouble(b1, i1);
+          double d2 = readDouble(b2, i2);
+          cmp = (d1 < d2) ? -1 : ((d1 == d2) ? 0 : 1);
+          i1 += Double.BYTES;
+          i2 += Double.BYTES;
+          break;
+        default:
+          int n1 = WritableUtils.decodeVIntSize(b1[i1]);
+          int n2 = WritableUtils.decodeVIntSize(b2[i2]);
+          int len1 = readLength(b1, i1);
+          int len2 = readLength(b2, i2);
+          cmp = compareBytes(b1, i1 + n1, len1, b2, i2 + n2, len2);
+          i1 += n1 + len1;
+          i2 += n2 + len2;
+      }
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Sets the key schema.
+   *
+   * @param schema the key schema.
+   * @throws IllegalArgumentException when the schema is not supported.
+   */
+  private void setSchema(TypeDescription schema) {
+    if (schema.getCategory() != TypeDescription.Category.STRUCT) {
+      throw new IllegalArgumentException("Unsupported key schema: " + schema);
+    }
+    List<TypeDescription> children = schema.getChildren();
+    this.fields = new TypeDescription.Category[children.size()];
+    for (int i = 0; i < this.fields.length; i++) {
+      TypeDescription.Category category = children.get(i).getCategory();
+      switch (category) {
+        case INT:
+        case LONG:
+        case DOUBLE:
+        case STRING:
+          this.fields[i] = category;
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported key field: " + children.get(i) + " in " + schema);
+      }
+    }
+  }
+
+  /**
+   * Reads the length of a serialized string.
+   *
+   * @param bytes the bytes.
+   * @param start the offset of the length.
+   * @return the length.
+   * @throws IllegalArgumentException when the length is malformed.
+   */
+  private static int readLength(byte[] bytes, int start) {
+    try {
+      return readVInt(bytes, start);
+    } catch (IOException exc) {
+      throw new IllegalArgumentException(exc);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgumentFactory;
+import org.apache.orc.OrcConf;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapreduce.OrcInputFormat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Utility to push projections and time windows down to the ORC reader.
+ * Projections restrict the columns read from disk; time windows are pushed as search arguments,
+ * so that stripes and row groups whose statistics fall outside every window are skipped.
+ * Mappers must still filter rows: the search argument only skips whole stripes/row groups.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class OrcPushdown {
+
+  /**
+   * The maximum number of decimal digits of a long.
+   */
+  private static final int MAX_DIGITS = 19;
+
+  /**
+   * Restricts the ORC input of a job to the given top-level columns.
+   *
+   * @param conf the job configuration.
+   * @param columns the indices of the columns to read.
+   */
+  public static void setColumns(Configuration conf, int... columns) {
+    OrcConf.INCLUDE_COLUMNS.setString(conf, join(columns));
+  }
+
+  /**
+   * Returns the options to read only the given top-level columns from {@code reader}.
+   *
+   * @param reader the ORC reader.
+   * @param columns the indices of the columns to read.
+   * @return the reader options.
+   */
+  public static Reader.Options project(Reader reader, int... columns) {
+    return reader.options()
+        .include(org.apache.orc.mapred.OrcInputFormat.parseInclude(reader.getSchema(), join(columns)));
+  }
+
+  /**
+   * Builds the search argument selecting the rows whose column value falls within at least one of
+   * the given windows.
+   * String columns (e.g. the Hive tables where every column is a string) are compared
+   * lexicographically by ORC statistics: each window is split into ranges of numbers with the same
+   * number of digits, where the lexicographic order matches the numeric one.
+   *
+   * @param column the column name.
+   * @param type the column type (LONG or STRING).
+   * @param windows the windows [lb,ub] (bounds included).
+   * @return the search argument; null if no window is valid.
+   * @throws IllegalArgumentException when the type is neither LONG nor STRING.
+   */
+  public static SearchArgument buildWindows(String column, PredicateLeaf.Type type, long[]... windows) {
+    if (type != PredicateLeaf.Type.LONG && type != PredicateLeaf.Type.STRING) {
+      throw new IllegalArgumentException("Unsupported predicate type: " + type);
+    }
+    SearchArgument.Builder builder = SearchArgumentFactory.newBuilder().startOr();
+    int leaves = 0;
+    for (long[] window : windows) {
+      long lb = window[0];
+      long ub = window[1];
+      if (lb > ub) continue;
+      if (type == PredicateLeaf.Type.LONG) {
+        builder.between(column, type, lb, ub);
+        leaves++;
+        continue;
+      }
+      if (lb < 0) {
+        builder.lessThan(column, type, "0");
+        leaves++;
+        lb = 0;
+      }
+      for (int digits = digits(lb); ub >= 0 && digits <= digits(ub); digits++) {
+        long from = Math.max(lb, (digits == 1) ? 0 : pow10(digits - 1));
+        long to = Math.min(ub, (digits == MAX_DIGITS) ? Long.MAX_VALUE : pow10(digits) - 1);
+        builder.between(column, type, String.valueOf(from), String.valueOf(to));
+        leaves++;
+      }
+    }
+    return (leaves == 0) ? null : builder.end().build();
+  }
+
+  /**
+   * Builds the search argument selecting the rows whose long column value is one of the given values.
+   *
+   * @param column the column name.
+   * @param values the values.
+   * @return the search argument; null if there is no value.
+   */
+  public static SearchArgument buildIn(String column, long... values) {
+    if (values.length == 0) return null;
+    Object[] literals = Arrays.stream(values).boxed().toArray();
+    return SearchArgumentFactory.newBuilder()
+        .startAnd()
+        .in(column, PredicateLeaf.Type.LONG, literals)
+        .end()
+        .build();
+  }
+
+  /**
+   * Attaches to {@code conf} the search argument selecting the rows of the ORC files in
+   * {@code input} whose column {@code columnIndex} falls within at least one of the given windows.
+   * The column name and type are read from the schema of the first ORC file in {@code input}.
+   *
+   * @param conf the job configuration.
+   * @param input the ORC input path (file or directory).
+   * @param columnIndex the column index.
+   * @param windows the windows [lb,ub] (bounds included).
+   * @return the search argument; null if it cannot be pushed down (no file, unsupported type).
+   * @throws IOException when the ORC schema cannot be read.
+   */
+  public static SearchArgument setWindows(Configuration conf, Path input, int columnIndex, long[]... windows) throws IOException {
+    TypeDescription schema = readSchema(conf, input);
+    if (schema == null || schema.getChildren() == null || schema.getChildren().size() <= columnIndex) {
+      return null;
+    }
+    PredicateLeaf.Type type;
+    switch (schema.getChildren().get(columnIndex).getCategory()) {
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        type = PredicateLeaf.Type.LONG;
+        break;
+      case STRING:
+      case VARCHAR:
+      case CHAR:
+        type = PredicateLeaf.Type.STRING;
+        break;
+      default:
+        return null;
+    }
+    String column = schema.getFieldNames().get(columnIndex);
+    SearchArgument sarg = buildWindows(column, type, windows);
+    if (sarg != null) {
+      OrcInputFormat.setSearchArgument(conf, sarg, schema.getFieldNames().toArray(new String[0]));
+    }
+    return sarg;
+  }
+
+  /**
+   * Reads the schema of the first non-empty ORC file in {@code input}.
+   *
+   * @param conf the configuration.
+   * @param input the ORC input path (file or directory).
+   * @return the schema; null if there is no ORC file.
+   * @throws IOException when the ORC schema cannot be read.
+   */
+  public static TypeDescription readSchema(Configuration conf, Path input) throws IOException {
+    FileSystem fs = input.getFileSystem(conf);
+    for (FileStatus status : fs.listStatus(input)) {
+      String name = status.getPath().getName();
+      if (status.isFile() && status.getLen() > 0 && !name.startsWith("_") && !name.startsWith(".")) {
+        return OrcFile.createReader(status.getPath(), OrcFile.readerOptions(conf).filesystem(fs)).getSchema();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks if {@code input} holds ORC files (first non-empty file starting with the ORC magic).
+   *
+   * @param conf the configuration.
+   * @param input the input path (file or directory).
+   * @return true if {@code input} holds ORC files; false, otherwise.
+   * @throws IOException when the input cannot be read.
+   */
+  public static boolean isOrc(Configuration conf, Path input) throws IOException {
+    FileSystem fs = input.getFileSystem(conf);
+    byte[] magic = OrcFile.MAGIC.getBytes(StandardCharsets.US_ASCII);
+    for (FileStatus status : fs.listStatus(input)) {
+      String name = status.getPath().getName();
+      if (!status.isFile() || status.getLen() < magic.length || name.startsWith("_") || name.startsWith(".")) {
+        continue;
+      }
+      byte[] head = new byte[magic.length];
+      try (FSDataInputStream in = fs.open(status.getPath())) {
+        in.readFully(0, head);
+      }
+      return Arrays.equals(magic, head);
+    }
+    return false;
+  }
+
+  /**
+   * Joins column indices as a comma-separated string.
+   *
+   * @param columns the column indices.
+   * @return the comma-separated column indices.
+   */
+  private static String join(int... columns) {
+    StringBuilder str = new StringBuilder();
+    for (int column : columns) {
+      if (str.length() > 0) str.append(',');
+      str.append(column);
+    }
+    return str.toString();
+  }
+
+  /**
+   * Returns the number of decimal digits of {@code value}.
+   *
+   * @param value the non negative value.
+   * @return the number of decimal digits.
+   */
+  private static int digits(long value) {
+    int digits = 1;
+    while (digits < MAX_DIGITS && value >= pow10(digits)) {
+      digits++;
+    }
+    return digits;
+  }
+
+  /**
+   * Returns 10^{@code exponent}.
+   *
+   * @param exponent the exponent (at most 18).
+   * @return 10^{@code exponent}.
+   */
+  private static long pow10(int exponent) {
+    long value = 1L;
+    for (int i = 0; i < exponent; i++) {
+      value *= 10;
+    }
+    return value;
+  }
+}
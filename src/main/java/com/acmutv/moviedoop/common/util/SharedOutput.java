@@ -0,0 +1,154 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ChecksumFileSystem;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Utility to share outputs derived from the inputs (movie index, rating cube, buckets) among
+ * concurrent drivers.
+ * Every driver builds into its own temporary path, that is renamed into place only if no fresh
+ * output appeared meanwhile: a published output is never modified nor deleted while fresh, so it
+ * can be safely read, or shipped through the distributed cache, by other jobs.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class SharedOutput {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(SharedOutput.class);
+
+  /**
+   * Returns the last modification time of the given inputs (files or directories).
+   *
+   * @param conf the configuration.
+   * @param inputs the inputs.
+   * @return the last modification time.
+   * @throws IOException when inputs cannot be listed.
+   */
+  public static long lastModified(Configuration conf, Path... inputs) throws IOException {
+    long lastModified = 0;
+    for (Path input : inputs) {
+      for (FileStatus status : input.getFileSystem(conf).listStatus(input)) {
+        lastModified = Math.max(lastModified, status.getModificationTime());
+      }
+    }
+    return lastModified;
+  }
+
+  /**
+   * Checks if the output marked by {@code marker} is complete and not older than the inputs.
+   *
+   * @param conf the configuration.
+   * @param marker the file marking the output as complete (e.g. {@code _SUCCESS}).
+   * @param lastModified the last modification time of the inputs.
+   * @return true if the output is fresh; false, otherwise.
+   * @throws IOException when the marker cannot be checked.
+   */
+  public static boolean isFresh(Configuration conf, Path marker, long lastModified) throws IOException {
+    try {
+      return marker.getFileSystem(conf).getFileStatus(marker).getModificationTime() >= lastModified;
+    } catch (FileNotFoundException exc) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a temporary path, private to the caller, to build {@code output} into.
+   * The path is a hidden sibling of {@code output}, so that it is on the same file system.
+   *
+   * @param output the output path.
+   * @return the temporary path.
+   */
+  public static Path temporary(Path output) {
+    return new Path(output.getParent(), "_" + output.getName() + "_tmp_" + UUID.randomUUID());
+  }
+
+  /**
+   * Renames {@code tmp} into {@code output}, unless a fresh output appeared meanwhile: in that
+   * case {@code tmp} is deleted and the existing output is kept.
+   * A stale output is moved aside before being deleted: no job started after the inputs changed
+   * can be using it.
+   *
+   * @param conf the configuration.
+   * @param tmp the temporary path, as returned by {@link #temporary(Path)}.
+   * @param output the output path.
+   * @param marker the file marking the output as complete (e.g. {@code _SUCCESS}).
+   * @param lastModified the last modification time of the inputs.
+   * @return true if {@code tmp} has been published; false, if a fresh output was already there.
+   * @throws IOException when the output cannot be published.
+   */
+  public static boolean publish(Configuration conf, Path tmp, Path output, Path marker, long lastModified)
+      throws IOException {
+    FileSystem fs = output.getFileSystem(conf);
+    FileContext fc = FileContext.getFileContext(fs.getUri(), conf);
+    final Path src = fs.makeQualified(tmp);
+    final Path dst = fs.makeQualified(output);
+    while (true) {
+      try {
+        fc.rename(src, dst, Options.Rename.NONE);
+        if (fs instanceof ChecksumFileSystem) {
+          // the checksum of a file is a sibling, and is not moved by the rename with options
+          final ChecksumFileSystem cfs = (ChecksumFileSystem) fs;
+          final Path crc = cfs.getChecksumFile(src);
+          if (cfs.getRawFileSystem().exists(crc)) {
+            cfs.getRawFileSystem().rename(crc, cfs.getChecksumFile(dst));
+          }
+        }
+        return true;
+      } catch (FileAlreadyExistsException exc) {
+        if (isFresh(conf, marker, lastModified)) {
+          fs.delete(src, true);
+          return false;
+        }
+        final Path stale = fs.makeQualified(temporary(output));
+        try {
+          fc.rename(dst, stale, Options.Rename.NONE);
+          LOG.info("Replacing stale output " + output);
+          fs.delete(stale, true);
+        } catch (FileNotFoundException ignored) {
+          // moved aside by a concurrent driver
+        }
+      }
+    }
+  }
+}
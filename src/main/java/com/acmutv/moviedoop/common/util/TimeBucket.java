@@ -0,0 +1,116 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The granularity of time buckets for rating timestamps (seconds from epoch, UTC).
+ * Buckets are numbered consecutively, so that a period of whole buckets is a range of bucket
+ * numbers.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public enum TimeBucket {
+
+  /**
+   * Buckets of one day (days from epoch).
+   */
+  DAY,
+
+  /**
+   * Buckets of one month (months from year 0).
+   */
+  MONTH;
+
+  /**
+   * The seconds in a day.
+   */
+  private static final long DAY_SECONDS = 86400L;
+
+  /**
+   * The last second representable by dates, i.e. the timestamp of {@link DateParser#MAX}.
+   */
+  private static final long MAX_SECONDS = DateParser.toSeconds(DateParser.MAX);
+
+  /**
+   * Parses the granularity (e.g. {@code day}, {@code MONTH}).
+   *
+   * @param granularity the string to parse.
+   * @return the granularity.
+   * @throws IllegalArgumentException when {@code granularity} is not a granularity.
+   */
+  public static TimeBucket parse(String granularity) {
+    return TimeBucket.valueOf(granularity.trim().toUpperCase());
+  }
+
+  /**
+   * Returns the bucket of the given timestamp.
+   *
+   * @param seconds the seconds from epoch.
+   * @return the bucket.
+   */
+  public long of(long seconds) {
+    switch (this) {
+      case DAY:
+        return Math.floorDiv(seconds, DAY_SECONDS);
+      default:
+        LocalDateTime date = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+  }
+
+  /**
+   * Returns the first second of the given bucket.
+   *
+   * @param bucket the bucket.
+   * @return the seconds from epoch.
+   */
+  public long start(long bucket) {
+    switch (this) {
+      case DAY:
+        return bucket * DAY_SECONDS;
+      default:
+        LocalDateTime date = LocalDateTime.of((int) Math.floorDiv(bucket, 12L), (int) Math.floorMod(bucket, 12L) + 1, 1, 0, 0, 0);
+        return DateParser.toSeconds(date);
+    }
+  }
+
+  /**
+   * Checks if the period [lb,ub] is made of whole buckets.
+   *
+   * @param lb the lower bound (seconds from epoch, inclusive).
+   * @param ub the upper bound (seconds from epoch, inclusive).
+   * @return true if the period starts and ends at bucket boundaries; false, otherwise.
+   */
+  public boolean isAligned(long lb, long ub) {
+    return this.start(this.of(lb)) == lb
+        && (ub >= MAX_SECONDS || this.of(ub) != this.of(ub + 1));
+  }
+}
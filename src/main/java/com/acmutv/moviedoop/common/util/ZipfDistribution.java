@@ -0,0 +1,103 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A Zipf distribution over ranks 0..n-1, where rank r has probability proportional to 1/(r+1)^s.
+ * The exponent 0 gives the uniform distribution.
+ * Samples are drawn by binary search over the cumulative distribution, which is immutable and can
+ * be shared by threads with their own random generators.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class ZipfDistribution {
+
+  /**
+   * The cumulative distribution (the last element is 1).
+   */
+  private final double[] cdf;
+
+  /**
+   * Constructs a Zipf distribution.
+   *
+   * @param n the number of ranks.
+   * @param exponent the exponent (0 for uniform).
+   * @throws IllegalArgumentException when the number of ranks is not positive or the exponent is negative.
+   */
+  public ZipfDistribution(int n, double exponent) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Non-positive number of ranks: " + n);
+    }
+    if (exponent < 0) {
+      throw new IllegalArgumentException("Negative exponent: " + exponent);
+    }
+    this.cdf = new double[n];
+    double sum = 0.0;
+    for (int r = 0; r < n; r++) {
+      sum += 1.0 / Math.pow(r + 1, exponent);
+      this.cdf[r] = sum;
+    }
+    for (int r = 0; r < n; r++) {
+      this.cdf[r] /= sum;
+    }
+    this.cdf[n - 1] = 1.0;
+  }
+
+  /**
+   * Returns the number of ranks.
+   *
+   * @return the number of ranks.
+   */
+  public int size() {
+    return this.cdf.length;
+  }
+
+  /**
+   * Returns the probability of a rank.
+   *
+   * @param rank the rank.
+   * @return the probability of the rank.
+   */
+  public double probability(int rank) {
+    return (rank == 0) ? this.cdf[0] : this.cdf[rank] - this.cdf[rank - 1];
+  }
+
+  /**
+   * Draws a rank.
+   *
+   * @param rnd the random generator.
+   * @return the rank.
+   */
+  public int sample(Random rnd) {
+    int pos = Arrays.binarySearch(this.cdf, rnd.nextDouble());
+    return (pos >= 0) ? pos + 1 : -pos - 1;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.cube;
+
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.common.util.SharedOutput;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.cube.map.RatingsCubeMapper;
+import com.acmutv.moviedoop.cube.map.RatingsCubeMapperORC;
+import com.acmutv.moviedoop.cube.reduce.RatingCubeReducerORC;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * A map/reduce program that materializes ratings (CSV or ORC) into a rating cube: an ORC table
+ * (movieId,bucket,ratings) where bucket is a day or month (see {@link TimeBucket}) and ratings is
+ * the cumulative histogram of ratings of the movie up to the bucket.
+ * Every cube file holds whole movies, sorted by (movieId,bucket), so that the histogram of any
+ * period of whole buckets is the difference of two rows, read by a single mapper.
+ * The cube is built once: {@link #ensure(Configuration, Path)} reuses a cube newer than ratings.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeJob extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingCubeJob.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "RatingCube";
+
+  /**
+   * The default granularity of time buckets.
+   */
+  private static final TimeBucket GRANULARITY = TimeBucket.DAY;
+
+  /**
+   * The suffix of the default cube directory (sibling of the ratings path).
+   */
+  private static final String CUBE_SUFFIX = "_cube_";
+
+  /**
+   * The default number of reducers for the cube job.
+   */
+  private static final int CUBE_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The rating columns read by the job (movieId, rating, time).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2, 3};
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path output = new Path(args[1]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.cube.granularity", GRANULARITY.name().toLowerCase());
+
+    return build(config, inputRatings, output) ? 0 : 1;
+  }
+
+  /**
+   * Returns the cube directory for ratings, building it if missing or older than ratings.
+   * The cube directory is {@code moviedoop.ratings.cube}, by default a sibling of ratings named
+   * after the granularity {@code moviedoop.cube.granularity}.
+   * The cube is built into a temporary directory, and published only if no fresh cube appeared
+   * meanwhile (see {@link SharedOutput}).
+   *
+   * @param config the configuration.
+   * @param inputRatings the ratings path.
+   * @return the cube directory.
+   * @throws Exception when the cube cannot be built.
+   */
+  public static Path ensure(Configuration config, Path inputRatings) throws Exception {
+    config.setIfUnset("moviedoop.cube.granularity", GRANULARITY.name().toLowerCase());
+    final TimeBucket granularity = TimeBucket.parse(config.get("moviedoop.cube.granularity"));
+    final Path cube = new Path(config.get("moviedoop.ratings.cube",
+        new Path(inputRatings.getParent(),
+            inputRatings.getName() + CUBE_SUFFIX + granularity.name().toLowerCase()).toString()));
+    FileSystem fs = cube.getFileSystem(config);
+
+    final long lastModified = SharedOutput.lastModified(config, inputRatings);
+    final Path success = new Path(cube, "_SUCCESS");
+    if (!SharedOutput.isFresh(config, success, lastModified)) {
+      final Path tmp = SharedOutput.temporary(cube);
+      if (!build(config, inputRatings, tmp)) {
+        fs.delete(tmp, true);
+        throw new IOException("Cannot build the rating cube " + cube);
+      }
+      if (!SharedOutput.publish(config, tmp, cube, success, lastModified)) {
+        LOG.info("Reusing rating cube " + cube + " built concurrently");
+      }
+    } else {
+      LOG.info("Reusing rating cube " + cube);
+    }
+    return cube;
+  }
+
+  /**
+   * Configures the cube as input of the job.
+   * Cube files are not split, so that every mapper reads whole movies.
+   *
+   * @param job the job.
+   * @param cube the cube directory.
+   * @throws IOException when the input cannot be configured.
+   */
+  public static void setInput(Job job, Path cube) throws IOException {
+    job.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(job, cube);
+    FileInputFormat.setMinInputSplitSize(job, Long.MAX_VALUE);
+  }
+
+  /**
+   * Runs the job building the cube.
+   *
+   * @param config the configuration.
+   * @param inputRatings the ratings path.
+   * @param output the cube directory.
+   * @return true if the job succeeded; false, otherwise.
+   * @throws Exception when the job cannot be executed.
+   */
+  private static boolean build(Configuration config, Path inputRatings, Path output) throws Exception {
+    final boolean orc = OrcPushdown.isOrc(config, inputRatings);
+
+    // OTHER CONFIGURATION
+    final int cubeReduceCardinality = Integer.valueOf(config.get("moviedoop.cube.reduce.cardinality", String.valueOf(CUBE_REDUCE_CARDINALITY)));
+
+    // CONFIGURATION RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings + (orc ? " (ORC)" : " (CSV)"));
+    System.out.println("Output: " + output);
+    System.out.println("Cube Granularity: " + config.get("moviedoop.cube.granularity"));
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Reduce Cardinality (cube): " + cubeReduceCardinality);
+    System.out.println("############################################################################");
+
+    // JOB CONFIGURATION
+    Job job = Job.getInstance(config, PROGRAM_NAME);
+    job.setJarByClass(RatingCubeJob.class);
+
+    // INPUT/MAP CONFIGURATION
+    if (orc) {
+      job.setInputFormatClass(OrcBatchInputFormat.class);
+      OrcBatchInputFormat.addInputPath(job, inputRatings);
+      OrcPushdown.setColumns(job.getConfiguration(), RATING_COLUMNS);
+      job.setMapperClass(RatingsCubeMapperORC.class);
+    } else {
+      job.setInputFormatClass(TextInputFormat.class);
+      TextInputFormat.addInputPath(job, inputRatings);
+      job.setMapperClass(RatingsCubeMapper.class);
+    }
+    job.setMapOutputKeyClass(OrcKey.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
+        RatingsCubeMapperORC.ORC_SCHEMA_KEY.toString());
+    job.setSortComparatorClass(OrcKeyComparator.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
+
+    // REDUCE CONFIGURATION
+    job.setPartitionerClass(RatingCubeReducerORC.MoviePartitioner.class);
+    job.setReducerClass(RatingCubeReducerORC.class);
+    job.setNumReduceTasks(cubeReduceCardinality);
+
+    // OUTPUT CONFIGURATION
+    job.setOutputKeyClass(NullWritable.class);
+    job.setOutputValueClass(OrcStruct.class);
+    job.setOutputFormatClass(OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(job, output);
+    job.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        RatingCubeReducerORC.ORC_SCHEMA.toString());
+
+    // JOB EXECUTION
+    return job.waitForCompletion(VERBOSE);
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new RatingCubeJob(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.cube.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The mapper for jobs in: {@link RatingCubeJob}.
+ * It emits ((movieId,bucket),ratings) where bucket is the time bucket of the rating timestamp.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingsCubeMapper extends Mapper<Object,Text,OrcKey,RatingHistogramWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingsCubeMapper.class);
+
+  /**
+   * The key ORC wrapper
+   */
+  private OrcKey keywrapper = new OrcKey();
+
+  /**
+   * The ORC struct for key.
+   */
+  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(RatingsCubeMapperORC.ORC_SCHEMA_KEY);
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
+
+  /**
+   * The bucket to emit.
+   */
+  private LongWritable bucket = (LongWritable) keyStruct.getFieldValue(1);
+
+  /**
+   * The histogram (ratings) to emit.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The granularity of time buckets.
+   */
+  private TimeBucket granularity;
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * Configures the mapper.
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    this.granularity = TimeBucket.parse(ctx.getConfiguration().get("moviedoop.cube.granularity"));
+    LOG.debug("[SETUP] moviedoop.cube.granularity: " + this.granularity);
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input value.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
+    this.tokenizer.tokenize(value);
+
+    this.movieId.set(this.tokenizer.getLong(1));
+    this.bucket.set(this.granularity.of(this.tokenizer.getLong(3)));
+    this.ratings.clear();
+    this.ratings.add(this.tokenizer.getDouble(2));
+    this.keywrapper.key = this.keyStruct;
+    ctx.write(this.keywrapper, this.ratings);
+  }
+}
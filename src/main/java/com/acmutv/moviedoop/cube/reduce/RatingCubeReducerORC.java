@@ -0,0 +1,142 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.cube.reduce;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The reducer for jobs in: {@link RatingCubeJob}.
+ * It emits (movieId,bucket,ratings) where ratings is the cumulative histogram of ratings of the
+ * movie up to the bucket (prefix sum over buckets).
+ * Keys are partitioned by movieId only (see {@link MoviePartitioner}) and sorted by (movieId,bucket),
+ * so every movie is reduced by a single reducer, in ascending order of bucket.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeReducerORC extends Reducer<OrcKey,RatingHistogramWritable,NullWritable,OrcStruct> {
+
+  /**
+   * The null writable value.
+   */
+  private static final NullWritable NULL = NullWritable.get();
+
+  /**
+   * The ORC schema.
+   */
+  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<id:bigint,bucket:bigint,ratings:binary>");
+
+  /**
+   * The ORC tuple (movieId,bucket,ratings) to emit.
+   */
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA);
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = (LongWritable) tuple.getFieldValue(0);
+
+  /**
+   * The bucket to emit.
+   */
+  private LongWritable bucket = (LongWritable) tuple.getFieldValue(1);
+
+  /**
+   * The serialized cumulative histogram to emit.
+   */
+  private BytesWritable ratings = (BytesWritable) tuple.getFieldValue(2);
+
+  /**
+   * The cumulative histogram of ratings for the current movie.
+   */
+  private RatingHistogramWritable cumulative = new RatingHistogramWritable();
+
+  /**
+   * True if the current movie has been set.
+   */
+  private boolean started = false;
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(OrcKey key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    OrcStruct keyStruct = (OrcStruct) key.key;
+    long movieId = ((LongWritable) keyStruct.getFieldValue(0)).get();
+    long bucket = ((LongWritable) keyStruct.getFieldValue(1)).get();
+
+    if (!this.started || movieId != this.movieId.get()) {
+      this.cumulative.clear();
+      this.started = true;
+    }
+
+    for (RatingHistogramWritable value : values) {
+      this.cumulative.merge(value);
+    }
+
+    this.movieId.set(movieId);
+    this.bucket.set(bucket);
+    this.cumulative.writeTo(this.ratings);
+    ctx.write(NULL, this.tuple);
+  }
+
+  /**
+   * The partitioner that sends all the buckets of a movie to the same reducer.
+   */
+  public static class MoviePartitioner extends Partitioner<OrcKey,RatingHistogramWritable> {
+
+    /**
+     * Returns the partition of the movie in the key.
+     *
+     * @param key the key (movieId,bucket).
+     * @param value the value.
+     * @param numPartitions the number of partitions.
+     * @return the partition.
+     */
+    @Override
+    public int getPartition(OrcKey key, RatingHistogramWritable value, int numPartitions) {
+      long movieId = ((LongWritable) ((OrcStruct) key.key).getFieldValue(0)).get();
+      return (Long.hashCode(movieId) & Integer.MAX_VALUE) % numPartitions;
+    }
+  }
+}
@@ -0,0 +1,543 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.datagen;
+
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.ZipfDistribution;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A program that generates synthetic MovieLens-like ratings and movies, in CSV and ORC.
+ * Movie popularity (the number of ratings of a movie) and user activity follow Zipf distributions;
+ * every movie has an intrinsic quality, so that average ratings differ across movies; the number of
+ * genres of a movie follows a Poisson distribution, and genres follow a Zipf distribution.
+ * Ratings are written in splits of `moviedoop.datagen.split.size` ratings, generated in parallel and
+ * streamed to files; every split has its own random seed, so the dataset does not depend on the
+ * number of threads.
+ * The program writes the directories ratings and movies (CSV), ratings_orc and movies_orc (ORC).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class DataGenerator extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(DataGenerator.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "DataGenerator";
+
+  /**
+   * The directory of ratings (CSV).
+   */
+  public static final String RATINGS = "ratings";
+
+  /**
+   * The directory of ratings (ORC).
+   */
+  public static final String RATINGS_ORC = "ratings_orc";
+
+  /**
+   * The directory of movies (CSV).
+   */
+  public static final String MOVIES = "movies";
+
+  /**
+   * The directory of movies (ORC).
+   */
+  public static final String MOVIES_ORC = "movies_orc";
+
+  /**
+   * The ORC schema of ratings.
+   */
+  public static final TypeDescription ORC_SCHEMA_RATINGS =
+      TypeDescription.fromString("struct<userid:string,movieid:string,rating:string,timestamp:string>");
+
+  /**
+   * The ORC schema of movies.
+   */
+  public static final TypeDescription ORC_SCHEMA_MOVIES =
+      TypeDescription.fromString("struct<id:string,title:string,genres:string>");
+
+  /**
+   * The genres.
+   */
+  private static final String[] GENRES = {
+      "Drama", "Comedy", "Thriller", "Action", "Romance", "Adventure", "Crime", "Sci-Fi", "Horror", "Fantasy",
+      "Children", "Animation", "Mystery", "Documentary", "War", "Musical", "Western", "IMAX", "Film-Noir"
+  };
+
+  /**
+   * The genres of movies without genres.
+   */
+  private static final String NO_GENRES = "(no genres listed)";
+
+  /**
+   * The default number of ratings.
+   */
+  private static final long RATINGS_SIZE = 1000000L;
+
+  /**
+   * The ratings per movie used to size movies by default (as in the MovieLens small dataset).
+   */
+  private static final long RATINGS_PER_MOVIE = 11L;
+
+  /**
+   * The maximum number of movies by default (as in the MovieLens 20M dataset).
+   */
+  private static final long MOVIES_SIZE_MAX = 27278L;
+
+  /**
+   * The ratings per user used to size users by default (as in the MovieLens small dataset).
+   */
+  private static final long RATINGS_PER_USER = 149L;
+
+  /**
+   * The default Zipf exponent of movie popularity.
+   */
+  private static final double POPULARITY_SKEW = 1.0;
+
+  /**
+   * The default Zipf exponent of user activity.
+   */
+  private static final double ACTIVITY_SKEW = 0.5;
+
+  /**
+   * The default mean number of genres of a movie.
+   */
+  private static final double GENRES_MEAN = 2.3;
+
+  /**
+   * The default Zipf exponent of genres.
+   */
+  private static final double GENRES_SKEW = 1.0;
+
+  /**
+   * The default lower bound of rating timestamps.
+   */
+  private static final String TIMESTAMP_LB = "09/01/1995";
+
+  /**
+   * The default upper bound of rating timestamps.
+   */
+  private static final String TIMESTAMP_UB = "16/10/2016T23:59:59";
+
+  /**
+   * The default number of ratings per split.
+   */
+  private static final long SPLIT_SIZE = 5000000L;
+
+  /**
+   * The default random seed.
+   */
+  private static final long SEED = 1L;
+
+  /**
+   * The default output formats.
+   */
+  private static final String[] FORMATS = {"csv", "orc"};
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.printf("Usage: %s [-D prop=val] <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path output = new Path(args[0]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.datagen.ratings", String.valueOf(RATINGS_SIZE));
+    final long ratings = config.getLong("moviedoop.datagen.ratings", RATINGS_SIZE);
+    config.setIfUnset("moviedoop.datagen.movies", String.valueOf(defaultMovies(ratings)));
+    config.setIfUnset("moviedoop.datagen.users", String.valueOf(defaultUsers(ratings)));
+    config.setIfUnset("moviedoop.datagen.popularity.skew", String.valueOf(POPULARITY_SKEW));
+    config.setIfUnset("moviedoop.datagen.activity.skew", String.valueOf(ACTIVITY_SKEW));
+    config.setIfUnset("moviedoop.datagen.genres.mean", String.valueOf(GENRES_MEAN));
+    config.setIfUnset("moviedoop.datagen.genres.skew", String.valueOf(GENRES_SKEW));
+    config.setIfUnset("moviedoop.datagen.timestamp.lb", TIMESTAMP_LB);
+    config.setIfUnset("moviedoop.datagen.timestamp.ub", TIMESTAMP_UB);
+    config.setIfUnset("moviedoop.datagen.split.size", String.valueOf(SPLIT_SIZE));
+    config.setIfUnset("moviedoop.datagen.threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+    config.setIfUnset("moviedoop.datagen.seed", String.valueOf(SEED));
+    config.setIfUnset("moviedoop.datagen.formats", String.join(",", FORMATS));
+
+    // CONTEXT RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Output: " + output);
+    System.out.println("Ratings: " + config.get("moviedoop.datagen.ratings"));
+    System.out.println("Movies: " + config.get("moviedoop.datagen.movies"));
+    System.out.println("Users: " + config.get("moviedoop.datagen.users"));
+    System.out.println("Movie Popularity Skew: " + config.get("moviedoop.datagen.popularity.skew"));
+    System.out.println("User Activity Skew: " + config.get("moviedoop.datagen.activity.skew"));
+    System.out.println("Genres per Movie (mean): " + config.get("moviedoop.datagen.genres.mean"));
+    System.out.println("Genres Skew: " + config.get("moviedoop.datagen.genres.skew"));
+    System.out.println("Rating Timestamp Lower Bound: " + config.get("moviedoop.datagen.timestamp.lb"));
+    System.out.println("Rating Timestamp Upper Bound: " + config.get("moviedoop.datagen.timestamp.ub"));
+    System.out.println("Split Size (ratings): " + config.get("moviedoop.datagen.split.size"));
+    System.out.println("Threads: " + config.get("moviedoop.datagen.threads"));
+    System.out.println("Seed: " + config.get("moviedoop.datagen.seed"));
+    System.out.println("Formats: " + config.get("moviedoop.datagen.formats"));
+    System.out.println("############################################################################");
+
+    long start = System.currentTimeMillis();
+    generate(config, output);
+    System.out.printf("Generated in %d ms\n", System.currentTimeMillis() - start);
+
+    return 0;
+  }
+
+  /**
+   * Generates ratings and movies into {@code output}, as configured by `moviedoop.datagen.*`.
+   * A _SUCCESS file marks the complete dataset.
+   *
+   * @param config the configuration.
+   * @param output the output directory.
+   * @throws Exception when the dataset cannot be generated.
+   */
+  public static void generate(Configuration config, Path output) throws Exception {
+    final long ratings = config.getLong("moviedoop.datagen.ratings", RATINGS_SIZE);
+    final int movies = config.getInt("moviedoop.datagen.movies", defaultMovies(ratings));
+    final int users = config.getInt("moviedoop.datagen.users", defaultUsers(ratings));
+    final double popularitySkew = config.getDouble("moviedoop.datagen.popularity.skew", POPULARITY_SKEW);
+    final double activitySkew = config.getDouble("moviedoop.datagen.activity.skew", ACTIVITY_SKEW);
+    final double genresMean = config.getDouble("moviedoop.datagen.genres.mean", GENRES_MEAN);
+    final double genresSkew = config.getDouble("moviedoop.datagen.genres.skew", GENRES_SKEW);
+    final long timestampLB = DateParser.toSeconds(config.get("moviedoop.datagen.timestamp.lb", TIMESTAMP_LB));
+    final long timestampUB = DateParser.toSeconds(config.get("moviedoop.datagen.timestamp.ub", TIMESTAMP_UB));
+    final long splitSize = config.getLong("moviedoop.datagen.split.size", SPLIT_SIZE);
+    final int threads = config.getInt("moviedoop.datagen.threads", Runtime.getRuntime().availableProcessors());
+    final long seed = config.getLong("moviedoop.datagen.seed", SEED);
+    final List<String> formats = Arrays.asList(config.getTrimmedStrings("moviedoop.datagen.formats", FORMATS));
+    final boolean csv = formats.contains("csv");
+    final boolean orc = formats.contains("orc");
+    if (movies <= 0 || users <= 0 || splitSize <= 0 || threads <= 0 || timestampUB < timestampLB || !(csv || orc)) {
+      throw new IllegalArgumentException("Invalid dataset configuration");
+    }
+
+    FileSystem fs = output.getFileSystem(config);
+    fs.delete(output, true);
+
+    // MOVIES
+    Random rnd = new Random(seed);
+    final double[] qualities = new double[movies];
+    for (int m = 0; m < movies; m++) {
+      qualities[m] = 1.0 + 3.5 * rnd.nextDouble();
+    }
+    final int[] popularity = new int[movies];
+    for (int m = 0; m < movies; m++) {
+      popularity[m] = m + 1;
+    }
+    for (int m = movies - 1; m > 0; m--) {
+      int other = rnd.nextInt(m + 1);
+      int swap = popularity[m];
+      popularity[m] = popularity[other];
+      popularity[other] = swap;
+    }
+    writeMovies(config, output, movies, genresMean, new ZipfDistribution(GENRES.length, genresSkew), rnd, csv, orc);
+
+    // RATINGS
+    final ZipfDistribution moviesDistribution = new ZipfDistribution(movies, popularitySkew);
+    final ZipfDistribution usersDistribution = new ZipfDistribution(users, activitySkew);
+    final long splits = (ratings + splitSize - 1) / splitSize;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (long s = 0; s < splits; s++) {
+        final long split = s;
+        final long size = Math.min(splitSize, ratings - split * splitSize);
+        results.add(executor.submit(() -> {
+          writeRatings(config, output, split, size, seed, moviesDistribution, popularity, qualities,
+              usersDistribution, timestampLB, timestampUB, csv, orc);
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    fs.create(new Path(output, "_SUCCESS")).close();
+  }
+
+  /**
+   * Returns the default number of movies for {@code ratings} ratings.
+   *
+   * @param ratings the number of ratings.
+   * @return the default number of movies.
+   */
+  private static int defaultMovies(long ratings) {
+    return (int) Math.max(1, Math.min(MOVIES_SIZE_MAX, ratings / RATINGS_PER_MOVIE));
+  }
+
+  /**
+   * Returns the default number of users for {@code ratings} ratings.
+   *
+   * @param ratings the number of ratings.
+   * @return the default number of users.
+   */
+  private static int defaultUsers(long ratings) {
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, ratings / RATINGS_PER_USER));
+  }
+
+  /**
+   * Writes movies as (id,title,genres), quoting titles containing commas.
+   *
+   * @param config the configuration.
+   * @param output the output directory.
+   * @param movies the number of movies.
+   * @param genresMean the mean number of genres of a movie.
+   * @param genres the distribution of genres.
+   * @param rnd the random generator.
+   * @param csv true to write CSV; false, otherwise.
+   * @param orc true to write ORC; false, otherwise.
+   * @throws IOException when movies cannot be written.
+   */
+  private static void writeMovies(Configuration config, Path output, int movies, double genresMean,
+                                  ZipfDistribution genres, Random rnd, boolean csv, boolean orc) throws IOException {
+    try (RecordWriter out = new RecordWriter(config,
+        csv ? new Path(output, MOVIES + "/part-00000.csv") : null,
+        orc ? new Path(output, MOVIES_ORC + "/part-00000.orc") : null, ORC_SCHEMA_MOVIES)) {
+      String[] record = new String[3];
+      boolean[] chosen = new boolean[GENRES.length];
+      StringBuilder sb = new StringBuilder();
+      for (int m = 1; m <= movies; m++) {
+        int year = 1902 + rnd.nextInt(115);
+        record[0] = String.valueOf(m);
+        record[1] = (m % 5 == 0) ? "Title " + m + ", The (" + year + ")" : "Title " + m + " (" + year + ")";
+
+        int count = Math.min(GENRES.length, poisson(genresMean, rnd));
+        Arrays.fill(chosen, false);
+        sb.setLength(0);
+        for (int g = 0; g < count; ) {
+          int genre = genres.sample(rnd);
+          if (!chosen[genre]) {
+            chosen[genre] = true;
+            sb.append((g++ == 0) ? "" : "|").append(GENRES[genre]);
+          }
+        }
+        record[2] = (count == 0) ? NO_GENRES : sb.toString();
+        out.write(record);
+      }
+    }
+  }
+
+  /**
+   * Writes a split of ratings as (userId,movieId,rating,timestamp).
+   *
+   * @param config the configuration.
+   * @param output the output directory.
+   * @param split the split number.
+   * @param size the number of ratings of the split.
+   * @param seed the random seed of the dataset.
+   * @param movies the distribution of movies, by popularity rank.
+   * @param popularity the movie ids, by popularity rank.
+   * @param qualities the qualities of movies (mean rating), by movie id - 1.
+   * @param users the distribution of users.
+   * @param timestampLB the lower bound of timestamps (seconds from epoch).
+   * @param timestampUB the upper bound of timestamps (seconds from epoch).
+   * @param csv true to write CSV; false, otherwise.
+   * @param orc true to write ORC; false, otherwise.
+   * @throws IOException when ratings cannot be written.
+   */
+  private static void writeRatings(Configuration config, Path output, long split, long size, long seed,
+                                   ZipfDistribution movies, int[] popularity, double[] qualities,
+                                   ZipfDistribution users, long timestampLB, long timestampUB,
+                                   boolean csv, boolean orc) throws IOException {
+    Random rnd = new Random(seed ^ (0x9E3779B97F4A7C15L * (split + 1)));
+    String name = String.format("part-%05d", split);
+    try (RecordWriter out = new RecordWriter(config,
+        csv ? new Path(output, RATINGS + "/" + name + ".csv") : null,
+        orc ? new Path(output, RATINGS_ORC + "/" + name + ".orc") : null, ORC_SCHEMA_RATINGS)) {
+      String[] record = new String[4];
+      for (long r = 0; r < size; r++) {
+        int movieId = popularity[movies.sample(rnd)];
+        double score = Math.round(2.0 * (qualities[movieId - 1] + rnd.nextGaussian())) / 2.0;
+        record[0] = String.valueOf(1 + users.sample(rnd));
+        record[1] = String.valueOf(movieId);
+        record[2] = String.valueOf(Math.max(0.5, Math.min(5.0, score)));
+        record[3] = String.valueOf(timestampLB + (long) (rnd.nextDouble() * (timestampUB - timestampLB + 1)));
+        out.write(record);
+      }
+    }
+    LOG.info("Generated split " + name + " (" + size + " ratings)");
+  }
+
+  /**
+   * Draws from a Poisson distribution (Knuth's method, for small means).
+   *
+   * @param mean the mean.
+   * @param rnd the random generator.
+   * @return the drawn value.
+   */
+  private static int poisson(double mean, Random rnd) {
+    double limit = Math.exp(-mean);
+    double product = rnd.nextDouble();
+    int value = 0;
+    while (product > limit) {
+      product *= rnd.nextDouble();
+      value++;
+    }
+    return value;
+  }
+
+  /**
+   * A writer of records both as CSV lines and as ORC rows (of strings).
+   * CSV fields containing the delimiter are quoted (see {@link CsvTokenizer}); ORC fields are raw.
+   */
+  private static class RecordWriter implements AutoCloseable {
+
+    /**
+     * The CSV writer (null if CSV is not written).
+     */
+    private BufferedWriter csv;
+
+    /**
+     * The ORC writer (null if ORC is not written).
+     */
+    private Writer orc;
+
+    /**
+     * The ORC batch.
+     */
+    private VectorizedRowBatch batch;
+
+    /**
+     * The CSV line.
+     */
+    private StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructs a writer.
+     *
+     * @param config the configuration.
+     * @param csv the CSV file (null to skip CSV).
+     * @param orc the ORC file (null to skip ORC).
+     * @param schema the ORC schema.
+     * @throws IOException when files cannot be created.
+     */
+    RecordWriter(Configuration config, Path csv, Path orc, TypeDescription schema) throws IOException {
+      if (csv != null) {
+        this.csv = new BufferedWriter(new OutputStreamWriter(csv.getFileSystem(config).create(csv), StandardCharsets.UTF_8));
+      }
+      if (orc != null) {
+        this.orc = OrcFile.createWriter(orc, OrcFile.writerOptions(config).setSchema(schema));
+        this.batch = schema.createRowBatch();
+      }
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param record the record fields.
+     * @throws IOException when the record cannot be written.
+     */
+    void write(String[] record) throws IOException {
+      if (this.csv != null) {
+        this.line.setLength(0);
+        for (int c = 0; c < record.length; c++) {
+          this.line.append((c == 0) ? "" : ",");
+          if (record[c].indexOf(CsvTokenizer.DELIMITER) >= 0) {
+            this.line.append('"').append(record[c].replace("\"", "\"\"")).append('"');
+          } else {
+            this.line.append(record[c]);
+          }
+        }
+        this.csv.append(this.line).append('\n');
+      }
+      if (this.orc != null) {
+        int row = this.batch.size++;
+        for (int c = 0; c < record.length; c++) {
+          ((BytesColumnVector) this.batch.cols[c]).setVal(row, record[c].getBytes(StandardCharsets.UTF_8));
+        }
+        if (this.batch.size == this.batch.getMaxSize()) {
+          this.orc.addRowBatch(this.batch);
+          this.batch.reset();
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.csv != null) {
+        this.csv.close();
+      }
+      if (this.orc != null) {
+        if (this.batch.size > 0) {
+          this.orc.addRowBatch(this.batch);
+        }
+        this.orc.close();
+      }
+    }
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new DataGenerator(), args);
+    System.exit(res);
+  }
+}
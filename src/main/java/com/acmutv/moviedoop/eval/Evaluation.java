@@ -0,0 +1,350 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.eval;
+
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query1.*;
+import com.acmutv.moviedoop.query2.*;
+import com.acmutv.moviedoop.query3.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.MRConfig;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A program that evaluates query programs in-process (see {@link MetricsClientProtocolProvider}) on
+ * synthetic datasets (see {@link EvaluationDataset}) at several scales, sweeping the number of reducers.
+ * Datasets are generated with the `moviedoop.datagen.*` options, and reused by later evaluations.
+ * Every query runs on every scale with every cardinality, applied to all of its reduce cardinality
+ * options, for `repetitions` times.
+ * The program writes three CSV reports into the output directory:
+ * runs.csv (wall time and GC time of every run), jobs.csv (wall time, phase times and main task
+ * counters of every job) and counters.csv (all counters of every job).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Evaluation extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(Evaluation.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "Evaluation";
+
+  /**
+   * The evaluable query programs.
+   */
+  private static final Map<String,Class<? extends Tool>> QUERIES = new LinkedHashMap<>();
+
+  static {
+    QUERIES.put("query1_1", Query1_1.class);
+    QUERIES.put("query1_2", Query1_2.class);
+    QUERIES.put("query1_3", Query1_3.class);
+    QUERIES.put("query1_4", Query1_4.class);
+    QUERIES.put("query1_5", Query1_5.class);
+    QUERIES.put("query1_6", Query1_6.class);
+    QUERIES.put("query1_7", Query1_7.class);
+    QUERIES.put("query1_8", Query1_8.class);
+    QUERIES.put("query2_1", Query2_1.class);
+    QUERIES.put("query2_2", Query2_2.class);
+    QUERIES.put("query2_3", Query2_3.class);
+    QUERIES.put("query2_4", Query2_4.class);
+    QUERIES.put("query2_5", Query2_5.class);
+    QUERIES.put("query2_6", Query2_6.class);
+    QUERIES.put("query3_1", Query3_1.class);
+    QUERIES.put("query3_2", Query3_2.class);
+    QUERIES.put("query3_3", Query3_3.class);
+    QUERIES.put("query3_4", Query3_4.class);
+    QUERIES.put("query3_5", Query3_5.class);
+    QUERIES.put("query3_6", Query3_6.class);
+    QUERIES.put("query3_7", Query3_7.class);
+  }
+
+  /**
+   * The query programs reading ORC inputs.
+   */
+  private static final Set<String> ORC_QUERIES = new HashSet<>(Arrays.asList(
+      "query1_6", "query1_7", "query1_8", "query2_5", "query2_6", "query3_4", "query3_5", "query3_6", "query3_7"
+  ));
+
+  /**
+   * The reduce cardinality options of query programs.
+   */
+  private static final String[] CARDINALITY_OPTIONS = {
+      "moviedoop.ratings.reduce.cardinality",
+      "moviedoop.average.reduce.cardinality",
+      "moviedoop.topk.reduce.cardinality",
+      "moviedoop.sort.reduce.cardinality"
+  };
+
+  /**
+   * The task counters reported in jobs.csv.
+   */
+  private static final TaskCounter[] JOB_COUNTERS = {
+      TaskCounter.GC_TIME_MILLIS,
+      TaskCounter.CPU_MILLISECONDS,
+      TaskCounter.MAP_INPUT_RECORDS,
+      TaskCounter.MAP_OUTPUT_RECORDS,
+      TaskCounter.MAP_OUTPUT_BYTES,
+      TaskCounter.REDUCE_SHUFFLE_BYTES,
+      TaskCounter.SPILLED_RECORDS
+  };
+
+  /**
+   * The default scales (number of ratings).
+   */
+  private static final String[] SCALES = {"100000", "1000000"};
+
+  /**
+   * The default reduce cardinalities.
+   */
+  private static final String[] CARDINALITIES = {"1", "2", "4"};
+
+  /**
+   * The default number of repetitions.
+   */
+  private static final int REPETITIONS = 1;
+
+  /**
+   * The default polling interval of job clients (ms), bounding the error of observed times.
+   */
+  private static final int POLL_INTERVAL = 10;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <work> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path work = new Path(args[0]);
+    final Path output = new Path(args[1]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.set(MRConfig.FRAMEWORK_NAME, MetricsClientProtocolProvider.FRAMEWORK_NAME);
+    config.setIfUnset("mapreduce.client.progressmonitor.pollinterval", String.valueOf(POLL_INTERVAL));
+    config.setIfUnset("mapreduce.client.completion.pollinterval", String.valueOf(POLL_INTERVAL));
+
+    // OTHER CONFIGURATION
+    final List<String> queries = Arrays.asList(config.getTrimmedStrings("moviedoop.eval.queries",
+        QUERIES.keySet().toArray(new String[0])));
+    final long[] scales = Arrays.stream(config.getTrimmedStrings("moviedoop.eval.scales", SCALES))
+        .mapToLong(Long::valueOf).toArray();
+    final int[] cardinalities = Arrays.stream(config.getTrimmedStrings("moviedoop.eval.cardinalities", CARDINALITIES))
+        .mapToInt(Integer::valueOf).toArray();
+    final int repetitions = config.getInt("moviedoop.eval.repetitions", REPETITIONS);
+    final String label = config.get("moviedoop.eval.label", "");
+    for (String query : queries) {
+      if (!QUERIES.containsKey(query)) {
+        System.err.printf("Unknown query: %s (available: %s)\n", query, QUERIES.keySet());
+        return 2;
+      }
+    }
+    config.unset("moviedoop.eval.queries");
+    config.unset("moviedoop.eval.scales");
+    config.unset("moviedoop.eval.cardinalities");
+    config.unset("moviedoop.eval.repetitions");
+    config.unset("moviedoop.eval.label");
+
+    // CONTEXT RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Work: " + work);
+    System.out.println("Output: " + output);
+    System.out.println("Label: " + label);
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Queries: " + queries);
+    System.out.println("Scales (ratings): " + Arrays.toString(scales));
+    System.out.println("Reduce Cardinalities: " + Arrays.toString(cardinalities));
+    System.out.println("Repetitions: " + repetitions);
+    System.out.println("############################################################################");
+
+    FileSystem fs = output.getFileSystem(config);
+    try (PrintWriter runs = open(fs, new Path(output, "runs.csv"));
+         PrintWriter jobs = open(fs, new Path(output, "jobs.csv"));
+         PrintWriter counters = open(fs, new Path(output, "counters.csv"))) {
+      runs.println("label,query,scale,cardinality,repetition,exit,wall_ms,gc_ms,jobs");
+      StringBuilder header = new StringBuilder("label,query,scale,cardinality,repetition,job,name,reduces,state,job_ms,map_ms,reduce_ms");
+      for (TaskCounter counter : JOB_COUNTERS) {
+        header.append(",").append(counter.name().toLowerCase());
+      }
+      jobs.println(header);
+      counters.println("label,query,scale,cardinality,repetition,job,group,counter,value");
+
+      for (long scale : scales) {
+        EvaluationDataset dataset = new EvaluationDataset(config, new Path(work, "data"), scale);
+        dataset.ensure(config, scale);
+        RatingCubeJob.ensure(new Configuration(config), dataset.getRatings(true));
+        BucketJob.ensure(new Configuration(config), dataset.getRatings(true), dataset.getMovies(true));
+        MovieIndexJob.ensure(new Configuration(config), dataset.getMovies(false));
+        MovieIndexJob.ensure(new Configuration(config), dataset.getMovies(true));
+        MetricsClientProtocolProvider.drain();
+
+        for (String query : queries) {
+          final boolean orc = ORC_QUERIES.contains(query);
+          for (int cardinality : cardinalities) {
+            for (int repetition = 1; repetition <= repetitions; repetition++) {
+              Path out = new Path(work, String.format("out/%s.%d.%d.%d", query, scale, cardinality, repetition));
+              fs.delete(out, true);
+              fs.delete(new Path(out + ".staging"), true);
+              Configuration runConfig = new Configuration(config);
+              for (String option : CARDINALITY_OPTIONS) {
+                runConfig.set(option, String.valueOf(cardinality));
+              }
+              String[] runArgs = {
+                  dataset.getRatings(orc).toString(), dataset.getMovies(orc).toString(), out.toString()
+              };
+
+              // RUN EXECUTION
+              long gc = gcMillis();
+              long start = System.currentTimeMillis();
+              int code;
+              try {
+                code = ToolRunner.run(runConfig, QUERIES.get(query).newInstance(), runArgs);
+              } catch (Exception exc) {
+                LOG.error("Run " + out.getName() + " failed", exc);
+                code = -1;
+              }
+              long elapsed = System.currentTimeMillis() - start;
+              gc = gcMillis() - gc;
+              List<JobMetrics> metrics = MetricsClientProtocolProvider.drain();
+              fs.delete(out, true);
+              fs.delete(new Path(out + ".staging"), true);
+
+              // RUN REPORT
+              String run = String.format("%s,%s,%d,%d,%d", label, query, scale, cardinality, repetition);
+              runs.printf("%s,%d,%d,%d,%d\n", run, code, elapsed, gc, metrics.size());
+              for (int j = 0; j < metrics.size(); j++) {
+                JobMetrics job = metrics.get(j);
+                StringBuilder record = new StringBuilder(run).append(",").append(j + 1)
+                    .append(",").append(quote(job.getName())).append(",").append(job.getReduces())
+                    .append(",").append(job.getState()).append(",").append(job.getJobMillis())
+                    .append(",").append(job.getMapMillis()).append(",").append(job.getReduceMillis());
+                for (TaskCounter counter : JOB_COUNTERS) {
+                  record.append(",").append(job.getCounter(counter));
+                }
+                jobs.println(record);
+                if (job.getCounters() != null) {
+                  for (CounterGroup group : job.getCounters()) {
+                    for (Counter counter : group) {
+                      counters.printf("%s,%d,%s,%s,%d\n", run, j + 1, quote(group.getName()),
+                          quote(counter.getName()), counter.getValue());
+                    }
+                  }
+                }
+              }
+              runs.flush();
+              jobs.flush();
+              counters.flush();
+              System.out.printf("%s: exit %d in %d ms (%d jobs, %d ms GC)\n", out.getName(), code, elapsed,
+                  metrics.size(), gc);
+            }
+          }
+        }
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Opens a report file.
+   *
+   * @param fs the file system.
+   * @param path the report path.
+   * @return the report writer.
+   * @throws IOException when the report cannot be created.
+   */
+  private static PrintWriter open(FileSystem fs, Path path) throws IOException {
+    return new PrintWriter(new OutputStreamWriter(fs.create(path, true), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Quotes a CSV field.
+   *
+   * @param field the field.
+   * @return the quoted field.
+   */
+  private static String quote(String field) {
+    return "\"" + String.valueOf(field).replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * Returns the total GC time of the JVM.
+   *
+   * @return the total GC time (ms).
+   */
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new Evaluation(), args);
+    System.exit(res);
+  }
+}
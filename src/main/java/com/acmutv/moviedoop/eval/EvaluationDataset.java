@@ -0,0 +1,99 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.eval;
+
+import com.acmutv.moviedoop.datagen.DataGenerator;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A synthetic dataset of ratings and movies, both in CSV and ORC, for evaluations.
+ * Datasets are generated by {@link DataGenerator} with the `moviedoop.datagen.*` options, and are
+ * named after the number of ratings and those options, so that later evaluations reuse them.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class EvaluationDataset {
+
+  /**
+   * The dataset directory.
+   */
+  private Path dir;
+
+  /**
+   * Constructs the dataset of {@code ratings} ratings in {@code work}.
+   *
+   * @param config the configuration.
+   * @param work the directory of datasets.
+   * @param ratings the number of ratings.
+   */
+  public EvaluationDataset(Configuration config, Path work, long ratings) {
+    Map<String,String> options = new TreeMap<>(config.getValByRegex("^moviedoop\\.datagen\\."));
+    this.dir = new Path(work, options.isEmpty() ?
+        String.valueOf(ratings) : ratings + "-" + Integer.toHexString(options.hashCode()));
+  }
+
+  /**
+   * Returns the ratings, in CSV or ORC.
+   *
+   * @param orc true for ORC; false for CSV.
+   * @return the ratings directory.
+   */
+  public Path getRatings(boolean orc) {
+    return new Path(this.dir, orc ? DataGenerator.RATINGS_ORC : DataGenerator.RATINGS);
+  }
+
+  /**
+   * Returns the movies, in CSV or ORC.
+   *
+   * @param orc true for ORC; false for CSV.
+   * @return the movies directory.
+   */
+  public Path getMovies(boolean orc) {
+    return new Path(this.dir, orc ? DataGenerator.MOVIES_ORC : DataGenerator.MOVIES);
+  }
+
+  /**
+   * Generates the dataset with {@code ratings} ratings, unless already generated.
+   *
+   * @param config the configuration.
+   * @param ratings the number of ratings.
+   * @throws Exception when the dataset cannot be generated.
+   */
+  public void ensure(Configuration config, long ratings) throws Exception {
+    if (this.dir.getFileSystem(config).exists(new Path(this.dir, "_SUCCESS"))) {
+      return;
+    }
+    Configuration datasetConfig = new Configuration(config);
+    datasetConfig.setLong("moviedoop.datagen.ratings", ratings);
+    DataGenerator.generate(datasetConfig, this.dir);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.eval;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+
+/**
+ * The metrics of a job, as observed by the job client.
+ * The map phase ends when the map progress is first observed complete; the reduce phase lasts
+ * until the job is observed complete.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class JobMetrics {
+
+  /**
+   * The job id.
+   */
+  private JobID id;
+
+  /**
+   * The job name.
+   */
+  private String name;
+
+  /**
+   * The number of reducers.
+   */
+  private int reduces;
+
+  /**
+   * The submission time (ms).
+   */
+  private long submitTime;
+
+  /**
+   * The end time of the map phase (ms; 0 if not observed).
+   */
+  private long mapTime;
+
+  /**
+   * The end time of the job (ms; 0 if not observed).
+   */
+  private long finishTime;
+
+  /**
+   * The final job state (null if not observed).
+   */
+  private String state;
+
+  /**
+   * The last observed counters (null if not observed).
+   */
+  private Counters counters;
+
+  /**
+   * Constructs the metrics of a submitted job.
+   *
+   * @param id the job id.
+   * @param name the job name.
+   * @param reduces the number of reducers.
+   * @param submitTime the submission time (ms).
+   */
+  public JobMetrics(JobID id, String name, int reduces, long submitTime) {
+    this.id = id;
+    this.name = name;
+    this.reduces = reduces;
+    this.submitTime = submitTime;
+  }
+
+  /**
+   * Returns the job id.
+   *
+   * @return the job id.
+   */
+  public JobID getId() {
+    return this.id;
+  }
+
+  /**
+   * Returns the job name.
+   *
+   * @return the job name.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the number of reducers.
+   *
+   * @return the number of reducers.
+   */
+  public int getReduces() {
+    return this.reduces;
+  }
+
+  /**
+   * Returns the final job state.
+   *
+   * @return the final job state; null if the job has not been observed complete.
+   */
+  public String getState() {
+    return this.state;
+  }
+
+  /**
+   * Returns the last observed counters.
+   *
+   * @return the counters; null if not observed.
+   */
+  public Counters getCounters() {
+    return this.counters;
+  }
+
+  /**
+   * Records the progress of the job.
+   *
+   * @param mapProgress the map progress.
+   * @param complete true if the job is complete; false, otherwise.
+   * @param state the job state.
+   * @param time the observation time (ms).
+   */
+  synchronized void progressed(float mapProgress, boolean complete, String state, long time) {
+    if (this.mapTime == 0 && (mapProgress >= 1.0f || complete)) {
+      this.mapTime = time;
+    }
+    if (this.finishTime == 0 && complete) {
+      this.finishTime = time;
+      this.state = state;
+    }
+  }
+
+  /**
+   * Records the counters of the job.
+   *
+   * @param counters the counters.
+   */
+  synchronized void counted(Counters counters) {
+    this.counters = counters;
+  }
+
+  /**
+   * Returns the job wall time.
+   *
+   * @return the job wall time (ms; -1 if the job has not been observed complete).
+   */
+  public synchronized long getJobMillis() {
+    return (this.finishTime == 0) ? -1 : this.finishTime - this.submitTime;
+  }
+
+  /**
+   * Returns the wall time of the map phase (from submission).
+   *
+   * @return the wall time of the map phase (ms; -1 if not observed).
+   */
+  public synchronized long getMapMillis() {
+    return (this.mapTime == 0) ? -1 : this.mapTime - this.submitTime;
+  }
+
+  /**
+   * Returns the wall time of the reduce phase (after the map phase).
+   *
+   * @return the wall time of the reduce phase (ms; -1 if the job has not been observed complete).
+   */
+  public synchronized long getReduceMillis() {
+    return (this.finishTime == 0) ? -1 : this.finishTime - this.mapTime;
+  }
+
+  /**
+   * Returns the value of a task counter.
+   *
+   * @param counter the task counter.
+   * @return the value; -1 if counters have not been observed.
+   */
+  public synchronized long getCounter(TaskCounter counter) {
+    if (this.counters == null) {
+      return -1;
+    }
+    Counter value = this.counters.findCounter(counter);
+    return (value == null) ? -1 : value.getValue();
+  }
+}
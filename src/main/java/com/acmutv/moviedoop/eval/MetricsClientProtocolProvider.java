@@ -0,0 +1,186 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.eval;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.LocalJobRunner;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.MRConfig;
+import org.apache.hadoop.mapreduce.protocol.ClientProtocol;
+import org.apache.hadoop.mapreduce.protocol.ClientProtocolProvider;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A client protocol provider running jobs in-process with the local job runner, while recording the
+ * metrics of every job (see {@link JobMetrics}).
+ * It is selected by setting {@code mapreduce.framework.name} to {@link #FRAMEWORK_NAME}, so that
+ * programs are evaluated without changes.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MetricsClientProtocolProvider extends ClientProtocolProvider {
+
+  /**
+   * The framework name.
+   */
+  public static final String FRAMEWORK_NAME = "local-metrics";
+
+  /**
+   * The metrics of jobs submitted since the last drain, by job id.
+   * Ids are keyed as strings, as the client mixes old and new API ids, which are never equal.
+   */
+  private static final Map<String,JobMetrics> JOBS = new HashMap<>();
+
+  /**
+   * The ids of jobs submitted since the last drain, in submission order.
+   */
+  private static final List<String> SUBMISSIONS = new ArrayList<>();
+
+  @Override
+  public ClientProtocol create(Configuration conf) throws IOException {
+    if (!FRAMEWORK_NAME.equals(conf.get(MRConfig.FRAMEWORK_NAME))) {
+      return null;
+    }
+    ClientProtocol runner = new LocalJobRunner(conf);
+    return (ClientProtocol) Proxy.newProxyInstance(ClientProtocol.class.getClassLoader(),
+        new Class<?>[]{ClientProtocol.class}, new Recorder(runner));
+  }
+
+  @Override
+  public ClientProtocol create(InetSocketAddress addr, Configuration conf) throws IOException {
+    return this.create(conf);
+  }
+
+  @Override
+  public void close(ClientProtocol clientProtocol) {
+    // nothing to close
+  }
+
+  /**
+   * Returns the metrics of jobs submitted since the last drain, and forgets them.
+   *
+   * @return the metrics of jobs, in submission order.
+   */
+  public static synchronized List<JobMetrics> drain() {
+    List<JobMetrics> jobs = new ArrayList<>();
+    for (String id : SUBMISSIONS) {
+      jobs.add(JOBS.get(id));
+    }
+    JOBS.clear();
+    SUBMISSIONS.clear();
+    return jobs;
+  }
+
+  /**
+   * Registers a submitted job.
+   *
+   * @param metrics the job metrics.
+   */
+  private static synchronized void submitted(JobMetrics metrics) {
+    JOBS.put(metrics.getId().toString(), metrics);
+    SUBMISSIONS.add(metrics.getId().toString());
+  }
+
+  /**
+   * Returns the metrics of a job.
+   *
+   * @param id the job id.
+   * @return the job metrics; null if the job is unknown.
+   */
+  private static synchronized JobMetrics lookup(JobID id) {
+    return JOBS.get(id.toString());
+  }
+
+  /**
+   * The invocation handler recording submissions, statuses and counters returned by the runner.
+   */
+  private static class Recorder implements InvocationHandler {
+
+    /**
+     * The local job runner.
+     */
+    private ClientProtocol runner;
+
+    /**
+     * Constructs a recorder for {@code runner}.
+     *
+     * @param runner the local job runner.
+     */
+    Recorder(ClientProtocol runner) {
+      this.runner = runner;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("submitJob".equals(method.getName())) {
+        // the job file is deleted by the runner when the job ends
+        JobConf job = new JobConf(new Path((String) args[1], "job.xml"));
+        submitted(new JobMetrics((JobID) args[0], job.getJobName(), job.getNumReduceTasks(),
+            System.currentTimeMillis()));
+      }
+      Object result;
+      try {
+        result = method.invoke(this.runner, args);
+      } catch (InvocationTargetException exc) {
+        throw exc.getCause();
+      }
+      if ("getJobStatus".equals(method.getName()) && result != null) {
+        JobStatus status = (JobStatus) result;
+        JobMetrics metrics = lookup((JobID) args[0]);
+        if (metrics != null) {
+          metrics.progressed(status.getMapProgress(), status.isJobComplete(), status.getState().name(),
+              System.currentTimeMillis());
+          if (status.isJobComplete() && metrics.getCounters() == null) {
+            // jobs waited by polling their completion never ask for counters
+            metrics.counted(this.runner.getJobCounters((JobID) args[0]));
+          }
+        }
+      } else if ("getJobCounters".equals(method.getName()) && result != null) {
+        JobMetrics metrics = lookup((JobID) args[0]);
+        if (metrics != null) {
+          metrics.counted((Counters) result);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.index;
+
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import com.acmutv.moviedoop.common.output.MovieIndexOutputFormat;
+import com.acmutv.moviedoop.common.struct.MovieFilter;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.common.util.SharedOutput;
+import com.acmutv.moviedoop.index.map.MoviesIndexMapper;
+import com.acmutv.moviedoop.index.map.MoviesIndexMapperORC;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * A map/reduce program that compiles movies (CSV or ORC) into a {@link MovieIndex}, to be shipped
+ * through the distributed cache to the cached joins.
+ * The index is built once: {@link #ensure(Configuration, Path)} reuses an index newer than movies.
+ * Concurrent drivers share the index through {@link SharedOutput}, so that it is never rebuilt in place.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieIndexJob extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(MovieIndexJob.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "MovieIndex";
+
+  /**
+   * The genres of movies with no genre listed.
+   */
+  public static final String NO_GENRES = "(no genres listed)";
+
+  /**
+   * The suffix of the default index directory (sibling of the movies path).
+   */
+  private static final String INDEX_SUFFIX = "_index";
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputMovies = new Path(args[0]);
+    final Path output = new Path(args[1]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+
+    return build(config, inputMovies, output) ? 0 : 1;
+  }
+
+  /**
+   * Returns the index file for movies, building it if missing or older than movies.
+   * The index directory is {@code moviedoop.movies.index}, by default a sibling of movies.
+   * The index is built into a temporary directory, and published only if no fresh index appeared
+   * meanwhile.
+   *
+   * @param config the configuration.
+   * @param inputMovies the movies path.
+   * @return the index file.
+   * @throws Exception when the index cannot be built.
+   */
+  public static Path ensure(Configuration config, Path inputMovies) throws Exception {
+    final Path index = new Path(config.get("moviedoop.movies.index",
+        new Path(inputMovies.getParent(), inputMovies.getName() + INDEX_SUFFIX).toString()));
+    FileSystem fs = index.getFileSystem(config);
+
+    final long lastModified = SharedOutput.lastModified(config, inputMovies);
+    final Path success = new Path(index, "_SUCCESS");
+    if (!SharedOutput.isFresh(config, success, lastModified)) {
+      final Path tmp = SharedOutput.temporary(index);
+      if (!build(config, inputMovies, tmp)) {
+        fs.delete(tmp, true);
+        throw new IOException("Cannot build the movie index " + index);
+      }
+      if (!SharedOutput.publish(config, tmp, index, success, lastModified)) {
+        LOG.info("Reusing movie index " + index + " built concurrently");
+      }
+    } else {
+      LOG.info("Reusing movie index " + index);
+    }
+
+    for (FileStatus status : fs.listStatus(index)) {
+      if (status.getPath().getName().endsWith(MovieIndex.EXTENSION)) {
+        return status.getPath();
+      }
+    }
+    throw new FileNotFoundException("No index file in " + index);
+  }
+
+  /**
+   * Returns the filter of the movies with genres, building it from the index if missing or older
+   * than the index.
+   * The false positive probability is {@code moviedoop.movies.filter.fpp}.
+   * The filter is written to a temporary file, and published only if no fresh filter appeared
+   * meanwhile.
+   *
+   * @param config the configuration.
+   * @param inputMovies the movies path.
+   * @return the filter file.
+   * @throws Exception when the index or the filter cannot be built.
+   */
+  public static Path ensureGenresFilter(Configuration config, Path inputMovies) throws Exception {
+    final Path index = ensure(config, inputMovies);
+    final Path filter = new Path(index.getParent(), "genres" + MovieFilter.EXTENSION);
+    FileSystem fs = filter.getFileSystem(config);
+
+    final long lastModified = fs.getFileStatus(index).getModificationTime();
+    if (!SharedOutput.isFresh(config, filter, lastModified)) {
+      final Path tmp = SharedOutput.temporary(filter);
+      double fpp = config.getDouble("moviedoop.movies.filter.fpp", MovieFilter.FPP);
+      MovieFilter.ofGenres(MovieIndex.open(config, index.toUri()), fpp).save(config, tmp);
+      if (SharedOutput.publish(config, tmp, filter, filter, lastModified)) {
+        LOG.info("Built movie filter " + filter);
+      } else {
+        LOG.info("Reusing movie filter " + filter + " built concurrently");
+      }
+    } else {
+      LOG.info("Reusing movie filter " + filter);
+    }
+    return filter;
+  }
+
+  /**
+   * Runs the job building the index.
+   *
+   * @param config the configuration.
+   * @param inputMovies the movies path.
+   * @param output the index directory.
+   * @return true if the job succeeded; false, otherwise.
+   * @throws Exception when the job cannot be executed.
+   */
+  private static boolean build(Configuration config, Path inputMovies, Path output) throws Exception {
+    final boolean orc = OrcPushdown.isOrc(config, inputMovies);
+
+    // CONFIGURATION RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Movies: " + inputMovies + (orc ? " (ORC)" : " (CSV)"));
+    System.out.println("Output: " + output);
+    System.out.println("############################################################################");
+
+    // JOB CONFIGURATION
+    Job job = Job.getInstance(config, PROGRAM_NAME);
+    job.setJarByClass(MovieIndexJob.class);
+
+    // INPUT/MAP CONFIGURATION
+    if (orc) {
+      job.setInputFormatClass(OrcBatchInputFormat.class);
+      OrcBatchInputFormat.addInputPath(job, inputMovies);
+      job.setMapperClass(MoviesIndexMapperORC.class);
+    } else {
+      job.setInputFormatClass(TextInputFormat.class);
+      TextInputFormat.addInputPath(job, inputMovies);
+      job.setMapperClass(MoviesIndexMapper.class);
+    }
+    job.setMapOutputKeyClass(LongWritable.class);
+    job.setMapOutputValueClass(MovieWritable.class);
+
+    // REDUCE CONFIGURATION (identity, single index file sorted by movie id)
+    job.setNumReduceTasks(1);
+
+    // OUTPUT CONFIGURATION
+    job.setOutputKeyClass(LongWritable.class);
+    job.setOutputValueClass(MovieWritable.class);
+    job.setOutputFormatClass(MovieIndexOutputFormat.class);
+    MovieIndexOutputFormat.setOutputPath(job, output);
+
+    // JOB EXECUTION
+    return job.waitForCompletion(VERBOSE);
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new MovieIndexJob(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.index.map;
+
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The mapper for the {@link MovieIndexJob} and {@link BucketJob} jobs on CSV movies.
+ * It emits (movieId,movie).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MoviesIndexMapper extends Mapper<Object,Text,LongWritable,MovieWritable> {
+
+  /**
+   * The movie id to emit.
+   */
+  private LongWritable movieId = new LongWritable();
+
+  /**
+   * The movie to emit.
+   */
+  private MovieWritable movie = new MovieWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input value.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
+    this.tokenizer.tokenize(value);
+    this.movieId.set(this.tokenizer.getLong(0));
+    this.movie.id = this.movieId.get();
+    this.movie.title = this.tokenizer.getString(1);
+    this.movie.genres = genres(this.tokenizer.getString(2));
+    ctx.write(this.movieId, this.movie);
+  }
+
+  /**
+   * Splits the genres (genre1|genre2|...|genreN).
+   *
+   * @param genres the genres.
+   * @return the list of genres; empty if no genre is listed.
+   */
+  public static List<String> genres(String genres) {
+    if (genres == null || genres.isEmpty() || MovieIndexJob.NO_GENRES.equals(genres)) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(genres.split("\\|"));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.index.map;
+
+import com.acmutv.moviedoop.bucket.BucketJob;
+import com.acmutv.moviedoop.common.model.MovieWritable;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+
+/**
+ * The mapper for the {@link MovieIndexJob} and {@link BucketJob} jobs on ORC movies (id, title, genres).
+ * It consumes whole row batches and emits (movieId,movie).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MoviesIndexMapperORC extends Mapper<NullWritable,VectorizedRowBatch,LongWritable,MovieWritable> {
+
+  /**
+   * The movie id to emit.
+   */
+  private LongWritable movieId = new LongWritable();
+
+  /**
+   * The movie to emit.
+   */
+  private MovieWritable movie = new MovieWritable();
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    BytesColumnVector cvTitle = (BytesColumnVector) value.cols[1];
+    BytesColumnVector cvGenres = (BytesColumnVector) value.cols[2];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      if (ColumnVectorParser.isNull(value.cols[0], row)) continue;
+      this.movieId.set(ColumnVectorParser.getLong(value.cols[0], row));
+      this.movie.id = this.movieId.get();
+      this.movie.title = ColumnVectorParser.isNull(cvTitle, row) ? "" : cvTitle.toString(row);
+      this.movie.genres = MoviesIndexMapper.genres(ColumnVectorParser.isNull(cvGenres, row) ? null : cvGenres.toString(row));
+      ctx.write(this.movieId, this.movie);
+    }
+  }
+}
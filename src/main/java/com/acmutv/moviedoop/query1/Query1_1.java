@@ -29,6 +29,7 @@ import com.acmutv.moviedoop.query1.map.MoviesJMapper;
 import com.acmutv.moviedoop.query1.map.FilterRatingsByTimestampJMapper;
 import com.acmutv.moviedoop.query1.reduce.AverageRatingJoinMovieTitleReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.query1.reduce.RatingJoinMovieTitleCombiner;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
@@ -136,6 +137,7 @@ public class Query1_1 extends Configured implements Tool {
     // MAP CONFIGURATION
     job.setMapOutputKeyClass(LongWritable.class);
     job.setMapOutputValueClass(Text.class);
+    job.setCombinerClass(RatingJoinMovieTitleCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AverageRatingJoinMovieTitleReducer.class);
@@ -25,13 +25,14 @@
  */
 package com.acmutv.moviedoop.query1;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query1.map.FilterRatingsByTimestampJoinMovieTitleCachedMapper;
 import com.acmutv.moviedoop.query1.reduce.AverageRatingFilterReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -127,9 +128,7 @@ public class Query1_2 extends Configured implements Tool {
     // JOB CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME);
     job.setJarByClass(Query1_2.class);
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
-    }
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
 
     // INPUT CONFIGURATION
     job.setInputFormatClass(TextInputFormat.class);
@@ -138,7 +137,8 @@ public class Query1_2 extends Configured implements Tool {
     // MAP CONFIGURATION
     job.setMapperClass(FilterRatingsByTimestampJoinMovieTitleCachedMapper.class);
     job.setMapOutputKeyClass(Text.class);
-    job.setMapOutputValueClass(DoubleWritable.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AverageRatingFilterReducer.class);
@@ -25,13 +25,14 @@
  */
 package com.acmutv.moviedoop.query1;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query1.map.FilterRatingsByTimestampMapper;
 import com.acmutv.moviedoop.query1.reduce.AverageRatingJoinMovieTitleCachedReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -128,9 +129,7 @@ public class Query1_3 extends Configured implements Tool {
     // JOB CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME);
     job.setJarByClass(Query1_3.class);
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
-    }
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
 
     // INPUT CONFIGURATION
     job.setInputFormatClass(TextInputFormat.class);
@@ -139,7 +138,8 @@ public class Query1_3 extends Configured implements Tool {
     // MAP CONFIGURATION
     job.setMapperClass(FilterRatingsByTimestampMapper.class);
     job.setMapOutputKeyClass(LongWritable.class);
-    job.setMapOutputValueClass(DoubleWritable.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AverageRatingJoinMovieTitleCachedReducer.class);
@@ -25,13 +25,13 @@
  */
 package com.acmutv.moviedoop.query1;
 
+import com.acmutv.moviedoop.common.reduce.Aggregate1RatingCombiner;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query1.map.FilterRatingsByTimestampAndAggregate1Mapper;
 import com.acmutv.moviedoop.query1.reduce.AverageAggregate1RatingJoinMovieTitleCachedReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -82,6 +82,11 @@ public class Query1_4 extends Configured implements Tool {
    */
   private static final int AVERAGE_REDUCE_CARDINALITY = 1;
 
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
   /**
    * The default verbosity.
    */
@@ -104,6 +109,7 @@ public class Query1_4 extends Configured implements Tool {
     Configuration config = super.getConf();
     config.setIfUnset("moviedoop.average.rating.lb", String.valueOf(RATING_AVERAGE_LB));
     config.setIfUnset("moviedoop.average.rating.timestamp.lb", DateParser.toString(RATING_TIMESTAMP_LB));
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
 
     // OTHER CONFIGURATION
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
@@ -118,6 +124,7 @@ public class Query1_4 extends Configured implements Tool {
     System.out.println("Output: " + output);
     System.out.println("Movie Average Rating Lower Bound: " + config.get("moviedoop.average.rating.lb"));
     System.out.println("Movie Rating Timestamp Lower Bound: " + config.get("moviedoop.average.rating.timestamp.lb"));
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
     System.out.println("############################################################################");
@@ -129,9 +136,7 @@ public class Query1_4 extends Configured implements Tool {
     // JOB CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME);
     job.setJarByClass(Query1_4.class);
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
-    }
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
 
     // INPUT CONFIGURATION
     job.setInputFormatClass(TextInputFormat.class);
@@ -141,6 +146,7 @@ public class Query1_4 extends Configured implements Tool {
     job.setMapperClass(FilterRatingsByTimestampAndAggregate1Mapper.class);
     job.setMapOutputKeyClass(LongWritable.class);
     job.setMapOutputValueClass(Text.class);
+    job.setCombinerClass(Aggregate1RatingCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AverageAggregate1RatingJoinMovieTitleCachedReducer.class);
@@ -25,13 +25,17 @@
  */
 package com.acmutv.moviedoop.query1;
 
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
 import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query1.map.FilterRatingsByTimestampAndAggregate2MapperORC;
 import com.acmutv.moviedoop.query1.reduce.AverageAggregate2RatingJoinMovieTitleCachedReducerORC;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -41,8 +45,6 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 import org.apache.orc.mapred.OrcKey;
-import org.apache.orc.mapred.OrcValue;
-import org.apache.orc.mapreduce.OrcInputFormat;
 
 import java.time.LocalDateTime;
 
@@ -83,6 +85,16 @@ public class Query1_6 extends Configured implements Tool {
    */
   private static final int AVERAGE_REDUCE_CARDINALITY = 1;
 
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
+  /**
+   * The rating columns read by the query (movieId, rating, time).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2, 3};
+
   /**
    * The default verbosity.
    */
@@ -105,6 +117,7 @@ public class Query1_6 extends Configured implements Tool {
     Configuration config = super.getConf();
     config.setIfUnset("moviedoop.average.rating.lb", String.valueOf(RATING_AVERAGE_LB));
     config.setIfUnset("moviedoop.average.rating.timestamp.lb", DateParser.toString(RATING_TIMESTAMP_LB));
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
 
     // OTHER CONFIGURATION
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
@@ -119,6 +132,7 @@ public class Query1_6 extends Configured implements Tool {
     System.out.println("Output: " + output);
     System.out.println("Movie Average Rating Lower Bound: " + config.get("moviedoop.average.rating.lb"));
     System.out.println("Movie Rating Timestamp Lower Bound: " + config.get("moviedoop.average.rating.timestamp.lb"));
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
     System.out.println("############################################################################");
@@ -130,22 +144,23 @@ public class Query1_6 extends Configured implements Tool {
     // JOB CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME);
     job.setJarByClass(Query1_6.class);
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
-    }
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
 
     // INPUT CONFIGURATION
-    job.setInputFormatClass(OrcInputFormat.class);
-    OrcInputFormat.addInputPath(job, inputRatings);
+    job.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(job, inputRatings);
+    OrcPushdown.setColumns(job.getConfiguration(), RATING_COLUMNS);
+    OrcPushdown.setWindows(job.getConfiguration(), inputRatings, 3,
+        new long[]{DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.lb")), Long.MAX_VALUE});
 
     // MAP CONFIGURATION
     job.setMapperClass(FilterRatingsByTimestampAndAggregate2MapperORC.class);
     job.setMapOutputKeyClass(OrcKey.class);
-    job.setMapOutputValueClass(OrcValue.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
     job.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
         FilterRatingsByTimestampAndAggregate2MapperORC.ORC_SCHEMA_KEY.toString());
-    job.getConfiguration().setIfUnset("orc.mapred.map.output.value.schema",
-        FilterRatingsByTimestampAndAggregate2MapperORC.ORC_SCHEMA_VALUE.toString());
+    job.setSortComparatorClass(OrcKeyComparator.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AverageAggregate2RatingJoinMovieTitleCachedReducerORC.class);
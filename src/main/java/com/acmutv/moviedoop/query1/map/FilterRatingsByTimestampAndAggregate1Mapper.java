@@ -25,8 +25,10 @@
  */
 package com.acmutv.moviedoop.query1.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query1.Query1_4;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -34,8 +36,6 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_4}.
@@ -61,7 +61,7 @@ public class FilterRatingsByTimestampAndAggregate1Mapper extends Mapper<Object,T
   /**
    * The map movieId->(score,repetitions).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings = new MovieRatingAggregator();
 
   /**
    * The movie id to emit.
@@ -73,6 +73,11 @@ public class FilterRatingsByTimestampAndAggregate1Mapper extends Mapper<Object,T
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
@@ -81,6 +86,9 @@ public class FilterRatingsByTimestampAndAggregate1Mapper extends Mapper<Object,T
     this.movieRatingTimestampLowerBound =
         DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb"));
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + this.movieRatingTimestampLowerBound);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings.setMaxMemoryBytes(aggregateBufferMb << 20);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
   }
 
   /**
@@ -93,14 +101,16 @@ public class FilterRatingsByTimestampAndAggregate1Mapper extends Mapper<Object,T
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings.add(movieId, score);
+      if (this.movieIdToAggregateRatings.isFull()) {
+        this.spill(ctx);
+      }
     }
   }
 
@@ -110,11 +120,38 @@ public class FilterRatingsByTimestampAndAggregate1Mapper extends Mapper<Object,T
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings.keySet()) {
-      this.movieId.set(movieId);
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        double score = entry.getKey();
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.report(ctx);
+  }
+
+  /**
+   * Emits the partial aggregates and clears the table, when it exceeds the memory budget.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
+
+  /**
+   * Emits the aggregates in the table.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = this.movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+        int repetitions = cursor.getRepetitions(b);
+        if (repetitions == 0) continue;
+        double score = RatingHistogramWritable.score(b);
         this.tuple.set(score + "," + repetitions);
         ctx.write(this.movieId, this.tuple);
       }
@@ -25,20 +25,22 @@
  */
 package com.acmutv.moviedoop.query1.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
 import com.acmutv.moviedoop.common.util.DateParser;
 import com.acmutv.moviedoop.query1.Query1_6;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_6}.
@@ -49,7 +51,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<Object,OrcStruct,OrcKey,OrcValue> {
+public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<NullWritable,VectorizedRowBatch,OrcKey,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -61,40 +63,25 @@ public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<Objec
    */
   public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<id:bigint>");
 
-  /**
-   * The ORC schema for value.
-   */
-  public static final TypeDescription ORC_SCHEMA_VALUE = TypeDescription.fromString("struct<ratings:string>");
-
   /**
    * The key ORC wrapper
    */
   private OrcKey keywrapper = new OrcKey();
 
-  /**
-   * The value ORC wrapper.
-   */
-  private OrcValue valuewrapper = new OrcValue();
-
   /**
    * The ORC struct for key.
    */
   private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
 
-  /**
-   * The ORC struct for value.
-   */
-  private OrcStruct valueStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_VALUE);
-
   /**
    * The movieId to emit.
    */
   private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
 
   /**
-   * The tuple {rating=repetitions,...,rating=repetitions} to emit.
+   * The histogram {rating=repetitions,...,rating=repetitions} to emit.
    */
-  private Text ratings = (Text) valueStruct.getFieldValue(0);
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
 
   /**
    * The lower bound for the movie rating timestamp.
@@ -104,7 +91,7 @@ public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<Objec
   /**
    * The map movieId->(score,repetitions).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings = new MovieRatingAggregator();
 
   /**
    * Configures the mapper.
@@ -114,24 +101,35 @@ public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<Objec
     this.movieRatingTimestampLowerBound =
         DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb"));
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + this.movieRatingTimestampLowerBound);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings.setMaxMemoryBytes(aggregateBufferMb << 20);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
   }
 
   /**
    * The mapping routine.
    *
    * @param key the input key.
-   * @param value the input value.
+   * @param value the input row batch.
    * @param ctx the context.
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
-    long timestamp = Long.valueOf(value.getFieldValue(3).toString());
-    if (timestamp >= this.movieRatingTimestampLowerBound) {
-      long movieId = Long.valueOf(value.getFieldValue(1).toString());
-      double rating = Double.valueOf(value.getFieldValue(2).toString());
-      this.movieIdToAggregateRatings.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings.get(movieId).compute(rating, (k,v) -> (v == null) ? 1 : v + 1);
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    ColumnVector timestamps = value.cols[3];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long timestamp = ColumnVectorParser.getLong(timestamps, row);
+      if (timestamp >= this.movieRatingTimestampLowerBound) {
+        long movieId = ColumnVectorParser.getLong(movieIds, row);
+        double rating = ColumnVectorParser.getDouble(scores, row);
+        this.movieIdToAggregateRatings.add(movieId, rating);
+        if (this.movieIdToAggregateRatings.isFull()) {
+          this.spill(ctx);
+        }
+      }
     }
   }
 
@@ -141,14 +139,37 @@ public class FilterRatingsByTimestampAndAggregate2MapperORC extends Mapper<Objec
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.ratings.set(report);
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.report(ctx);
+  }
+
+  /**
+   * Emits the partial aggregates and clears the table, when it exceeds the memory budget.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
+
+  /**
+   * Emits the aggregates in the table.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = this.movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
       this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, this.valuewrapper);
+      ctx.write(this.keywrapper, this.ratings);
     }
   }
 }
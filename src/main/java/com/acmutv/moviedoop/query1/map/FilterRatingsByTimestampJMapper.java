@@ -27,14 +27,13 @@ package com.acmutv.moviedoop.query1.map;
 
 import com.acmutv.moviedoop.query1.Query1_1;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_1}.
@@ -67,6 +66,11 @@ public class FilterRatingsByTimestampJMapper extends Mapper<Object,Text,LongWrit
    */
   private Text movieRating = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
@@ -87,12 +91,12 @@ public class FilterRatingsByTimestampJMapper extends Mapper<Object,Text,LongWrit
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
       this.movieId.set(movieId);
       this.movieRating.set("R" + score);
       ctx.write(this.movieId, this.movieRating);
@@ -25,33 +25,28 @@
  */
 package com.acmutv.moviedoop.query1.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_2;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.DoubleWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_2}.
- * It emits (movieTitle,rating) where movieTitle is joined with the movies cached files and rating
- * is a score attributed with timestamp greater or equal to the `movieRatingTimestampLowerBound`.
+ * It emits (movieTitle,ratings) where movieTitle is joined with the movies cached files and ratings
+ * is the histogram of a score attributed with timestamp greater or equal to the
+ * `movieRatingTimestampLowerBound`.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class FilterRatingsByTimestampJoinMovieTitleCachedMapper extends Mapper<Object,Text,Text,DoubleWritable> {
+public class FilterRatingsByTimestampJoinMovieTitleCachedMapper extends Mapper<Object,Text,Text,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -59,9 +54,9 @@ public class FilterRatingsByTimestampJoinMovieTitleCachedMapper extends Mapper<O
   private static final Logger LOG = Logger.getLogger(FilterRatingsByTimestampJoinMovieTitleCachedMapper.class);
 
   /**
-   * The cached map (movieId,movieTitle).
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The lower bound for the movie rating timestamp.
@@ -74,37 +69,26 @@ public class FilterRatingsByTimestampJoinMovieTitleCachedMapper extends Mapper<O
   private Text movieTitle = new Text();
 
   /**
-   * The movie rating to emit.
+   * The histogram (ratings) to emit.
    */
-  private DoubleWritable movieRating = new DoubleWritable();
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
 
   /**
    * Configures the mapper.
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
+  protected void setup(Context ctx) throws IOException {
     this.movieRatingTimestampLowerBound =
         DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb"));
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + this.movieRatingTimestampLowerBound);
 
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String movieTitle = movie.get("title");
-          this.movieIdToMovieTitle.put(movieId, movieTitle);
-        }
-        br.close();
-      }
-    } catch (IOException exc) {
-      exc.printStackTrace();
-    }
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -117,15 +101,16 @@ public class FilterRatingsByTimestampJoinMovieTitleCachedMapper extends Mapper<O
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieTitle.set(this.movieIdToMovieTitle.getOrDefault(movieId, "N/A-"+movieId));
-      this.movieRating.set(score);
-      ctx.write(this.movieTitle, this.movieRating);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieTitle.set(this.movies.getTitle(movieId, "N/A-"+movieId));
+      this.ratings.clear();
+      this.ratings.add(score);
+      ctx.write(this.movieTitle, this.ratings);
     }
   }
 }
@@ -25,26 +25,26 @@
  */
 package com.acmutv.moviedoop.query1.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
 import com.acmutv.moviedoop.query1.Query1_1;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_1}.
- * It emits (movieId,rating) where rating is a score attributed with timestamp greater or equal to
- * the `movieRatingTimestampLowerBound`.
+ * It emits (movieId,ratings) where ratings is the histogram of a score attributed with timestamp
+ * greater or equal to the `movieRatingTimestampLowerBound`.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class FilterRatingsByTimestampMapper extends Mapper<Object,Text,LongWritable,DoubleWritable> {
+public class FilterRatingsByTimestampMapper extends Mapper<Object,Text,LongWritable,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -62,9 +62,14 @@ public class FilterRatingsByTimestampMapper extends Mapper<Object,Text,LongWrita
   private LongWritable movieId = new LongWritable();
 
   /**
-   * The movie rating to emit.
+   * The histogram (ratings) to emit.
    */
-  private DoubleWritable movieRating = new DoubleWritable();
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
 
   /**
    * Configures the mapper.
@@ -86,15 +91,16 @@ public class FilterRatingsByTimestampMapper extends Mapper<Object,Text,LongWrita
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
       this.movieId.set(movieId);
-      this.movieRating.set(score);
-      ctx.write(this.movieId, this.movieRating);
+      this.ratings.clear();
+      this.ratings.add(score);
+      ctx.write(this.movieId, this.ratings);
     }
   }
 }
@@ -26,14 +26,13 @@
 package com.acmutv.moviedoop.query1.map;
 
 import com.acmutv.moviedoop.query1.Query1_1;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query1_1}.
@@ -60,6 +59,11 @@ public class MoviesJMapper extends Mapper<Object,Text,LongWritable,Text> {
    */
   private Text movieTitle = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * The mapping routine.
    *
@@ -70,9 +74,9 @@ public class MoviesJMapper extends Mapper<Object,Text,LongWritable,Text> {
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> movie = RecordParser.parse(value.toString(), new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-    this.movieId.set(Long.valueOf(movie.get("id")));
-    this.movieTitle.set("M" + movie.get("title"));
+    this.tokenizer.tokenize(value);
+    this.movieId.set(this.tokenizer.getLong(0));
+    this.movieTitle.set("M" + this.tokenizer.getString(1));
     ctx.write(this.movieId, this.movieTitle);
   }
 }
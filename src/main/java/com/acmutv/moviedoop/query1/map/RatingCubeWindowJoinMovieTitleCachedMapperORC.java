@@ -0,0 +1,188 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query1.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.struct.RatingCubeWindow;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.query1.Query1_7;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * The mapper for jobs in: {@link Query1_7}.
+ * It reads the rating cube and emits (movieTitle,avgRating) where avgRating is the average rating
+ * in the period [T1,inf) and is greater or equal to `movieAverageRatingLowerBound`.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeWindowJoinMovieTitleCachedMapperORC extends Mapper<NullWritable,VectorizedRowBatch,Text,DoubleWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingCubeWindowJoinMovieTitleCachedMapperORC.class);
+
+  /**
+   * The cached index movieId->movieTitle.
+   */
+  private MovieIndex movies;
+
+  /**
+   * The lower bound for the movie average rating.
+   */
+  private double movieAverageRatingLowerBound;
+
+  /**
+   * The window over the period [T1,inf).
+   */
+  private RatingCubeWindow window;
+
+  /**
+   * The current movieId.
+   */
+  private long movieId;
+
+  /**
+   * True if the current movie has been set.
+   */
+  private boolean started = false;
+
+  /**
+   * The cumulative histogram of the current row.
+   */
+  private RatingHistogramWritable cumulative = new RatingHistogramWritable();
+
+  /**
+   * The histogram of ratings in the period.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The title to emit.
+   */
+  private Text movieTitle = new Text();
+
+  /**
+   * The average rating to emit.
+   */
+  private DoubleWritable movieAverageRating = new DoubleWritable();
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
+   */
+  protected void setup(Context ctx) throws IOException {
+    this.movieAverageRatingLowerBound =
+        Double.valueOf(ctx.getConfiguration().get("moviedoop.average.rating.lb"));
+    LOG.debug("[SETUP] moviedoop.average.rating.lb: " + this.movieAverageRatingLowerBound);
+    TimeBucket granularity = TimeBucket.parse(ctx.getConfiguration().get("moviedoop.cube.granularity"));
+    long movieRatingTimestampLowerBound =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb"));
+    this.window = new RatingCubeWindow(granularity.of(movieRatingTimestampLowerBound), Long.MAX_VALUE);
+    LOG.debug("[SETUP] moviedoop.cube.granularity: " + granularity);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + movieRatingTimestampLowerBound);
+    this.movies = MovieIndex.open(ctx);
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch (movieId,bucket,ratings).
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[0];
+    ColumnVector buckets = value.cols[1];
+    BytesColumnVector histograms = (BytesColumnVector) value.cols[2];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      if (!this.started || movieId != this.movieId) {
+        if (this.started) {
+          this.emit(ctx);
+        }
+        this.window.clear();
+        this.movieId = movieId;
+        this.started = true;
+      }
+      int h = histograms.isRepeating ? 0 : row;
+      this.cumulative.readFrom(histograms.vector[h], histograms.start[h], histograms.length[h]);
+      this.window.accept(ColumnVectorParser.getLong(buckets, row), this.cumulative);
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (this.started) {
+      this.emit(ctx);
+    }
+  }
+
+  /**
+   * Emits the current movie, if its average rating in the period reaches the lower bound.
+   *
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void emit(Context ctx) throws IOException, InterruptedException {
+    this.window.get(this.ratings);
+    if (this.ratings.getCount() == 0) {
+      return;
+    }
+    double avgRating = this.ratings.getAverage();
+    if (avgRating >= this.movieAverageRatingLowerBound) {
+      this.movieTitle.set(this.movies.getTitle(this.movieId, "N/A-" + this.movieId));
+      this.movieAverageRating.set(avgRating);
+      ctx.write(this.movieTitle, this.movieAverageRating);
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query1.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.query1.Query1_8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.log4j.Logger;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+
+import java.io.IOException;
+
+/**
+ * The mapper for jobs in: {@link Query1_8}.
+ * It merge-joins a bucket of ratings with the matching bucket of movies, both sorted by movieId,
+ * and emits (title,rating) where rating is the average rating of the movie, computed on scores
+ * attributed with timestamp greater or equal to the `movieRatingTimestampLowerBound`, and greater
+ * or equal to the `movieAverageRatingLowerBound`.
+ * Only the ratings of the current movie and a batch of movies are held in memory.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingsMergeJoinMovieTitleMapperORC extends Mapper<NullWritable,VectorizedRowBatch,Text,DoubleWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingsMergeJoinMovieTitleMapperORC.class);
+
+  /**
+   * The lower bound for the movie average rating.
+   */
+  private double movieAverageRatingLowerBound;
+
+  /**
+   * The lower bound for the movie rating timestamp.
+   */
+  private long movieRatingTimestampLowerBound;
+
+  /**
+   * The movie title to emit.
+   */
+  private Text movieTitle = new Text();
+
+  /**
+   * The movie average rating to emit.
+   */
+  private DoubleWritable movieAverageRating = new DoubleWritable();
+
+  /**
+   * The movieId of the ratings being aggregated.
+   */
+  private long movieId;
+
+  /**
+   * The histogram of the ratings of the current movie.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The reader of the matching bucket of movies; null if exhausted.
+   */
+  private RecordReader movies;
+
+  /**
+   * The current batch of movies.
+   */
+  private VectorizedRowBatch movieBatch;
+
+  /**
+   * The current row in the batch of movies.
+   */
+  private int movieRow = 0;
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the bucket of movies cannot be opened.
+   */
+  protected void setup(Context ctx) throws IOException {
+    Configuration conf = ctx.getConfiguration();
+    this.movieAverageRatingLowerBound = Double.valueOf(conf.get("moviedoop.average.rating.lb"));
+    LOG.debug("[SETUP] moviedoop.average.rating.lb: " + this.movieAverageRatingLowerBound);
+    this.movieRatingTimestampLowerBound = DateParser.toSeconds(conf.get("moviedoop.average.rating.timestamp.lb"));
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + this.movieRatingTimestampLowerBound);
+
+    Path bucket = new Path(conf.get("moviedoop.bucket.movies"), ((FileSplit) ctx.getInputSplit()).getPath().getName());
+    LOG.debug("[SETUP] moviedoop.bucket.movies: " + bucket);
+    FileSystem fs = bucket.getFileSystem(conf);
+    if (fs.exists(bucket) && fs.getFileStatus(bucket).getLen() > 0) {
+      Reader reader = OrcFile.createReader(bucket, OrcFile.readerOptions(conf).filesystem(fs));
+      this.movies = reader.rows(OrcPushdown.project(reader, 0, 1));
+      this.movieBatch = reader.getSchema().createRowBatch();
+    }
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written or the bucket is not sorted.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    ColumnVector timestamps = value.cols[3];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long timestamp = ColumnVectorParser.getLong(timestamps, row);
+      if (timestamp >= this.movieRatingTimestampLowerBound) {
+        long movieId = ColumnVectorParser.getLong(movieIds, row);
+        if (!this.ratings.isEmpty() && movieId != this.movieId) {
+          if (movieId < this.movieId) {
+            throw new IOException("Ratings bucket not sorted by movieId: " + movieId + " after " + this.movieId);
+          }
+          this.emit(ctx);
+        }
+        this.movieId = movieId;
+        this.ratings.add(ColumnVectorParser.getDouble(scores, row));
+      }
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (!this.ratings.isEmpty()) {
+      this.emit(ctx);
+    }
+    if (this.movies != null) {
+      this.movies.close();
+    }
+  }
+
+  /**
+   * Emits the current movie, if its average rating is over the lower bound, and clears its ratings.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void emit(Context ctx) throws IOException, InterruptedException {
+    double avgRating = this.ratings.getAverage();
+    this.ratings.clear();
+    if (avgRating >= this.movieAverageRatingLowerBound) {
+      String movieTitle = this.seek(this.movieId);
+      this.movieTitle.set(movieTitle != null ? movieTitle : "N/A-" + this.movieId);
+      this.movieAverageRating.set(avgRating);
+      ctx.write(this.movieTitle, this.movieAverageRating);
+    }
+  }
+
+  /**
+   * Advances the movies up to {@code movieId}, which must not be lower than previous ones.
+   *
+   * @param movieId the movie id.
+   * @return the title of the movie; null if the movie is not in the bucket.
+   * @throws IOException when the bucket of movies cannot be read.
+   */
+  private String seek(long movieId) throws IOException {
+    while (this.movies != null) {
+      if (this.movieRow >= this.movieBatch.size) {
+        if (!this.movies.nextBatch(this.movieBatch)) {
+          this.movies.close();
+          this.movies = null;
+          return null;
+        }
+        this.movieRow = 0;
+        continue;
+      }
+      long id = ColumnVectorParser.getLong(this.movieBatch.cols[0], this.movieRow);
+      if (id > movieId) {
+        return null;
+      } else if (id == movieId) {
+        BytesColumnVector titles = (BytesColumnVector) this.movieBatch.cols[1];
+        return ColumnVectorParser.isNull(titles, this.movieRow) ? "" : titles.toString(this.movieRow);
+      }
+      this.movieRow++;
+    }
+    return null;
+  }
+}
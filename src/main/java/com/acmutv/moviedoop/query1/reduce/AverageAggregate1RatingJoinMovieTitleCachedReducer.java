@@ -25,22 +25,16 @@
  */
 package com.acmutv.moviedoop.query1.reduce;
 
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import com.acmutv.moviedoop.common.util.RecordParser;
-import org.apache.hadoop.fs.Path;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -57,9 +51,9 @@ public class AverageAggregate1RatingJoinMovieTitleCachedReducer extends Reducer<
   private static final Logger LOG = Logger.getLogger(AverageAggregate1RatingJoinMovieTitleCachedReducer.class);
 
   /**
-   * The cached map (movieId,movieTitle).
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The lower bound for the movie average rating.
@@ -76,34 +70,22 @@ public class AverageAggregate1RatingJoinMovieTitleCachedReducer extends Reducer<
    */
   private DoubleWritable movieAverageRating = new DoubleWritable();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
+  protected void setup(Context ctx) throws IOException {
     this.movieAverageRatingLowerBound =
         Double.valueOf(ctx.getConfiguration().get("moviedoop.average.rating.lb"));
 
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String movieTitle = movie.get("title");
-          this.movieIdToMovieTitle.put(movieId, movieTitle);
-        }
-        br.close();
-      }
-    } catch (IOException exc) {
-      LOG.error(exc.getMessage());
-      exc.printStackTrace();
-    }
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -120,9 +102,9 @@ public class AverageAggregate1RatingJoinMovieTitleCachedReducer extends Reducer<
     double sum = 0.0;
 
     for (Text value : values) {
-      Map<String,String> parsed = RecordParser.parse(value.toString(), new String[]{"score","repetitions"}, RecordParser.DELIMITER);
-      double score = Double.valueOf(parsed.get("score"));
-      long repetitions = Long.valueOf(parsed.get("repetitions"));
+      this.tokenizer.tokenize(value);
+      double score = this.tokenizer.getDouble(0);
+      long repetitions = this.tokenizer.getLong(1);
       sum += (score * repetitions);
       num += repetitions;
     }
@@ -130,7 +112,7 @@ public class AverageAggregate1RatingJoinMovieTitleCachedReducer extends Reducer<
     double avgRating = sum / num;
 
     if (avgRating >= this.movieAverageRatingLowerBound) {
-      this.movieTitle.set(this.movieIdToMovieTitle.getOrDefault(key.get(), "N/A-"+key.get()));
+      this.movieTitle.set(this.movies.getTitle(key.get(), "N/A-"+key.get()));
       this.movieAverageRating.set(avgRating);
       ctx.write(this.movieTitle, this.movieAverageRating);
     }
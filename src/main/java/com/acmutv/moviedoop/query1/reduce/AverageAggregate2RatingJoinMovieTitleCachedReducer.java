@@ -25,22 +25,16 @@
  */
 package com.acmutv.moviedoop.query1.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_5;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_5} job.
@@ -49,7 +43,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AverageAggregate2RatingJoinMovieTitleCachedReducer extends Reducer<LongWritable,Text,Text,DoubleWritable> {
+public class AverageAggregate2RatingJoinMovieTitleCachedReducer extends Reducer<LongWritable,RatingHistogramWritable,Text,DoubleWritable> {
 
   /**
    * The logger.
@@ -57,9 +51,9 @@ public class AverageAggregate2RatingJoinMovieTitleCachedReducer extends Reducer<
   private static final Logger LOG = Logger.getLogger(AverageAggregate2RatingJoinMovieTitleCachedReducer.class);
 
   /**
-   * The cached map (movieId,movieTitle).
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The lower bound for the movie average rating.
@@ -76,34 +70,22 @@ public class AverageAggregate2RatingJoinMovieTitleCachedReducer extends Reducer<
    */
   private DoubleWritable movieAverageRating = new DoubleWritable();
 
+  /**
+   * The merged histogram of ratings.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
   /**
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
+  protected void setup(Context ctx) throws IOException {
     this.movieAverageRatingLowerBound =
         Double.valueOf(ctx.getConfiguration().get("moviedoop.average.rating.lb"));
 
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String movieTitle = movie.get("title");
-          this.movieIdToMovieTitle.put(movieId, movieTitle);
-        }
-        br.close();
-      }
-    } catch (IOException exc) {
-      LOG.error(exc.getMessage());
-      exc.printStackTrace();
-    }
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -115,25 +97,17 @@ public class AverageAggregate2RatingJoinMovieTitleCachedReducer extends Reducer<
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(LongWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
-    long num = 0L;
-    double sum = 0.0;
-
-    for (Text value : values) {
-      String pairs[] = value.toString().split(",", -1);
-      for (String pair : pairs) {
-        String elems[] = pair.split("=", -1);
-        double score = Double.valueOf(elems[0]);
-        long repetitions = Long.valueOf(elems[1]);
-        sum += (score * repetitions);
-        num += repetitions;
-      }
+  public void reduce(LongWritable key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings.clear();
+
+    for (RatingHistogramWritable value : values) {
+      this.ratings.merge(value);
     }
 
-    double avgRating = sum / num;
+    double avgRating = this.ratings.getAverage();
 
     if (avgRating >= this.movieAverageRatingLowerBound) {
-      this.movieTitle.set(this.movieIdToMovieTitle.getOrDefault(key.get(), "N/A-"+key.get()));
+      this.movieTitle.set(this.movies.getTitle(key.get(), "N/A-"+key.get()));
       this.movieAverageRating.set(avgRating);
       ctx.write(this.movieTitle, this.movieAverageRating);
     }
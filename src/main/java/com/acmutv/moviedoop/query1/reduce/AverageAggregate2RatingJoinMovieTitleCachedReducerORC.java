@@ -25,26 +25,18 @@
  */
 package com.acmutv.moviedoop.query1.reduce;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
-import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
-import org.apache.orc.OrcFile;
-import org.apache.orc.Reader;
-import org.apache.orc.RecordReader;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -53,17 +45,18 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AverageAggregate2RatingJoinMovieTitleCachedReducerORC extends Reducer<OrcKey,OrcValue,Text,DoubleWritable> {
+public class AverageAggregate2RatingJoinMovieTitleCachedReducerORC extends Reducer<OrcKey,RatingHistogramWritable,Text,DoubleWritable> {
 
   /**
    * The logger.
    */
   private static final Logger LOG = Logger.getLogger(AverageAggregate2RatingJoinMovieTitleCachedReducerORC.class);
 
+
   /**
-   * The cached map (movieId,movieTitle).
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The lower bound for the movie average rating.
@@ -80,36 +73,22 @@ public class AverageAggregate2RatingJoinMovieTitleCachedReducerORC extends Reduc
    */
   private DoubleWritable movieAverageRating = new DoubleWritable();
 
+  /**
+   * The merged histogram of ratings.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
   /**
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
+  protected void setup(Context ctx) throws IOException {
     this.movieAverageRatingLowerBound =
         Double.valueOf(ctx.getConfiguration().get("moviedoop.average.rating.lb"));
     LOG.debug("[SETUP] moviedoop.average.rating.lb: " + this.movieAverageRatingLowerBound);
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        Reader reader = OrcFile.createReader(path, new OrcFile.ReaderOptions(ctx.getConfiguration()));
-        RecordReader rows = reader.rows();
-        VectorizedRowBatch batch = reader.getSchema().createRowBatch();
-        while (rows.nextBatch(batch)) {
-          BytesColumnVector cvMovieId = (BytesColumnVector) batch.cols[0];
-          BytesColumnVector cvMovieTitle = (BytesColumnVector) batch.cols[1];
-          for (int r = 0; r < batch.size; r++) {
-            long movieId = Long.valueOf(cvMovieId.toString(r));
-            String movieTitle = cvMovieTitle.toString(r);
-            this.movieIdToMovieTitle.put(movieId, movieTitle);
-          }
-        }
-        rows.close();
-      }
-    } catch (IOException exc) {
-      LOG.error(exc.getMessage());
-      exc.printStackTrace();
-    }
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -121,27 +100,18 @@ public class AverageAggregate2RatingJoinMovieTitleCachedReducerORC extends Reduc
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(OrcKey key, Iterable<OrcValue> values, Context ctx) throws IOException, InterruptedException {
-    long num = 0L;
-    double sum = 0.0;
-
-    for (OrcValue orcValue : values) {
-      String value = ((Text)((OrcStruct) orcValue.value).getFieldValue(0)).toString();
-      String pairs[] = value.split(",", -1);
-      for (String pair : pairs) {
-        String elems[] = pair.split("=", -1);
-        double score = Double.valueOf(elems[0]);
-        long repetitions = Long.valueOf(elems[1]);
-        sum += (score * repetitions);
-        num += repetitions;
-      }
+  public void reduce(OrcKey key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings.clear();
+
+    for (RatingHistogramWritable value : values) {
+      this.ratings.merge(value);
     }
 
-    double avgRating = sum / num;
+    double avgRating = this.ratings.getAverage();
 
     if (avgRating >= this.movieAverageRatingLowerBound) {
       long movieId = ((LongWritable) ((OrcStruct) key.key).getFieldValue(0)).get();
-      String movieTitle = this.movieIdToMovieTitle.getOrDefault(movieId, "N/A-"+movieId);
+      String movieTitle = this.movies.getTitle(movieId, "N/A-"+movieId);
       this.movieTitle.set(movieTitle);
       this.movieAverageRating.set(avgRating);
       ctx.write(this.movieTitle, this.movieAverageRating);
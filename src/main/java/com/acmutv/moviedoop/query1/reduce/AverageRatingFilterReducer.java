@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query1.reduce;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
 import com.acmutv.moviedoop.query1.Query1_2;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -42,7 +43,7 @@ import java.io.IOException;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AverageRatingFilterReducer extends Reducer<Text,DoubleWritable,Text,DoubleWritable> {
+public class AverageRatingFilterReducer extends Reducer<Text,RatingHistogramWritable,Text,DoubleWritable> {
 
   /**
    * The logger.
@@ -64,6 +65,11 @@ public class AverageRatingFilterReducer extends Reducer<Text,DoubleWritable,Text
    */
   private DoubleWritable movieAverageRating = new DoubleWritable();
 
+  /**
+   * The merged histogram of ratings for a movie.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
   /**
    * Configures the reducer.
    *
@@ -84,17 +90,13 @@ public class AverageRatingFilterReducer extends Reducer<Text,DoubleWritable,Text
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(Text key, Iterable<DoubleWritable> values, Context ctx) throws IOException, InterruptedException {
-    long num = 0L;
-    double sum = 0.0;
-
-    for (DoubleWritable value : values) {
-      double rating = value.get();
-      sum += rating;
-      num++;
+  public void reduce(Text key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings.clear();
+    for (RatingHistogramWritable value : values) {
+      this.ratings.merge(value);
     }
 
-    double avgRating = sum / num;
+    double avgRating = this.ratings.getAverage();
 
     if (avgRating >= this.movieAverageRatingLowerBound) {
       this.movieTitle.set(key.toString());
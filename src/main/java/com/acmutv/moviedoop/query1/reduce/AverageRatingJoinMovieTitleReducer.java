@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query1.reduce;
 
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query1.Query1_1;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -38,6 +39,7 @@ import java.io.IOException;
  * The reducer for the {@link Query1_1} job.
  * It joins (movieId,rating) and (movieId,movieTitle), and emits (movieTitle,avgRating)
  * where avgRating is the average rating greater than or equal to `movieAverageRatingLowerBound`.
+ * Ratings may have been merged by {@link RatingJoinMovieTitleCombiner}.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
@@ -65,6 +67,11 @@ public class AverageRatingJoinMovieTitleReducer extends Reducer<LongWritable,Tex
    */
   private DoubleWritable movieAverageRating = new DoubleWritable();
 
+  /**
+   * The tokenizer for ratings.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
@@ -92,9 +99,11 @@ public class AverageRatingJoinMovieTitleReducer extends Reducer<LongWritable,Tex
 
     for (Text value : values) {
       if (value.charAt(0) == 'R') { // rating
-        double rating = Double.valueOf(value.toString().substring(1));
-        sum += rating;
-        num++;
+        this.tokenizer.tokenize(value.getBytes(), 1, value.getLength() - 1);
+        double rating = this.tokenizer.getDouble(0);
+        long repetitions = (this.tokenizer.size() > 1) ? this.tokenizer.getLong(1) : 1L;
+        sum += (rating * repetitions);
+        num += repetitions;
       } else if (value.charAt(0) == 'M') { // movie
         String movieTitle = value.toString().substring(1);
         this.movieTitle.set(movieTitle);
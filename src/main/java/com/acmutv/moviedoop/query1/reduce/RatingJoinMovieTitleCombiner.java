@@ -0,0 +1,94 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query1.reduce;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
+import com.acmutv.moviedoop.query1.Query1_1;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+
+/**
+ * The combiner for the {@link Query1_1} job.
+ * It merges ratings (R{score}[,{repetitions}]) into (movieId,R{score},{repetitions}) for every
+ * distinct score, and forwards movies (M{title}) as they are.
+ * Merging is associative, so it can be applied any number of times, across spills and merges.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingJoinMovieTitleCombiner extends Reducer<LongWritable,Text,LongWritable,Text> {
+
+  /**
+   * The merged histogram of ratings.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The tokenizer for ratings.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The rating to emit.
+   */
+  private Text tuple = new Text();
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(LongWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings.clear();
+    for (Text value : values) {
+      if (value.charAt(0) == 'R') { // rating
+        this.tokenizer.tokenize(value.getBytes(), 1, value.getLength() - 1);
+        double score = this.tokenizer.getDouble(0);
+        long repetitions = (this.tokenizer.size() > 1) ? this.tokenizer.getLong(1) : 1L;
+        this.ratings.add(score, repetitions);
+      } else { // movie
+        ctx.write(key, value);
+      }
+    }
+    for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+      long repetitions = this.ratings.getRepetitions(b);
+      if (repetitions == 0) {
+        continue;
+      }
+      this.tuple.set("R" + RatingHistogramWritable.score(b) + "," + repetitions);
+      ctx.write(key, this.tuple);
+    }
+  }
+}
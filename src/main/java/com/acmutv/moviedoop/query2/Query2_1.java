@@ -25,14 +25,17 @@
  */
 package com.acmutv.moviedoop.query2;
 
+import com.acmutv.moviedoop.common.model.MomentsWritable;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.reduce.MomentsCombiner;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query2.map.GenresIdentityMapper;
 import com.acmutv.moviedoop.query2.map.RatingsMapper;
 import com.acmutv.moviedoop.query2.reduce.GenresReducer;
 import com.acmutv.moviedoop.query2.reduce.RatingJoinGenreCachedReducer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -100,6 +103,7 @@ public class Query2_1 extends Configured implements Tool {
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
     config.unset("moviedoop.ratings.reduce.cardinality");
     config.unset("moviedoop.average.reduce.cardinality");
+    final boolean moviesFilter = config.getBoolean("moviedoop.movies.filter", true);
 
     // CONFIGURATION RESUME
     System.out.println("############################################################################");
@@ -111,6 +115,7 @@ public class Query2_1 extends Configured implements Tool {
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (ratings): " + ratingsReduceCardinality);
     System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
+    System.out.println("Movies Filter: " + moviesFilter);
     System.out.println("############################################################################");
 
     /* *********************************************************************************************
@@ -121,14 +126,16 @@ public class Query2_1 extends Configured implements Tool {
     Job job = Job.getInstance(config, PROGRAM_NAME+"_STEP1");
     job.setJarByClass(Query2_1.class);
 
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+    if (moviesFilter) {
+      job.addCacheFile(MovieIndexJob.ensureGenresFilter(config, inputMovies).toUri());
     }
     TextInputFormat.addInputPath(job, inputRatings);
 
     job.setMapperClass(RatingsMapper.class);
     job.setMapOutputKeyClass(LongWritable.class);
-    job.setMapOutputValueClass(DoubleWritable.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     job.setReducerClass(RatingJoinGenreCachedReducer.class);
     job.setNumReduceTasks(ratingsReduceCardinality);
@@ -153,7 +160,8 @@ public class Query2_1 extends Configured implements Tool {
 
       job2.setMapperClass(GenresIdentityMapper.class);
       job2.setMapOutputKeyClass(Text.class);
-      job2.setMapOutputValueClass(DoubleWritable.class);
+      job2.setMapOutputValueClass(MomentsWritable.class);
+      job2.setCombinerClass(MomentsCombiner.class);
 
       job2.setReducerClass(GenresReducer.class);
       job2.setNumReduceTasks(averageReduceCardinality);
@@ -25,14 +25,17 @@
  */
 package com.acmutv.moviedoop.query2;
 
+import com.acmutv.moviedoop.common.model.MomentsWritable;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.reduce.MomentsCombiner;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query2.map.GenresIdentityMapper;
 import com.acmutv.moviedoop.query2.map.RatingsAggregateMoviesAggregateCachedMapper;
 import com.acmutv.moviedoop.query2.reduce.AggregateRatingAggregateMovieJoinGenreCachedReducer;
 import com.acmutv.moviedoop.query2.reduce.GenresReducer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
@@ -74,6 +77,11 @@ public class Query2_3 extends Configured implements Tool {
    */
   private static final int AVERAGE_REDUCE_CARDINALITY = 1;
 
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
   @Override
   public int run(String[] args) throws Exception {
     if (args.length < 3) {
@@ -90,12 +98,14 @@ public class Query2_3 extends Configured implements Tool {
 
     // CONTEXT CONFIGURATION
     Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
 
     // OTHER CONFIGURATION
     final int ratingsReduceCardinality = Integer.valueOf(config.get("moviedoop.ratings.reduce.cardinality", String.valueOf(RATING_REDUCE_CARDINALITY)));
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
     config.unset("moviedoop.ratings.reduce.cardinality");
     config.unset("moviedoop.average.reduce.cardinality");
+    final boolean moviesFilter = config.getBoolean("moviedoop.movies.filter", true);
 
     // USER PARAMETERS RESUME
     System.out.println("############################################################################");
@@ -104,23 +114,27 @@ public class Query2_3 extends Configured implements Tool {
     System.out.println("Input Ratings: " + inputRatings);
     System.out.println("Input Movies: " + inputMovies);
     System.out.println("Output: " + output);
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (ratings): " + ratingsReduceCardinality);
     System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
+    System.out.println("Movies Filter: " + moviesFilter);
     System.out.println("############################################################################");
 
     // JOB1 CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME+"_STEP1");
     job.setJarByClass(Query2_3.class);
 
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+    if (moviesFilter) {
+      job.addCacheFile(MovieIndexJob.ensureGenresFilter(config, inputMovies).toUri());
     }
     TextInputFormat.addInputPath(job, inputRatings);
 
     job.setMapperClass(RatingsAggregateMoviesAggregateCachedMapper.class);
     job.setMapOutputKeyClass(LongWritable.class);
-    job.setMapOutputValueClass(Text.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     job.setReducerClass(AggregateRatingAggregateMovieJoinGenreCachedReducer.class);
     job.setNumReduceTasks(ratingsReduceCardinality);
@@ -145,7 +159,8 @@ public class Query2_3 extends Configured implements Tool {
 
     job2.setMapperClass(GenresIdentityMapper.class);
     job2.setMapOutputKeyClass(Text.class);
-    job2.setMapOutputValueClass(DoubleWritable.class);
+    job2.setMapOutputValueClass(MomentsWritable.class);
+    job2.setCombinerClass(MomentsCombiner.class);
 
     job2.setReducerClass(GenresReducer.class);
     job2.setNumReduceTasks(averageReduceCardinality);
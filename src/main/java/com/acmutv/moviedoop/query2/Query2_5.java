@@ -25,14 +25,18 @@
  */
 package com.acmutv.moviedoop.query2;
 
-import com.acmutv.moviedoop.query2.map.AggregateGenresIdentityMapper2ORC;
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query2.map.GenresAggregateMapper2ORC;
 import com.acmutv.moviedoop.query2.map.RatingsAggregateCachedMapper2Orc;
 import com.acmutv.moviedoop.query2.reduce.AggregateGenresReducerORC;
 import com.acmutv.moviedoop.query2.reduce.AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.fs.FileStatus;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -42,7 +46,6 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 import org.apache.orc.mapreduce.OrcInputFormat;
 import org.apache.orc.mapreduce.OrcOutputFormat;
 
@@ -73,6 +76,16 @@ public class Query2_5 extends Configured implements Tool {
    */
   private static final int AVERAGE_REDUCE_CARDINALITY = 1;
 
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
+  /**
+   * The rating columns read by the query (movieId, rating).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2};
+
   @Override
   public int run(String[] args) throws Exception {
     if (args.length < 3) {
@@ -89,12 +102,14 @@ public class Query2_5 extends Configured implements Tool {
 
     // CONTEXT CONFIGURATION
     Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
 
     // OTHER CONFIGURATION
     final int ratingsReduceCardinality = Integer.valueOf(config.get("moviedoop.ratings.reduce.cardinality", String.valueOf(RATING_REDUCE_CARDINALITY)));
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
     config.unset("moviedoop.ratings.reduce.cardinality");
     config.unset("moviedoop.average.reduce.cardinality");
+    final boolean moviesFilter = config.getBoolean("moviedoop.movies.filter", true);
 
     // USER PARAMETERS RESUME
     System.out.println("############################################################################");
@@ -103,9 +118,11 @@ public class Query2_5 extends Configured implements Tool {
     System.out.println("Input Ratings: " + inputRatings);
     System.out.println("Input Movies: " + inputMovies);
     System.out.println("Output: " + output);
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (ratings): " + ratingsReduceCardinality);
     System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
+    System.out.println("Movies Filter: " + moviesFilter);
     System.out.println("############################################################################");
 
     /* *********************************************************************************************
@@ -115,20 +132,22 @@ public class Query2_5 extends Configured implements Tool {
     // JOB CONFIGURATION
     Job job = Job.getInstance(config, PROGRAM_NAME+"_STEP1");
     job.setJarByClass(Query2_5.class);
-    for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-      job.addCacheFile(status.getPath().toUri());
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+    if (moviesFilter) {
+      job.addCacheFile(MovieIndexJob.ensureGenresFilter(config, inputMovies).toUri());
     }
 
     // MAP CONFIGURATION
-    job.setInputFormatClass(OrcInputFormat.class);
-    OrcInputFormat.addInputPath(job, inputRatings);
+    job.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(job, inputRatings);
+    OrcPushdown.setColumns(job.getConfiguration(), RATING_COLUMNS);
     job.setMapperClass(RatingsAggregateCachedMapper2Orc.class);
     job.setMapOutputKeyClass(OrcKey.class);
-    job.setMapOutputValueClass(OrcValue.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
     job.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
             RatingsAggregateCachedMapper2Orc.ORC_SCHEMA_KEY.toString());
-    job.getConfiguration().setIfUnset("orc.mapred.map.output.value.schema",
-            RatingsAggregateCachedMapper2Orc.ORC_SCHEMA_VALUE.toString());
+    job.setSortComparatorClass(OrcKeyComparator.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
 
     // REDUCE CONFIGURATION
     job.setReducerClass(AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc.class);
@@ -155,13 +174,13 @@ public class Query2_5 extends Configured implements Tool {
       // MAP CONFIGURATION
       job2.setInputFormatClass(OrcInputFormat.class);
       OrcInputFormat.addInputPath(job2, staging);
-      job2.setMapperClass(AggregateGenresIdentityMapper2ORC.class);
+      job2.setMapperClass(GenresAggregateMapper2ORC.class);
       job2.setMapOutputKeyClass(OrcKey.class);
-      job2.setMapOutputValueClass(OrcValue.class);
+      job2.setMapOutputValueClass(RatingHistogramWritable.class);
       job2.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
-          AggregateGenresIdentityMapper2ORC.ORC_SCHEMA_KEY.toString());
-      job2.getConfiguration().setIfUnset("orc.mapred.map.output.value.schema",
-          AggregateGenresIdentityMapper2ORC.ORC_SCHEMA_VALUE.toString());
+          GenresAggregateMapper2ORC.ORC_SCHEMA_KEY.toString());
+      job2.setSortComparatorClass(OrcKeyComparator.class);
+      job2.setCombinerClass(Aggregate2RatingCombiner.class);
 
       // REDUCE CONFIGURATION
       job2.setReducerClass(AggregateGenresReducerORC.class);
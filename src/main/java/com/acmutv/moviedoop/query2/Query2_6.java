@@ -0,0 +1,158 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query2;
+
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query2.map.RatingsAggregateJoinGenresAggregateCachedMapperORC;
+import com.acmutv.moviedoop.query2.reduce.AggregateGenresReducerORC;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.orc.mapred.OrcKey;
+
+/**
+ * A map/reduce program that returns for each genre of the movies with the follow statistics:
+ * average and standard deviation of rating.
+ * The program runs a single job: mappers aggregate ratings by movie, expand every movie histogram
+ * into its genres (replication join, distributed cache on map) and aggregate them by genre, so that
+ * reducers only merge a few partial aggregates per genre.
+ * The program leverages aggregations: type 1, type 2 and (type 3); and ORC serialization.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Query2_6 extends Configured implements Tool {
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "Query2_6";
+
+  /**
+   * The default number of reducers for the job of genres ratings average computation.
+   */
+  private static final int AVERAGE_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
+  /**
+   * The rating columns read by the query (movieId, rating).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2};
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // USER PARAMETERS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+    final Path output = new Path(args[2]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
+
+    // OTHER CONFIGURATION
+    final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
+    config.unset("moviedoop.average.reduce.cardinality");
+
+    // USER PARAMETERS RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings);
+    System.out.println("Input Movies: " + inputMovies);
+    System.out.println("Output: " + output);
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Reduce Cardinality (average): " + averageReduceCardinality);
+    System.out.println("############################################################################");
+
+    /* *********************************************************************************************
+     * GENRE'S STATISTICS COMPUTING
+     **********************************************************************************************/
+
+    // JOB CONFIGURATION
+    Job job = Job.getInstance(config, PROGRAM_NAME);
+    job.setJarByClass(Query2_6.class);
+    job.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+
+    // MAP CONFIGURATION
+    job.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(job, inputRatings);
+    OrcPushdown.setColumns(job.getConfiguration(), RATING_COLUMNS);
+    job.setMapperClass(RatingsAggregateJoinGenresAggregateCachedMapperORC.class);
+    job.setMapOutputKeyClass(OrcKey.class);
+    job.setMapOutputValueClass(RatingHistogramWritable.class);
+    job.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
+        RatingsAggregateJoinGenresAggregateCachedMapperORC.ORC_SCHEMA_KEY.toString());
+    job.setSortComparatorClass(OrcKeyComparator.class);
+    job.setCombinerClass(Aggregate2RatingCombiner.class);
+
+    // REDUCE CONFIGURATION
+    job.setReducerClass(AggregateGenresReducerORC.class);
+    job.setNumReduceTasks(averageReduceCardinality);
+
+    // OUTPUT CONFIGURATION
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(Text.class);
+    job.setOutputFormatClass(TextOutputFormat.class);
+    TextOutputFormat.setOutputPath(job, output);
+
+    // JOB EXECUTION
+    return job.waitForCompletion(true) ? 0 : 1;
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new Query2_6(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query2.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.query2.Query2_4;
+import com.acmutv.moviedoop.queryall.QueryAll;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mapper for jobs in: {@link Query2_4}, {@link QueryAll}.
+ * It merges the histograms of ratings by genre in memory, and emits (genre,ratings) once per genre
+ * when the task completes, so that every task shuffles as many partial aggregates as genres,
+ * regardless of how skewed genres are.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class GenresAggregateMapper extends Mapper<Text, RatingHistogramWritable, Text, RatingHistogramWritable> {
+
+  /**
+   * The maximum number of genres in the per-task genre table: when a new genre would exceed it, the
+   * table is spilled and cleared, so memory stays bounded even with unexpected genre cardinality.
+   * Shared by all the mappers aggregating ratings by genre.
+   */
+  public static final int MAX_GENRES = 1024;
+
+  /**
+   * The map genre->ratings.
+   */
+  private Map<Text,RatingHistogramWritable> genreToAggregateRatings = new HashMap<>();
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input value.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(Text key, RatingHistogramWritable value, Context ctx) throws IOException, InterruptedException {
+    RatingHistogramWritable ratings = this.genreToAggregateRatings.get(key);
+    if (ratings == null) {
+      if (this.genreToAggregateRatings.size() >= MAX_GENRES) {
+        this.flush(ctx);
+      }
+      ratings = new RatingHistogramWritable();
+      this.genreToAggregateRatings.put(new Text(key), ratings);
+    }
+    ratings.merge(value);
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+  }
+
+  /**
+   * Emits the aggregates in the table and clears it.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    for (Map.Entry<Text,RatingHistogramWritable> entry : this.genreToAggregateRatings.entrySet()) {
+      ctx.write(entry.getKey(), entry.getValue());
+    }
+    this.genreToAggregateRatings.clear();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query2.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.query2.Query2_5;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mapper for the {@link Query2_5} job.
+ * It merges the histograms of ratings by genre in memory, and emits (genre,ratings) once per genre
+ * when the task completes.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class GenresAggregateMapper2ORC extends Mapper<Object, OrcStruct, OrcKey, RatingHistogramWritable> {
+
+  /**
+   * The ORC schema for key.
+   */
+  public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<genre:string>");
+
+  /**
+   * The key ORC wrapper
+   */
+  private OrcKey keywrapper = new OrcKey();
+
+  /**
+   * The ORC struct for key.
+   */
+  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
+
+  /**
+   * The genre to emit.
+   */
+  private Text genre = (Text) keyStruct.getFieldValue(0);
+
+  /**
+   * The histogram {rating=repetitions,...,rating=repetitions} read from input.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The map genre->ratings.
+   */
+  private Map<Text,RatingHistogramWritable> genreToAggregateRatings = new HashMap<>();
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input value.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
+    Text genre = (Text) value.getFieldValue(0);
+    this.ratings.readFrom((BytesWritable) value.getFieldValue(1));
+    RatingHistogramWritable aggregate = this.genreToAggregateRatings.get(genre);
+    if (aggregate == null) {
+      if (this.genreToAggregateRatings.size() >= GenresAggregateMapper.MAX_GENRES) {
+        this.flush(ctx);
+      }
+      aggregate = new RatingHistogramWritable();
+      this.genreToAggregateRatings.put(new Text(genre), aggregate);
+    }
+    aggregate.merge(this.ratings);
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+  }
+
+  /**
+   * Emits the aggregates in the table and clears it.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    this.keywrapper.key = this.keyStruct;
+    for (Map.Entry<Text,RatingHistogramWritable> entry : this.genreToAggregateRatings.entrySet()) {
+      this.genre.set(entry.getKey());
+      ctx.write(this.keywrapper, entry.getValue());
+    }
+    this.genreToAggregateRatings.clear();
+  }
+}
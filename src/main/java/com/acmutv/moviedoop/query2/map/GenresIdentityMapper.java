@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query2.map;
 
+import com.acmutv.moviedoop.common.model.MomentsWritable;
 import com.acmutv.moviedoop.query2.Query2_2;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -34,13 +35,18 @@ import java.io.IOException;
 
 /**
  * The mapper for the {@link Query2_2} job.
- * It emits (movieId,'M'movieTitle).
+ * It emits (genre,moments) where moments are the moments of a genre rating.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class GenresIdentityMapper extends Mapper<Text, DoubleWritable, Text, DoubleWritable> {
+public class GenresIdentityMapper extends Mapper<Text, DoubleWritable, Text, MomentsWritable> {
+
+  /**
+   * The moments (rating) to emit.
+   */
+  private MomentsWritable moments = new MomentsWritable();
 
   /**
    * The mapping routine.
@@ -52,6 +58,8 @@ public class GenresIdentityMapper extends Mapper<Text, DoubleWritable, Text, Dou
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Text key, DoubleWritable value, Context ctx) throws IOException, InterruptedException {
-    ctx.write(key,value);
+    this.moments.clear();
+    this.moments.add(value.get());
+    ctx.write(key, this.moments);
   }
 }
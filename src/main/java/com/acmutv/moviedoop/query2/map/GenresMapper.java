@@ -26,13 +26,12 @@
 package com.acmutv.moviedoop.query2.map;
 
 import com.acmutv.moviedoop.query2.Query2_2;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for the {@link Query2_2} job.
@@ -55,6 +54,11 @@ public class GenresMapper extends Mapper<Object, Text, LongWritable, Text> {
    */
   private Text genreTitle = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * The mapping routine.
    *
@@ -65,9 +69,9 @@ public class GenresMapper extends Mapper<Object, Text, LongWritable, Text> {
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> movie = RecordParser.parse(value.toString(), new String[] {"id","title","genres"},",");
-    this.movieId.set(Long.valueOf(movie.get("id")));
-    this.genreTitle.set("G" + movie.get("genres"));
+    this.tokenizer.tokenize(value);
+    this.movieId.set(this.tokenizer.getLong(0));
+    this.genreTitle.set("G" + this.tokenizer.getString(2));
     ctx.write(this.movieId, genreTitle);
   }
 }
@@ -25,19 +25,22 @@
  */
 package com.acmutv.moviedoop.query2.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieFilter;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
 import com.acmutv.moviedoop.query2.Query2_2;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query2_2}.
@@ -48,7 +51,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RatingsAggregateCachedMapper2Orc extends Mapper<Object,OrcStruct,OrcKey,OrcValue> {
+public class RatingsAggregateCachedMapper2Orc extends Mapper<NullWritable,VectorizedRowBatch,OrcKey,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -61,60 +64,78 @@ public class RatingsAggregateCachedMapper2Orc extends Mapper<Object,OrcStruct,Or
   public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<id:bigint>");
 
   /**
-   * The ORC schema for value.
+   * The key ORC wrapper
    */
-  public static final TypeDescription ORC_SCHEMA_VALUE = TypeDescription.fromString("struct<ratings:string>");
+  private OrcKey keywrapper = new OrcKey();
 
   /**
-   * The key ORC wrapper
+   * The ORC struct for key.
    */
-  private OrcKey keywrapper = new OrcKey();
+  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
 
   /**
-   * The value ORC wrapper.
+   * The movieId to emit.
    */
-  private OrcValue valuewrapper = new OrcValue();
+  private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
 
   /**
-   * The ORC struct for key.
+   * The histogram {rating=repetitions,...,rating=repetitions} to emit.
    */
-  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
 
   /**
-   * The ORC struct for value.
+   * The map movieId->(score,repetitions).
    */
-  private OrcStruct valueStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_VALUE);
+  private MovieRatingAggregator movieIdToAggregateRatings = new MovieRatingAggregator();
 
   /**
-   * The movieId to emit.
+   * The cached filter of the movies with genres; null if the semi-join is disabled.
    */
-  private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
+  private MovieFilter movies;
 
   /**
-   * The tuple {rating=repetitions,...,rating=repetitions} to emit.
+   * The number of ratings dropped by the semi-join.
    */
-  private Text ratings = (Text) valueStruct.getFieldValue(0);
+  private long droppedRatings = 0L;
 
   /**
-   * The map movieId->(score,repetitions).
+   * Configures the mapper.
+   * @param ctx the job context.
+   * @throws IOException when the movie filter cannot be read.
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings = new HashMap<>();
+  protected void setup(Context ctx) throws IOException {
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings.setMaxMemoryBytes(aggregateBufferMb << 20);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
+
+    this.movies = MovieFilter.open(ctx);
+  }
 
   /**
    * The mapping routine.
    *
    * @param key the input key.
-   * @param value the input value.
+   * @param value the input row batch.
    * @param ctx the context.
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
-    long movieId = Long.valueOf(value.getFieldValue(1).toString());
-    double rating = Double.valueOf(value.getFieldValue(2).toString());
-
-    this.movieIdToAggregateRatings.putIfAbsent(movieId, new HashMap<>());
-    this.movieIdToAggregateRatings.get(movieId).compute(rating, (k,v) -> (v == null) ? 1 : v + 1);
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      if (this.movies != null && !this.movies.mightContain(movieId)) {
+        this.droppedRatings++;
+        continue;
+      }
+      double rating = ColumnVectorParser.getDouble(scores, row);
+      this.movieIdToAggregateRatings.add(movieId, rating);
+      if (this.movieIdToAggregateRatings.isFull()) {
+        this.spill(ctx);
+      }
+    }
   }
 
   /**
@@ -123,34 +144,38 @@ public class RatingsAggregateCachedMapper2Orc extends Mapper<Object,OrcStruct,Or
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    /*
-    for (Long movieId : this.movieIdToAggregateRatings.keySet()) {
-      this.movieId.set(movieId);
-
-      StringJoiner sj = new StringJoiner(",");
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        double score = entry.getKey();
-        sj.add(score + "=" + repetitions);
-      }
-      String ratingsStr = sj.toString();
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.report(ctx);
+    ctx.getCounter(MovieFilter.Counter.DROPPED_RATINGS).increment(this.droppedRatings);
+  }
 
-      this.ratings.set(ratingsStr);
-      this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, valuewrapper);
-    }
-    */
+  /**
+   * Emits the partial aggregates and clears the table, when it exceeds the memory budget.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.ratings.set(report);
+  /**
+   * Emits the aggregates in the table.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = this.movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
       this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, this.valuewrapper);
+      ctx.write(this.keywrapper, this.ratings);
     }
-
   }
 }
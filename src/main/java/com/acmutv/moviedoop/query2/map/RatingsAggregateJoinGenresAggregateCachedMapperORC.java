@@ -0,0 +1,210 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query2.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.query2.Query2_6;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The mapper for the {@link Query2_6} job.
+ * It aggregates ratings by movie, joins every movie histogram with the movie genres (replication
+ * join, distributed cache on map) and aggregates the expanded histograms by genre.
+ * It emits (genre,ratings) once per genre, when the task completes.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingsAggregateJoinGenresAggregateCachedMapperORC extends Mapper<NullWritable,VectorizedRowBatch,OrcKey,RatingHistogramWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingsAggregateJoinGenresAggregateCachedMapperORC.class);
+
+  /**
+   * The ORC schema for key.
+   */
+  public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<genre:string>");
+
+  /**
+   * The key ORC wrapper
+   */
+  private OrcKey keywrapper = new OrcKey();
+
+  /**
+   * The ORC struct for key.
+   */
+  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
+
+  /**
+   * The genre to emit.
+   */
+  private Text genre = (Text) keyStruct.getFieldValue(0);
+
+  /**
+   * The histogram {rating=repetitions,...,rating=repetitions} of a movie.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The cached movie index.
+   */
+  private MovieIndex movies;
+
+  /**
+   * The map movieId->(score,repetitions).
+   */
+  private MovieRatingAggregator movieIdToAggregateRatings = new MovieRatingAggregator();
+
+  /**
+   * The map genre->ratings.
+   */
+  private Map<String,RatingHistogramWritable> genreToAggregateRatings = new HashMap<>();
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
+   */
+  protected void setup(Context ctx) throws IOException {
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings.setMaxMemoryBytes(aggregateBufferMb << 20);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
+
+    this.movies = MovieIndex.open(ctx);
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      double rating = ColumnVectorParser.getDouble(scores, row);
+      this.movieIdToAggregateRatings.add(movieId, rating);
+      if (this.movieIdToAggregateRatings.isFull()) {
+        this.spill(ctx);
+      }
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    this.join(ctx);
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.report(ctx);
+  }
+
+  /**
+   * Joins the partial aggregates and clears the table, when it exceeds the memory budget.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(Context ctx) throws IOException, InterruptedException {
+    this.join(ctx);
+    this.movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
+
+  /**
+   * Merges the histogram of every movie in the table into the histograms of its genres.
+   * Movies with no genres are dropped.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void join(Context ctx) throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = this.movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      String movieGenres = this.movies.getGenres(cursor.getMovieId());
+      if (movieGenres == null || movieGenres.isEmpty()) continue;
+      cursor.get(this.ratings);
+      for (String genre : movieGenres.split("\\|")) {
+        RatingHistogramWritable aggregate = this.genreToAggregateRatings.get(genre);
+        if (aggregate == null) {
+          if (this.genreToAggregateRatings.size() >= GenresAggregateMapper.MAX_GENRES) {
+            this.flush(ctx);
+          }
+          aggregate = new RatingHistogramWritable();
+          this.genreToAggregateRatings.put(genre, aggregate);
+        }
+        aggregate.merge(this.ratings);
+      }
+    }
+  }
+
+  /**
+   * Emits the aggregates in the genre table and clears it.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    this.keywrapper.key = this.keyStruct;
+    for (Map.Entry<String,RatingHistogramWritable> entry : this.genreToAggregateRatings.entrySet()) {
+      this.genre.set(entry.getKey());
+      ctx.write(this.keywrapper, entry.getValue());
+    }
+    this.genreToAggregateRatings.clear();
+  }
+}
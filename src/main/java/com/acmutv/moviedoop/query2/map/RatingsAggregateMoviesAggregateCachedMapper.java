@@ -25,7 +25,10 @@
  */
 package com.acmutv.moviedoop.query2.map;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieFilter;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query2.Query2_2;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -33,8 +36,6 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query2_2}.
@@ -45,7 +46,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,Text,LongWritable,Text> {
+public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,Text,LongWritable,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -55,7 +56,7 @@ public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,T
   /**
    * The map movieId->(score,repetitions).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings = new MovieRatingAggregator();
 
   /**
    * The movie id to emit.
@@ -63,14 +64,37 @@ public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,T
   private LongWritable movieId = new LongWritable();
 
   /**
-   * The tuple (score,repetitions) to emit.
+   * The histogram {rating=repetitions,...,rating=repetitions} to emit.
    */
-  private String tupla;
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
 
   /**
-   * The tuple (score,repetitions) to emit.
+   * The tokenizer for input records.
    */
-  private Text tuple = new Text();
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The cached filter of the movies with genres; null if the semi-join is disabled.
+   */
+  private MovieFilter movies;
+
+  /**
+   * The number of ratings dropped by the semi-join.
+   */
+  private long droppedRatings = 0L;
+
+  /**
+   * Configures the mapper.
+   * @param ctx the job context.
+   * @throws IOException when the movie filter cannot be read.
+   */
+  protected void setup(Context ctx) throws IOException {
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings.setMaxMemoryBytes(aggregateBufferMb << 20);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
+
+    this.movies = MovieFilter.open(ctx);
+  }
 
   /**
    * The mapping routine.
@@ -82,12 +106,18 @@ public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,T
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, RecordParser.DELIMITER);
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(rating.get("movieId"));
-    double score = Double.valueOf(rating.get("score"));
-    this.movieIdToAggregateRatings.putIfAbsent(movieId, new HashMap<>());
-    this.movieIdToAggregateRatings.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+    long movieId = this.tokenizer.getLong(1);
+    if (this.movies != null && !this.movies.mightContain(movieId)) {
+      this.droppedRatings++;
+      return;
+    }
+    double score = this.tokenizer.getDouble(2);
+    this.movieIdToAggregateRatings.add(movieId, score);
+    if (this.movieIdToAggregateRatings.isFull()) {
+      this.spill(ctx);
+    }
   }
 
   /**
@@ -96,19 +126,37 @@ public class RatingsAggregateMoviesAggregateCachedMapper extends Mapper<Object,T
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings.keySet()) {
-      this.movieId.set(movieId);
-      this.tupla = "";
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        if (repetitions == 0) continue;
-        double score = entry.getKey();
-        if (this.tupla.equals(""))
-          this.tupla += Double.toString(score) + "=" + Long.toString(repetitions);
-        else
-          this.tupla += "," + Double.toString(score) + "=" + Long.toString(repetitions);
-      }
-      ctx.write(this.movieId, new Text(this.tupla));
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.report(ctx);
+    ctx.getCounter(MovieFilter.Counter.DROPPED_RATINGS).increment(this.droppedRatings);
+  }
+
+  /**
+   * Emits the partial aggregates and clears the table, when it exceeds the memory budget.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(Context ctx) throws IOException, InterruptedException {
+    this.flush(ctx);
+    this.movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
+
+  /**
+   * Emits the aggregates in the table.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(Context ctx) throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = this.movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
+      ctx.write(this.movieId, this.ratings);
     }
   }
 }
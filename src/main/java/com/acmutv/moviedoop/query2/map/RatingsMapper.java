@@ -25,26 +25,25 @@
  */
 package com.acmutv.moviedoop.query2.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieFilter;
 import com.acmutv.moviedoop.query2.Query2_2;
-import com.acmutv.moviedoop.common.util.RecordParser;
-import org.apache.hadoop.io.DoubleWritable;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for the {@link Query2_2} job.
- * It emits (movieId,rating) where rating is a score attributed with timestamp greater or equal to
- * the `movieRatingTimestampLowerBound`.
+ * It emits (movieId,ratings) where ratings is the histogram of a score.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RatingsMapper extends Mapper<Object,Text,LongWritable,DoubleWritable> {
+public class RatingsMapper extends Mapper<Object,Text,LongWritable,RatingHistogramWritable> {
 
   /**
    * The movie id to emit.
@@ -52,9 +51,34 @@ public class RatingsMapper extends Mapper<Object,Text,LongWritable,DoubleWritabl
   private LongWritable movieId = new LongWritable();
 
   /**
-   * The genre rating to emit.
+   * The histogram (ratings) to emit.
    */
-  private DoubleWritable movieRating = new DoubleWritable();
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * The cached filter of the movies with genres; null if the semi-join is disabled.
+   */
+  private MovieFilter movies;
+
+  /**
+   * The number of ratings dropped by the semi-join.
+   */
+  private long droppedRatings = 0L;
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the movie filter cannot be read.
+   */
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieFilter.open(ctx);
+  }
 
   /**
    * The mapping routine.
@@ -66,12 +90,26 @@ public class RatingsMapper extends Mapper<Object,Text,LongWritable,DoubleWritabl
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(rating.get("movieId"));
-    double score = Double.valueOf(rating.get("score"));
+    long movieId = this.tokenizer.getLong(1);
+    if (this.movies != null && !this.movies.mightContain(movieId)) {
+      this.droppedRatings++;
+      return;
+    }
+    double score = this.tokenizer.getDouble(2);
     this.movieId.set(movieId);
-    this.movieRating.set(score);
-    ctx.write(this.movieId, movieRating);
+    this.ratings.clear();
+    this.ratings.add(score);
+    ctx.write(this.movieId, this.ratings);
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void cleanup(Context ctx) {
+    ctx.getCounter(MovieFilter.Counter.DROPPED_RATINGS).increment(this.droppedRatings);
   }
 }
@@ -25,6 +25,8 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
+import com.acmutv.moviedoop.common.model.MomentsWritable;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
 import com.acmutv.moviedoop.query2.Query2_2;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
@@ -33,12 +35,25 @@ import java.io.IOException;
 
 /**
  * The reducer for the {@link Query2_2} job.
+ * The partial rating histograms of a genre are merged into a {@link RatingHistogramWritable}:
+ * the average comes from {@link RatingHistogramWritable#getAverage()}, while the standard
+ * deviation comes from a {@link MomentsWritable} merged from that histogram.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateGenresReducer extends Reducer<Text, Text, Text, Text> {
+public class AggregateGenresReducer extends Reducer<Text, RatingHistogramWritable, Text, Text> {
+
+  /**
+   * The merged histogram of ratings for a genre.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The moments of ratings for a genre.
+   */
+  private MomentsWritable moments = new MomentsWritable();
 
   /**
    * The reduction routine.
@@ -49,32 +64,22 @@ public class AggregateGenresReducer extends Reducer<Text, Text, Text, Text> {
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(Text key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(Text key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
 
     Text genreTitle = key;
-    long occ = 0L;
     double avg = 0.0;
     double stdDev = 0.0;
-    double sum = 0.0;
-    double sumStd = 0.0;
-
-    for (Text value : values) {
-      int length = value.toString().length();
-      String[] tokens = value.toString().substring(1,length-1).split(",");
-      for(String t : tokens) {
-        String[] couple = t.split("=");
-        double score = Double.parseDouble(couple[0]);
-        long repetitions = Long.parseLong(couple[1]);
-        occ += repetitions;
-        double temp = score * repetitions;
-        sum += temp;
-        sumStd += ((score) * (score)) * repetitions;
-      }
+
+    this.ratings.clear();
+    for (RatingHistogramWritable value : values) {
+      this.ratings.merge(value);
     }
 
-    avg = sum / occ;
-    stdDev = (sumStd - (occ * avg * avg)) / (occ - 1);
-    stdDev = Math.sqrt(stdDev);
+    this.moments.clear();
+    this.moments.merge(this.ratings);
+
+    avg = this.ratings.getAverage();
+    stdDev = this.moments.getStandardDeviation();
     ctx.write(genreTitle, new Text(Double.toString(avg) + " "+Double.toString(stdDev)));
   }
 }
@@ -25,21 +25,15 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -48,7 +42,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer extends Reducer<LongWritable,Text,Text,Text> {
+public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer extends Reducer<LongWritable,RatingHistogramWritable,Text,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -56,14 +50,14 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer extend
   private static final Logger LOG = Logger.getLogger(AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer.class);
 
   /**
-   * The cached map (movieId,movieTitle)
+   * The cached movie index.
    */
-  private Map<Long,Text> movieIdToGenres = new HashMap<>();
+  private MovieIndex movies;
 
   /**
-   *
+   * The merged histogram of ratings for a movie.
    */
-  private Map<Double,Long> allRatingsForAMovie = new HashMap<>();
+  private RatingHistogramWritable allRatingsForAMovie = new RatingHistogramWritable();
 
   /**
    * The genre name to emit.
@@ -80,26 +74,10 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer extend
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                        new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String genres = String.valueOf(movie.get("genres"));
-          if(!genres.equals("(no genres listed)"))
-            this.movieIdToGenres.put(movieId,new Text(genres));
-        }
-      }
-    } catch (IOException exc) {
-      exc.printStackTrace();
-    }
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -111,26 +89,21 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer extend
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(LongWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(LongWritable key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
     long movieId = key.get();
 
     this.allRatingsForAMovie.clear();
 
-    for (Text value : values) {
-      String[] tokens = value.toString().split(",");
-      for(String t : tokens) {
-        String[] couple = t.split("=");
-        double score = Double.parseDouble(couple[0]);
-        long repetitions = Long.parseLong(couple[1]);
-        this.allRatingsForAMovie.put(score,repetitions);
-      }
+    for (RatingHistogramWritable value : values) {
+      this.allRatingsForAMovie.merge(value);
     }
 
-    if (this.movieIdToGenres.containsKey(movieId)) {
-      String[] genres = this.movieIdToGenres.get(movieId).toString().split("\\|");
+    String movieGenres = this.movies.getGenres(movieId);
+    if (movieGenres != null && !movieGenres.isEmpty()) {
+      String[] genres = movieGenres.split("\\|");
       for (int i = 0; i < genres.length; i++) {
         this.genreTitle.set(genres[i]);
-        ctx.write(genreTitle,new Text(this.allRatingsForAMovie.toString().replaceAll("\\s+","")));
+        ctx.write(genreTitle, this.allRatingsForAMovie);
       }
     }
   }
@@ -25,27 +25,20 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
-import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
-import org.apache.orc.OrcFile;
-import org.apache.orc.Reader;
-import org.apache.orc.RecordReader;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -54,13 +47,14 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc extends Reducer<OrcKey,OrcValue,NullWritable,OrcStruct> {
+public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc extends Reducer<OrcKey,RatingHistogramWritable,NullWritable,OrcStruct> {
 
   /**
    * The logger.
    */
   private static final Logger LOG = Logger.getLogger(AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc.class);
 
+
   /**
    * The null writable value.
    */
@@ -69,7 +63,7 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc ex
   /**
    * The ORC schema.
    */
-  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<genre:string,ratings:string>");
+  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<genre:string,ratings:binary>");
 
   /**
    * The ORC struct for value.
@@ -82,48 +76,28 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc ex
   private Text genreTitle = (Text) valueStruct.getFieldValue(0);
 
   /**
-   * The tuple {rating=repetitions,...,rating=repetitions} to emit.
+   * The serialized histogram {rating=repetitions,...,rating=repetitions} to emit.
    */
-  private Text ratings = (Text) valueStruct.getFieldValue(1);
+  private BytesWritable ratings = (BytesWritable) valueStruct.getFieldValue(1);
 
   /**
-   * The cached map (movieId,movieTitle)
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToGenres = new HashMap<>();
+  private MovieIndex movies;
 
   /**
-   *
+   * The merged histogram of ratings for a movie.
    */
-  private Map<Double,Long> allRatingsForAMovie = new HashMap<>();
+  private RatingHistogramWritable allRatingsForAMovie = new RatingHistogramWritable();
 
   /**
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        Reader reader = OrcFile.createReader(path, new OrcFile.ReaderOptions(ctx.getConfiguration()));
-        RecordReader rows = reader.rows();
-        VectorizedRowBatch batch = reader.getSchema().createRowBatch();
-        while (rows.nextBatch(batch)) {
-          BytesColumnVector cvMovieId = (BytesColumnVector) batch.cols[0];
-          BytesColumnVector cvGeneres = (BytesColumnVector) batch.cols[2];
-          for (int r = 0; r < batch.size; r++) {
-            long movieId = Long.valueOf(cvMovieId.toString(r));
-            String genres = cvGeneres.toString(r);
-            if(!genres.equals("(no genres listed)"))
-              this.movieIdToGenres.put(movieId,genres);
-          }
-        }
-        rows.close();
-      }
-    } catch (IOException exc) {
-      LOG.error(exc.getMessage());
-      exc.printStackTrace();
-    }
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -135,29 +109,21 @@ public class AggregateRatingAggregateMovieJoinAggregateGenreCachedReducer2Orc ex
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(OrcKey key, Iterable<OrcValue> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(OrcKey key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
     long movieId = ((LongWritable) ((OrcStruct) key.key).getFieldValue(0)).get();
 
     this.allRatingsForAMovie.clear();
 
-    for (OrcValue orcValue : values) {
-      String value = ((Text) ((OrcStruct) orcValue.value).getFieldValue(0)).toString();
-      String pairs[] = value.split(",", -1);
-      for (String pair : pairs) {
-        String elems[] = pair.split("=", -1);
-        double score = Double.valueOf(elems[0]);
-        long repetitions = Long.valueOf(elems[1]);
-        this.allRatingsForAMovie.put(score, repetitions);
-      }
+    for (RatingHistogramWritable value : values) {
+      this.allRatingsForAMovie.merge(value);
     }
 
-    if (this.movieIdToGenres.containsKey(movieId)) {
-      String[] genres = this.movieIdToGenres.get(movieId).split("\\|");
+    String movieGenres = this.movies.getGenres(movieId);
+    if (movieGenres != null && !movieGenres.isEmpty()) {
+      String[] genres = movieGenres.split("\\|");
+      this.allRatingsForAMovie.writeTo(this.ratings);
       for (String genre : genres) {
         this.genreTitle.set(genre);
-        String report = this.allRatingsForAMovie.toString().replaceAll(" ", "");
-        report = report.substring(1, report.length() - 1);
-        this.ratings.set(report);
         ctx.write(NULL, this.valueStruct);
       }
     }
@@ -25,22 +25,16 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -49,7 +43,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateRatingAggregateMovieJoinGenreCachedReducer extends Reducer<LongWritable,Text,Text,DoubleWritable> {
+public class AggregateRatingAggregateMovieJoinGenreCachedReducer extends Reducer<LongWritable,RatingHistogramWritable,Text,DoubleWritable> {
 
   /**
    * The logger.
@@ -57,9 +51,9 @@ public class AggregateRatingAggregateMovieJoinGenreCachedReducer extends Reducer
   private static final Logger LOG = Logger.getLogger(AggregateRatingAggregateMovieJoinGenreCachedReducer.class);
 
   /**
-   * The cached map (movieId,movieTitle)
+   * The cached movie index.
    */
-  private Map<Long,Text> movieIdToGenres = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The genre name to emit.
@@ -76,26 +70,10 @@ public class AggregateRatingAggregateMovieJoinGenreCachedReducer extends Reducer
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-                new InputStreamReader(
-                        new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String genres = String.valueOf(movie.get("genres"));
-          if(!genres.equals("(no genres listed)"))
-            this.movieIdToGenres.put(movieId,new Text(genres));
-        }
-      }
-    } catch (IOException exc) {
-      exc.printStackTrace();
-    }
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -107,19 +85,18 @@ public class AggregateRatingAggregateMovieJoinGenreCachedReducer extends Reducer
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(LongWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(LongWritable key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
     long movieId = key.get();
+    String movieGenres = this.movies.getGenres(movieId);
 
-    for (Text value : values) {
-      String[] tokens = value.toString().split(",");
-      for(String t : tokens) {
-        String[] couple = t.split("=");
-        double score = Double.parseDouble(couple[0]);
-        long repetitions = Long.parseLong(couple[1]);
+    for (RatingHistogramWritable value : values) {
+      for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+        double score = RatingHistogramWritable.score(b);
+        long repetitions = value.getRepetitions(b);
 
-        for(int j=0; j<=repetitions; j++) {
-          if (this.movieIdToGenres.containsKey(movieId)) {
-            String[] genres = this.movieIdToGenres.get(movieId).toString().split("\\|");
+        for(int j=0; j<repetitions; j++) {
+          if (movieGenres != null && !movieGenres.isEmpty()) {
+            String[] genres = movieGenres.split("\\|");
             for (int i = 0; i < genres.length; i++) {
               this.genreTitle.set(genres[i]);
               this.score.set(score);
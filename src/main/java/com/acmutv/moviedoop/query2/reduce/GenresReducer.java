@@ -25,8 +25,8 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
+import com.acmutv.moviedoop.common.model.MomentsWritable;
 import com.acmutv.moviedoop.query2.Query2_1;
-import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
@@ -40,7 +40,12 @@ import java.io.IOException;
  * @since 1.0
  */
 public class
-GenresReducer extends Reducer<Text, DoubleWritable, Text, Text> {
+GenresReducer extends Reducer<Text, MomentsWritable, Text, Text> {
+
+  /**
+   * The merged moments of ratings for a genre.
+   */
+  private MomentsWritable moments = new MomentsWritable();
 
   /**
    * The reduction routine.
@@ -51,29 +56,19 @@ GenresReducer extends Reducer<Text, DoubleWritable, Text, Text> {
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(Text key, Iterable<DoubleWritable> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(Text key, Iterable<MomentsWritable> values, Context ctx) throws IOException, InterruptedException {
 
     Text genreTitle = key;
-    long occ = 0L;
     double avg = 0.0;
     double stdDev = 0.0;
 
-    double sum = 0.0;
-    double temp = 0.0;
-
-    double sumStd = 0.0;
-
-    for (DoubleWritable value : values) {
-      occ += 1L;
-      temp = value.get();
-      sum += temp;
-      sumStd += temp * temp;
+    this.moments.clear();
+    for (MomentsWritable value : values) {
+      this.moments.merge(value);
     }
-    avg = sum / occ;
-
-    stdDev = (sumStd - (occ * avg * avg)) / (occ - 1);
 
-    stdDev = Math.sqrt(stdDev);
+    avg = this.moments.getMean();
+    stdDev = this.moments.getStandardDeviation();
 
     ctx.write(genreTitle, new Text( Double.toString(avg) + "  "+Double.toString(stdDev)));
   }
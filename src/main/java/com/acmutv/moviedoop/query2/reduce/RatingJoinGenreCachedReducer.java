@@ -25,21 +25,15 @@
  */
 package com.acmutv.moviedoop.query2.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
 import com.acmutv.moviedoop.query1.Query1_1;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The reducer for the {@link Query1_1} job.
@@ -48,12 +42,12 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RatingJoinGenreCachedReducer extends Reducer<LongWritable,DoubleWritable,Text,DoubleWritable> {
+public class RatingJoinGenreCachedReducer extends Reducer<LongWritable,RatingHistogramWritable,Text,DoubleWritable> {
 
   /**
-   * The cached map (movieId,movieTitle)
+   * The cached movie index.
    */
-  private Map<Long,Text> movieIdToGenres = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The genre rating to emit.
@@ -65,31 +59,20 @@ public class RatingJoinGenreCachedReducer extends Reducer<LongWritable,DoubleWri
    */
   private Text genreTitle = new Text();
 
+  /**
+   * The merged histogram of ratings for a movie.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
 
   /**
    * Configures the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    try {
-      for (URI uri : ctx.getCacheFiles()) {
-        Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String genres = String.valueOf(movie.get("genres"));
-          if(!genres.equals("(no genres listed)"))
-            this.movieIdToGenres.put(movieId,new Text(genres));
-        }
-      }
-    } catch (IOException exc) {
-      exc.printStackTrace();
-    }
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
   }
 
   /**
@@ -101,18 +84,30 @@ public class RatingJoinGenreCachedReducer extends Reducer<LongWritable,DoubleWri
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(LongWritable key, Iterable<DoubleWritable> values, Context ctx) throws IOException, InterruptedException {
+  public void reduce(LongWritable key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
 
     long movieId = key.get();
-    double score = 0.0;
-
-    for (DoubleWritable value : values) {
-      score = value.get();
-      if (this.movieIdToGenres.containsKey(movieId)) {
-        String[] genres = this.movieIdToGenres.get(movieId).toString().split("\\|");
-        for (int i = 0; i < genres.length; i++) {
-          this.genreRating.set(score);
-          this.genreTitle.set(genres[i]);
+    String movieGenres = this.movies.getGenres(movieId);
+
+    if (movieGenres == null || movieGenres.isEmpty()) {
+      return;
+    }
+
+    this.ratings.clear();
+    for (RatingHistogramWritable value : values) {
+      this.ratings.merge(value);
+    }
+
+    String[] genres = movieGenres.split("\\|");
+    for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+      long repetitions = this.ratings.getRepetitions(b);
+      if (repetitions == 0) {
+        continue;
+      }
+      this.genreRating.set(RatingHistogramWritable.score(b));
+      for (int i = 0; i < genres.length; i++) {
+        this.genreTitle.set(genres[i]);
+        for (long j = 0; j < repetitions; j++) {
           ctx.write(genreTitle,genreRating);
         }
       }
@@ -25,13 +25,19 @@
  */
 package com.acmutv.moviedoop.query3;
 
+import com.acmutv.moviedoop.common.input.LinenoOffsets;
 import com.acmutv.moviedoop.common.input.LinenoSequenceFileInputFormat;
+import com.acmutv.moviedoop.common.reduce.Aggregate1RatingCombiner;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.index.MovieIndexJob;
 import com.acmutv.moviedoop.query3.map.*;
 import com.acmutv.moviedoop.query3.reduce.AverageRating2AndAggregate1Reducer;
-import com.acmutv.moviedoop.query3.reduce.MoviesTopKBestMapReducer;
+import com.acmutv.moviedoop.query3.reduce.MoviesTopKReducer;
 import com.acmutv.moviedoop.query3.reduce.ValueReducer;
+import com.acmutv.moviedoop.query3.reduce.RankComparisonReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import com.acmutv.moviedoop.common.util.DoubleWritableDecreasingComparator;
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileStatus;
@@ -48,8 +54,6 @@ import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
-import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
-import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
@@ -62,7 +66,7 @@ import java.time.LocalDateTime;
  * and `ratingTimestampTopKUB`; and
  * (ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`
  * and `ratingTimestampRankUB`.
- * The program leverages BestMap for top-k ranking, inner joins (replication joins as distributed
+ * The program leverages TopK (binary heap) for top-k ranking, inner joins (replication joins as distributed
  * caching on map) and optimizations on average computation (1).
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
@@ -122,19 +126,9 @@ public class Query3_2 extends Configured implements Tool {
   private static final int SORT_REDUCE_CARDINALITY = 1;
 
   /**
-   * The default number of sorting partitioner samples.
+   * The default memory budget (MB) for the map-side aggregation.
    */
-  private static final int SORT_PARTITION_SAMPLES = 1000;
-
-  /**
-   * The default frequency for sorting partitioner (total rank).
-   */
-  private static final double SORT_PARTITION_FREQUENCY = 0.01;
-
-  /**
-   * The default maximum number of splits for sorting partition (total rank).
-   */
-  private static final int SORT_PARTITION_SPLITS_MAX = 100;
+  private static final long AGGREGATE_BUFFER_MB = 64;
 
   /**
    * The default verbosity.
@@ -155,7 +149,6 @@ public class Query3_2 extends Configured implements Tool {
     final Path stagingAverage = new Path(args[2] + ".staging/average");
     final Path stagingSort1 = new Path(args[2] + ".staging/sort/1");
     final Path stagingSort2 = new Path(args[2] + ".staging/sort/2");
-    final Path sortPartitions = new Path(args[2] + ".partitions.sort.lst");
     final Path stagingTopK = new Path(args[2] + ".staging/topk");
     final Path output = new Path(args[2]);
 
@@ -166,20 +159,15 @@ public class Query3_2 extends Configured implements Tool {
     config.setIfUnset("moviedoop.average.rating.timestamp.ub.1", DateParser.toString(RATING_TIMESTAMP_TOPK_UB));
     config.setIfUnset("moviedoop.average.rating.timestamp.lb.2", DateParser.toString(RATING_TIMESTAMP_SORT_LB));
     config.setIfUnset("moviedoop.average.rating.timestamp.ub.2", DateParser.toString(RATING_TIMESTAMP_SORT_UB));
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
 
     // OTHER CONFIGURATION
     final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
     final int topkReduceCardinality = Integer.valueOf(config.get("moviedoop.topk.reduce.cardinality", String.valueOf(TOPK_REDUCE_CARDINALITY)));
     final int sortReduceCardinality = Integer.valueOf(config.get("moviedoop.sort.reduce.cardinality", String.valueOf(SORT_REDUCE_CARDINALITY)));
-    final int sortPartitionSamples = Integer.valueOf(config.get("moviedoop.sort.partition.samples", String.valueOf(SORT_PARTITION_SAMPLES)));
-    final double sortPartitionFrequency = Double.valueOf(config.get("moviedoop.sort.partition.frequency", String.valueOf(SORT_PARTITION_FREQUENCY)));
-    final int sortPartitionSplitsMax = Integer.valueOf(config.get("moviedoop.sort.partition.splits.max", String.valueOf(SORT_PARTITION_SPLITS_MAX)));
     config.unset("moviedoop.average.reduce.cardinality");
     config.unset("moviedoop.topk.reduce.cardinality");
     config.unset("moviedoop.sort.reduce.cardinality");
-    config.unset("moviedoop.sort.partition.samples");
-    config.unset("moviedoop.sort.partition.frequency");
-    config.unset("moviedoop.sort.partition.splits.max");
 
     // CONTEXT RESUME
     System.out.println("############################################################################");
@@ -193,13 +181,11 @@ public class Query3_2 extends Configured implements Tool {
     System.out.println("Movie Rating Timestamp Upper Bound (Top Rank): " + config.get("moviedoop.average.rating.timestamp.ub.1"));
     System.out.println("Movie Rating Timestamp Lower Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.lb.2"));
     System.out.println("Movie Rating Timestamp Upper Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.ub.2"));
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (Average): " + averageReduceCardinality);
     System.out.println("Reduce Cardinality (Top Rank): " + topkReduceCardinality);
     System.out.println("Reduce Cardinality (Total Rank): " + sortReduceCardinality);
-    System.out.println("Movie Sorting Partition Samples: " + sortPartitionSamples);
-    System.out.println("Movie Sorting Partition Frequency: " + sortPartitionFrequency);
-    System.out.println("Movie Sorting Partition Max Splits: " + sortPartitionSplitsMax);
     System.out.println("############################################################################");
 
     /* *********************************************************************************************
@@ -218,6 +204,7 @@ public class Query3_2 extends Configured implements Tool {
     jobAverageRatings.setMapperClass(FilterRatingsBy2TimeIntervalAndAggregate1Mapper.class);
     jobAverageRatings.setMapOutputKeyClass(LongWritable.class);
     jobAverageRatings.setMapOutputValueClass(Text.class);
+    jobAverageRatings.setCombinerClass(Aggregate1RatingCombiner.class);
 
     // JOB AVERAGE RATINGS: REDUCE CONFIGURATION
     jobAverageRatings.setReducerClass(AverageRating2AndAggregate1Reducer.class);
@@ -252,12 +239,12 @@ public class Query3_2 extends Configured implements Tool {
       }
 
       // JOB TOP BY RATING: MAP CONFIGURATION
-      jobTopRatings.setMapperClass(MoviesTopKBestMapMapper.class);
+      jobTopRatings.setMapperClass(MoviesTopKMapper.class);
       jobTopRatings.setMapOutputKeyClass(NullWritable.class);
-      jobTopRatings.setMapOutputValueClass(Text.class);
+      jobTopRatings.setMapOutputValueClass(TopK.class);
 
       // JOB TOP BY RATING: REDUCE CONFIGURATION
-      jobTopRatings.setReducerClass(MoviesTopKBestMapReducer.class);
+      jobTopRatings.setReducerClass(MoviesTopKReducer.class);
       jobTopRatings.setNumReduceTasks(topkReduceCardinality);
 
       // JOB TOP BY RATING: OUTPUT CONFIGURATION
@@ -290,6 +277,7 @@ public class Query3_2 extends Configured implements Tool {
 
       // JOB RATING AS KEY: MAP CONFIGURATION
       jobRatingAsKey.setMapperClass(AverageRatingAsKeyMapper.class);
+      HistogramRangePartitioner.setHistogramEnabled(jobRatingAsKey.getConfiguration(), sortReduceCardinality > 1);
 
       // JOB RATING AS KEY: REDUCE CONFIGURATION
       jobRatingAsKey.setNumReduceTasks(0);
@@ -322,6 +310,7 @@ public class Query3_2 extends Configured implements Tool {
       // JOB SORT BY AVERAGE RATING: REDUCE CONFIGURATION
       jobSortByRating.setReducerClass(ValueReducer.class);
       jobSortByRating.setNumReduceTasks(sortReduceCardinality);
+      LinenoOffsets.setRecordCounting(jobSortByRating.getConfiguration(), true);
 
       // JOB SORT BY AVERAGE RATING: OUTPUT CONFIGURATION
       jobSortByRating.setOutputKeyClass(NullWritable.class);
@@ -331,11 +320,8 @@ public class Query3_2 extends Configured implements Tool {
 
       // JOB SORT BY AVERAGE RATING: PARTITIONER CONFIGURATION
       if (sortReduceCardinality > 1) {
-        jobSortByRating.setPartitionerClass(TotalOrderPartitioner.class);
-        TotalOrderPartitioner.setPartitionFile(jobSortByRating.getConfiguration(), sortPartitions);
         jobSortByRating.getConfiguration().set("mapreduce.output.textoutputformat.separator", "");
-        InputSampler.RandomSampler<DoubleWritable,Text> sampler = new InputSampler.RandomSampler<>(sortPartitionFrequency, sortPartitionSamples, sortPartitionSplitsMax);
-        InputSampler.writePartitionFile(jobSortByRating, sampler);
+        HistogramRangePartitioner.setPartitionCuts(jobSortByRating, stagingSort1);
       }
 
       // JOB SORT BY AVERAGE RATING: EXECUTION
@@ -354,10 +340,7 @@ public class Query3_2 extends Configured implements Tool {
         if ("_SUCCESS".equals(path.getName())) continue;
         jobRankComparison.addCacheFile(path.toUri());
       }
-      for (FileStatus status : FileSystem.get(config).listStatus(inputMovies)) {
-        jobRankComparison.addCacheFile(status.getPath().toUri());
-      }
-      jobRankComparison.getConfiguration().setIfUnset("moviedoop.path.movies", inputMovies.toString());
+      jobRankComparison.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
       jobRankComparison.getConfiguration().setIfUnset("moviedoop.path.topk", stagingTopK.toString());
 
       // JOB AVERAGE RATINGS: INPUT CONFIGURATION
@@ -366,9 +349,12 @@ public class Query3_2 extends Configured implements Tool {
 
       // JOB AVERAGE RATINGS: MAP CONFIGURATION
       jobRankComparison.setMapperClass(RankComparisonMapper.class);
+      jobRankComparison.setMapOutputKeyClass(LongWritable.class);
+      jobRankComparison.setMapOutputValueClass(Text.class);
 
       // JOB AVERAGE RATINGS: REDUCE CONFIGURATION
-      jobRankComparison.setNumReduceTasks(0);
+      jobRankComparison.setReducerClass(RankComparisonReducer.class);
+      jobRankComparison.setNumReduceTasks(1);
 
       // JOB AVERAGE RATINGS: OUTPUT CONFIGURATION
       jobRankComparison.setOutputKeyClass(NullWritable.class);
@@ -385,7 +371,6 @@ public class Query3_2 extends Configured implements Tool {
     FileSystem.get(config).delete(stagingTopK, true);
     FileSystem.get(config).delete(stagingSort1, true);
     FileSystem.get(config).delete(stagingSort2, true);
-    FileSystem.get(config).delete(sortPartitions, true);
 
     return code;
   }
@@ -0,0 +1,396 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query3;
+
+import com.acmutv.moviedoop.common.input.LinenoOffsets;
+import com.acmutv.moviedoop.common.input.LinenoSequenceFileInputFormat;
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.DoubleWritableDecreasingComparator;
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query3.map.*;
+import com.acmutv.moviedoop.query3.reduce.MoviesTopKReducerORC;
+import com.acmutv.moviedoop.query3.reduce.ValueReducer;
+import com.acmutv.moviedoop.query3.reduce.RankComparisonReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapreduce.OrcInputFormat;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * A map/reduce program that returns the comparison between
+ * (i) the top-`rankSize` movies, considering average ratings in period from `ratingTimestampTopKLB`
+ * and `ratingTimestampTopKUB`; and
+ * (ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`
+ * and `ratingTimestampRankUB`.
+ * The program reads the rating cube (see {@link RatingCubeJob}) instead of ratings, so both periods
+ * must be made of whole time buckets.
+ * The program leverages prefix sums over time buckets, TopK (binary heap) for top-k ranking (aggregated ranking),
+ * inner joins (replication joins as distributed caching on map), ORC serialization and parallel jobs.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Query3_6 extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(Query3_6.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "Query3_6";
+
+  /**
+   * The default movies rank size.
+   */
+  private static final int RANK_SIZE = 10;
+
+  /**
+   * The default lower bound for movie ratings timestamp (for top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (for top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_UB = DateParser.MAX;
+
+  /**
+   * The default lower bound for movie ratings timestamp (for total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (for total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_UB = DateParser.MAX;
+
+  /**
+   * The default number of reducers for the ranking job (top-k).
+   */
+  private static final int TOPK_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default number of reducers for the ranking job (total rank).
+   */
+  private static final int SORT_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default granularity of the rating cube.
+   */
+  private static final TimeBucket CUBE_GRANULARITY = TimeBucket.DAY;
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+    final Path stagingAverage = new Path(args[2] + ".staging/average");
+    final Path stagingSort1 = new Path(args[2] + ".staging/sort/1");
+    final Path stagingSort2 = new Path(args[2] + ".staging/sort/2");
+    final Path stagingTopK = new Path(args[2] + ".staging/topk");
+    final Path output = new Path(args[2]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.topk.size", String.valueOf(RANK_SIZE));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.1", DateParser.toString(RATING_TIMESTAMP_TOPK_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.1", DateParser.toString(RATING_TIMESTAMP_TOPK_UB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.2", DateParser.toString(RATING_TIMESTAMP_SORT_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.2", DateParser.toString(RATING_TIMESTAMP_SORT_UB));
+    config.setIfUnset("moviedoop.cube.granularity", CUBE_GRANULARITY.name().toLowerCase());
+
+    // OTHER CONFIGURATION
+    final int topkReduceCardinality = Integer.valueOf(config.get("moviedoop.topk.reduce.cardinality", String.valueOf(TOPK_REDUCE_CARDINALITY)));
+    final int sortReduceCardinality = Integer.valueOf(config.get("moviedoop.sort.reduce.cardinality", String.valueOf(SORT_REDUCE_CARDINALITY)));
+    config.unset("moviedoop.topk.reduce.cardinality");
+    config.unset("moviedoop.sort.reduce.cardinality");
+    final TimeBucket granularity = TimeBucket.parse(config.get("moviedoop.cube.granularity"));
+    if (!granularity.isAligned(DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.lb.1")),
+        DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.ub.1")))
+        || !granularity.isAligned(DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.lb.2")),
+        DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.ub.2")))) {
+      System.err.printf("%s: the rating timestamp bounds must be the first/last second of a %s\n",
+          PROGRAM_NAME, granularity.name().toLowerCase());
+      return 2;
+    }
+
+    // CONTEXT RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings);
+    System.out.println("Input Movies: " + inputMovies);
+    System.out.println("Output: " + output);
+    System.out.println("Movie Top Rank Size: " + config.get("moviedoop.topk.size"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Top Rank): " + config.get("moviedoop.average.rating.timestamp.lb.1"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Top Rank): " + config.get("moviedoop.average.rating.timestamp.ub.1"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.lb.2"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.ub.2"));
+    System.out.println("Cube Granularity: " + config.get("moviedoop.cube.granularity"));
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Reduce Cardinality (Top Rank): " + topkReduceCardinality);
+    System.out.println("Reduce Cardinality (Total Rank): " + sortReduceCardinality);
+    System.out.println("############################################################################");
+
+    /* *********************************************************************************************
+    * AVERAGE MOVIE RATINGS FOR PERIODS [Tlb1,Tub1] and [Tlb2,Tub2]
+    ***********************************************************************************************/
+
+    // JOB AVERAGE RATINGS: CONFIGURATION
+    Job jobAverageRatings = Job.getInstance(config, PROGRAM_NAME + "_AVERAGE-RATINGS");
+    jobAverageRatings.setJarByClass(Query3_6.class);
+
+    // JOB AVERAGE RATINGS: INPUT CONFIGURATION
+    RatingCubeJob.setInput(jobAverageRatings, RatingCubeJob.ensure(config, inputRatings));
+
+    // JOB AVERAGE RATINGS: MAP CONFIGURATION
+    jobAverageRatings.setMapperClass(RatingCubeWindow2TimeIntervalMapperORC.class);
+
+    // JOB AVERAGE RATINGS: REDUCE CONFIGURATION
+    jobAverageRatings.setNumReduceTasks(0);
+
+    // JOB AVERAGE RATINGS: OUTPUT CONFIGURATION
+    MultipleOutputs.addNamedOutput(jobAverageRatings, "1", OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    MultipleOutputs.addNamedOutput(jobAverageRatings, "2", OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    jobAverageRatings.setOutputFormatClass(LazyOutputFormat.class);
+    LazyOutputFormat.setOutputFormatClass(jobAverageRatings, OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(jobAverageRatings, stagingAverage);
+    jobAverageRatings.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        RatingCubeWindow2TimeIntervalMapperORC.ORC_SCHEMA.toString());
+
+    // JOB AVERAGE RATINGS: EXECUTION
+    int code = jobAverageRatings.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code != 0) return code;
+
+    /* *********************************************************************************************
+     * TOP-K RANK OF MOVIES BY AVERAGE MOVIE RATINGS IN PERIOD [Tlb1,Tub1]
+     **********************************************************************************************/
+    // JOB TOP BY RATING: CONFIGURATION
+    Job jobTopRatings = Job.getInstance(config, PROGRAM_NAME + "_TOP-BY-RATING");
+    jobTopRatings.setJarByClass(Query3_6.class);
+
+    // JOB TOP BY RATING: INPUT CONFIGURATION
+    jobTopRatings.setInputFormatClass(OrcBatchInputFormat.class);
+    for (FileStatus status : FileSystem.get(config).listStatus(stagingAverage)) {
+      Path path = status.getPath();
+      if (path.getName().startsWith("1-m")) {
+        OrcBatchInputFormat.addInputPath(jobTopRatings, path);
+      }
+    }
+
+    // JOB TOP BY RATING: MAP CONFIGURATION
+    jobTopRatings.setMapperClass(MoviesTopKMapperORC.class);
+    jobTopRatings.setMapOutputKeyClass(NullWritable.class);
+    jobTopRatings.setMapOutputValueClass(TopK.class);
+
+    // JOB TOP BY RATING: REDUCE CONFIGURATION
+    jobTopRatings.setReducerClass(MoviesTopKReducerORC.class);
+    jobTopRatings.setNumReduceTasks(topkReduceCardinality);
+
+    // JOB TOP BY RATING: OUTPUT CONFIGURATION
+    jobTopRatings.setOutputKeyClass(NullWritable.class);
+    jobTopRatings.setOutputValueClass(OrcStruct.class);
+    jobTopRatings.setOutputFormatClass(OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(jobTopRatings, stagingTopK);
+    jobTopRatings.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        MoviesTopKReducerORC.ORC_SCHEMA.toString());
+
+    // JOB TOP BY RATING: JOB EXECUTION
+    jobTopRatings.submit();
+
+    /* *********************************************************************************************
+     * TOTAL RANK OF MOVIES BY AVERAGE MOVIE RATINGS IN PERIOD [Tlb2,Tub2]
+     **********************************************************************************************/
+    // JOB RATING AS KEY: CONFIGURATION
+    Job jobRatingAsKey = Job.getInstance(config, PROGRAM_NAME + "_RATING-AS-KEY");
+    jobRatingAsKey.setJarByClass(Query3_6.class);
+
+    // JOB RATING AS KEY: INPUT CONFIGURATION
+    jobRatingAsKey.setInputFormatClass(OrcInputFormat.class);
+    for (FileStatus status : FileSystem.get(config).listStatus(stagingAverage)) {
+      Path path = status.getPath();
+      if (path.getName().startsWith("2-m")) {
+        OrcInputFormat.addInputPath(jobRatingAsKey, path);
+      }
+    }
+
+    // JOB RATING AS KEY: MAP CONFIGURATION
+    jobRatingAsKey.setMapperClass(AverageRatingAsKeyMapperORC.class);
+    HistogramRangePartitioner.setHistogramEnabled(jobRatingAsKey.getConfiguration(), sortReduceCardinality > 1);
+
+    // JOB RATING AS KEY: REDUCE CONFIGURATION
+    jobRatingAsKey.setNumReduceTasks(0);
+
+    // JOB RATING AS KEY: OUTPUT CONFIGURATION
+    jobRatingAsKey.setOutputKeyClass(DoubleWritable.class);
+    jobRatingAsKey.setOutputValueClass(Text.class);
+    jobRatingAsKey.setOutputFormatClass(SequenceFileOutputFormat.class);
+    SequenceFileOutputFormat.setOutputPath(jobRatingAsKey, stagingSort1);
+
+    // JOB RATING AS KEY: JOB EXECUTION
+    code = jobRatingAsKey.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code != 0) return code;
+
+    // JOB SORT BY AVERAGE RATING: CONFIGURATION
+    Job jobSortByRating = Job.getInstance(config, PROGRAM_NAME + "_SORT-BY-AVERAGE-RATING");
+    jobSortByRating.setJarByClass(Query3_6.class);
+    jobSortByRating.setSortComparatorClass(DoubleWritableDecreasingComparator.class);
+
+    // JOB SORT BY AVERAGE RATING: INPUT CONFIGURATION
+    jobSortByRating.setInputFormatClass(SequenceFileInputFormat.class);
+    SequenceFileInputFormat.addInputPath(jobSortByRating, stagingSort1);
+
+    // JOB SORT BY AVERAGE RATING: MAP CONFIGURATION
+    jobSortByRating.setMapperClass(IdentityMapper2.class);
+    jobSortByRating.setMapOutputKeyClass(DoubleWritable.class);
+    jobSortByRating.setMapOutputValueClass(Text.class);
+
+    // JOB SORT BY AVERAGE RATING: REDUCE CONFIGURATION
+    jobSortByRating.setReducerClass(ValueReducer.class);
+    jobSortByRating.setNumReduceTasks(sortReduceCardinality);
+    LinenoOffsets.setRecordCounting(jobSortByRating.getConfiguration(), true);
+
+    // JOB SORT BY AVERAGE RATING: OUTPUT CONFIGURATION
+    jobSortByRating.setOutputKeyClass(NullWritable.class);
+    jobSortByRating.setOutputValueClass(Text.class);
+    jobSortByRating.setOutputFormatClass(SequenceFileOutputFormat.class);
+    SequenceFileOutputFormat.setOutputPath(jobSortByRating, stagingSort2);
+
+    // JOB SORT BY AVERAGE RATING: PARTITIONER CONFIGURATION
+    if (sortReduceCardinality > 1) {
+      jobSortByRating.getConfiguration().set("mapreduce.output.textoutputformat.separator", "");
+      HistogramRangePartitioner.setPartitionCuts(jobSortByRating, stagingSort1);
+    }
+
+    // JOB SORT BY AVERAGE RATING: EXECUTION
+    //code = jobSortByRating.waitForCompletion(VERBOSE) ? 0 : 1;
+    jobSortByRating.submit();
+
+    while (!jobTopRatings.isComplete() || !jobSortByRating.isComplete()) {
+      Thread.sleep(3000);
+    }
+
+    code = (jobTopRatings.isSuccessful() && jobSortByRating.isSuccessful()) ? 0 : 1;
+
+    /* *********************************************************************************************
+     * RANK COMPARISON
+     **********************************************************************************************/
+    if (code == 0) {
+      // JOB RANK COMPARISON: CONFIGURATION
+      Job jobRankComparison = Job.getInstance(config, PROGRAM_NAME + "_RANK_COMPARISON");
+      jobRankComparison.setJarByClass(Query3_6.class);
+      for (FileStatus status : FileSystem.get(config).listStatus(stagingTopK)) {
+        Path path = status.getPath();
+        if ("_SUCCESS".equals(path.getName())) continue;
+        jobRankComparison.addCacheFile(path.toUri());
+      }
+      jobRankComparison.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+      jobRankComparison.getConfiguration().setIfUnset("moviedoop.path.topk", stagingTopK.toString());
+
+      // JOB AVERAGE RATINGS: INPUT CONFIGURATION
+      jobRankComparison.setInputFormatClass(LinenoSequenceFileInputFormat.class);
+      LinenoSequenceFileInputFormat.addInputPath(jobRankComparison, stagingSort2);
+
+      // JOB AVERAGE RATINGS: MAP CONFIGURATION
+      jobRankComparison.setMapperClass(RankComparisonMapperMixed.class);
+      jobRankComparison.setMapOutputKeyClass(LongWritable.class);
+      jobRankComparison.setMapOutputValueClass(Text.class);
+
+      // JOB AVERAGE RATINGS: REDUCE CONFIGURATION
+      jobRankComparison.setReducerClass(RankComparisonReducer.class);
+      jobRankComparison.setNumReduceTasks(1);
+
+      // JOB AVERAGE RATINGS: OUTPUT CONFIGURATION
+      jobRankComparison.setOutputKeyClass(NullWritable.class);
+      jobRankComparison.setOutputValueClass(Text.class);
+      jobRankComparison.setOutputFormatClass(TextOutputFormat.class);
+      TextOutputFormat.setOutputPath(jobRankComparison, output);
+
+      // JOB AVERAGE RATINGS: EXECUTION
+      code = jobRankComparison.waitForCompletion(VERBOSE) ? 0 : 1;
+    }
+
+    // CLEAN STAGING OUTPUT
+    FileSystem.get(config).delete(stagingAverage, true);
+    FileSystem.get(config).delete(stagingTopK, true);
+    FileSystem.get(config).delete(stagingSort1, true);
+    FileSystem.get(config).delete(stagingSort2, true);
+
+    return code;
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new Query3_6(), args);
+    System.exit(res);
+  }
+}
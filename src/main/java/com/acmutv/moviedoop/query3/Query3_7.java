@@ -0,0 +1,387 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query3;
+
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query3.map.*;
+import com.acmutv.moviedoop.query3.reduce.AverageRating2AndAggregate2ReducerORC;
+import com.acmutv.moviedoop.query3.reduce.MoviesTopKReducerORC;
+import com.acmutv.moviedoop.query3.reduce.RankCountingReducer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A map/reduce program that returns the comparison between
+ * (i) the top-`rankSize` movies, considering average ratings in period from `ratingTimestampTopKLB`
+ * and `ratingTimestampTopKUB`; and
+ * (ii) the total rank of movies, considering average ratings in period from `ratingTimestampRankLB`
+ * and `ratingTimestampRankUB`.
+ * The program leverages TopK (binary heap) for top-k ranking (aggregated ranking), rank by counting (the average ratings of top-k
+ * movies in the total rank period are broadcast, and every mapper counts the movies ranking above them, so that the
+ * total rank is never sorted), inner joins (replication joins as distributed caching on reduce), optimizations on
+ * average computation (2) and ORC serialization.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class Query3_7 extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(Query3_7.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "Query3_7";
+
+  /**
+   * The default movies rank size.
+   */
+  private static final int RANK_SIZE = 10;
+
+  /**
+   * The default lower bound for movie ratings timestamp (for top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (for top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_UB = DateParser.MAX;
+
+  /**
+   * The default lower bound for movie ratings timestamp (for total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (for total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_UB = DateParser.MAX;
+
+  /**
+   * The default number of reducers for the averaging job.
+   */
+  private static final int AVERAGE_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default number of reducers for the ranking job (top-k).
+   */
+  private static final int TOPK_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
+  /**
+   * The rating columns read by the query (movieId, rating, time).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2, 3};
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+    final Path stagingAverage = new Path(args[2] + ".staging/average");
+    final Path stagingTopK = new Path(args[2] + ".staging/topk");
+    final Path output = new Path(args[2]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.topk.size", String.valueOf(RANK_SIZE));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.1", DateParser.toString(RATING_TIMESTAMP_TOPK_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.1", DateParser.toString(RATING_TIMESTAMP_TOPK_UB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.2", DateParser.toString(RATING_TIMESTAMP_SORT_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.2", DateParser.toString(RATING_TIMESTAMP_SORT_UB));
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
+
+    // OTHER CONFIGURATION
+    final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
+    final int topkReduceCardinality = Integer.valueOf(config.get("moviedoop.topk.reduce.cardinality", String.valueOf(TOPK_REDUCE_CARDINALITY)));
+    config.unset("moviedoop.average.reduce.cardinality");
+    config.unset("moviedoop.topk.reduce.cardinality");
+
+    // CONTEXT RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings);
+    System.out.println("Input Movies: " + inputMovies);
+    System.out.println("Output: " + output);
+    System.out.println("Movie Top Rank Size: " + config.get("moviedoop.topk.size"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Top Rank): " + config.get("moviedoop.average.rating.timestamp.lb.1"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Top Rank): " + config.get("moviedoop.average.rating.timestamp.ub.1"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.lb.2"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Total Rank): " + config.get("moviedoop.average.rating.timestamp.ub.2"));
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Reduce Cardinality (Average): " + averageReduceCardinality);
+    System.out.println("Reduce Cardinality (Top Rank): " + topkReduceCardinality);
+    System.out.println("############################################################################");
+
+    /* *********************************************************************************************
+    * AVERAGE MOVIE RATINGS FOR PERIODS [Tlb1,Tub1] and [Tlb2,Tub2]
+    ***********************************************************************************************/
+
+    // JOB AVERAGE RATINGS: CONFIGURATION
+    Job jobAverageRatings = Job.getInstance(config, PROGRAM_NAME + "_AVERAGE-RATINGS");
+    jobAverageRatings.setJarByClass(Query3_7.class);
+
+    // JOB AVERAGE RATINGS: INPUT CONFIGURATION
+    jobAverageRatings.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(jobAverageRatings, inputRatings);
+    OrcPushdown.setColumns(jobAverageRatings.getConfiguration(), RATING_COLUMNS);
+    OrcPushdown.setWindows(jobAverageRatings.getConfiguration(), inputRatings, 3,
+        new long[]{DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.lb.1")),
+            DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.ub.1"))},
+        new long[]{DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.lb.2")),
+            DateParser.toSeconds(config.get("moviedoop.average.rating.timestamp.ub.2"))});
+
+    // JOB AVERAGE RATINGS: MAP CONFIGURATION
+    jobAverageRatings.setMapperClass(FilterRatingsBy2TimeIntervalAndAggregate2MapperORC.class);
+    jobAverageRatings.setMapOutputKeyClass(OrcKey.class);
+    jobAverageRatings.setMapOutputValueClass(RatingHistogramWritable.class);
+    jobAverageRatings.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
+        FilterRatingsBy2TimeIntervalAndAggregate2MapperORC.ORC_SCHEMA_KEY.toString());
+    jobAverageRatings.setSortComparatorClass(OrcKeyComparator.class);
+    jobAverageRatings.setCombinerClass(Aggregate2RatingCombiner.class);
+
+    // JOB AVERAGE RATINGS: REDUCE CONFIGURATION
+    jobAverageRatings.setReducerClass(AverageRating2AndAggregate2ReducerORC.class);
+    jobAverageRatings.setNumReduceTasks(averageReduceCardinality);
+
+    // JOB AVERAGE RATINGS: OUTPUT CONFIGURATION
+    MultipleOutputs.addNamedOutput(jobAverageRatings, "1", OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    MultipleOutputs.addNamedOutput(jobAverageRatings, "2", OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    jobAverageRatings.setOutputFormatClass(LazyOutputFormat.class);
+    LazyOutputFormat.setOutputFormatClass(jobAverageRatings, OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(jobAverageRatings, stagingAverage);
+    jobAverageRatings.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        AverageRating2AndAggregate2ReducerORC.ORC_SCHEMA.toString());
+
+    // JOB AVERAGE RATINGS: EXECUTION
+    int code = jobAverageRatings.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code != 0) return code;
+
+    /* *********************************************************************************************
+     * TOP-K RANK OF MOVIES BY AVERAGE MOVIE RATINGS IN PERIOD [Tlb1,Tub1]
+     **********************************************************************************************/
+    // JOB TOP BY RATING: CONFIGURATION
+    Job jobTopRatings = Job.getInstance(config, PROGRAM_NAME + "_TOP-BY-RATING");
+    jobTopRatings.setJarByClass(Query3_7.class);
+
+    // JOB TOP BY RATING: INPUT CONFIGURATION
+    jobTopRatings.setInputFormatClass(OrcBatchInputFormat.class);
+    for (FileStatus status : FileSystem.get(config).listStatus(stagingAverage)) {
+      Path path = status.getPath();
+      if (path.getName().startsWith("1-r")) {
+        OrcBatchInputFormat.addInputPath(jobTopRatings, path);
+      }
+    }
+
+    // JOB TOP BY RATING: MAP CONFIGURATION
+    jobTopRatings.setMapperClass(MoviesTopKMapperORC.class);
+    jobTopRatings.setMapOutputKeyClass(NullWritable.class);
+    jobTopRatings.setMapOutputValueClass(TopK.class);
+
+    // JOB TOP BY RATING: REDUCE CONFIGURATION
+    jobTopRatings.setReducerClass(MoviesTopKReducerORC.class);
+    jobTopRatings.setNumReduceTasks(topkReduceCardinality);
+
+    // JOB TOP BY RATING: OUTPUT CONFIGURATION
+    jobTopRatings.setOutputKeyClass(NullWritable.class);
+    jobTopRatings.setOutputValueClass(OrcStruct.class);
+    jobTopRatings.setOutputFormatClass(OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(jobTopRatings, stagingTopK);
+    jobTopRatings.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        MoviesTopKReducerORC.ORC_SCHEMA.toString());
+
+    // JOB TOP BY RATING: JOB EXECUTION
+    code = jobTopRatings.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code != 0) return code;
+
+    /* *********************************************************************************************
+     * RANK COMPARISON BY COUNTING IN PERIOD [Tlb2,Tub2]
+     **********************************************************************************************/
+    // JOB RANK BY COUNTING: CONFIGURATION
+    Job jobRankCounting = Job.getInstance(config, PROGRAM_NAME + "_RANK-BY-COUNTING");
+    jobRankCounting.setJarByClass(Query3_7.class);
+    List<Path> topkFiles = new ArrayList<>();
+    for (FileStatus status : FileSystem.get(config).listStatus(stagingTopK)) {
+      Path path = status.getPath();
+      if ("_SUCCESS".equals(path.getName())) continue;
+      topkFiles.add(path);
+      jobRankCounting.addCacheFile(path.toUri());
+    }
+    jobRankCounting.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+    jobRankCounting.getConfiguration().setIfUnset("moviedoop.path.topk", stagingTopK.toString());
+
+    // JOB RANK BY COUNTING: INPUT CONFIGURATION
+    List<Path> rankFiles = new ArrayList<>();
+    jobRankCounting.setInputFormatClass(OrcBatchInputFormat.class);
+    for (FileStatus status : FileSystem.get(config).listStatus(stagingAverage)) {
+      Path path = status.getPath();
+      if (path.getName().startsWith("2-r")) {
+        rankFiles.add(path);
+        OrcBatchInputFormat.addInputPath(jobRankCounting, path);
+      }
+    }
+    long[] topkMovieIds = readScores(config, topkFiles, null).keySet().stream().mapToLong(Long::longValue).toArray();
+    String probes = readScores(config, rankFiles, topkMovieIds).entrySet().stream()
+        .map(entry -> entry.getKey() + "=" + entry.getValue())
+        .collect(Collectors.joining(","));
+    jobRankCounting.getConfiguration().set("moviedoop.rank.probes", probes);
+
+    // JOB RANK BY COUNTING: MAP CONFIGURATION
+    jobRankCounting.setMapperClass(RankCountingMapperORC.class);
+    jobRankCounting.setMapOutputKeyClass(LongWritable.class);
+    jobRankCounting.setMapOutputValueClass(LongWritable.class);
+
+    // JOB RANK BY COUNTING: REDUCE CONFIGURATION
+    jobRankCounting.setReducerClass(RankCountingReducer.class);
+    jobRankCounting.setNumReduceTasks(1);
+
+    // JOB RANK BY COUNTING: OUTPUT CONFIGURATION
+    jobRankCounting.setOutputKeyClass(NullWritable.class);
+    jobRankCounting.setOutputValueClass(Text.class);
+    jobRankCounting.setOutputFormatClass(TextOutputFormat.class);
+    TextOutputFormat.setOutputPath(jobRankCounting, output);
+
+    // JOB RANK BY COUNTING: EXECUTION
+    code = jobRankCounting.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    // CLEAN STAGING OUTPUT
+    FileSystem.get(config).delete(stagingAverage, true);
+    FileSystem.get(config).delete(stagingTopK, true);
+
+    return code;
+  }
+
+  /**
+   * Reads the (movieId,avgRating) tuples from ORC files, in file order.
+   *
+   * @param config the configuration.
+   * @param files the ORC files.
+   * @param movieIds the movieIds to read, pushed down to the ORC reader; null to read every tuple.
+   * @return the map between movieId and average rating.
+   * @throws IOException when the ORC files cannot be read.
+   */
+  private static Map<Long,Double> readScores(Configuration config, List<Path> files, long[] movieIds) throws IOException {
+    SearchArgument sarg = (movieIds == null) ? null : OrcPushdown.buildIn("id", movieIds);
+    Set<Long> filter = (movieIds == null) ? null : Arrays.stream(movieIds).boxed().collect(Collectors.toSet());
+    Map<Long,Double> scores = new LinkedHashMap<>();
+    for (Path path : files) {
+      Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(config));
+      Reader.Options options = reader.options();
+      if (sarg != null) {
+        options.searchArgument(sarg, reader.getSchema().getFieldNames().toArray(new String[0]));
+      }
+      RecordReader rows = reader.rows(options);
+      VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+      while (rows.nextBatch(batch)) {
+        LongColumnVector cvMovieId = (LongColumnVector) batch.cols[0];
+        DoubleColumnVector cvMovieScore = (DoubleColumnVector) batch.cols[1];
+        for (int r = 0; r < batch.size; r++) {
+          long movieId = cvMovieId.vector[r];
+          if (filter == null || filter.contains(movieId)) {
+            scores.put(movieId, cvMovieScore.vector[r]);
+          }
+        }
+      }
+      rows.close();
+    }
+    return scores;
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new Query3_7(), args);
+    System.exit(res);
+  }
+}
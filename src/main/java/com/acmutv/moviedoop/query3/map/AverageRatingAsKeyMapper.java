@@ -25,9 +25,10 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_3;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -35,6 +36,7 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -62,6 +64,27 @@ public class AverageRatingAsKeyMapper extends Mapper<Object,Text,DoubleWritable,
    */
   private Text tuple = new Text();
 
+  /**
+   * The histogram of average ratings, for range partitioning (null if disabled).
+   */
+  private Map<Double,Long> histogram;
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    if (HistogramRangePartitioner.isHistogramEnabled(ctx.getConfiguration())) {
+      this.histogram = new HashMap<>();
+    }
+  }
+
   /**
    * The mapping routine.
    *
@@ -72,11 +95,27 @@ public class AverageRatingAsKeyMapper extends Mapper<Object,Text,DoubleWritable,
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+    this.tokenizer.tokenize(value);
 
-    double score = Double.valueOf(rating.get("score"));
+    double score = this.tokenizer.getDouble(1);
     this.movieRating.set(score);
     this.tuple.set(value);
     ctx.write(this.movieRating, this.tuple);
+    if (this.histogram != null) {
+      this.histogram.merge(score, 1L, Long::sum);
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the histogram cannot be written.
+   * @throws InterruptedException when the histogram cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (this.histogram != null) {
+      HistogramRangePartitioner.writeHistogram(ctx, this.histogram);
+    }
   }
 }
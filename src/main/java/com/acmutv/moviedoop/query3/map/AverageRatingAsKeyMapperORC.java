@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
 import com.acmutv.moviedoop.query3.Query3_4;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.Text;
@@ -33,6 +34,8 @@ import org.apache.log4j.Logger;
 import org.apache.orc.mapred.OrcStruct;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query3_4}.
@@ -59,6 +62,22 @@ public class AverageRatingAsKeyMapperORC extends Mapper<Object,OrcStruct,DoubleW
    */
   private Text tuple = new Text();
 
+  /**
+   * The histogram of average ratings, for range partitioning (null if disabled).
+   */
+  private Map<Double,Long> histogram;
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    if (HistogramRangePartitioner.isHistogramEnabled(ctx.getConfiguration())) {
+      this.histogram = new HashMap<>();
+    }
+  }
+
   /**
    * The mapping routine.
    *
@@ -74,5 +93,21 @@ public class AverageRatingAsKeyMapperORC extends Mapper<Object,OrcStruct,DoubleW
     this.movieRating.set(rating);
     this.tuple.set(movieId + "," + rating);
     ctx.write(this.movieRating, this.tuple);
+    if (this.histogram != null) {
+      this.histogram.merge(rating, 1L, Long::sum);
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the histogram cannot be written.
+   * @throws InterruptedException when the histogram cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (this.histogram != null) {
+      HistogramRangePartitioner.writeHistogram(ctx, this.histogram);
+    }
   }
 }
@@ -25,9 +25,11 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_2;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -35,8 +37,6 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query3_1}, {@link Query3_2}.
@@ -78,17 +78,17 @@ public class FilterRatingsBy2TimeIntervalAndAggregate1Mapper extends Mapper<Obje
   /**
    * The map movieId->(score,repetitions) (1).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_2 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (1,2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1_2 = new MovieRatingAggregator();
 
   /**
    * The movie id to emit.
@@ -100,6 +100,11 @@ public class FilterRatingsBy2TimeIntervalAndAggregate1Mapper extends Mapper<Obje
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
@@ -117,6 +122,11 @@ public class FilterRatingsBy2TimeIntervalAndAggregate1Mapper extends Mapper<Obje
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.1: " + this.movieRatingTimestampUpperBound1);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.2: " + this.movieRatingTimestampLowerBound2);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.2: " + this.movieRatingTimestampUpperBound2);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings_1_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_1.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
   }
 
   /**
@@ -129,29 +139,35 @@ public class FilterRatingsBy2TimeIntervalAndAggregate1Mapper extends Mapper<Obje
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1
         && timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_1_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1_2.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_1_2.add(movieId, score);
+      if (this.movieIdToAggregateRatings_1_2.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_1_2, "1;2:", ctx);
+      }
     } else if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_1.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_1.add(movieId, score);
+      if (this.movieIdToAggregateRatings_1.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_1, "1:", ctx);
+      }
     } else if (timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_2.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_2.add(movieId, score);
+      if (this.movieIdToAggregateRatings_2.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_2, "2:", ctx);
+      }
     }
   }
 
@@ -161,32 +177,49 @@ public class FilterRatingsBy2TimeIntervalAndAggregate1Mapper extends Mapper<Obje
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings_1_2.keySet()) {
-      this.movieId.set(movieId);
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings_1_2.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        double score = entry.getKey();
-        this.tuple.set("1;2:" + score + "," + repetitions);
-        ctx.write(this.movieId, this.tuple);
-      }
-    }
+    this.flush(this.movieIdToAggregateRatings_1_2, "1;2:", ctx);
+    this.flush(this.movieIdToAggregateRatings_1, "1:", ctx);
+    this.flush(this.movieIdToAggregateRatings_2, "2:", ctx);
+    this.movieIdToAggregateRatings_1_2.report(ctx);
+    this.movieIdToAggregateRatings_1.report(ctx);
+    this.movieIdToAggregateRatings_2.report(ctx);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_1.keySet()) {
-      this.movieId.set(movieId);
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings_1.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        double score = entry.getKey();
-        this.tuple.set("1:" + score + "," + repetitions);
-        ctx.write(this.movieId, this.tuple);
-      }
-    }
+  /**
+   * Emits the partial aggregates in the given table and clears it, when it exceeds the memory budget.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param header the header of the time intervals (1:, 2: or 1;2:).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(MovieRatingAggregator movieIdToAggregateRatings, String header, Context ctx)
+      throws IOException, InterruptedException {
+    this.flush(movieIdToAggregateRatings, header, ctx);
+    movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_2.keySet()) {
-      this.movieId.set(movieId);
-      for (Map.Entry<Double,Long> entry : this.movieIdToAggregateRatings_2.get(movieId).entrySet()) {
-        long repetitions = entry.getValue();
-        double score = entry.getKey();
-        this.tuple.set("2:" + score + "," + repetitions);
+  /**
+   * Emits the aggregates in the given table, prefixed with the header of the time intervals.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param header the header of the time intervals (1:, 2: or 1;2:).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(MovieRatingAggregator movieIdToAggregateRatings, String header, Context ctx)
+      throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      for (int b = 0; b < RatingHistogramWritable.BUCKETS; b++) {
+        int repetitions = cursor.getRepetitions(b);
+        if (repetitions == 0) continue;
+        double score = RatingHistogramWritable.score(b);
+        this.tuple.set(header + score + "," + repetitions);
         ctx.write(this.movieId, this.tuple);
       }
     }
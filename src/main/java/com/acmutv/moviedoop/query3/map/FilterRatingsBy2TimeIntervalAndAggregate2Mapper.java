@@ -25,8 +25,10 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_3;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -34,12 +36,10 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query3_3}.
- * It emits N(movieId,rating) where N=(1|2) and rating is a score attributed with timestamp within
+ * It emits (movieId,N:ratings) where N=(1|2|1;2) is the histogram tag and ratings is a score attributed with timestamp within
  * [`movieRatingTimestampLowerBound1`,`movieRatingTimestampUpperBound1`] or within
  * [`movieRatingTimestampLowerBound2`,`movieRatingTimestampUpperBound2`]
  *
@@ -47,7 +47,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Object,Text,LongWritable,Text> {
+public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Object,Text,LongWritable,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -77,17 +77,17 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Obje
   /**
    * The map movieId->(score,repetitions) (1).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_2 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (1,2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1_2 = new MovieRatingAggregator();
 
   /**
    * The movie id to emit.
@@ -95,9 +95,14 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Obje
   private LongWritable movieId = new LongWritable();
 
   /**
-   * The tuple (N,score) to emit.
+   * The histogram (N:ratings) to emit.
    */
-  private Text tuple = new Text();
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
 
   /**
    * Configures the mapper.
@@ -116,6 +121,11 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Obje
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.1: " + this.movieRatingTimestampUpperBound1);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.2: " + this.movieRatingTimestampLowerBound2);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.2: " + this.movieRatingTimestampUpperBound2);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings_1_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_1.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
   }
 
   /**
@@ -128,29 +138,35 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Obje
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1
         && timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_1_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1_2.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_1_2.add(movieId, score);
+      if (this.movieIdToAggregateRatings_1_2.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_1_2, (byte) 3, ctx);
+      }
     } else if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_1.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_1.add(movieId, score);
+      if (this.movieIdToAggregateRatings_1.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_1, (byte) 1, ctx);
+      }
     } else if (timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
-      this.movieIdToAggregateRatings_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_2.get(movieId).compute(score, (k,v) -> (v == null) ? 1 : v + 1);
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
+      this.movieIdToAggregateRatings_2.add(movieId, score);
+      if (this.movieIdToAggregateRatings_2.isFull()) {
+        this.spill(this.movieIdToAggregateRatings_2, (byte) 2, ctx);
+      }
     }
   }
 
@@ -160,28 +176,47 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2Mapper extends Mapper<Obje
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings_1_2.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_1_2.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("1;2:" + report);
-      ctx.write(this.movieId, this.tuple);
-    }
+    this.flush(this.movieIdToAggregateRatings_1_2, (byte) 3, ctx);
+    this.flush(this.movieIdToAggregateRatings_1, (byte) 1, ctx);
+    this.flush(this.movieIdToAggregateRatings_2, (byte) 2, ctx);
+    this.movieIdToAggregateRatings_1_2.report(ctx);
+    this.movieIdToAggregateRatings_1.report(ctx);
+    this.movieIdToAggregateRatings_2.report(ctx);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_1.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_1.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("1:" + report);
-      ctx.write(this.movieId, this.tuple);
-    }
+  /**
+   * Emits the partial aggregates in the given table and clears it, when it exceeds the memory budget.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the time intervals (1, 2 or 1|2).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    this.flush(movieIdToAggregateRatings, tag, ctx);
+    movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_2.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_2.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("2:" + report);
-      ctx.write(this.movieId, this.tuple);
+  /**
+   * Emits the histograms in the given map, tagged with the bitmask of the time intervals.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the time intervals (1, 2 or 1|2).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
+      this.ratings.setTag(tag);
+      ctx.write(this.movieId, this.ratings);
     }
   }
 }
@@ -25,24 +25,26 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
 import com.acmutv.moviedoop.common.util.DateParser;
 import com.acmutv.moviedoop.query3.Query3_4;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query3_4}.
- * It emits N(movieId,rating) where N=(1|2) and rating is a score attributed with timestamp within
+ * It emits (movieId,N:ratings) where N=(1|2|1;2) is the histogram tag and ratings is a score attributed with timestamp within
  * [`movieRatingTimestampLowerBound1`,`movieRatingTimestampUpperBound1`] or within
  * [`movieRatingTimestampLowerBound2`,`movieRatingTimestampUpperBound2`].
  *
@@ -50,7 +52,7 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<Object,OrcStruct,OrcKey,OrcValue> {
+public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<NullWritable,VectorizedRowBatch,OrcKey,RatingHistogramWritable> {
 
   /**
    * The logger.
@@ -62,40 +64,25 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<O
    */
   public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<id:bigint>");
 
-  /**
-   * The ORC schema for value.
-   */
-  public static final TypeDescription ORC_SCHEMA_VALUE = TypeDescription.fromString("struct<ratings:string>");
-
   /**
    * The key ORC wrapper
    */
   private OrcKey keywrapper = new OrcKey();
 
-  /**
-   * The value ORC wrapper.
-   */
-  private OrcValue valuewrapper = new OrcValue();
-
   /**
    * The ORC struct for key.
    */
   private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
 
-  /**
-   * The ORC struct for value.
-   */
-  private OrcStruct valueStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_VALUE);
-
   /**
    * The movieId to emit.
    */
   private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
 
   /**
-   * The tuple {rating=repetitions,...,rating=repetitions} to emit.
+   * The histogram (N:ratings) to emit.
    */
-  private Text tuple = (Text) valueStruct.getFieldValue(0);
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
 
   /**
    * The lower bound for the movie rating timestamp (1).
@@ -120,17 +107,17 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<O
   /**
    * The map movieId->(score,repetitions) (1).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_2 = new MovieRatingAggregator();
 
   /**
    * The map movieId->(score,repetitions) (1,2).
    */
-  private Map<Long,Map<Double,Long>> movieIdToAggregateRatings_1_2 = new HashMap<>();
+  private MovieRatingAggregator movieIdToAggregateRatings_1_2 = new MovieRatingAggregator();
 
   /**
    * Configures the mapper.
@@ -149,39 +136,56 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<O
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.1: " + this.movieRatingTimestampUpperBound1);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.2: " + this.movieRatingTimestampLowerBound2);
     LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.2: " + this.movieRatingTimestampUpperBound2);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.movieIdToAggregateRatings_1_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_1.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    this.movieIdToAggregateRatings_2.setMaxMemoryBytes((aggregateBufferMb << 20) / 3);
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
   }
 
   /**
    * The mapping routine.
    *
    * @param key the input key.
-   * @param value the input value.
+   * @param value the input row batch.
    * @param ctx the context.
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
-    long timestamp = Long.valueOf(value.getFieldValue(3).toString());
-    if (timestamp >= this.movieRatingTimestampLowerBound1
-        && timestamp <= this.movieRatingTimestampUpperBound1
-        && timestamp >= this.movieRatingTimestampLowerBound2
-        && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(value.getFieldValue(1).toString());
-      double rating = Double.valueOf(value.getFieldValue(2).toString());
-      this.movieIdToAggregateRatings_1_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1_2.get(movieId).compute(rating, (k,v) -> (v == null) ? 1 : v + 1);
-    } else if (timestamp >= this.movieRatingTimestampLowerBound1
-        && timestamp <= this.movieRatingTimestampUpperBound1) {
-      long movieId = Long.valueOf(value.getFieldValue(1).toString());
-      double rating = Double.valueOf(value.getFieldValue(2).toString());
-      this.movieIdToAggregateRatings_1.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_1.get(movieId).compute(rating, (k,v) -> (v == null) ? 1 : v + 1);
-    } else if (timestamp >= this.movieRatingTimestampLowerBound2
-        && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(value.getFieldValue(1).toString());
-      double rating = Double.valueOf(value.getFieldValue(2).toString());
-      this.movieIdToAggregateRatings_2.putIfAbsent(movieId, new HashMap<>());
-      this.movieIdToAggregateRatings_2.get(movieId).compute(rating, (k,v) -> (v == null) ? 1 : v + 1);
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    ColumnVector timestamps = value.cols[3];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long timestamp = ColumnVectorParser.getLong(timestamps, row);
+      if (timestamp >= this.movieRatingTimestampLowerBound1
+          && timestamp <= this.movieRatingTimestampUpperBound1
+          && timestamp >= this.movieRatingTimestampLowerBound2
+          && timestamp <= this.movieRatingTimestampUpperBound2) {
+        long movieId = ColumnVectorParser.getLong(movieIds, row);
+        double rating = ColumnVectorParser.getDouble(scores, row);
+        this.movieIdToAggregateRatings_1_2.add(movieId, rating);
+        if (this.movieIdToAggregateRatings_1_2.isFull()) {
+          this.spill(this.movieIdToAggregateRatings_1_2, (byte) 3, ctx);
+        }
+      } else if (timestamp >= this.movieRatingTimestampLowerBound1
+          && timestamp <= this.movieRatingTimestampUpperBound1) {
+        long movieId = ColumnVectorParser.getLong(movieIds, row);
+        double rating = ColumnVectorParser.getDouble(scores, row);
+        this.movieIdToAggregateRatings_1.add(movieId, rating);
+        if (this.movieIdToAggregateRatings_1.isFull()) {
+          this.spill(this.movieIdToAggregateRatings_1, (byte) 1, ctx);
+        }
+      } else if (timestamp >= this.movieRatingTimestampLowerBound2
+          && timestamp <= this.movieRatingTimestampUpperBound2) {
+        long movieId = ColumnVectorParser.getLong(movieIds, row);
+        double rating = ColumnVectorParser.getDouble(scores, row);
+        this.movieIdToAggregateRatings_2.add(movieId, rating);
+        if (this.movieIdToAggregateRatings_2.isFull()) {
+          this.spill(this.movieIdToAggregateRatings_2, (byte) 2, ctx);
+        }
+      }
     }
   }
 
@@ -191,34 +195,48 @@ public class FilterRatingsBy2TimeIntervalAndAggregate2MapperORC extends Mapper<O
    * @param ctx the job context.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Long movieId : this.movieIdToAggregateRatings_1_2.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_1_2.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("1;2:" + report);
-      this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, this.valuewrapper);
-    }
+    this.flush(this.movieIdToAggregateRatings_1_2, (byte) 3, ctx);
+    this.flush(this.movieIdToAggregateRatings_1, (byte) 1, ctx);
+    this.flush(this.movieIdToAggregateRatings_2, (byte) 2, ctx);
+    this.movieIdToAggregateRatings_1_2.report(ctx);
+    this.movieIdToAggregateRatings_1.report(ctx);
+    this.movieIdToAggregateRatings_2.report(ctx);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_1.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_1.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("1:" + report);
-      this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, this.valuewrapper);
-    }
+  /**
+   * Emits the partial aggregates in the given table and clears it, when it exceeds the memory budget.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the time intervals (1, 2 or 1|2).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    this.flush(movieIdToAggregateRatings, tag, ctx);
+    movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
 
-    for (Long movieId : this.movieIdToAggregateRatings_2.keySet()) {
-      this.movieId.set(movieId);
-      String report = this.movieIdToAggregateRatings_2.get(movieId).toString().replaceAll(" ", "");
-      report = report.substring(1, report.length() - 1);
-      this.tuple.set("2:" + report);
+  /**
+   * Emits the histograms in the given map, tagged with the bitmask of the time intervals.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the time intervals (1, 2 or 1|2).
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
+      this.ratings.setTag(tag);
       this.keywrapper.key = keyStruct;
-      this.valuewrapper.value = valueStruct;
-      ctx.write(this.keywrapper, this.valuewrapper);
+      ctx.write(this.keywrapper, this.ratings);
     }
   }
 }
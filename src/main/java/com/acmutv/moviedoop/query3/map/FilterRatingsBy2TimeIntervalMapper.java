@@ -27,14 +27,13 @@ package com.acmutv.moviedoop.query3.map;
 
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.common.util.DateParser;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_2;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The mapper for jobs in: {@link Query3_1}, {@link Query3_2}.
@@ -78,6 +77,11 @@ public class FilterRatingsBy2TimeIntervalMapper extends Mapper<Object,Text,LongW
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
@@ -103,29 +107,29 @@ public class FilterRatingsBy2TimeIntervalMapper extends Mapper<Object,Text,LongW
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"userId","movieId","score","timestamp"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long timestamp = Long.valueOf(rating.get("timestamp"));
+    long timestamp = this.tokenizer.getLong(3);
     if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1
         && timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
       this.movieId.set(movieId);
       this.tuple.set("1;2:" + score);
       ctx.write(this.movieId, this.tuple);
     } else if (timestamp >= this.movieRatingTimestampLowerBound1
         && timestamp <= this.movieRatingTimestampUpperBound1) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
       this.movieId.set(movieId);
       this.tuple.set("1:" + score);
       ctx.write(this.movieId, this.tuple);
     } else if (timestamp >= this.movieRatingTimestampLowerBound2
         && timestamp <= this.movieRatingTimestampUpperBound2) {
-      long movieId = Long.valueOf(rating.get("movieId"));
-      double score = Double.valueOf(rating.get("score"));
+      long movieId = this.tokenizer.getLong(1);
+      double score = this.tokenizer.getDouble(2);
       this.movieId.set(movieId);
       this.tuple.set("2:" + score);
       ctx.write(this.movieId, this.tuple);
@@ -25,33 +25,33 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
-import com.acmutv.moviedoop.common.struct.BestMap;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.query3.Query3_3;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
- * The mapper for jobs in: {@link Query3_1}, {@link Query3_2}.
- * It emits the top-`moviesTopKSize` (movieId,avgRating).
- * It leverages BestMap.
+ * The mapper for jobs in: {@link Query3_1}, {@link Query3_2}, {@link Query3_3}.
+ * It emits the top-`moviesTopKSize` (movieId,avgRating) of the split.
+ * It leverages TopK.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class MoviesTopKBestMapMapper extends Mapper<Object,Text,NullWritable,Text> {
+public class MoviesTopKMapper extends Mapper<Object,Text,NullWritable,TopK> {
 
   /**
    * The logger.
    */
-  private static final Logger LOG = Logger.getLogger(MoviesTopKBestMapMapper.class);
+  private static final Logger LOG = Logger.getLogger(MoviesTopKMapper.class);
 
   /**
    * The null writable value.
@@ -61,12 +61,12 @@ public class MoviesTopKBestMapMapper extends Mapper<Object,Text,NullWritable,Tex
   /**
    * The rank data structure.
    */
-  private BestMap rank = new BestMap();
+  private TopK rank = new TopK();
 
   /**
-   * The tuple (movieId,rating) to emit.
+   * The tokenizer for input records.
    */
-  private Text tuple = new Text();
+  private CsvTokenizer tokenizer = new CsvTokenizer();
 
   /**
    * Configures the mapper.
@@ -75,7 +75,8 @@ public class MoviesTopKBestMapMapper extends Mapper<Object,Text,NullWritable,Tex
    */
   protected void setup(Context ctx) {
     int moviesTopKSize = Integer.valueOf(ctx.getConfiguration().get("moviedoop.topk.size"));
-    this.rank.setMaxSize(moviesTopKSize);
+    this.rank.setCapacity(moviesTopKSize);
+    LOG.debug("[SETUP] moviedoop.topk.size: " + moviesTopKSize);
   }
 
   /**
@@ -88,23 +89,22 @@ public class MoviesTopKBestMapMapper extends Mapper<Object,Text,NullWritable,Tex
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(rating.get("movieId"));
-    double score = Double.valueOf(rating.get("score"));
+    long movieId = this.tokenizer.getLong(0);
+    double score = this.tokenizer.getDouble(1);
 
-    this.rank.put(movieId, score);
+    this.rank.add(movieId, score);
   }
 
   /**
    * Flushes the mapper.
    *
    * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Map.Entry<Long,Double> entry : this.rank.entrySet()) {
-      this.tuple.set(entry.getKey() + "," + entry.getValue());
-      ctx.write(NULL, this.tuple);
-    }
+    ctx.write(NULL, this.rank);
   }
 }
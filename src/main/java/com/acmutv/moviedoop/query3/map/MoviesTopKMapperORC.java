@@ -25,63 +25,42 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
-import com.acmutv.moviedoop.common.struct.BestMap;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
 import com.acmutv.moviedoop.query3.Query3_4;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
-import org.apache.orc.TypeDescription;
-import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
 
 /**
  * The mapper for jobs in: {@link Query3_4}.
- * It emits the top-`moviesTopKSize` (movieId,avgRating).
- * It leverages BestMap.
+ * It emits the top-`moviesTopKSize` (movieId,avgRating) of the split.
+ * It leverages TopK.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class MoviesTopKBestMapMapperORC extends Mapper<Object,OrcStruct,NullWritable,OrcValue> {
+public class MoviesTopKMapperORC extends Mapper<NullWritable,VectorizedRowBatch,NullWritable,TopK> {
 
   /**
    * The logger.
    */
-  private static final Logger LOG = Logger.getLogger(MoviesTopKBestMapMapperORC.class);
+  private static final Logger LOG = Logger.getLogger(MoviesTopKMapperORC.class);
 
   /**
    * The null writable value.
    */
   private static final NullWritable NULL = NullWritable.get();
 
-  /**
-   * The ORC schema for value.
-   */
-  public static final TypeDescription ORC_SCHEMA_VALUE = TypeDescription.fromString("struct<topk:string>");
-
-  /**
-   * The value ORC wrapper.
-   */
-  private OrcValue valuewrapper = new OrcValue();
-
-  /**
-   * The ORC struct for value.
-   */
-  private OrcStruct valueStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_VALUE);
-
   /**
    * The rank data structure.
    */
-  private BestMap rank = new BestMap();
-
-  /**
-   * The tuple {movieId=avgrating,...,movieId=avgrating} to emit.
-   */
-  private Text tuple = (Text) valueStruct.getFieldValue(0);
+  private TopK rank = new TopK();
 
   /**
    * Configures the mapper.
@@ -90,7 +69,7 @@ public class MoviesTopKBestMapMapperORC extends Mapper<Object,OrcStruct,NullWrit
    */
   protected void setup(Context ctx) {
     int moviesTopKSize = Integer.valueOf(ctx.getConfiguration().get("moviedoop.topk.size"));
-    this.rank.setMaxSize(moviesTopKSize);
+    this.rank.setCapacity(moviesTopKSize);
     LOG.debug("[SETUP] moviedoop.topk.size: " + moviesTopKSize);
   }
 
@@ -100,26 +79,26 @@ public class MoviesTopKBestMapMapperORC extends Mapper<Object,OrcStruct,NullWrit
    * @param key the input key.
    * @param value the input value.
    * @param ctx the context.
-   * @throws IOException when the context cannot be written.
-   * @throws InterruptedException when the context cannot be written.
    */
-  public void map(Object key, OrcStruct value, Context ctx) throws IOException, InterruptedException {
-    long movieId = Long.valueOf(value.getFieldValue(0).toString());
-    double rating = Double.valueOf(value.getFieldValue(1).toString());
-
-    this.rank.put(movieId, rating);
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) {
+    ColumnVector movieIds = value.cols[0];
+    ColumnVector scores = value.cols[1];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      double rating = ColumnVectorParser.getDouble(scores, row);
+      this.rank.add(movieId, rating);
+    }
   }
 
   /**
    * Flushes the mapper.
    *
    * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    String report = this.rank.toString().replaceAll(" ", "");
-    report = report.substring(1, report.length() - 1);
-    this.tuple.set(report);
-    this.valuewrapper.value = valueStruct;
-    ctx.write(NULL, this.valuewrapper);
+    ctx.write(NULL, this.rank);
   }
 }
@@ -27,7 +27,7 @@ package com.acmutv.moviedoop.query3.map;
 
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -73,6 +73,11 @@ public class MoviesTopKTreeMapMapper extends Mapper<Object,Text,NullWritable,Tex
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    *
@@ -92,10 +97,10 @@ public class MoviesTopKTreeMapMapper extends Mapper<Object,Text,NullWritable,Tex
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> rating = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(rating.get("movieId"));
-    double score = Double.valueOf(rating.get("score"));
+    long movieId = this.tokenizer.getLong(0);
+    double score = this.tokenizer.getDouble(1);
 
     this.rank.put(score, movieId);
 
@@ -26,18 +26,19 @@
 package com.acmutv.moviedoop.query3.map;
 
 import com.acmutv.moviedoop.query3.Query3_1;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_2;
 import com.acmutv.moviedoop.query3.Query3_3;
+import com.acmutv.moviedoop.query3.reduce.RankComparisonReducer;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.util.LineReader;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
@@ -51,65 +52,63 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RankComparisonMapper extends Mapper<LongWritable,Text,NullWritable,Text> {
+public class RankComparisonMapper extends Mapper<LongWritable,Text,LongWritable,Text> {
 
   /**
    * The logger.
    */
   private static final Logger LOG = Logger.getLogger(RankComparisonMapper.class);
 
-  /**
-   * The null writable value.
-   */
-  private static final NullWritable NULL = NullWritable.get();
-
   /**
    * The map between movieId and movie top-k rankin (rank position and score).
    */
   private Map<Long,String> movieIdToMovieTopKPositionAndScore = new HashMap<>();
 
   /**
-   * The map between movieId and movie title.
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The tuple (topKPosition,movieId,rankPosition,delta) to emit.
    */
   private Text tuple = new Text();
 
+  /**
+   * The rank position to emit.
+   */
+  private LongWritable position = new LongWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    String pathMovies = ctx.getConfiguration().get("moviedoop.path.movies");
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
+
     String pathTopK = ctx.getConfiguration().get("moviedoop.path.topk");
     try {
       for (URI uri : ctx.getCacheFiles()) {
         Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        if (path.getParent().toString().endsWith(pathMovies)) {
-          while ((line = br.readLine()) != null) {
-            Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"},RecordParser.ESCAPED_DELIMITER);
-            long movieId = Long.valueOf(movie.get("id"));
-            String movieTitle = movie.get("title");
-            this.movieIdToMovieTitle.put(movieId, movieTitle);
-          }
-        } else if (path.getParent().toString().endsWith(pathTopK)) {
+        LineReader reader = new LineReader(new FileInputStream(path.getName()));
+        Text line = new Text();
+        if (path.getParent().toString().endsWith(pathTopK)) {
           long movieTopKPosition = 1;
-          while ((line = br.readLine()) != null) {
-            Map<String,String> movie = RecordParser.parse(line, new String[] {"id","score"},",");
-            long movieId = Long.valueOf(movie.get("id"));
-            double movieTopKScore = Double.valueOf(movie.get("score"));
+          while (reader.readLine(line) > 0) {
+            this.tokenizer.tokenize(line);
+            long movieId = this.tokenizer.getLong(0);
+            double movieTopKScore = this.tokenizer.getDouble(1);
             this.movieIdToMovieTopKPositionAndScore.put(movieId, movieTopKPosition + ";" + movieTopKScore);
             movieTopKPosition++;
           }
         }
-        br.close();
+        reader.close();
       }
     } catch (IOException exc) {
       exc.printStackTrace();
@@ -126,28 +125,29 @@ public class RankComparisonMapper extends Mapper<LongWritable,Text,NullWritable,
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(LongWritable key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> movie = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(movie.get("movieId"));
+    long movieId = this.tokenizer.getLong(0);
     long rankPosition = key.get();
-    double rankScore = Double.valueOf(movie.get("score"));
+    double rankScore = this.tokenizer.getDouble(1);
 
     if (this.movieIdToMovieTopKPositionAndScore.containsKey(movieId)) {
       String topkDetails[] = this.movieIdToMovieTopKPositionAndScore.get(movieId).split(";");
-      String movieTitle = this.movieIdToMovieTitle.get(movieId);
+      String movieTitle = this.movies.getTitle(movieId);
       long topKPosition = Long.valueOf(topkDetails[0]);
       double topkScore = Double.valueOf(topkDetails[1]);
       long deltaPosition = rankPosition - topKPosition;
       double deltaScore = topkScore - rankScore;
       this.tuple.set(movieTitle + "\t" + deltaPosition + "\t" + deltaScore);
-      ctx.write(NullWritable.get(), this.tuple);
+      this.position.set(rankPosition);
+      ctx.write(this.position, this.tuple);
       this.movieIdToMovieTopKPositionAndScore.remove(movieId);
-      this.movieIdToMovieTitle.remove(movieId);
     }
   }
 
   /**
    * Flushes the mapper.
+   * It emits the top-k movies not found in the split as (movieTitle,na,na), keyed by {@link RankComparisonReducer#NOT_FOUND}.
    *
    * @param ctx the job context.
    */
@@ -155,9 +155,10 @@ public class RankComparisonMapper extends Mapper<LongWritable,Text,NullWritable,
     if (!this.movieIdToMovieTopKPositionAndScore.isEmpty()) {
       for (Map.Entry<Long,String> entry : this.movieIdToMovieTopKPositionAndScore.entrySet()) {
         long movieId = entry.getKey();
-        String movieTitle = this.movieIdToMovieTitle.get(movieId);
+        String movieTitle = this.movies.getTitle(movieId);
         this.tuple.set(movieTitle + "\tna\tna");
-        ctx.write(NULL, this.tuple);
+        this.position.set(RankComparisonReducer.NOT_FOUND);
+        ctx.write(this.position, this.tuple);
       }
     }
   }
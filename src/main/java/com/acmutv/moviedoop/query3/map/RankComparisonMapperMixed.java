@@ -25,15 +25,15 @@
  */
 package com.acmutv.moviedoop.query3.map;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.query3.Query3_4;
+import com.acmutv.moviedoop.query3.reduce.RankComparisonReducer;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
@@ -55,17 +55,13 @@ import java.util.Map;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class RankComparisonMapperMixed extends Mapper<LongWritable,Text,NullWritable,Text> {
+public class RankComparisonMapperMixed extends Mapper<LongWritable,Text,LongWritable,Text> {
 
   /**
    * The logger.
    */
   private static final Logger LOG = Logger.getLogger(RankComparisonMapperMixed.class);
 
-  /**
-   * The null writable value.
-   */
-  private static final NullWritable NULL = NullWritable.get();
 
   /**
    * The map between movieId and movie top-k rankin (rank position and score).
@@ -73,43 +69,40 @@ public class RankComparisonMapperMixed extends Mapper<LongWritable,Text,NullWrit
   private Map<Long,String> movieIdToMovieTopKPositionAndScore = new HashMap<>();
 
   /**
-   * The map between movieId and movie title.
+   * The cached movie index.
    */
-  private Map<Long,String> movieIdToMovieTitle = new HashMap<>();
+  private MovieIndex movies;
 
   /**
    * The tuple (topKPosition,movieId,rankPosition,delta) to emit.
    */
   private Text tuple = new Text();
 
+  /**
+   * The rank position to emit.
+   */
+  private LongWritable position = new LongWritable();
+
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the mapper.
    * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
    */
-  protected void setup(Context ctx) {
-    String pathMovies = ctx.getConfiguration().get("moviedoop.path.movies");
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
+
     String pathTopK = ctx.getConfiguration().get("moviedoop.path.topk");
-    LOG.debug("[SETUP] moviedoop.path.movies: " + pathMovies);
     LOG.debug("[SETUP] moviedoop.path.topk: " + pathTopK);
 
     try {
       for (URI uri : ctx.getCacheFiles()) {
         Path path = new Path(uri);
-        if (path.getParent().toString().endsWith(pathMovies)) {
-          Reader reader = OrcFile.createReader(path, new OrcFile.ReaderOptions(ctx.getConfiguration()));
-          RecordReader rows = reader.rows();
-          VectorizedRowBatch batch = reader.getSchema().createRowBatch();
-          while (rows.nextBatch(batch)) {
-            BytesColumnVector cvMovieId = (BytesColumnVector) batch.cols[0];
-            BytesColumnVector cvMovieTitle = (BytesColumnVector) batch.cols[1];
-            for (int r = 0; r < batch.size; r++) {
-              long movieId = Long.valueOf(cvMovieId.toString(r));
-              String movieTitle = cvMovieTitle.toString(r);
-              this.movieIdToMovieTitle.put(movieId, movieTitle);
-            }
-          }
-          rows.close();
-        } else if (path.getParent().toString().endsWith(pathTopK)) {
+        if (path.getParent().toString().endsWith(pathTopK)) {
           Reader reader = OrcFile.createReader(path, new OrcFile.ReaderOptions(ctx.getConfiguration()));
           RecordReader rows = reader.rows();
           VectorizedRowBatch batch = reader.getSchema().createRowBatch();
@@ -142,28 +135,29 @@ public class RankComparisonMapperMixed extends Mapper<LongWritable,Text,NullWrit
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(LongWritable key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> movie = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+    this.tokenizer.tokenize(value);
 
-    long movieId = Long.valueOf(movie.get("movieId"));
+    long movieId = this.tokenizer.getLong(0);
     long rankPosition = key.get();
-    double rankScore = Double.valueOf(movie.get("score"));
+    double rankScore = this.tokenizer.getDouble(1);
 
     if (this.movieIdToMovieTopKPositionAndScore.containsKey(movieId)) {
       String topkDetails[] = this.movieIdToMovieTopKPositionAndScore.get(movieId).split(";");
-      String movieTitle = this.movieIdToMovieTitle.get(movieId);
+      String movieTitle = this.movies.getTitle(movieId);
       long topKPosition = Long.valueOf(topkDetails[0]);
       double topkScore = Double.valueOf(topkDetails[1]);
       long deltaPosition = rankPosition - topKPosition;
       double deltaScore = topkScore - rankScore;
       this.tuple.set(movieTitle + "\t" + deltaPosition + "\t" + deltaScore);
-      ctx.write(NullWritable.get(), this.tuple);
+      this.position.set(rankPosition);
+      ctx.write(this.position, this.tuple);
       this.movieIdToMovieTopKPositionAndScore.remove(movieId);
-      this.movieIdToMovieTitle.remove(movieId);
     }
   }
 
   /**
    * Flushes the mapper.
+   * It emits the top-k movies not found in the split as (movieTitle,na,na), keyed by {@link RankComparisonReducer#NOT_FOUND}.
    *
    * @param ctx the job context.
    */
@@ -171,9 +165,10 @@ public class RankComparisonMapperMixed extends Mapper<LongWritable,Text,NullWrit
     if (!this.movieIdToMovieTopKPositionAndScore.isEmpty()) {
       for (Map.Entry<Long,String> entry : this.movieIdToMovieTopKPositionAndScore.entrySet()) {
         long movieId = entry.getKey();
-        String movieTitle = this.movieIdToMovieTitle.get(movieId);
+        String movieTitle = this.movies.getTitle(movieId);
         this.tuple.set(movieTitle + "\tna\tna");
-        ctx.write(NULL, this.tuple);
+        this.position.set(RankComparisonReducer.NOT_FOUND);
+        ctx.write(this.position, this.tuple);
       }
     }
   }
@@ -0,0 +1,159 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query3.map;
+
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.query3.Query3_7;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The mapper for jobs in: {@link Query3_7}.
+ * It counts, for every probed movie, how many movies of the split rank above it, and emits
+ * (movieId,count) for every probed movie.
+ * A movie ranks above a probed movie if it has a greater average rating, or the same average rating
+ * and a lower movieId.
+ * The probed movies are read from `moviedoop.rank.probes` as a list of `movieId=avgRating`.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RankCountingMapperORC extends Mapper<NullWritable,VectorizedRowBatch,LongWritable,LongWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RankCountingMapperORC.class);
+
+  /**
+   * The probed movieIds, sorted by ascending average rating.
+   */
+  private long[] probeIds;
+
+  /**
+   * The probed average ratings, in ascending order.
+   */
+  private double[] probeScores;
+
+  /**
+   * The number of movies with average rating strictly greater than exactly the first `i` probes.
+   */
+  private long[] above;
+
+  /**
+   * The number of movies ranking above a probe with the same average rating.
+   */
+  private long[] ties;
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = new LongWritable();
+
+  /**
+   * The count to emit.
+   */
+  private LongWritable count = new LongWritable();
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    String probes = ctx.getConfiguration().get("moviedoop.rank.probes", "");
+    LOG.debug("[SETUP] moviedoop.rank.probes: " + probes);
+
+    String[][] entries = Arrays.stream(probes.split(","))
+        .filter(entry -> !entry.isEmpty())
+        .map(entry -> entry.split("="))
+        .sorted(Comparator.comparingDouble(entry -> Double.valueOf(entry[1])))
+        .toArray(String[][]::new);
+    this.probeIds = new long[entries.length];
+    this.probeScores = new double[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      this.probeIds[i] = Long.valueOf(entries[i][0]);
+      this.probeScores[i] = Double.valueOf(entries[i][1]);
+    }
+    this.above = new long[entries.length + 1];
+    this.ties = new long[entries.length];
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input value.
+   * @param ctx the context.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) {
+    ColumnVector movieIds = value.cols[0];
+    ColumnVector scores = value.cols[1];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      double score = ColumnVectorParser.getDouble(scores, row);
+
+      int lb = 0;
+      int ub = this.probeScores.length;
+      while (lb < ub) {
+        int mid = (lb + ub) >>> 1;
+        if (this.probeScores[mid] < score) lb = mid + 1;
+        else ub = mid;
+      }
+      this.above[lb]++;
+      for (int i = lb; i < this.probeScores.length && this.probeScores[i] == score; i++) {
+        if (movieId < this.probeIds[i]) this.ties[i]++;
+      }
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    long greater = 0;
+    for (int i = this.probeIds.length - 1; i >= 0; i--) {
+      greater += this.above[i + 1];
+      this.movieId.set(this.probeIds[i]);
+      this.count.set(greater + this.ties[i]);
+      ctx.write(this.movieId, this.count);
+    }
+  }
+}
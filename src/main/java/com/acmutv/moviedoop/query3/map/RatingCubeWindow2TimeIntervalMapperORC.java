@@ -0,0 +1,227 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query3.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.RatingCubeWindow;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.query3.Query3_6;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.log4j.Logger;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The mapper for jobs in: {@link Query3_6}.
+ * It reads the rating cube and emits (movieId,avgRating) where avgRating is the average rating in
+ * the period [Tlb1,Tub1] (named output 1) and in the period [Tlb2,Tub2] (named output 2).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeWindow2TimeIntervalMapperORC extends Mapper<NullWritable,VectorizedRowBatch,NullWritable,OrcStruct> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingCubeWindow2TimeIntervalMapperORC.class);
+
+  /**
+   * The null writable value.
+   */
+  private static final NullWritable NULL = NullWritable.get();
+
+  /**
+   * The ORC schema.
+   */
+  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<id:bigint,avgrating:double>");
+
+  /**
+   * The multiple outputs.
+   */
+  private MultipleOutputs<NullWritable,OrcStruct> mos;
+
+  /**
+   * The ORC tuple (movieId,avgrating) to emit.
+   */
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA);
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieIdOut = (LongWritable) tuple.getFieldValue(0);
+
+  /**
+   * The avgrating to emit.
+   */
+  private DoubleWritable avgrating = (DoubleWritable) tuple.getFieldValue(1);
+
+  /**
+   * The window over the period [Tlb1,Tub1].
+   */
+  private RatingCubeWindow window1;
+
+  /**
+   * The window over the period [Tlb2,Tub2].
+   */
+  private RatingCubeWindow window2;
+
+  /**
+   * The last bucket of interest (rows after it are not decoded).
+   */
+  private long lastBucket;
+
+  /**
+   * The current movieId.
+   */
+  private long movieId;
+
+  /**
+   * True if the current movie has been set.
+   */
+  private boolean started = false;
+
+  /**
+   * The cumulative histogram of the current row.
+   */
+  private RatingHistogramWritable cumulative = new RatingHistogramWritable();
+
+  /**
+   * The histogram of ratings in a period.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * Configures the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    TimeBucket granularity = TimeBucket.parse(ctx.getConfiguration().get("moviedoop.cube.granularity"));
+    long movieRatingTimestampLowerBound1 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb.1"));
+    long movieRatingTimestampUpperBound1 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.ub.1"));
+    long movieRatingTimestampLowerBound2 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb.2"));
+    long movieRatingTimestampUpperBound2 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.ub.2"));
+    LOG.debug("[SETUP] moviedoop.cube.granularity: " + granularity);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.1: " + movieRatingTimestampLowerBound1);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.1: " + movieRatingTimestampUpperBound1);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.2: " + movieRatingTimestampLowerBound2);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.2: " + movieRatingTimestampUpperBound2);
+    this.window1 = new RatingCubeWindow(granularity.of(movieRatingTimestampLowerBound1),
+        granularity.of(movieRatingTimestampUpperBound1));
+    this.window2 = new RatingCubeWindow(granularity.of(movieRatingTimestampLowerBound2),
+        granularity.of(movieRatingTimestampUpperBound2));
+    this.lastBucket = Math.max(this.window1.getUpperBound(), this.window2.getUpperBound());
+    this.mos = new MultipleOutputs<>(ctx);
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch (movieId,bucket,ratings).
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[0];
+    ColumnVector buckets = value.cols[1];
+    BytesColumnVector histograms = (BytesColumnVector) value.cols[2];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      if (!this.started || movieId != this.movieId) {
+        if (this.started) {
+          this.emit();
+        }
+        this.window1.clear();
+        this.window2.clear();
+        this.movieId = movieId;
+        this.started = true;
+      }
+      long bucket = ColumnVectorParser.getLong(buckets, row);
+      if (bucket > this.lastBucket) {
+        continue;
+      }
+      int h = histograms.isRepeating ? 0 : row;
+      this.cumulative.readFrom(histograms.vector[h], histograms.start[h], histograms.length[h]);
+      this.window1.accept(bucket, this.cumulative);
+      this.window2.accept(bucket, this.cumulative);
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (this.started) {
+      this.emit();
+    }
+    this.mos.close();
+  }
+
+  /**
+   * Emits the average ratings of the current movie in both periods, if rated.
+   *
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void emit() throws IOException, InterruptedException {
+    this.window1.get(this.ratings);
+    if (this.ratings.getCount() > 0) {
+      this.movieIdOut.set(this.movieId);
+      this.avgrating.set(this.ratings.getAverage());
+      this.mos.write("1", NULL, this.tuple);
+    }
+    this.window2.get(this.ratings);
+    if (this.ratings.getCount() > 0) {
+      this.movieIdOut.set(this.movieId);
+      this.avgrating.set(this.ratings.getAverage());
+      this.mos.write("2", NULL, this.tuple);
+    }
+  }
+}
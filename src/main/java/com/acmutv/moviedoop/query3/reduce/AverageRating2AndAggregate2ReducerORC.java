@@ -25,18 +25,17 @@
  */
 package com.acmutv.moviedoop.query3.reduce;
 
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
 import com.acmutv.moviedoop.query3.Query3_4;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.log4j.Logger;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcKey;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
 
@@ -48,7 +47,7 @@ import java.io.IOException;
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AverageRating2AndAggregate2ReducerORC extends Reducer<OrcKey,OrcValue,NullWritable,OrcStruct> {
+public class AverageRating2AndAggregate2ReducerORC extends Reducer<OrcKey,RatingHistogramWritable,NullWritable,OrcStruct> {
 
   /**
    * The logger.
@@ -85,6 +84,16 @@ public class AverageRating2AndAggregate2ReducerORC extends Reducer<OrcKey,OrcVal
    */
   private DoubleWritable avgrating = (DoubleWritable) tuple.getFieldValue(1);
 
+  /**
+   * The merged histogram of ratings within the time interval (1).
+   */
+  private RatingHistogramWritable ratings1 = new RatingHistogramWritable();
+
+  /**
+   * The merged histogram of ratings within the time interval (2).
+   */
+  private RatingHistogramWritable ratings2 = new RatingHistogramWritable();
+
   /**
    * Configures the reducer.
    *
@@ -103,48 +112,24 @@ public class AverageRating2AndAggregate2ReducerORC extends Reducer<OrcKey,OrcVal
    * @throws IOException when the context cannot be written.
    * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(OrcKey key, Iterable<OrcValue> values, Context ctx) throws IOException, InterruptedException {
-    long num1 = 0L;
-    double sum1 = 0.0;
-
-    long num2 = 0L;
-    double sum2 = 0.0;
-
-    for (OrcValue orcValue : values) {
-      String value = ((Text)((OrcStruct) orcValue.value).getFieldValue(0)).toString();
-      String parts[] = value.split(":");
-      String header[] = parts[0].split(";",-1);
-      boolean is1 = header.length >= 1 && header[0].equals("1");
-      boolean is2 = header.length >= 2 && header[1].equals("2");
-      String pairs[] = parts[1].split(",", -1);
-      String elems[][] = new String[pairs.length][2];
-      for (int i = 0; i < pairs.length; i++) {
-        String tmp[] = pairs[i].split("=", -1);
-        elems[i][0] = tmp[0];
-        elems[i][1] = tmp[1];
-      }
+  public void reduce(OrcKey key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings1.clear();
+    this.ratings2.clear();
 
-      if (is1) {
-        for (String elem[] : elems) {
-          double score = Double.valueOf(elem[0]);
-          long repetitions = Long.valueOf(elem[1]);
-          sum1 += (score * repetitions);
-          num1 += repetitions;
-        }
+    for (RatingHistogramWritable value : values) {
+      if ((value.getTag() & 1) != 0) {
+        this.ratings1.merge(value);
       }
-
-      if (is2) {
-        for (String elem[] : elems) {
-          double score = Double.valueOf(elem[0]);
-          long repetitions = Long.valueOf(elem[1]);
-          sum2 += (score * repetitions);
-          num2 += repetitions;
-        }
+      if ((value.getTag() & 2) != 0) {
+        this.ratings2.merge(value);
       }
     }
 
-    double avgScore1 = sum1 / num1;
-    double avgScore2 = sum2 / num2;
+    long num1 = this.ratings1.getCount();
+    long num2 = this.ratings2.getCount();
+
+    double avgScore1 = this.ratings1.getAverage();
+    double avgScore2 = this.ratings2.getAverage();
 
     long movieId = ((LongWritable) ((OrcStruct) key.key).getFieldValue(0)).get();
 
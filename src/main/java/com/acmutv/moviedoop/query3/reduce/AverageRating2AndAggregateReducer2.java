@@ -94,8 +94,12 @@ public class AverageRating2AndAggregateReducer2 extends Reducer<LongWritable,Tex
     for (Text value : values) {
       String parts[] = value.toString().split(":");
       String header[] = parts[0].split(";",-1);
-      boolean is1 = header.length >= 1 && header[0].equals("1");
-      boolean is2 = header.length >= 2 && header[1].equals("2");
+      boolean is1 = false;
+      boolean is2 = false;
+      for (String interval : header) {
+        is1 |= interval.equals("1");
+        is2 |= interval.equals("2");
+      }
       String fields[] = parts[1].split(",", -1);
       double score = Double.valueOf(fields[0]);
       long repetitions = Long.valueOf(fields[1]);
@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query3.reduce;
 
+import com.acmutv.moviedoop.common.reduce.Aggregate1RatingCombiner;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
 import org.apache.hadoop.io.LongWritable;
@@ -39,6 +40,7 @@ import java.io.IOException;
 /**
  * The reducer for jobs in: {@link Query3_1}, {@link Query3_2}.
  * It emits (movieId,avgRating) where avgRating is the average rating.
+ * Ratings may have been merged by {@link Aggregate1RatingCombiner}.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
@@ -94,17 +96,23 @@ public class AverageRating2Reducer extends Reducer<LongWritable,Text,NullWritabl
     for (Text value : values) {
       String parts[] = value.toString().split(":");
       String header[] = parts[0].split(";",-1);
-      boolean is1 = header.length >= 1 && header[0].equals("1");
-      boolean is2 = header.length >= 2 && header[1].equals("2");
-      double rating = Double.valueOf(parts[1]);
+      boolean is1 = false;
+      boolean is2 = false;
+      for (String interval : header) {
+        is1 |= interval.equals("1");
+        is2 |= interval.equals("2");
+      }
+      String fields[] = parts[1].split(",", -1);
+      double score = Double.valueOf(fields[0]);
+      long repetitions = (fields.length > 1) ? Long.valueOf(fields[1]) : 1L;
       if (is1) {
-        sum1 += rating;
-        num1++;
+        sum1 += (score * repetitions);
+        num1 += repetitions;
       }
 
       if (is2) {
-        sum2 += rating;
-        num2++;
+        sum2 += (score * repetitions);
+        num2 += repetitions;
       }
     }
 
@@ -25,34 +25,32 @@
  */
 package com.acmutv.moviedoop.query3.reduce;
 
+import com.acmutv.moviedoop.common.struct.TopK;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
-import com.acmutv.moviedoop.common.struct.BestMap;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.query3.Query3_3;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
- * The reducer for jobs in: {@link Query3_1}, {@link Query3_2}.
- * It emits the top-`moviesTopKSize` (movieId,avgRating).
- * It leverages BestMap.
+ * The reducer for jobs in: {@link Query3_1}, {@link Query3_2}, {@link Query3_3}.
+ * It emits the top-`moviesTopKSize` (movieId,avgRating), from the best to the worst.
+ * It leverages TopK.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class MoviesTopKBestMapReducer extends Reducer<NullWritable,Text,NullWritable,Text> {
+public class MoviesTopKReducer extends Reducer<NullWritable,TopK,NullWritable,Text> {
 
   /**
    * The logger.
    */
-  private static final Logger LOG = Logger.getLogger(MoviesTopKBestMapReducer.class);
+  private static final Logger LOG = Logger.getLogger(MoviesTopKReducer.class);
 
   /**
    * The null writable value.
@@ -62,7 +60,7 @@ public class MoviesTopKBestMapReducer extends Reducer<NullWritable,Text,NullWrit
   /**
    * The rank data structure.
    */
-  private BestMap rank = new BestMap();
+  private TopK rank = new TopK();
 
   /**
    * The tuple (movieId,rating) to emit.
@@ -76,7 +74,8 @@ public class MoviesTopKBestMapReducer extends Reducer<NullWritable,Text,NullWrit
    */
   protected void setup(Context ctx) {
     int moviesTopKSize = Integer.valueOf(ctx.getConfiguration().get("moviedoop.topk.size"));
-    this.rank.setMaxSize(moviesTopKSize);
+    this.rank.setCapacity(moviesTopKSize);
+    LOG.debug("[SETUP] moviedoop.topk.size: " + moviesTopKSize);
   }
 
   /**
@@ -85,24 +84,24 @@ public class MoviesTopKBestMapReducer extends Reducer<NullWritable,Text,NullWrit
    * @param key the input key.
    * @param values the input values.
    * @param ctx the context.
-   * @throws IOException when the context cannot be written.
-   * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(NullWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
-    for (Text value : values) {
-      Map<String,String> rankRecord = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
-
-      long movieId = Long.valueOf(rankRecord.get("movieId"));
-      double score = Double.valueOf(rankRecord.get("score"));
-
-      this.rank.put(movieId, score);
+  public void reduce(NullWritable key, Iterable<TopK> values, Context ctx) {
+    for (TopK value : values) {
+      this.rank.merge(value);
     }
+  }
 
-    for (Map.Entry<Long,Double> entry :
-        this.rank.entrySet().stream().sorted((e1,e2)-> e2.getValue().compareTo(e1.getValue())).collect(Collectors.toList())) {
-      this.tuple.set(entry.getKey() + "," + entry.getValue());
+  /**
+   * Flushes the reducer.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    for (int p = 0; p < this.rank.size(); p++) {
+      this.tuple.set(this.rank.getId(p) + "," + this.rank.getScore(p));
       ctx.write(NULL, this.tuple);
     }
   }
-
 }
@@ -25,37 +25,33 @@
  */
 package com.acmutv.moviedoop.query3.reduce;
 
-import com.acmutv.moviedoop.common.struct.BestMap;
+import com.acmutv.moviedoop.common.struct.TopK;
 import com.acmutv.moviedoop.query3.Query3_4;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.log4j.Logger;
 import org.apache.orc.TypeDescription;
 import org.apache.orc.mapred.OrcStruct;
-import org.apache.orc.mapred.OrcValue;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * The reducer for jobs in: {@link Query3_4}.
- * It emits the top-`moviesTopKSize` (movieId,avgRating).
- * It leverages BestMap.
+ * It emits the top-`moviesTopKSize` (movieId,avgRating), by decreasing average rating.
+ * It leverages TopK.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class MoviesTopKBestMapReducerORC extends Reducer<NullWritable,OrcValue,NullWritable,OrcStruct> {
+public class MoviesTopKReducerORC extends Reducer<NullWritable,TopK,NullWritable,OrcStruct> {
 
   /**
    * The logger.
    */
-  private static final Logger LOG = Logger.getLogger(MoviesTopKBestMapReducerORC.class);
+  private static final Logger LOG = Logger.getLogger(MoviesTopKReducerORC.class);
 
   /**
    * The null writable value.
@@ -85,7 +81,7 @@ public class MoviesTopKBestMapReducerORC extends Reducer<NullWritable,OrcValue,N
   /**
    * The rank data structure.
    */
-  private BestMap rank = new BestMap();
+  private TopK rank = new TopK();
 
   /**
    * Configures the reducer.
@@ -94,7 +90,7 @@ public class MoviesTopKBestMapReducerORC extends Reducer<NullWritable,OrcValue,N
    */
   protected void setup(Context ctx) {
     int moviesTopKSize = Integer.valueOf(ctx.getConfiguration().get("moviedoop.topk.size"));
-    this.rank.setMaxSize(moviesTopKSize);
+    this.rank.setCapacity(moviesTopKSize);
     LOG.debug("[SETUP] moviedoop.topk.size: " + moviesTopKSize);
   }
 
@@ -104,19 +100,10 @@ public class MoviesTopKBestMapReducerORC extends Reducer<NullWritable,OrcValue,N
    * @param key the input key.
    * @param values the input values.
    * @param ctx the context.
-   * @throws IOException when the context cannot be written.
-   * @throws InterruptedException when the context cannot be written.
    */
-  public void reduce(NullWritable key, Iterable<OrcValue> values, Context ctx) throws IOException, InterruptedException {
-    for (OrcValue orcValue : values) {
-      String value = ((Text)((OrcStruct) orcValue.value).getFieldValue(0)).toString();
-      String pairs[] = value.split(",", -1);
-      for (String pair : pairs) {
-        String elem[] = pair.split("=", -1);
-        long movieId = Long.valueOf(elem[0]);
-        double score = Double.valueOf(elem[1]);
-        this.rank.put(movieId, score);
-      }
+  public void reduce(NullWritable key, Iterable<TopK> values, Context ctx) {
+    for (TopK value : values) {
+      this.rank.merge(value);
     }
   }
 
@@ -124,14 +111,14 @@ public class MoviesTopKBestMapReducerORC extends Reducer<NullWritable,OrcValue,N
    * Flushes the reducer.
    *
    * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
    */
   protected void cleanup(Context ctx) throws IOException, InterruptedException {
-    for (Map.Entry<Long,Double> entry :
-        this.rank.entrySet().stream().sorted((e1,e2)-> e2.getValue().compareTo(e1.getValue())).collect(Collectors.toList())) {
-      this.movieId.set(entry.getKey());
-      this.avgrating.set(entry.getValue());
+    for (int p = 0; p < this.rank.size(); p++) {
+      this.movieId.set(this.rank.getId(p));
+      this.avgrating.set(this.rank.getScore(p));
       ctx.write(NULL, this.out);
     }
   }
-
 }
@@ -27,7 +27,7 @@ package com.acmutv.moviedoop.query3.reduce;
 
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
@@ -73,6 +73,11 @@ public class MoviesTopKTreeMapReducer extends Reducer<NullWritable,Text,NullWrit
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
@@ -93,10 +98,10 @@ public class MoviesTopKTreeMapReducer extends Reducer<NullWritable,Text,NullWrit
    */
   public void reduce(NullWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
     for (Text value : values) {
-      Map<String,String> rankRecord = RecordParser.parse(value.toString(), new String[] {"movieId","score"}, ",");
+      this.tokenizer.tokenize(value);
 
-      long movieId = Long.valueOf(rankRecord.get("movieId"));
-      double score = Double.valueOf(rankRecord.get("score"));
+      long movieId = this.tokenizer.getLong(0);
+      double score = this.tokenizer.getDouble(1);
 
       this.rank.put(score, movieId);
 
@@ -0,0 +1,183 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.query3.reduce;
+
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.query3.Query3_7;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.log4j.Logger;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The reducer for jobs in: {@link Query3_7}.
+ * It sums the counts of movies ranking above every probed movie, and emits
+ * (movieTitle,deltaPosition,deltaScore) for every top-k movie, ordered by total rank position.
+ * Top-k movies that are not probed (no ratings in the total rank period) are emitted last, as
+ * (movieTitle,na,na).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RankCountingReducer extends Reducer<LongWritable,LongWritable,NullWritable,Text> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RankCountingReducer.class);
+
+  /**
+   * The null writable value.
+   */
+  private static final NullWritable NULL = NullWritable.get();
+
+  /**
+   * The map between movieId and movie top-k ranking (rank position and score), in top-k order.
+   */
+  private Map<Long,String> movieIdToMovieTopKPositionAndScore = new LinkedHashMap<>();
+
+  /**
+   * The map between probed movieId and average rating in the total rank period.
+   */
+  private Map<Long,Double> movieIdToRankScore = new HashMap<>();
+
+  /**
+   * The map between total rank position and tuple to emit.
+   */
+  private Map<Long,String> rankPositionToTuple = new TreeMap<>();
+
+  /**
+   * The cached movie index.
+   */
+  private MovieIndex movies;
+
+  /**
+   * The tuple (movieTitle,deltaPosition,deltaScore) to emit.
+   */
+  private Text tuple = new Text();
+
+  /**
+   * Configures the reducer.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
+   */
+  protected void setup(Context ctx) throws IOException {
+    this.movies = MovieIndex.open(ctx);
+
+    String pathTopK = ctx.getConfiguration().get("moviedoop.path.topk");
+    LOG.debug("[SETUP] moviedoop.path.topk: " + pathTopK);
+
+    String probes = ctx.getConfiguration().get("moviedoop.rank.probes", "");
+    LOG.debug("[SETUP] moviedoop.rank.probes: " + probes);
+
+    for (String entry : probes.split(",")) {
+      if (entry.isEmpty()) continue;
+      String[] probe = entry.split("=");
+      this.movieIdToRankScore.put(Long.valueOf(probe[0]), Double.valueOf(probe[1]));
+    }
+
+    for (URI uri : ctx.getCacheFiles()) {
+      Path path = new Path(uri);
+      if (path.getParent().toString().endsWith(pathTopK)) {
+        Reader reader = OrcFile.createReader(path, new OrcFile.ReaderOptions(ctx.getConfiguration()));
+        RecordReader rows = reader.rows();
+        VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+        long movieTopKPosition = 0;
+        while (rows.nextBatch(batch)) {
+          LongColumnVector cvMovieId = (LongColumnVector) batch.cols[0];
+          DoubleColumnVector cvMovieScore = (DoubleColumnVector) batch.cols[1];
+          for (int r = 0; r < batch.size; r++) {
+            movieTopKPosition++;
+            this.movieIdToMovieTopKPositionAndScore.put(cvMovieId.vector[r], movieTopKPosition + ";" + cvMovieScore.vector[r]);
+          }
+        }
+        rows.close();
+      }
+    }
+  }
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   */
+  public void reduce(LongWritable key, Iterable<LongWritable> values, Context ctx) {
+    long movieId = key.get();
+    String topkDetails = this.movieIdToMovieTopKPositionAndScore.remove(movieId);
+    if (topkDetails == null) return;
+
+    long above = 0;
+    for (LongWritable value : values) {
+      above += value.get();
+    }
+
+    String details[] = topkDetails.split(";");
+    long topKPosition = Long.valueOf(details[0]);
+    double topkScore = Double.valueOf(details[1]);
+    long rankPosition = above + 1;
+    double rankScore = this.movieIdToRankScore.get(movieId);
+    long deltaPosition = rankPosition - topKPosition;
+    double deltaScore = topkScore - rankScore;
+    this.rankPositionToTuple.put(rankPosition, this.movies.getTitle(movieId) + "\t" + deltaPosition + "\t" + deltaScore);
+  }
+
+  /**
+   * Flushes the reducer.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    for (String record : this.rankPositionToTuple.values()) {
+      this.tuple.set(record);
+      ctx.write(NULL, this.tuple);
+    }
+    for (long movieId : this.movieIdToMovieTopKPositionAndScore.keySet()) {
+      this.tuple.set(this.movies.getTitle(movieId) + "\tna\tna");
+      ctx.write(NULL, this.tuple);
+    }
+  }
+}
@@ -25,6 +25,7 @@
  */
 package com.acmutv.moviedoop.query3.reduce;
 
+import com.acmutv.moviedoop.common.input.LinenoOffsets;
 import com.acmutv.moviedoop.query3.Query3_1;
 import com.acmutv.moviedoop.query3.Query3_2;
 import com.acmutv.moviedoop.query3.Query3_4;
@@ -56,6 +57,11 @@ public class ValueReducer extends Reducer<DoubleWritable,Text,NullWritable,Text>
    */
   private static final NullWritable NULL = NullWritable.get();
 
+  /**
+   * The number of emitted records.
+   */
+  private long records = 0;
+
   /**
    * The reduction routine.
    *
@@ -68,7 +74,20 @@ public class ValueReducer extends Reducer<DoubleWritable,Text,NullWritable,Text>
   public void reduce(DoubleWritable key, Iterable<Text> values, Context ctx) throws IOException, InterruptedException {
     for (Text value : values) {
       ctx.write(NULL, value);
+      this.records++;
     }
   }
 
+  /**
+   * Flushes the reducer.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the record count cannot be written.
+   * @throws InterruptedException when the record count cannot be written.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    if (LinenoOffsets.isRecordCounting(ctx.getConfiguration())) {
+      LinenoOffsets.writeRecordCount(ctx, this.records);
+    }
+  }
 }
@@ -0,0 +1,497 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.queryall;
+
+import com.acmutv.moviedoop.common.input.LinenoOffsets;
+import com.acmutv.moviedoop.common.input.LinenoSequenceFileInputFormat;
+import com.acmutv.moviedoop.common.input.OrcBatchInputFormat;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.reduce.Aggregate2RatingCombiner;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.DoubleWritableDecreasingComparator;
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
+import com.acmutv.moviedoop.common.util.OrcKeyComparator;
+import com.acmutv.moviedoop.common.util.OrcPushdown;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.acmutv.moviedoop.query2.map.GenresAggregateMapper;
+import com.acmutv.moviedoop.query2.reduce.AggregateGenresReducer;
+import com.acmutv.moviedoop.query3.map.AverageRatingAsKeyMapperORC;
+import com.acmutv.moviedoop.query3.map.IdentityMapper2;
+import com.acmutv.moviedoop.query3.map.MoviesTopKMapperORC;
+import com.acmutv.moviedoop.query3.map.RankComparisonMapperMixed;
+import com.acmutv.moviedoop.query3.reduce.MoviesTopKReducerORC;
+import com.acmutv.moviedoop.query3.reduce.ValueReducer;
+import com.acmutv.moviedoop.query3.reduce.RankComparisonReducer;
+import com.acmutv.moviedoop.queryall.map.RatingsAggregateAllQueriesMapperORC;
+import com.acmutv.moviedoop.queryall.reduce.AllQueriesFanOutReducerORC;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+import org.apache.orc.mapreduce.OrcInputFormat;
+import org.apache.orc.mapreduce.OrcOutputFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * A map/reduce program that answers Query1, Query2 and Query3 with a single scan of ratings.
+ * One map phase builds, for every movie, the histograms of ratings for the period of Query1, for
+ * all time (Query2) and for the two periods of Query3; the reducer fans them out to the
+ * query-specific outputs through multiple outputs, which feed the remaining jobs of Query2
+ * (genre statistics) and Query3 (top-k, total rank and rank comparison).
+ * Results are written to {@code <out>/query1}, {@code <out>/query2} and {@code <out>/query3}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class QueryAll extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(QueryAll.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "QueryAll";
+
+  /**
+   * The default lower bound for movie average rating (Query1).
+   */
+  private static final double RATING_AVERAGE_LB = 2.5;
+
+  /**
+   * The default lower bound for movie ratings timestamp (Query1).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_LB = DateParser.MIN;
+
+  /**
+   * The default movies rank size (Query3).
+   */
+  private static final int RANK_SIZE = 10;
+
+  /**
+   * The default lower bound for movie ratings timestamp (Query3, top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (Query3, top-k).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_TOPK_UB = DateParser.MAX;
+
+  /**
+   * The default lower bound for movie ratings timestamp (Query3, total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_LB = DateParser.MIN;
+
+  /**
+   * The default upper bound for movie ratings timestamp (Query3, total rank).
+   */
+  private static final LocalDateTime RATING_TIMESTAMP_SORT_UB = DateParser.MAX;
+
+  /**
+   * The default number of reducers for the shared averaging job.
+   */
+  private static final int AVERAGE_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default number of reducers for the genres job (Query2).
+   */
+  private static final int GENRES_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default number of reducers for the ranking job (Query3, top-k).
+   */
+  private static final int TOPK_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default number of reducers for the ranking job (Query3, total rank).
+   */
+  private static final int SORT_REDUCE_CARDINALITY = 1;
+
+  /**
+   * The default memory budget (MB) for the map-side aggregation.
+   */
+  private static final long AGGREGATE_BUFFER_MB = 64;
+
+  /**
+   * The rating columns read by the query (movieId, rating, time).
+   */
+  private static final int[] RATING_COLUMNS = {1, 2, 3};
+
+  /**
+   * The default verbosity.
+   */
+  private static final boolean VERBOSE = true;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies> <out>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+    final Path stagingShared = new Path(args[2] + ".staging/shared");
+    final Path stagingSort1 = new Path(args[2] + ".staging/sort/1");
+    final Path stagingSort2 = new Path(args[2] + ".staging/sort/2");
+    final Path stagingTopK = new Path(args[2] + ".staging/topk");
+    final Path output1 = new Path(args[2], "query1");
+    final Path output2 = new Path(args[2], "query2");
+    final Path output3 = new Path(args[2], "query3");
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.average.rating.lb", String.valueOf(RATING_AVERAGE_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb", DateParser.toString(RATING_TIMESTAMP_LB));
+    config.setIfUnset("moviedoop.topk.size", String.valueOf(RANK_SIZE));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.1", DateParser.toString(RATING_TIMESTAMP_TOPK_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.1", DateParser.toString(RATING_TIMESTAMP_TOPK_UB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.lb.2", DateParser.toString(RATING_TIMESTAMP_SORT_LB));
+    config.setIfUnset("moviedoop.average.rating.timestamp.ub.2", DateParser.toString(RATING_TIMESTAMP_SORT_UB));
+    config.setIfUnset("moviedoop.aggregate.buffer.mb", String.valueOf(AGGREGATE_BUFFER_MB));
+
+    // OTHER CONFIGURATION
+    final int averageReduceCardinality = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(AVERAGE_REDUCE_CARDINALITY)));
+    final int genresReduceCardinality = Integer.valueOf(config.get("moviedoop.genres.reduce.cardinality", String.valueOf(GENRES_REDUCE_CARDINALITY)));
+    final int topkReduceCardinality = Integer.valueOf(config.get("moviedoop.topk.reduce.cardinality", String.valueOf(TOPK_REDUCE_CARDINALITY)));
+    final int sortReduceCardinality = Integer.valueOf(config.get("moviedoop.sort.reduce.cardinality", String.valueOf(SORT_REDUCE_CARDINALITY)));
+    config.unset("moviedoop.average.reduce.cardinality");
+    config.unset("moviedoop.genres.reduce.cardinality");
+    config.unset("moviedoop.topk.reduce.cardinality");
+    config.unset("moviedoop.sort.reduce.cardinality");
+
+    // CONTEXT RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings);
+    System.out.println("Input Movies: " + inputMovies);
+    System.out.println("Output (Query1): " + output1);
+    System.out.println("Output (Query2): " + output2);
+    System.out.println("Output (Query3): " + output3);
+    System.out.println("Movie Average Rating Lower Bound (Query1): " + config.get("moviedoop.average.rating.lb"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Query1): " + config.get("moviedoop.average.rating.timestamp.lb"));
+    System.out.println("Movie Top Rank Size (Query3): " + config.get("moviedoop.topk.size"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Query3, Top Rank): " + config.get("moviedoop.average.rating.timestamp.lb.1"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Query3, Top Rank): " + config.get("moviedoop.average.rating.timestamp.ub.1"));
+    System.out.println("Movie Rating Timestamp Lower Bound (Query3, Total Rank): " + config.get("moviedoop.average.rating.timestamp.lb.2"));
+    System.out.println("Movie Rating Timestamp Upper Bound (Query3, Total Rank): " + config.get("moviedoop.average.rating.timestamp.ub.2"));
+    System.out.println("Aggregate Buffer (MB): " + config.get("moviedoop.aggregate.buffer.mb"));
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Reduce Cardinality (Average): " + averageReduceCardinality);
+    System.out.println("Reduce Cardinality (Genres): " + genresReduceCardinality);
+    System.out.println("Reduce Cardinality (Top Rank): " + topkReduceCardinality);
+    System.out.println("Reduce Cardinality (Total Rank): " + sortReduceCardinality);
+    System.out.println("############################################################################");
+
+    /* *********************************************************************************************
+     * SHARED SCAN: HISTOGRAMS OF RATINGS FOR ALL QUERIES
+     **********************************************************************************************/
+
+    // JOB SHARED SCAN: CONFIGURATION
+    Job jobShared = Job.getInstance(config, PROGRAM_NAME + "_SHARED-SCAN");
+    jobShared.setJarByClass(QueryAll.class);
+    jobShared.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+
+    // JOB SHARED SCAN: INPUT CONFIGURATION
+    jobShared.setInputFormatClass(OrcBatchInputFormat.class);
+    OrcBatchInputFormat.addInputPath(jobShared, inputRatings);
+    OrcPushdown.setColumns(jobShared.getConfiguration(), RATING_COLUMNS);
+
+    // JOB SHARED SCAN: MAP CONFIGURATION
+    jobShared.setMapperClass(RatingsAggregateAllQueriesMapperORC.class);
+    jobShared.setMapOutputKeyClass(OrcKey.class);
+    jobShared.setMapOutputValueClass(RatingHistogramWritable.class);
+    jobShared.getConfiguration().setIfUnset("orc.mapred.map.output.key.schema",
+        RatingsAggregateAllQueriesMapperORC.ORC_SCHEMA_KEY.toString());
+    jobShared.setSortComparatorClass(OrcKeyComparator.class);
+    jobShared.setCombinerClass(Aggregate2RatingCombiner.class);
+
+    // JOB SHARED SCAN: REDUCE CONFIGURATION
+    jobShared.setReducerClass(AllQueriesFanOutReducerORC.class);
+    jobShared.setNumReduceTasks(averageReduceCardinality);
+
+    // JOB SHARED SCAN: OUTPUT CONFIGURATION
+    MultipleOutputs.addNamedOutput(jobShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY1,
+        TextOutputFormat.class, Text.class, DoubleWritable.class);
+    MultipleOutputs.addNamedOutput(jobShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY2,
+        SequenceFileOutputFormat.class, Text.class, RatingHistogramWritable.class);
+    MultipleOutputs.addNamedOutput(jobShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY3_TOPK,
+        OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    MultipleOutputs.addNamedOutput(jobShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY3_SORT,
+        OrcOutputFormat.class, NullWritable.class, OrcStruct.class);
+    jobShared.setOutputFormatClass(LazyOutputFormat.class);
+    LazyOutputFormat.setOutputFormatClass(jobShared, TextOutputFormat.class);
+    FileOutputFormat.setOutputPath(jobShared, stagingShared);
+    jobShared.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        AllQueriesFanOutReducerORC.ORC_SCHEMA.toString());
+
+    // JOB SHARED SCAN: EXECUTION
+    int code = jobShared.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code != 0) return code;
+
+    /* *********************************************************************************************
+     * QUERY 1: MOVIES WITH AVERAGE MOVIE RATINGS GREATER OR EQUALS TO R FOR PERIOD [T1,inf)
+     **********************************************************************************************/
+    FileSystem fs = FileSystem.get(config);
+    fs.mkdirs(output1.getParent());
+    Path shared1 = new Path(stagingShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY1);
+    if (fs.exists(shared1)) {
+      fs.rename(shared1, output1);
+    } else {
+      fs.mkdirs(output1);
+    }
+
+    /* *********************************************************************************************
+     * QUERY 2: GENRE'S STATISTICS
+     **********************************************************************************************/
+    // JOB GENRES: CONFIGURATION
+    Job jobGenres = Job.getInstance(config, PROGRAM_NAME + "_GENRES");
+    jobGenres.setJarByClass(QueryAll.class);
+
+    // JOB GENRES: INPUT CONFIGURATION
+    jobGenres.setInputFormatClass(SequenceFileInputFormat.class);
+    addStagingInputPath(jobGenres, new Path(stagingShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY2));
+
+    // JOB GENRES: MAP CONFIGURATION
+    jobGenres.setMapperClass(GenresAggregateMapper.class);
+    jobGenres.setMapOutputKeyClass(Text.class);
+    jobGenres.setMapOutputValueClass(RatingHistogramWritable.class);
+    jobGenres.setCombinerClass(Aggregate2RatingCombiner.class);
+
+    // JOB GENRES: REDUCE CONFIGURATION
+    jobGenres.setReducerClass(AggregateGenresReducer.class);
+    jobGenres.setNumReduceTasks(genresReduceCardinality);
+
+    // JOB GENRES: OUTPUT CONFIGURATION
+    jobGenres.setOutputKeyClass(Text.class);
+    jobGenres.setOutputValueClass(Text.class);
+    jobGenres.setOutputFormatClass(TextOutputFormat.class);
+    TextOutputFormat.setOutputPath(jobGenres, output2);
+
+    // JOB GENRES: EXECUTION
+    jobGenres.submit();
+
+    /* *********************************************************************************************
+     * QUERY 3: TOP-K RANK OF MOVIES BY AVERAGE MOVIE RATINGS IN PERIOD [Tlb1,Tub1]
+     **********************************************************************************************/
+    // JOB TOP BY RATING: CONFIGURATION
+    Job jobTopRatings = Job.getInstance(config, PROGRAM_NAME + "_TOP-BY-RATING");
+    jobTopRatings.setJarByClass(QueryAll.class);
+
+    // JOB TOP BY RATING: INPUT CONFIGURATION
+    jobTopRatings.setInputFormatClass(OrcBatchInputFormat.class);
+    addStagingInputPath(jobTopRatings, new Path(stagingShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY3_TOPK));
+
+    // JOB TOP BY RATING: MAP CONFIGURATION
+    jobTopRatings.setMapperClass(MoviesTopKMapperORC.class);
+    jobTopRatings.setMapOutputKeyClass(NullWritable.class);
+    jobTopRatings.setMapOutputValueClass(TopK.class);
+
+    // JOB TOP BY RATING: REDUCE CONFIGURATION
+    jobTopRatings.setReducerClass(MoviesTopKReducerORC.class);
+    jobTopRatings.setNumReduceTasks(topkReduceCardinality);
+
+    // JOB TOP BY RATING: OUTPUT CONFIGURATION
+    jobTopRatings.setOutputKeyClass(NullWritable.class);
+    jobTopRatings.setOutputValueClass(OrcStruct.class);
+    jobTopRatings.setOutputFormatClass(OrcOutputFormat.class);
+    OrcOutputFormat.setOutputPath(jobTopRatings, stagingTopK);
+    jobTopRatings.getConfiguration().setIfUnset("orc.mapred.output.schema",
+        MoviesTopKReducerORC.ORC_SCHEMA.toString());
+
+    // JOB TOP BY RATING: JOB EXECUTION
+    jobTopRatings.submit();
+
+    /* *********************************************************************************************
+     * QUERY 3: TOTAL RANK OF MOVIES BY AVERAGE MOVIE RATINGS IN PERIOD [Tlb2,Tub2]
+     **********************************************************************************************/
+    // JOB RATING AS KEY: CONFIGURATION
+    Job jobRatingAsKey = Job.getInstance(config, PROGRAM_NAME + "_RATING-AS-KEY");
+    jobRatingAsKey.setJarByClass(QueryAll.class);
+
+    // JOB RATING AS KEY: INPUT CONFIGURATION
+    jobRatingAsKey.setInputFormatClass(OrcInputFormat.class);
+    addStagingInputPath(jobRatingAsKey, new Path(stagingShared, AllQueriesFanOutReducerORC.OUTPUT_QUERY3_SORT));
+
+    // JOB RATING AS KEY: MAP CONFIGURATION
+    jobRatingAsKey.setMapperClass(AverageRatingAsKeyMapperORC.class);
+    HistogramRangePartitioner.setHistogramEnabled(jobRatingAsKey.getConfiguration(), sortReduceCardinality > 1);
+
+    // JOB RATING AS KEY: REDUCE CONFIGURATION
+    jobRatingAsKey.setNumReduceTasks(0);
+
+    // JOB RATING AS KEY: OUTPUT CONFIGURATION
+    jobRatingAsKey.setOutputKeyClass(DoubleWritable.class);
+    jobRatingAsKey.setOutputValueClass(Text.class);
+    jobRatingAsKey.setOutputFormatClass(SequenceFileOutputFormat.class);
+    SequenceFileOutputFormat.setOutputPath(jobRatingAsKey, stagingSort1);
+
+    // JOB RATING AS KEY: JOB EXECUTION
+    code = jobRatingAsKey.waitForCompletion(VERBOSE) ? 0 : 1;
+
+    if (code == 0) {
+      // JOB SORT BY AVERAGE RATING: CONFIGURATION
+      Job jobSortByRating = Job.getInstance(config, PROGRAM_NAME + "_SORT-BY-AVERAGE-RATING");
+      jobSortByRating.setJarByClass(QueryAll.class);
+      jobSortByRating.setSortComparatorClass(DoubleWritableDecreasingComparator.class);
+
+      // JOB SORT BY AVERAGE RATING: INPUT CONFIGURATION
+      jobSortByRating.setInputFormatClass(SequenceFileInputFormat.class);
+      SequenceFileInputFormat.addInputPath(jobSortByRating, stagingSort1);
+
+      // JOB SORT BY AVERAGE RATING: MAP CONFIGURATION
+      jobSortByRating.setMapperClass(IdentityMapper2.class);
+      jobSortByRating.setMapOutputKeyClass(DoubleWritable.class);
+      jobSortByRating.setMapOutputValueClass(Text.class);
+
+      // JOB SORT BY AVERAGE RATING: REDUCE CONFIGURATION
+      jobSortByRating.setReducerClass(ValueReducer.class);
+      jobSortByRating.setNumReduceTasks(sortReduceCardinality);
+      LinenoOffsets.setRecordCounting(jobSortByRating.getConfiguration(), true);
+
+      // JOB SORT BY AVERAGE RATING: OUTPUT CONFIGURATION
+      jobSortByRating.setOutputKeyClass(NullWritable.class);
+      jobSortByRating.setOutputValueClass(Text.class);
+      jobSortByRating.setOutputFormatClass(SequenceFileOutputFormat.class);
+      SequenceFileOutputFormat.setOutputPath(jobSortByRating, stagingSort2);
+
+      // JOB SORT BY AVERAGE RATING: PARTITIONER CONFIGURATION
+      if (sortReduceCardinality > 1) {
+        jobSortByRating.getConfiguration().set("mapreduce.output.textoutputformat.separator", "");
+        HistogramRangePartitioner.setPartitionCuts(jobSortByRating, stagingSort1);
+      }
+
+      // JOB SORT BY AVERAGE RATING: EXECUTION
+      code = jobSortByRating.waitForCompletion(VERBOSE) ? 0 : 1;
+    }
+
+    while (!jobTopRatings.isComplete() || !jobGenres.isComplete()) {
+      Thread.sleep(3000);
+    }
+
+    if (!jobTopRatings.isSuccessful() || !jobGenres.isSuccessful()) {
+      code = 1;
+    }
+
+    /* *********************************************************************************************
+     * QUERY 3: RANK COMPARISON
+     **********************************************************************************************/
+    if (code == 0) {
+      // JOB RANK COMPARISON: CONFIGURATION
+      Job jobRankComparison = Job.getInstance(config, PROGRAM_NAME + "_RANK_COMPARISON");
+      jobRankComparison.setJarByClass(QueryAll.class);
+      for (FileStatus status : fs.listStatus(stagingTopK)) {
+        Path path = status.getPath();
+        if ("_SUCCESS".equals(path.getName())) continue;
+        jobRankComparison.addCacheFile(path.toUri());
+      }
+      jobRankComparison.addCacheFile(MovieIndexJob.ensure(config, inputMovies).toUri());
+      jobRankComparison.getConfiguration().setIfUnset("moviedoop.path.topk", stagingTopK.toString());
+
+      // JOB RANK COMPARISON: INPUT CONFIGURATION
+      jobRankComparison.setInputFormatClass(LinenoSequenceFileInputFormat.class);
+      LinenoSequenceFileInputFormat.addInputPath(jobRankComparison, stagingSort2);
+
+      // JOB RANK COMPARISON: MAP CONFIGURATION
+      jobRankComparison.setMapperClass(RankComparisonMapperMixed.class);
+      jobRankComparison.setMapOutputKeyClass(LongWritable.class);
+      jobRankComparison.setMapOutputValueClass(Text.class);
+
+      // JOB RANK COMPARISON: REDUCE CONFIGURATION
+      jobRankComparison.setReducerClass(RankComparisonReducer.class);
+      jobRankComparison.setNumReduceTasks(1);
+
+      // JOB RANK COMPARISON: OUTPUT CONFIGURATION
+      jobRankComparison.setOutputKeyClass(NullWritable.class);
+      jobRankComparison.setOutputValueClass(Text.class);
+      jobRankComparison.setOutputFormatClass(TextOutputFormat.class);
+      TextOutputFormat.setOutputPath(jobRankComparison, output3);
+
+      // JOB RANK COMPARISON: EXECUTION
+      code = jobRankComparison.waitForCompletion(VERBOSE) ? 0 : 1;
+    }
+
+    // CLEAN STAGING OUTPUT
+    fs.delete(new Path(args[2] + ".staging"), true);
+
+    return code;
+  }
+
+  /**
+   * Adds the staging directory as input of the job, creating it when the shared scan did not.
+   * Named outputs are lazily created, so a query with no result has no staging directory.
+   *
+   * @param job the job.
+   * @param path the staging directory.
+   * @throws Exception when the path cannot be added.
+   */
+  private static void addStagingInputPath(Job job, Path path) throws Exception {
+    FileSystem fs = path.getFileSystem(job.getConfiguration());
+    if (!fs.exists(path)) {
+      fs.mkdirs(path);
+    }
+    FileInputFormat.addInputPath(job, path);
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new QueryAll(), args);
+    System.exit(res);
+  }
+}
@@ -0,0 +1,287 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.queryall.map;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieRatingAggregator;
+import com.acmutv.moviedoop.common.util.ColumnVectorParser;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.queryall.QueryAll;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The mapper for jobs in: {@link QueryAll}.
+ * It emits (movieId,N:ratings) where N is the bitmask of the queries the ratings contribute to:
+ * {@link #QUERY1} (timestamp greater or equal to `movieRatingTimestampLowerBound`),
+ * {@link #QUERY2} (every rating), {@link #QUERY3_TOPK} (timestamp within
+ * [`movieRatingTimestampLowerBound1`,`movieRatingTimestampUpperBound1`]) and {@link #QUERY3_SORT}
+ * (timestamp within [`movieRatingTimestampLowerBound2`,`movieRatingTimestampUpperBound2`]).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingsAggregateAllQueriesMapperORC extends Mapper<NullWritable,VectorizedRowBatch,OrcKey,RatingHistogramWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(RatingsAggregateAllQueriesMapperORC.class);
+
+  /**
+   * The tag bit for ratings of Query1 (period [T1,inf)).
+   */
+  public static final byte QUERY1 = 1;
+
+  /**
+   * The tag bit for ratings of Query2 (every rating).
+   */
+  public static final byte QUERY2 = 2;
+
+  /**
+   * The tag bit for ratings of Query3, top-k (period [Tlb1,Tub1]).
+   */
+  public static final byte QUERY3_TOPK = 4;
+
+  /**
+   * The tag bit for ratings of Query3, total rank (period [Tlb2,Tub2]).
+   */
+  public static final byte QUERY3_SORT = 8;
+
+  /**
+   * The number of tables: every rating is in Query2, so only 8 tags can occur.
+   */
+  private static final int TABLES = 8;
+
+  /**
+   * The ORC schema for key.
+   */
+  public static final TypeDescription ORC_SCHEMA_KEY = TypeDescription.fromString("struct<id:bigint>");
+
+  /**
+   * The key ORC wrapper
+   */
+  private OrcKey keywrapper = new OrcKey();
+
+  /**
+   * The ORC struct for key.
+   */
+  private OrcStruct keyStruct = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA_KEY);
+
+  /**
+   * The movieId to emit.
+   */
+  private LongWritable movieId = (LongWritable) keyStruct.getFieldValue(0);
+
+  /**
+   * The histogram (N:ratings) to emit.
+   */
+  private RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+  /**
+   * The lower bound for the movie rating timestamp (Query1).
+   */
+  private long movieRatingTimestampLowerBound;
+
+  /**
+   * The lower bound for the movie rating timestamp (Query3, top-k).
+   */
+  private long movieRatingTimestampLowerBound1;
+
+  /**
+   * The upper bound for the movie rating timestamp (Query3, top-k).
+   */
+  private long movieRatingTimestampUpperBound1;
+
+  /**
+   * The lower bound for the movie rating timestamp (Query3, total rank).
+   */
+  private long movieRatingTimestampLowerBound2;
+
+  /**
+   * The upper bound for the movie rating timestamp (Query3, total rank).
+   */
+  private long movieRatingTimestampUpperBound2;
+
+  /**
+   * The memory budget (bytes) for each table.
+   */
+  private long tableMaxMemoryBytes;
+
+  /**
+   * The tables movieId->(score,repetitions), indexed by tag (created on first use).
+   */
+  private MovieRatingAggregator[] movieIdToAggregateRatings = new MovieRatingAggregator[TABLES];
+
+  /**
+   * Configures the mapper.
+   * @param ctx the job context.
+   */
+  protected void setup(Context ctx) {
+    this.movieRatingTimestampLowerBound =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb"));
+    this.movieRatingTimestampLowerBound1 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb.1"));
+    this.movieRatingTimestampUpperBound1 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.ub.1"));
+    this.movieRatingTimestampLowerBound2 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.lb.2"));
+    this.movieRatingTimestampUpperBound2 =
+        DateParser.toSeconds(ctx.getConfiguration().get("moviedoop.average.rating.timestamp.ub.2"));
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb: " + this.movieRatingTimestampLowerBound);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.1: " + this.movieRatingTimestampLowerBound1);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.1: " + this.movieRatingTimestampUpperBound1);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.lb.2: " + this.movieRatingTimestampLowerBound2);
+    LOG.debug("[SETUP] moviedoop.average.rating.timestamp.ub.2: " + this.movieRatingTimestampUpperBound2);
+    long aggregateBufferMb = Long.valueOf(ctx.getConfiguration().get("moviedoop.aggregate.buffer.mb"));
+    this.tableMaxMemoryBytes = (aggregateBufferMb << 20) / TABLES;
+    LOG.debug("[SETUP] moviedoop.aggregate.buffer.mb: " + aggregateBufferMb);
+  }
+
+  /**
+   * The mapping routine.
+   *
+   * @param key the input key.
+   * @param value the input row batch.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void map(NullWritable key, VectorizedRowBatch value, Context ctx) throws IOException, InterruptedException {
+    ColumnVector movieIds = value.cols[1];
+    ColumnVector scores = value.cols[2];
+    ColumnVector timestamps = value.cols[3];
+    for (int r = 0; r < value.size; r++) {
+      int row = value.selectedInUse ? value.selected[r] : r;
+      long timestamp = ColumnVectorParser.getLong(timestamps, row);
+      byte tag = QUERY2;
+      if (timestamp >= this.movieRatingTimestampLowerBound) {
+        tag |= QUERY1;
+      }
+      if (timestamp >= this.movieRatingTimestampLowerBound1
+          && timestamp <= this.movieRatingTimestampUpperBound1) {
+        tag |= QUERY3_TOPK;
+      }
+      if (timestamp >= this.movieRatingTimestampLowerBound2
+          && timestamp <= this.movieRatingTimestampUpperBound2) {
+        tag |= QUERY3_SORT;
+      }
+      long movieId = ColumnVectorParser.getLong(movieIds, row);
+      double rating = ColumnVectorParser.getDouble(scores, row);
+      MovieRatingAggregator movieIdToAggregateRatings = this.table(tag);
+      movieIdToAggregateRatings.add(movieId, rating);
+      if (movieIdToAggregateRatings.isFull()) {
+        this.spill(movieIdToAggregateRatings, tag, ctx);
+      }
+    }
+  }
+
+  /**
+   * Flushes the mapper.
+   *
+   * @param ctx the job context.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    for (int t = 0; t < TABLES; t++) {
+      if (this.movieIdToAggregateRatings[t] != null) {
+        this.flush(this.movieIdToAggregateRatings[t], tag(t), ctx);
+        this.movieIdToAggregateRatings[t].report(ctx);
+      }
+    }
+  }
+
+  /**
+   * Returns the table for the given tag, creating it on first use.
+   *
+   * @param tag the bitmask of the queries.
+   * @return the table movieId->(score,repetitions).
+   */
+  private MovieRatingAggregator table(byte tag) {
+    int t = (tag & QUERY1) | ((tag >> 1) & 6);
+    if (this.movieIdToAggregateRatings[t] == null) {
+      this.movieIdToAggregateRatings[t] = new MovieRatingAggregator();
+      this.movieIdToAggregateRatings[t].setMaxMemoryBytes(this.tableMaxMemoryBytes);
+    }
+    return this.movieIdToAggregateRatings[t];
+  }
+
+  /**
+   * Returns the tag of the given table.
+   *
+   * @param t the table index.
+   * @return the bitmask of the queries.
+   */
+  private static byte tag(int t) {
+    return (byte) (QUERY2 | (t & 1) | (t & 6) << 1);
+  }
+
+  /**
+   * Emits the partial aggregates in the given table and clears it, when it exceeds the memory budget.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the queries.
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void spill(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    this.flush(movieIdToAggregateRatings, tag, ctx);
+    movieIdToAggregateRatings.clear();
+    ctx.getCounter(MovieRatingAggregator.Counter.SPILLS).increment(1);
+  }
+
+  /**
+   * Emits the histograms in the given map, tagged with the bitmask of the queries.
+   *
+   * @param movieIdToAggregateRatings the table movieId->(score,repetitions).
+   * @param tag the bitmask of the queries.
+   * @param ctx the job context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  private void flush(MovieRatingAggregator movieIdToAggregateRatings, byte tag, Context ctx)
+      throws IOException, InterruptedException {
+    MovieRatingAggregator.Cursor cursor = movieIdToAggregateRatings.cursor();
+    while (cursor.next()) {
+      this.movieId.set(cursor.getMovieId());
+      cursor.get(this.ratings);
+      this.ratings.setTag(tag);
+      this.keywrapper.key = keyStruct;
+      ctx.write(this.keywrapper, this.ratings);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.queryall.reduce;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.queryall.QueryAll;
+import com.acmutv.moviedoop.queryall.map.RatingsAggregateAllQueriesMapperORC;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.log4j.Logger;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+
+import java.io.IOException;
+
+/**
+ * The reducer for jobs in: {@link QueryAll}.
+ * It merges the tagged histograms of a movie and fans them out to the query-specific outputs:
+ * (movieTitle,avgRating) for Query1, (genre,ratings) for Query2 and (movieId,avgRating) for the
+ * two periods of Query3.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class AllQueriesFanOutReducerORC extends Reducer<OrcKey,RatingHistogramWritable,NullWritable,NullWritable> {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(AllQueriesFanOutReducerORC.class);
+
+  /**
+   * The named output for Query1 (movieTitle,avgRating).
+   */
+  public static final String OUTPUT_QUERY1 = "query1";
+
+  /**
+   * The named output for Query2 (genre,ratings).
+   */
+  public static final String OUTPUT_QUERY2 = "query2";
+
+  /**
+   * The named output for Query3, top-k period (movieId,avgRating).
+   */
+  public static final String OUTPUT_QUERY3_TOPK = "query3topk";
+
+  /**
+   * The named output for Query3, total rank period (movieId,avgRating).
+   */
+  public static final String OUTPUT_QUERY3_SORT = "query3sort";
+
+  /**
+   * The ORC schema for Query3 outputs.
+   */
+  public static final TypeDescription ORC_SCHEMA = TypeDescription.fromString("struct<id:bigint,avgrating:double>");
+
+  /**
+   * The null writable value.
+   */
+  private static final NullWritable NULL = NullWritable.get();
+
+  /**
+   * The multiple outputs.
+   */
+  private MultipleOutputs<NullWritable,NullWritable> mos;
+
+  /**
+   * The cached movie index.
+   */
+  private MovieIndex movies;
+
+  /**
+   * The lower bound for the movie average rating (Query1).
+   */
+  private double movieAverageRatingLowerBound;
+
+  /**
+   * The movie title to emit (Query1).
+   */
+  private Text movieTitle = new Text();
+
+  /**
+   * The movie average rating to emit (Query1).
+   */
+  private DoubleWritable movieAverageRating = new DoubleWritable();
+
+  /**
+   * The genre to emit (Query2).
+   */
+  private Text genreTitle = new Text();
+
+  /**
+   * The tuple (movieId,avgrating) to emit (Query3).
+   */
+  private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA);
+
+  /**
+   * The movie id to emit (Query3).
+   */
+  private LongWritable movieId = (LongWritable) tuple.getFieldValue(0);
+
+  /**
+   * The average rating to emit (Query3).
+   */
+  private DoubleWritable avgrating = (DoubleWritable) tuple.getFieldValue(1);
+
+  /**
+   * The merged histogram of ratings (Query1).
+   */
+  private RatingHistogramWritable ratings1 = new RatingHistogramWritable();
+
+  /**
+   * The merged histogram of ratings (Query2).
+   */
+  private RatingHistogramWritable ratings2 = new RatingHistogramWritable();
+
+  /**
+   * The merged histogram of ratings (Query3, top-k).
+   */
+  private RatingHistogramWritable ratings3TopK = new RatingHistogramWritable();
+
+  /**
+   * The merged histogram of ratings (Query3, total rank).
+   */
+  private RatingHistogramWritable ratings3Sort = new RatingHistogramWritable();
+
+  /**
+   * Configures the reducer.
+   *
+   * @param ctx the job context.
+   * @throws IOException when the movie index cannot be opened.
+   */
+  protected void setup(Context ctx) throws IOException {
+    this.movieAverageRatingLowerBound =
+        Double.valueOf(ctx.getConfiguration().get("moviedoop.average.rating.lb"));
+    LOG.debug("[SETUP] moviedoop.average.rating.lb: " + this.movieAverageRatingLowerBound);
+    this.movies = MovieIndex.open(ctx);
+    this.mos = new MultipleOutputs<>(ctx);
+  }
+
+  /**
+   * The reduction routine.
+   *
+   * @param key the input key.
+   * @param values the input values.
+   * @param ctx the context.
+   * @throws IOException when the context cannot be written.
+   * @throws InterruptedException when the context cannot be written.
+   */
+  public void reduce(OrcKey key, Iterable<RatingHistogramWritable> values, Context ctx) throws IOException, InterruptedException {
+    this.ratings1.clear();
+    this.ratings2.clear();
+    this.ratings3TopK.clear();
+    this.ratings3Sort.clear();
+
+    for (RatingHistogramWritable value : values) {
+      byte tag = value.getTag();
+      if ((tag & RatingsAggregateAllQueriesMapperORC.QUERY1) != 0) {
+        this.ratings1.merge(value);
+      }
+      if ((tag & RatingsAggregateAllQueriesMapperORC.QUERY2) != 0) {
+        this.ratings2.merge(value);
+      }
+      if ((tag & RatingsAggregateAllQueriesMapperORC.QUERY3_TOPK) != 0) {
+        this.ratings3TopK.merge(value);
+      }
+      if ((tag & RatingsAggregateAllQueriesMapperORC.QUERY3_SORT) != 0) {
+        this.ratings3Sort.merge(value);
+      }
+    }
+
+    long movieId = ((LongWritable) ((OrcStruct) key.key).getFieldValue(0)).get();
+
+    // QUERY 1
+    if (this.ratings1.getCount() > 0) {
+      double avgRating = this.ratings1.getAverage();
+      if (avgRating >= this.movieAverageRatingLowerBound) {
+        this.movieTitle.set(this.movies.getTitle(movieId, "N/A-" + movieId));
+        this.movieAverageRating.set(avgRating);
+        this.mos.write(OUTPUT_QUERY1, this.movieTitle, this.movieAverageRating, OUTPUT_QUERY1 + "/part");
+      }
+    }
+
+    // QUERY 2
+    String movieGenres = this.movies.getGenres(movieId);
+    if (this.ratings2.getCount() > 0 && movieGenres != null && !movieGenres.isEmpty()) {
+      for (String genre : movieGenres.split("\\|")) {
+        this.genreTitle.set(genre);
+        this.mos.write(OUTPUT_QUERY2, this.genreTitle, this.ratings2, OUTPUT_QUERY2 + "/part");
+      }
+    }
+
+    // QUERY 3
+    this.movieId.set(movieId);
+    if (this.ratings3TopK.getCount() > 0) {
+      this.avgrating.set(this.ratings3TopK.getAverage());
+      this.mos.write(OUTPUT_QUERY3_TOPK, NULL, this.tuple, OUTPUT_QUERY3_TOPK + "/part");
+    }
+    if (this.ratings3Sort.getCount() > 0) {
+      this.avgrating.set(this.ratings3Sort.getAverage());
+      this.mos.write(OUTPUT_QUERY3_SORT, NULL, this.tuple, OUTPUT_QUERY3_SORT + "/part");
+    }
+  }
+
+  /**
+   * Flushes the reducer.
+   *
+   * @param ctx the job context.
+   */
+  protected void cleanup(Context ctx) throws IOException, InterruptedException {
+    this.mos.close();
+  }
+}
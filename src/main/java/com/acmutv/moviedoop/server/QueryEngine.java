@@ -0,0 +1,270 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.server;
+
+import com.acmutv.moviedoop.common.model.MomentsWritable;
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.struct.RatingCube;
+import com.acmutv.moviedoop.common.struct.TopK;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The in-memory engine answering Query1, Query2 and Query3 over a {@link RatingCube}.
+ * Movie titles and genres are resolved once, when the engine is created; afterwards the engine is
+ * read-only and can be queried by concurrent threads.
+ * Results have the same format of the batch programs (one tab-separated record per line), so
+ * periods must be made of whole time buckets.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class QueryEngine {
+
+  /**
+   * The rating cube.
+   */
+  private final RatingCube cube;
+
+  /**
+   * The granularity of the cube.
+   */
+  private final TimeBucket granularity;
+
+  /**
+   * The movie titles, by movie position in the cube (null if the movie is not indexed).
+   */
+  private final String[] titles;
+
+  /**
+   * The movie positions in the cube, by genre (sorted by genre).
+   */
+  private final Map<String,int[]> genres;
+
+  /**
+   * Creates a new engine.
+   *
+   * @param cube the rating cube.
+   * @param movies the movie index.
+   * @param granularity the granularity of the cube.
+   */
+  public QueryEngine(RatingCube cube, MovieIndex movies, TimeBucket granularity) {
+    this.cube = cube;
+    this.granularity = granularity;
+    this.titles = new String[cube.size()];
+    Map<String,List<Integer>> genreToMovies = new TreeMap<>();
+    for (int i = 0; i < cube.size(); i++) {
+      long movieId = cube.getMovieId(i);
+      this.titles[i] = movies.getTitle(movieId);
+      String movieGenres = movies.getGenres(movieId);
+      if (movieGenres == null || movieGenres.isEmpty()) continue;
+      for (String genre : movieGenres.split("\\|")) {
+        genreToMovies.computeIfAbsent(genre, k -> new ArrayList<>()).add(i);
+      }
+    }
+    this.genres = new TreeMap<>();
+    for (Map.Entry<String,List<Integer>> entry : genreToMovies.entrySet()) {
+      this.genres.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  /**
+   * Returns the number of movies.
+   *
+   * @return the number of movies.
+   */
+  public int size() {
+    return this.cube.size();
+  }
+
+  /**
+   * Returns the number of genres.
+   *
+   * @return the number of genres.
+   */
+  public int genres() {
+    return this.genres.size();
+  }
+
+  /**
+   * Query1: movies with average rating greater or equal to {@code ratingLowerBound}, considering
+   * ratings in period [lb,inf).
+   *
+   * @param lb the period lower bound (seconds from epoch).
+   * @param ratingLowerBound the lower bound for the average rating.
+   * @return the records (movieTitle,avgRating).
+   * @throws IllegalArgumentException when the period is not made of whole buckets.
+   */
+  public List<String> query1(long lb, double ratingLowerBound) {
+    this.checkPeriod(lb, Long.MAX_VALUE);
+    final long lowerBound = this.granularity.of(lb);
+    RatingHistogramWritable ratings = new RatingHistogramWritable();
+    List<String> records = new ArrayList<>();
+    for (int i = 0; i < this.cube.size(); i++) {
+      this.cube.window(i, lowerBound, Long.MAX_VALUE, ratings);
+      if (ratings.getCount() == 0) continue;
+      double avgRating = ratings.getAverage();
+      if (avgRating >= ratingLowerBound) {
+        records.add(this.getTitle(i) + "\t" + avgRating);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Query2: average and standard deviation of ratings of every genre, considering ratings in
+   * period [lb,ub].
+   *
+   * @param lb the period lower bound (seconds from epoch).
+   * @param ub the period upper bound (seconds from epoch).
+   * @return the records (genre,avg,stdDev).
+   * @throws IllegalArgumentException when the period is not made of whole buckets.
+   */
+  public List<String> query2(long lb, long ub) {
+    this.checkPeriod(lb, ub);
+    final long lowerBound = this.granularity.of(lb);
+    final long upperBound = this.granularity.of(ub);
+    RatingHistogramWritable movieRatings = new RatingHistogramWritable();
+    RatingHistogramWritable genreRatings = new RatingHistogramWritable();
+    MomentsWritable genreMoments = new MomentsWritable();
+    List<String> records = new ArrayList<>();
+    for (Map.Entry<String,int[]> entry : this.genres.entrySet()) {
+      genreRatings.clear();
+      for (int i : entry.getValue()) {
+        this.cube.window(i, lowerBound, upperBound, movieRatings);
+        genreRatings.merge(movieRatings);
+      }
+      if (genreRatings.isEmpty()) continue;
+      genreMoments.clear();
+      genreMoments.merge(genreRatings);
+      double avg = genreRatings.getAverage();
+      double stdDev = genreMoments.getStandardDeviation();
+      records.add(entry.getKey() + "\t" + avg + "\t" + stdDev);
+    }
+    return records;
+  }
+
+  /**
+   * Query3: comparison between the top-{@code rankSize} movies by average rating in period
+   * [lb1,ub1] and the total rank of movies by average rating in period [lb2,ub2].
+   *
+   * @param rankSize the size of the top rank.
+   * @param lb1 the top rank period lower bound (seconds from epoch).
+   * @param ub1 the top rank period upper bound (seconds from epoch).
+   * @param lb2 the total rank period lower bound (seconds from epoch).
+   * @param ub2 the total rank period upper bound (seconds from epoch).
+   * @return the records (movieTitle,deltaPosition,deltaScore).
+   * @throws IllegalArgumentException when a period is not made of whole buckets.
+   */
+  public List<String> query3(int rankSize, long lb1, long ub1, long lb2, long ub2) {
+    this.checkPeriod(lb1, ub1);
+    this.checkPeriod(lb2, ub2);
+    final long lowerBound1 = this.granularity.of(lb1);
+    final long upperBound1 = this.granularity.of(ub1);
+    final long lowerBound2 = this.granularity.of(lb2);
+    final long upperBound2 = this.granularity.of(ub2);
+    RatingHistogramWritable ratings = new RatingHistogramWritable();
+
+    // TOP-K RANK [lb1,ub1]
+    TopK topK = new TopK(rankSize);
+    for (int i = 0; i < this.cube.size(); i++) {
+      this.cube.window(i, lowerBound1, upperBound1, ratings);
+      if (ratings.getCount() > 0) {
+        topK.add(i, ratings.getAverage());
+      }
+    }
+    Map<Long,Integer> topKPositions = new HashMap<>();
+    for (int p = 0; p < topK.size(); p++) {
+      topKPositions.put(topK.getId(p), p);
+    }
+
+    // TOTAL RANK [lb2,ub2]
+    int rated = 0;
+    int[] rank = new int[this.cube.size()];
+    double[] scores = new double[this.cube.size()];
+    for (int i = 0; i < this.cube.size(); i++) {
+      this.cube.window(i, lowerBound2, upperBound2, ratings);
+      if (ratings.getCount() > 0) {
+        rank[rated++] = i;
+        scores[i] = ratings.getAverage();
+      }
+    }
+    Integer[] order = new Integer[rated];
+    for (int r = 0; r < rated; r++) {
+      order[r] = rank[r];
+    }
+    Arrays.sort(order, (i1, i2) -> Double.compare(scores[i2], scores[i1]));
+
+    // RANK COMPARISON
+    List<String> records = new ArrayList<>();
+    boolean[] compared = new boolean[topK.size()];
+    for (int r = 0; r < rated; r++) {
+      Integer p = topKPositions.get((long) order[r]);
+      if (p == null) continue;
+      long deltaPosition = (r + 1) - (p + 1);
+      double deltaScore = topK.getScore(p) - scores[order[r]];
+      records.add(this.getTitle(order[r]) + "\t" + deltaPosition + "\t" + deltaScore);
+      compared[p] = true;
+    }
+    for (int p = 0; p < topK.size(); p++) {
+      if (!compared[p]) {
+        records.add(this.getTitle((int) topK.getId(p)) + "\tna\tna");
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Returns the title of the movie at the given cube position, or N/A-movieId when it is unknown.
+   *
+   * @param i the cube position.
+   * @return the movie title.
+   */
+  private String getTitle(int i) {
+    return (this.titles[i] != null) ? this.titles[i] : "N/A-" + this.cube.getMovieId(i);
+  }
+
+  /**
+   * Checks that the period [lb,ub] is made of whole buckets.
+   *
+   * @param lb the period lower bound (seconds from epoch).
+   * @param ub the period upper bound (seconds from epoch).
+   * @throws IllegalArgumentException when the period is not made of whole buckets.
+   */
+  private void checkPeriod(long lb, long ub) {
+    if (!this.granularity.isAligned(lb, ub)) {
+      throw new IllegalArgumentException("The period must be made of whole " + this.granularity.name().toLowerCase() + "s");
+    }
+  }
+}
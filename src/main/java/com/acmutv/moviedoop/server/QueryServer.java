@@ -0,0 +1,275 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.server;
+
+import com.acmutv.moviedoop.common.struct.MovieIndex;
+import com.acmutv.moviedoop.common.struct.RatingCube;
+import com.acmutv.moviedoop.common.util.DateParser;
+import com.acmutv.moviedoop.common.util.TimeBucket;
+import com.acmutv.moviedoop.cube.RatingCubeJob;
+import com.acmutv.moviedoop.index.MovieIndexJob;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A long-running program that loads the rating cube (see {@link RatingCubeJob}) and the movie
+ * index (see {@link MovieIndexJob}) in memory and answers queries over HTTP, without submitting
+ * any job.
+ * Queries are GET requests, answered with the records of the batch programs (text/plain):
+ * <ul>
+ *   <li>{@code /query1?lb=dd/MM/yyyy&rating=R}: movies with average rating at least R since lb;</li>
+ *   <li>{@code /query2?lb=dd/MM/yyyy&ub=dd/MM/yyyyThh:mm:ss}: genres statistics in [lb,ub];</li>
+ *   <li>{@code /query3?k=K&lb1=..&ub1=..&lb2=..&ub2=..}: top-K rank in [lb1,ub1] compared to the
+ *   total rank in [lb2,ub2].</li>
+ * </ul>
+ * Periods must be made of whole time buckets of the cube ({@code moviedoop.cube.granularity}).
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class QueryServer extends Configured implements Tool {
+
+  /**
+   * The logger.
+   */
+  private static final Logger LOG = Logger.getLogger(QueryServer.class);
+
+  /**
+   * The program name.
+   */
+  private static final String PROGRAM_NAME = "QueryServer";
+
+  /**
+   * The default server port.
+   */
+  private static final int SERVER_PORT = 8080;
+
+  /**
+   * The default number of threads serving requests.
+   */
+  private static final int SERVER_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The default granularity of the rating cube.
+   */
+  private static final TimeBucket CUBE_GRANULARITY = TimeBucket.DAY;
+
+  /**
+   * The default lower bound for movie average rating (Query1).
+   */
+  private static final double RATING_AVERAGE_LB = 2.5;
+
+  /**
+   * The default lower bound for movie ratings timestamp (seconds from epoch).
+   */
+  private static final long RATING_TIMESTAMP_LB = DateParser.toSeconds(DateParser.MIN);
+
+  /**
+   * The default upper bound for movie ratings timestamp (seconds from epoch).
+   */
+  private static final long RATING_TIMESTAMP_UB = DateParser.toSeconds(DateParser.MAX);
+
+  /**
+   * The default movies rank size (Query3).
+   */
+  private static final int RANK_SIZE = 10;
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.printf("Usage: %s [-D prop=val] <inRatings> <inMovies>\n", PROGRAM_NAME);
+      ToolRunner.printGenericCommandUsage(System.out);
+      return 2;
+    }
+
+    // PATHS
+    final Path inputRatings = new Path(args[0]);
+    final Path inputMovies = new Path(args[1]);
+
+    // CONTEXT CONFIGURATION
+    Configuration config = super.getConf();
+    config.setIfUnset("moviedoop.cube.granularity", CUBE_GRANULARITY.name().toLowerCase());
+
+    // OTHER CONFIGURATION
+    final int serverPort = Integer.valueOf(config.get("moviedoop.server.port", String.valueOf(SERVER_PORT)));
+    final int serverThreads = Integer.valueOf(config.get("moviedoop.server.threads", String.valueOf(SERVER_THREADS)));
+    final TimeBucket granularity = TimeBucket.parse(config.get("moviedoop.cube.granularity"));
+
+    // DATA LOADING
+    final Path cube = RatingCubeJob.ensure(config, inputRatings);
+    final Path index = MovieIndexJob.ensure(config, inputMovies);
+    long start = System.currentTimeMillis();
+    final QueryEngine engine =
+        new QueryEngine(RatingCube.load(config, cube), MovieIndex.open(config, index.toUri()), granularity);
+    long elapsed = System.currentTimeMillis() - start;
+
+    // CONFIGURATION RESUME
+    System.out.println("############################################################################");
+    System.out.printf("%s\n", PROGRAM_NAME);
+    System.out.println("****************************************************************************");
+    System.out.println("Input Ratings: " + inputRatings);
+    System.out.println("Input Movies: " + inputMovies);
+    System.out.println("Rating Cube: " + cube);
+    System.out.println("Movie Index: " + index);
+    System.out.println("Cube Granularity: " + config.get("moviedoop.cube.granularity"));
+    System.out.println("Movies: " + engine.size() + " (genres: " + engine.genres() + ", loaded in " + elapsed + " ms)");
+    System.out.println("----------------------------------------------------------------------------");
+    System.out.println("Server Port: " + serverPort);
+    System.out.println("Server Threads: " + serverThreads);
+    System.out.println("############################################################################");
+
+    // SERVER
+    final ExecutorService executor = Executors.newFixedThreadPool(serverThreads);
+    final HttpServer server = HttpServer.create(new InetSocketAddress(serverPort), 0);
+    server.createContext("/query1", exchange -> serve(exchange, params -> engine.query1(
+        seconds(params, "lb", RATING_TIMESTAMP_LB),
+        Double.valueOf(params.getOrDefault("rating", String.valueOf(RATING_AVERAGE_LB))))));
+    server.createContext("/query2", exchange -> serve(exchange, params -> engine.query2(
+        seconds(params, "lb", RATING_TIMESTAMP_LB),
+        seconds(params, "ub", RATING_TIMESTAMP_UB))));
+    server.createContext("/query3", exchange -> serve(exchange, params -> engine.query3(
+        Integer.valueOf(params.getOrDefault("k", String.valueOf(RANK_SIZE))),
+        seconds(params, "lb1", RATING_TIMESTAMP_LB),
+        seconds(params, "ub1", RATING_TIMESTAMP_UB),
+        seconds(params, "lb2", RATING_TIMESTAMP_LB),
+        seconds(params, "ub2", RATING_TIMESTAMP_UB))));
+    server.setExecutor(executor);
+
+    final CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.stop(0);
+      executor.shutdown();
+      stopped.countDown();
+    }));
+    server.start();
+    LOG.info("Listening on port " + serverPort);
+    stopped.await();
+
+    return 0;
+  }
+
+  /**
+   * Answers the request with the records computed by {@code query}.
+   * Malformed parameters and periods not made of whole buckets are answered with 400.
+   *
+   * @param exchange the HTTP exchange.
+   * @param query the query, from request parameters to records.
+   * @throws IOException when the response cannot be written.
+   */
+  private static void serve(HttpExchange exchange, Function<Map<String,String>,List<String>> query) throws IOException {
+    int status;
+    StringBuilder body = new StringBuilder();
+    try {
+      for (String record : query.apply(params(exchange.getRequestURI().getRawQuery()))) {
+        body.append(record).append('\n');
+      }
+      status = 200;
+    } catch (IllegalArgumentException | DateTimeParseException exc) {
+      body.append(exc.getMessage()).append('\n');
+      status = 400;
+    } catch (RuntimeException exc) {
+      LOG.error(exc.getMessage(), exc);
+      body.append(exc.getMessage()).append('\n');
+      status = 500;
+    }
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Parses the query string of a request.
+   *
+   * @param query the raw query string (may be null).
+   * @return the parameters.
+   * @throws IllegalArgumentException when the query string is malformed.
+   */
+  private static Map<String,String> params(String query) {
+    Map<String,String> params = new HashMap<>();
+    if (query == null || query.isEmpty()) {
+      return params;
+    }
+    try {
+      for (String pair : query.split("&")) {
+        int eq = pair.indexOf('=');
+        if (eq < 0) continue;
+        params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+      }
+    } catch (UnsupportedEncodingException exc) {
+      throw new IllegalArgumentException(exc);
+    }
+    return params;
+  }
+
+  /**
+   * Returns the date parameter as seconds from epoch.
+   *
+   * @param params the parameters.
+   * @param name the parameter name.
+   * @param fallback the value if the parameter is missing.
+   * @return the seconds from epoch.
+   */
+  private static long seconds(Map<String,String> params, String name, long fallback) {
+    String date = params.get(name);
+    return (date == null) ? fallback : DateParser.toSeconds(date);
+  }
+
+  /**
+   * The program main method.
+   *
+   * @param args the program arguments.
+   * @throws Exception when the program cannot be executed.
+   */
+  public static void main(String[] args) throws Exception {
+    int res = ToolRunner.run(new Configuration(), new QueryServer(), args);
+    System.exit(res);
+  }
+}
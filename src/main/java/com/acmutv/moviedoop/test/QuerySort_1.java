@@ -32,6 +32,7 @@ import com.acmutv.moviedoop.test.reduce.AverageRatingReducer;
 import com.acmutv.moviedoop.query3.reduce.ValueReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import com.acmutv.moviedoop.common.util.DoubleWritableDecreasingComparator;
+import com.acmutv.moviedoop.common.util.HistogramRangePartitioner;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.FileSystem;
@@ -46,8 +47,6 @@ import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
-import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
-import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 
@@ -89,21 +88,6 @@ public class QuerySort_1 extends Configured implements Tool {
    */
   private static final int MOVIE_SORT_REDUCE_CARDINALITY = 1;
 
-  /**
-   * The default number of sorting partitioner samples.
-   */
-  private static final int MOVIE_SORT_PARTITION_SAMPLES = 1000;
-
-  /**
-   * The default frequency for sorting partitioner.
-   */
-  private static final double MOVIE_SORT_PARTITION_FREQUENCY = 0.01;
-
-  /**
-   * The default maximum number of splits for sorting partition.
-   */
-  private static final int MOVIE_SORT_PARTITION_SPLITS_MAX = 100;
-
   /**
    * The default verbosity.
    */
@@ -119,7 +103,6 @@ public class QuerySort_1 extends Configured implements Tool {
 
     // PATHS
     final Path input = new Path(args[0]);
-    final Path parts = new Path(args[1] + "_partitions.lst");
     final Path staging1 = new Path(args[1] + "_staging1");
     final Path staging2 = new Path(args[1] + "_staging2");
     final Path output = new Path(args[1]);
@@ -132,14 +115,8 @@ public class QuerySort_1 extends Configured implements Tool {
     // OTHER CONFIGURATION
     final int AVERAGE_REDUCE_CARDINALITY = Integer.valueOf(config.get("moviedoop.average.reduce.cardinality", String.valueOf(MOVIE_AVERAGE_REDUCE_CARDINALITY)));
     final int SORT_REDUCE_CARDINALITY = Integer.valueOf(config.get("moviedoop.sort.reduce.cardinality", String.valueOf(MOVIE_SORT_REDUCE_CARDINALITY)));
-    final int SORT_PARTITION_SAMPLES = Integer.valueOf(config.get("moviedoop.sort.partition.samples", String.valueOf(MOVIE_SORT_PARTITION_SAMPLES)));
-    final double SORT_PARTITION_FREQUENCY = Double.valueOf(config.get("moviedoop.sort.partition.frequency", String.valueOf(MOVIE_SORT_PARTITION_FREQUENCY)));
-    final int SORT_PARTITION_SPLITS_MAX = Integer.valueOf(config.get("moviedoop.sort.partition.splits.max", String.valueOf(MOVIE_SORT_PARTITION_SPLITS_MAX)));
     config.unset("moviedoop.sort.reduce.cardinality");
     config.unset("moviedoop.average.reduce.cardinality");
-    config.unset("moviedoop.sort.partition.samples");
-    config.unset("moviedoop.sort.partition.frequency");
-    config.unset("moviedoop.sort.partition.splits.max");
 
     // CONTEXT RESUME
     System.out.println("############################################################################");
@@ -152,9 +129,6 @@ public class QuerySort_1 extends Configured implements Tool {
     System.out.println("----------------------------------------------------------------------------");
     System.out.println("Reduce Cardinality (average): " + AVERAGE_REDUCE_CARDINALITY);
     System.out.println("Reduce Cardinality (sort): " + SORT_REDUCE_CARDINALITY);
-    System.out.println("Movie Sorting Partition Samples: " + SORT_PARTITION_SAMPLES);
-    System.out.println("Movie Sorting Partition Frequency: " + SORT_PARTITION_FREQUENCY);
-    System.out.println("Movie Sorting Partition Max Splits: " + SORT_PARTITION_SPLITS_MAX);
     System.out.println("############################################################################");
 
     // JOB AVERAGE RATINGS: CONFIGURATION
@@ -190,6 +164,7 @@ public class QuerySort_1 extends Configured implements Tool {
       jobRatingAsKey.setInputFormatClass(SequenceFileInputFormat.class);
       SequenceFileInputFormat.addInputPath(jobRatingAsKey, staging1);
       jobRatingAsKey.setMapperClass(AverageRatingAsKeyMapper.class);
+      HistogramRangePartitioner.setHistogramEnabled(jobRatingAsKey.getConfiguration(), SORT_REDUCE_CARDINALITY > 1);
 
       // JOB RATING AS KEY: REDUCE CONFIGURATION
       jobRatingAsKey.setNumReduceTasks(0);
@@ -229,11 +204,8 @@ public class QuerySort_1 extends Configured implements Tool {
 
       // JOB SORT BY AVERAGE RATING: PARTITIONER CONFIGURATION
       if (SORT_REDUCE_CARDINALITY > 1) {
-        jobSortByRating.setPartitionerClass(TotalOrderPartitioner.class);
-        TotalOrderPartitioner.setPartitionFile(jobSortByRating.getConfiguration(), parts);
         jobSortByRating.getConfiguration().set("mapreduce.output.textoutputformat.separator", "");
-        InputSampler.RandomSampler<DoubleWritable,Text> sampler = new InputSampler.RandomSampler<>(SORT_PARTITION_FREQUENCY, SORT_PARTITION_SAMPLES, SORT_PARTITION_SPLITS_MAX);
-        InputSampler.writePartitionFile(jobSortByRating, sampler);
+        HistogramRangePartitioner.setPartitionCuts(jobSortByRating, staging2);
       }
 
       // JOB SORT BY AVERAGE RATING: EXECUTION
@@ -244,7 +216,6 @@ public class QuerySort_1 extends Configured implements Tool {
     FileSystem fs = FileSystem.get(config);
     fs.delete(staging1, true);
     fs.delete(staging2, true);
-    fs.delete(parts, true);
 
     return code;
   }
@@ -25,10 +25,11 @@
  */
 package com.acmutv.moviedoop.test;
 
+import com.acmutv.moviedoop.common.struct.TopK;
 import com.acmutv.moviedoop.test.map.FilterRatingsByTimeIntervalMapper;
-import com.acmutv.moviedoop.query3.map.MoviesTopKBestMapMapper;
+import com.acmutv.moviedoop.query3.map.MoviesTopKMapper;
 import com.acmutv.moviedoop.test.reduce.AverageRatingReducer;
-import com.acmutv.moviedoop.query3.reduce.MoviesTopKBestMapReducer;
+import com.acmutv.moviedoop.query3.reduce.MoviesTopKReducer;
 import com.acmutv.moviedoop.common.util.DateParser;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
@@ -51,7 +52,7 @@ import java.time.LocalDateTime;
 /**
  * A map/reduce program that returns the top-`rankSize` movies considering average ratings in
  * period from `ratingTimestampLB` and `ratingTimestampUB`.
- * It leverages BestMap.
+ * It leverages TopK.
  *
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
@@ -165,12 +166,12 @@ public class QueryTopK_2 extends Configured implements Tool {
       // JOB TOP BY RATING: MAP CONFIGURATION
       jobTopRatings.setInputFormatClass(SequenceFileInputFormat.class);
       SequenceFileInputFormat.addInputPath(jobTopRatings, staging);
-      jobTopRatings.setMapperClass(MoviesTopKBestMapMapper.class);
+      jobTopRatings.setMapperClass(MoviesTopKMapper.class);
       jobTopRatings.setMapOutputKeyClass(NullWritable.class);
-      jobTopRatings.setMapOutputValueClass(Text.class);
+      jobTopRatings.setMapOutputValueClass(TopK.class);
 
       // JOB TOP BY RATING: REDUCE CONFIGURATION
-      jobTopRatings.setReducerClass(MoviesTopKBestMapReducer.class);
+      jobTopRatings.setReducerClass(MoviesTopKReducer.class);
       jobTopRatings.setNumReduceTasks(TOPK_REDUCE_CARDINALITY);
 
       // JOB TOP BY RATING: OUTPUT CONFIGURATION
@@ -25,14 +25,13 @@
  */
 package com.acmutv.moviedoop.test.map;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.test.QuerySerializationText2Text2Text;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
-import java.util.Map;
 
 /**
  * The identity mapper for the {@link QuerySerializationText2Text2Text} job.
@@ -54,6 +53,11 @@ public class IdentityMapperText2Text extends Mapper<Object,Text,LongWritable,Tex
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * The mapping routine.
    *
@@ -64,10 +68,10 @@ public class IdentityMapperText2Text extends Mapper<Object,Text,LongWritable,Tex
    * @throws InterruptedException when the context cannot be written.
    */
   public void map(Object key, Text value, Context ctx) throws IOException, InterruptedException {
-    Map<String,String> parsed = RecordParser.parse(value.toString(), new String[]{"userId","movieId","rating","time"}, RecordParser.ESCAPED_DELIMITER);
-    long movieId = Long.valueOf(parsed.get("movieId"));
-    double rating = Double.valueOf(parsed.get("rating"));
-    long time = Long.valueOf(parsed.get("time"));
+    this.tokenizer.tokenize(value);
+    long movieId = this.tokenizer.getLong(1);
+    double rating = this.tokenizer.getDouble(2);
+    long time = this.tokenizer.getLong(3);
     this.movieId.set(movieId);
     this.tuple.set(rating + "," + time);
     ctx.write(this.movieId, this.tuple);
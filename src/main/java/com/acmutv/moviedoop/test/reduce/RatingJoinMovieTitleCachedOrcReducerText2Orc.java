@@ -25,7 +25,7 @@
  */
 package com.acmutv.moviedoop.test.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.test.QuerySerializationOrc2Text2Orc;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
@@ -76,6 +76,11 @@ public class RatingJoinMovieTitleCachedOrcReducerText2Orc extends Reducer<LongWr
    */
   private OrcStruct tuple = (OrcStruct) OrcStruct.createValue(ORC_SCHEMA);
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
@@ -120,9 +125,9 @@ public class RatingJoinMovieTitleCachedOrcReducerText2Orc extends Reducer<LongWr
     long movieId = key.get();
     String movieTitle = this.movieIdToMovieTitle.get(movieId);
     for (Text value : values) {
-      Map<String,String> parsed = RecordParser.parse(value.toString(), new String[] {"rating","time"}, RecordParser.ESCAPED_DELIMITER);
-      double rating = Double.valueOf(parsed.get("rating"));
-      long time = Long.valueOf(parsed.get("time"));
+      this.tokenizer.tokenize(value);
+      double rating = this.tokenizer.getDouble(0);
+      long time = this.tokenizer.getLong(1);
       this.tuple.setFieldValue(0, new LongWritable(movieId));
       this.tuple.setFieldValue(1, new Text(movieTitle));
       this.tuple.setFieldValue(2, new DoubleWritable(rating));
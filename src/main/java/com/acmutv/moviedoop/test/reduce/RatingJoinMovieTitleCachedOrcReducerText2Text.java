@@ -25,7 +25,7 @@
  */
 package com.acmutv.moviedoop.test.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.test.QuerySerializationOrc2Text2Text;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
@@ -68,6 +68,11 @@ public class RatingJoinMovieTitleCachedOrcReducerText2Text extends Reducer<LongW
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
@@ -113,9 +118,9 @@ public class RatingJoinMovieTitleCachedOrcReducerText2Text extends Reducer<LongW
     long movieId = key.get();
     String movieTitle = this.movieIdToMovieTitle.get(movieId);
     for (Text value : values) {
-      Map<String,String> parsed = RecordParser.parse(value.toString(), new String[] {"rating","time"}, RecordParser.ESCAPED_DELIMITER);
-      double rating = Double.valueOf(parsed.get("rating"));
-      long time = Long.valueOf(parsed.get("time"));
+      this.tokenizer.tokenize(value);
+      double rating = this.tokenizer.getDouble(0);
+      long time = this.tokenizer.getLong(1);
       this.tuple.set(movieId + "," + movieTitle + "," + rating + "," + time);
       ctx.write(NullWritable.get(), this.tuple);
     }
@@ -25,19 +25,18 @@
  */
 package com.acmutv.moviedoop.test.reduce;
 
-import com.acmutv.moviedoop.common.util.RecordParser;
+import com.acmutv.moviedoop.common.util.CsvTokenizer;
 import com.acmutv.moviedoop.test.QuerySerializationText2Text2Text;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.util.LineReader;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
@@ -66,6 +65,11 @@ public class RatingJoinMovieTitleCachedTextReducerText2Text extends Reducer<Long
    */
   private Text tuple = new Text();
 
+  /**
+   * The tokenizer for input records.
+   */
+  private CsvTokenizer tokenizer = new CsvTokenizer();
+
   /**
    * Configures the reducer.
    *
@@ -75,17 +79,15 @@ public class RatingJoinMovieTitleCachedTextReducerText2Text extends Reducer<Long
     try {
       for (URI uri : ctx.getCacheFiles()) {
         Path path = new Path(uri);
-        BufferedReader br = new BufferedReader(
-            new InputStreamReader(
-                new FileInputStream(path.getName())));
-        String line;
-        while ((line = br.readLine()) != null) {
-          Map<String,String> movie = RecordParser.parse(line, new String[] {"id","title","genres"}, RecordParser.ESCAPED_DELIMITER);
-          long movieId = Long.valueOf(movie.get("id"));
-          String movieTitle = movie.get("title");
+        LineReader reader = new LineReader(new FileInputStream(path.getName()));
+        Text line = new Text();
+        while (reader.readLine(line) > 0) {
+          this.tokenizer.tokenize(line);
+          long movieId = this.tokenizer.getLong(0);
+          String movieTitle = this.tokenizer.getString(1);
           this.movieIdToMovieTitle.put(movieId, movieTitle);
         }
-        br.close();
+        reader.close();
       }
     } catch (IOException exc) {
       LOG.error(exc.getMessage());
@@ -106,9 +108,9 @@ public class RatingJoinMovieTitleCachedTextReducerText2Text extends Reducer<Long
     long movieId = key.get();
     String movieTitle = this.movieIdToMovieTitle.get(movieId);
     for (Text value : values) {
-      Map<String,String> parsed = RecordParser.parse(value.toString(), new String[] {"rating","time"}, RecordParser.ESCAPED_DELIMITER);
-      double rating = Double.valueOf(parsed.get("rating"));
-      long time = Long.valueOf(parsed.get("time"));
+      this.tokenizer.tokenize(value);
+      double rating = this.tokenizer.getDouble(0);
+      long time = this.tokenizer.getLong(1);
       this.tuple.set(movieId + "," + movieTitle + "," + rating + "," + time);
       ctx.write(NullWritable.get(), this.tuple);
     }
@@ -24,6 +24,8 @@
   THE SOFTWARE.
  */
 
+import com.acmutv.moviedoop.common.input.TestAllInput;
+import com.acmutv.moviedoop.common.model.TestAllModel;
 import com.acmutv.moviedoop.common.struct.TestAllStruct;
 import com.acmutv.moviedoop.common.util.TestAllUtil;
 import org.junit.runner.RunWith;
@@ -37,6 +39,8 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    TestAllInput.class,
+    TestAllModel.class,
     TestAllStruct.class,
     TestAllUtil.class
 })
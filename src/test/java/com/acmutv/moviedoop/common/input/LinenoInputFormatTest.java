@@ -0,0 +1,125 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.input;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link LinenoInputFormat} and {@link LinenoOffsets}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class LinenoInputFormatTest {
+
+  /**
+   * The temporary folder for input files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that records are numbered globally across files, with and without record count side files.
+   *
+   * @throws Exception when input files cannot be written or read.
+   */
+  @Test
+  public void test_globalNumbering() throws Exception {
+    File dir = folder.getRoot();
+    Files.write(new File(dir, "part-r-00001").toPath(), "d\ne".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(dir, "part-r-00000").toPath(), "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+    Files.write(new File(dir, "part-r-00002").toPath(), "f\n".getBytes(StandardCharsets.UTF_8));
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(dir, LinenoOffsets.PREFIX + "part-r-00000")))) {
+      out.writeLong(3);
+    }
+
+    Job job = Job.getInstance(new Configuration());
+    FileInputFormat.addInputPath(job, new Path(dir.getAbsolutePath()));
+    LinenoInputFormat format = new LinenoInputFormat();
+    List<InputSplit> splits = format.getSplits(job);
+    Assert.assertEquals(3, splits.size());
+
+    List<String> records = new ArrayList<>();
+    for (InputSplit split : splits) {
+      TaskAttemptContext ctx = new TaskAttemptContextImpl(job.getConfiguration(), new TaskAttemptID());
+      try (RecordReader<LongWritable,Text> reader = format.createRecordReader(split, ctx)) {
+        reader.initialize(split, ctx);
+        while (reader.nextKeyValue()) {
+          records.add(reader.getCurrentKey().get() + ":" + reader.getCurrentValue());
+        }
+      }
+    }
+    Assert.assertEquals(Arrays.asList("1:a", "2:b", "3:c", "4:d", "5:e", "6:f"), records);
+  }
+
+  /**
+   * Tests the serialization of splits.
+   *
+   * @throws IOException when the split cannot be serialized.
+   */
+  @Test
+  public void test_splitSerialization() throws IOException {
+    LinenoSplit expected = new LinenoSplit(
+        new FileSplit(new Path("/tmp/part-r-00001"), 0, 10, new String[0]), 42);
+    DataOutputBuffer out = new DataOutputBuffer();
+    expected.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    LinenoSplit actual = new LinenoSplit();
+    actual.readFields(in);
+    Assert.assertEquals(expected.getPath(), actual.getPath());
+    Assert.assertEquals(expected.getLength(), actual.getLength());
+    Assert.assertEquals(42, actual.getOffset());
+  }
+}
@@ -23,34 +23,20 @@
   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
   THE SOFTWARE.
  */
-package com.acmutv.moviedoop.query2.map;
+package com.acmutv.moviedoop.common.input;
 
-import com.acmutv.moviedoop.query2.Query2_2;
-import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Mapper;
-
-import java.io.IOException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
 
 /**
- * The mapper for the {@link Query2_2} job.
- * It emits (movieId,'M'movieTitle).
- *
+ * JUnit suite for all tests within the package.
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class AggregateGenresIdentityMapper extends Mapper<Text, Text, Text, Text> {
-
-  /**
-   * The mapping routine.
-   *
-   * @param key the input key.
-   * @param value the input value.
-   * @param ctx the context.
-   * @throws IOException when the context cannot be written.
-   * @throws InterruptedException when the context cannot be written.
-   */
-  public void map(Text key, Text value, Context ctx) throws IOException, InterruptedException {
-    ctx.write(key,value);
-  }
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+    LinenoInputFormatTest.class
+})
+public class TestAllInput {
 }
@@ -0,0 +1,166 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.model;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Unit test for {@link MomentsWritable}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MomentsWritableTest {
+
+  /**
+   * Tests mean and variance of added scores.
+   */
+  @Test
+  public void test_add() {
+    MomentsWritable moments = new MomentsWritable();
+    Assert.assertTrue(moments.isEmpty());
+    Assert.assertTrue(Double.isNaN(moments.getMean()));
+
+    moments.add(2.0);
+    Assert.assertEquals(2.0, moments.getMean(), 0.0);
+    Assert.assertTrue(Double.isNaN(moments.getVariance()));
+
+    moments.add(4.0);
+    moments.add(4.0, 2L);
+    moments.add(5.0);
+    moments.add(5.0);
+    moments.add(7.0);
+    moments.add(9.0);
+    Assert.assertEquals(8L, moments.getCount());
+    Assert.assertEquals(5.0, moments.getMean(), 1e-15);
+    Assert.assertEquals(32.0, moments.getM2(), 1e-12);
+    Assert.assertEquals(32.0 / 7, moments.getVariance(), 1e-12);
+    Assert.assertEquals(Math.sqrt(32.0 / 7), moments.getStandardDeviation(), 1e-12);
+  }
+
+  /**
+   * Tests that merging partial moments equals adding all scores, in any grouping.
+   */
+  @Test
+  public void test_merge() {
+    double[] scores = {0.5, 3.5, 4.0, 1.0, 5.0, 2.5, 3.0, 3.0, 4.5};
+    MomentsWritable expected = new MomentsWritable();
+    for (double score : scores) {
+      expected.add(score);
+    }
+
+    for (int split = 0; split <= scores.length; split++) {
+      MomentsWritable left = new MomentsWritable();
+      MomentsWritable right = new MomentsWritable();
+      for (int i = 0; i < scores.length; i++) {
+        if (i < split) left.add(scores[i]); else right.add(scores[i]);
+      }
+      MomentsWritable actual = new MomentsWritable();
+      actual.merge(right);
+      actual.merge(left);
+      Assert.assertEquals(expected.getCount(), actual.getCount());
+      Assert.assertEquals(expected.getMean(), actual.getMean(), 1e-12);
+      Assert.assertEquals(expected.getM2(), actual.getM2(), 1e-12);
+    }
+  }
+
+  /**
+   * Tests the merge of a histogram of ratings.
+   */
+  @Test
+  public void test_merge_histogram() {
+    RatingHistogramWritable ratings = new RatingHistogramWritable();
+    ratings.add(1.0, 3L);
+    ratings.add(3.5, 2L);
+    ratings.add(5.0);
+
+    MomentsWritable expected = new MomentsWritable();
+    for (double score : new double[]{1.0, 1.0, 1.0, 3.5, 3.5, 5.0}) {
+      expected.add(score);
+    }
+
+    MomentsWritable actual = new MomentsWritable();
+    actual.merge(ratings);
+    Assert.assertEquals(expected.getCount(), actual.getCount());
+    Assert.assertEquals(ratings.getAverage(), actual.getMean(), 1e-15);
+    Assert.assertEquals(expected.getM2(), actual.getM2(), 1e-12);
+  }
+
+  /**
+   * Tests that the variance stays accurate when the mean is large with respect to the deviations,
+   * where the sum of squares formula loses all significant digits.
+   */
+  @Test
+  public void test_accuracy() {
+    final double offset = 1e9;
+    MomentsWritable moments = new MomentsWritable();
+    double sum = 0.0;
+    double sumOfSquares = 0.0;
+    for (int i = 0; i < 1000; i++) {
+      double score = offset + ((i % 2 == 0) ? 0.5 : -0.5);
+      MomentsWritable partial = new MomentsWritable();
+      partial.add(score);
+      moments.merge(partial);
+      sum += score;
+      sumOfSquares += score * score;
+    }
+    double expected = 0.25 * 1000 / 999;
+    Assert.assertEquals(offset, moments.getMean(), 1e-6);
+    Assert.assertEquals(expected, moments.getVariance(), 1e-9);
+
+    double avg = sum / 1000;
+    double naive = (sumOfSquares - (1000 * avg * avg)) / 999;
+    Assert.assertTrue(Math.abs(naive - expected) > 1e-3);
+  }
+
+  /**
+   * Tests the serialization/deserialization round trip.
+   * @throws IOException when the moments cannot be serialized.
+   */
+  @Test
+  public void test_serialization() throws IOException {
+    MomentsWritable expected = new MomentsWritable();
+    expected.add(3.5, 1000000L);
+    expected.add(0.5);
+
+    DataOutputBuffer out = new DataOutputBuffer();
+    expected.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), 0, out.getLength());
+    MomentsWritable actual = new MomentsWritable();
+    actual.add(1.0);
+    actual.readFields(in);
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(expected.toString(), actual.toString());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.model;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Unit test for {@link RatingHistogramWritable}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingHistogramWritableTest {
+
+  /**
+   * Tests the serialization/deserialization round trip.
+   * @throws IOException when the histogram cannot be serialized.
+   */
+  @Test
+  public void test_serialization() throws IOException {
+    RatingHistogramWritable expected = new RatingHistogramWritable();
+    expected.setTag((byte) 3);
+    expected.add(0.5);
+    expected.add(3.5, 1000000L);
+    expected.add(5.0, 2L);
+
+    DataOutputBuffer out = new DataOutputBuffer();
+    expected.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), 0, out.getLength());
+    RatingHistogramWritable actual = new RatingHistogramWritable();
+    actual.add(1.0);
+    actual.readFields(in);
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals("0.5=1,3.5=1000000,5.0=2", actual.toString());
+
+    BytesWritable bytes = new BytesWritable();
+    expected.writeTo(bytes);
+    RatingHistogramWritable actualFromBytes = new RatingHistogramWritable();
+    actualFromBytes.readFrom(bytes);
+
+    Assert.assertEquals(expected, actualFromBytes);
+
+    byte[] buffer = new byte[bytes.getLength() + 3];
+    System.arraycopy(bytes.getBytes(), 0, buffer, 3, bytes.getLength());
+    RatingHistogramWritable actualFromBuffer = new RatingHistogramWritable();
+    actualFromBuffer.readFrom(buffer, 3, bytes.getLength());
+
+    Assert.assertEquals(expected, actualFromBuffer);
+  }
+
+  /**
+   * Tests the raw comparator against {@link RatingHistogramWritable#compareTo}.
+   * @throws IOException when the histograms cannot be serialized.
+   */
+  @Test
+  public void test_rawComparator() throws IOException {
+    RatingHistogramWritable h1 = new RatingHistogramWritable();
+    h1.add(2.0, 5L);
+    RatingHistogramWritable h2 = new RatingHistogramWritable();
+    h2.add(2.0, 5L);
+    h2.add(4.5);
+    RatingHistogramWritable h3 = new RatingHistogramWritable();
+    h3.setTag((byte) 1);
+    RatingHistogramWritable h4 = new RatingHistogramWritable();
+    h4.add(1.0);
+
+    RatingHistogramWritable[] histograms = {h1, h2, h3, h4};
+    WritableComparator comparator = WritableComparator.get(RatingHistogramWritable.class);
+
+    for (RatingHistogramWritable a : histograms) {
+      for (RatingHistogramWritable b : histograms) {
+        DataOutputBuffer outA = new DataOutputBuffer();
+        a.write(outA);
+        DataOutputBuffer outB = new DataOutputBuffer();
+        b.write(outB);
+        int expected = Integer.signum(a.compareTo(b));
+        int actual = Integer.signum(comparator.compare(
+            outA.getData(), 0, outA.getLength(), outB.getData(), 0, outB.getLength()));
+        Assert.assertEquals(expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Tests the merge of histograms and the statistics.
+   */
+  @Test
+  public void test_merge() {
+    RatingHistogramWritable h1 = new RatingHistogramWritable();
+    h1.add(1.0, 2L);
+    h1.add(4.0);
+    RatingHistogramWritable h2 = new RatingHistogramWritable();
+    h2.setTag((byte) 2);
+    h2.add(4.0, 3L);
+
+    h1.merge(h2);
+
+    Assert.assertEquals(0, h1.getTag());
+    Assert.assertEquals(6L, h1.getCount());
+    Assert.assertEquals(18.0, h1.getSum(), 0.0);
+    Assert.assertEquals(66.0, h1.getSumOfSquares(), 0.0);
+    Assert.assertEquals(3.0, h1.getAverage(), 0.0);
+
+    h1.subtract(h2);
+
+    Assert.assertEquals(3L, h1.getCount());
+    Assert.assertEquals(6.0, h1.getSum(), 0.0);
+    Assert.assertEquals(1L, h1.getRepetitions(RatingHistogramWritable.bucket(4.0)));
+  }
+
+  /**
+   * Tests the rejection of scores that are not half-star scores within [0.5,5.0].
+   */
+  @Test
+  public void test_bucket() {
+    Assert.assertEquals(0, RatingHistogramWritable.bucket(0.5));
+    Assert.assertEquals(9, RatingHistogramWritable.bucket(5.0));
+    Assert.assertEquals(5.0, RatingHistogramWritable.score(9), 0.0);
+    for (double score : new double[]{0.0, 5.5, 3.3}) {
+      try {
+        RatingHistogramWritable.bucket(score);
+        Assert.fail();
+      } catch (IllegalArgumentException ignored) { }
+    }
+  }
+}
@@ -23,55 +23,21 @@
   OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
   THE SOFTWARE.
  */
-package com.acmutv.moviedoop.common.struct;
+package com.acmutv.moviedoop.common.model;
 
-import org.junit.Assert;
-import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
 
 /**
- * Unit test for {@link BestMap}.
- *
+ * JUnit suite for all tests within the package.
  * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
  * @author Michele Porretta {@literal <mporretta@acm.org>}
  * @since 1.0
  */
-public class BestMapTest {
-
-  /**
-   * Tests the simple case of rank construction.
-   */
-  @Test
-  public void test_duplicate() {
-    BestMap actual = new BestMap(3);
-    actual.put(1L, 5.0);
-    actual.put(1L, 10.0);
-    actual.put(1L, 15.0);
-    actual.put(1L, 10.0);
-    actual.put(1L, 1.0);
-
-    BestMap expected = new BestMap(3);
-    expected.put(1L, 1.0);
-
-    Assert.assertEquals(expected, actual);
-  }
-
-  /**
-   * Tests the simple case of rank construction.
-   */
-  @Test
-  public void test_sameScore() {
-    BestMap actual = new BestMap(3);
-    actual.put(1L, 1.0);
-    actual.put(2L, 1.5);
-    actual.put(3L, 1.0);
-    actual.put(4L, 2.0);
-    actual.put(5L, 2.0);
-
-    BestMap expected = new BestMap(3);
-    expected.put(5L, 2.0);
-    expected.put(2L, 1.5);
-    expected.put(3L, 1.0);
-
-    Assert.assertEquals(expected, actual);
-  }
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+    MomentsWritableTest.class,
+    RatingHistogramWritableTest.class
+})
+public class TestAllModel {
 }
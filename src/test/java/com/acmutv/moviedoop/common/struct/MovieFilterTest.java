@@ -0,0 +1,117 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Unit test for {@link MovieFilter}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieFilterTest {
+
+  /**
+   * The temporary folder for index and filter files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that added movies are always contained, and that false positives are close to the
+   * requested probability.
+   */
+  @Test
+  public void test_mightContain() {
+    MovieFilter filter = new MovieFilter(10000, 0.01);
+    for (long id = 0; id < 20000; id += 2) {
+      filter.add(id);
+    }
+    for (long id = 0; id < 20000; id += 2) {
+      Assert.assertTrue(String.valueOf(id), filter.mightContain(id));
+    }
+    int falsePositives = 0;
+    for (long id = 1; id < 200000; id += 2) {
+      if (filter.mightContain(id)) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue(String.valueOf(falsePositives), falsePositives < 2 * 0.01 * 100000);
+  }
+
+  /**
+   * Tests the rejection of invalid false positive probabilities.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void test_invalidFpp() {
+    new MovieFilter(10, 1.0);
+  }
+
+  /**
+   * Tests the filter of movies with genres, written to and read from a file.
+   *
+   * @throws IOException when the index or the filter cannot be written or read.
+   */
+  @Test
+  public void test_ofGenres() throws IOException {
+    File file = folder.newFile("movies" + MovieIndex.EXTENSION);
+    try (MovieIndex.Writer writer = new MovieIndex.Writer(new FileOutputStream(file))) {
+      for (long id = 1; id <= 3000; id++) {
+        writer.append(id, "Movie " + id, (id % 3 == 0) ? "" : "Drama");
+      }
+    }
+    MovieIndex index = MovieIndex.open(file);
+    Assert.assertEquals(2999, index.getMovieIdAt(2998));
+    Assert.assertEquals("Drama", index.getGenresAt(0));
+    Assert.assertEquals("", index.getGenresAt(2));
+
+    Configuration conf = new Configuration();
+    Path path = new Path(folder.getRoot().getAbsolutePath(), "genres" + MovieFilter.EXTENSION);
+    MovieFilter.ofGenres(index, MovieFilter.FPP).save(conf, path);
+    MovieFilter filter = MovieFilter.open(conf, path.toUri());
+
+    int falsePositives = 0;
+    for (long id = 1; id <= 3000; id++) {
+      if (id % 3 != 0) {
+        Assert.assertTrue(String.valueOf(id), filter.mightContain(id));
+      } else if (filter.mightContain(id)) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue(String.valueOf(falsePositives), falsePositives < 1000 * 0.05);
+  }
+}
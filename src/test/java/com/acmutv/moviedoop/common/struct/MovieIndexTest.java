@@ -0,0 +1,122 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Unit test for {@link MovieIndex}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieIndexTest {
+
+  /**
+   * The temporary folder for index files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests the lookup of movies written to an index file.
+   *
+   * @throws IOException when the index cannot be written or read.
+   */
+  @Test
+  public void test_writeAndOpen() throws IOException {
+    File file = folder.newFile("movies" + MovieIndex.EXTENSION);
+    try (MovieIndex.Writer writer = new MovieIndex.Writer(new FileOutputStream(file))) {
+      for (long id = 1; id <= 3000; id += 2) {
+        writer.append(id, "Movie " + id, (id % 3 == 0) ? "" : "Drama|Com\u00e9die");
+      }
+    }
+
+    MovieIndex index = MovieIndex.open(file);
+    Assert.assertEquals(1500, index.size());
+    for (long id = 1; id <= 3000; id += 2) {
+      Assert.assertEquals("Movie " + id, index.getTitle(id));
+      Assert.assertEquals((id % 3 == 0) ? "" : "Drama|Com\u00e9die", index.getGenres(id));
+    }
+    Assert.assertFalse(index.contains(0));
+    Assert.assertFalse(index.contains(2));
+    Assert.assertFalse(index.contains(3001));
+    Assert.assertNull(index.getTitle(2));
+    Assert.assertNull(index.getGenres(2));
+    Assert.assertEquals("N/A-2", index.getTitle(2, "N/A-2"));
+  }
+
+  /**
+   * Tests the empty index.
+   *
+   * @throws IOException when the index cannot be written or read.
+   */
+  @Test
+  public void test_empty() throws IOException {
+    File file = folder.newFile("empty" + MovieIndex.EXTENSION);
+    new MovieIndex.Writer(new FileOutputStream(file)).close();
+
+    MovieIndex index = MovieIndex.open(file);
+    Assert.assertEquals(0, index.size());
+    Assert.assertFalse(index.contains(1));
+  }
+
+  /**
+   * Tests the rejection of unsorted movie ids.
+   *
+   * @throws IOException when the index cannot be written.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void test_unsorted() throws IOException {
+    File file = folder.newFile("unsorted" + MovieIndex.EXTENSION);
+    try (MovieIndex.Writer writer = new MovieIndex.Writer(new FileOutputStream(file))) {
+      writer.append(2, "B", "");
+      writer.append(1, "A", "");
+    }
+  }
+
+  /**
+   * Tests the rejection of files that are not movie indices.
+   *
+   * @throws IOException when the file is not a movie index.
+   */
+  @Test(expected = IOException.class)
+  public void test_notAnIndex() throws IOException {
+    File file = folder.newFile("garbage" + MovieIndex.EXTENSION);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+    }
+    MovieIndex.open(file);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit test for {@link MovieRatingAggregator}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class MovieRatingAggregatorTest {
+
+  /**
+   * Tests the aggregation of ratings, across rehashes.
+   */
+  @Test
+  public void test_add() {
+    MovieRatingAggregator actual = new MovieRatingAggregator(2);
+    Map<Long,RatingHistogramWritable> expected = new HashMap<>();
+    for (long movieId = 1; movieId <= 1000; movieId++) {
+      for (int i = 0; i <= movieId % 7; i++) {
+        double score = RatingHistogramWritable.score((int) ((movieId + i) % RatingHistogramWritable.BUCKETS));
+        actual.add(movieId, score);
+        expected.computeIfAbsent(movieId, k -> new RatingHistogramWritable()).add(score);
+      }
+    }
+
+    Assert.assertEquals(expected.size(), actual.size());
+    Assert.assertTrue(actual.getRehashes() > 0);
+    Assert.assertEquals(2 * (actual.getRehashes() + 1), actual.getAllocations());
+
+    RatingHistogramWritable ratings = new RatingHistogramWritable();
+    MovieRatingAggregator.Cursor cursor = actual.cursor();
+    int movies = 0;
+    while (cursor.next()) {
+      cursor.get(ratings);
+      Assert.assertEquals(expected.get(cursor.getMovieId()), ratings);
+      movies++;
+    }
+    Assert.assertEquals(expected.size(), movies);
+  }
+
+  /**
+   * Tests the reset of the table, keeping the backing arrays.
+   */
+  @Test
+  public void test_clear() {
+    MovieRatingAggregator actual = new MovieRatingAggregator();
+    actual.add(1L, 4.5);
+    actual.add(1L, 4.5);
+    Assert.assertEquals(2, actual.getRepetitions(1L, RatingHistogramWritable.bucket(4.5)));
+
+    long allocations = actual.getAllocations();
+    actual.clear();
+
+    Assert.assertTrue(actual.isEmpty());
+    Assert.assertFalse(actual.contains(1L));
+    Assert.assertEquals(0, actual.getRepetitions(1L, RatingHistogramWritable.bucket(4.5)));
+    Assert.assertEquals(allocations, actual.getAllocations());
+  }
+
+  /**
+   * Tests the memory budget, that makes the table full instead of growing.
+   */
+  @Test
+  public void test_isFull() {
+    MovieRatingAggregator actual = new MovieRatingAggregator();
+    actual.setMaxMemoryBytes(actual.getMemoryBytes());
+    long movieId = 0;
+    while (!actual.isFull()) {
+      actual.add(++movieId, 3.0);
+    }
+
+    Assert.assertEquals(0, actual.getRehashes());
+    Assert.assertTrue(actual.getMemoryBytes() <= actual.getMaxMemoryBytes());
+
+    actual.clear();
+
+    Assert.assertFalse(actual.isFull());
+  }
+}
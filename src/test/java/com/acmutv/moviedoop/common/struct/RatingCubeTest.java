@@ -0,0 +1,142 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Unit test for {@link RatingCube}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeTest {
+
+  /**
+   * The temporary folder for cube files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The buckets of every movie.
+   */
+  private static final long[] BUCKETS = {2, 5, 6, 9};
+
+  /**
+   * Tests the loading of a cube split across files and the windows against the direct aggregation.
+   *
+   * @throws IOException when the cube cannot be written or read.
+   */
+  @Test
+  public void test_window() throws IOException {
+    Configuration conf = new Configuration();
+    Path cube = new Path(folder.getRoot().getAbsolutePath());
+    write(conf, new Path(cube, "part-r-00000.orc"), 4, 7);
+    write(conf, new Path(cube, "part-r-00001.orc"), 1, 3, 8);
+
+    RatingCube actual = RatingCube.load(conf, cube);
+
+    Assert.assertEquals(5, actual.size());
+    long[] movieIds = new long[actual.size()];
+    for (int i = 0; i < actual.size(); i++) {
+      movieIds[i] = actual.getMovieId(i);
+    }
+    Assert.assertArrayEquals(new long[]{1, 3, 4, 7, 8}, movieIds);
+    Assert.assertTrue(actual.indexOf(2) < 0);
+
+    long[][] periods = {{0, 10}, {5, 6}, {3, 4}, {6, 100}, {Long.MIN_VALUE, Long.MAX_VALUE}, {7, 5}};
+    RatingHistogramWritable window = new RatingHistogramWritable();
+    for (long movieId : movieIds) {
+      for (long[] period : periods) {
+        RatingHistogramWritable expected = new RatingHistogramWritable();
+        for (int i = 0; i < BUCKETS.length; i++) {
+          if (BUCKETS[i] >= period[0] && BUCKETS[i] <= period[1]) {
+            expected.add(score(movieId, i), i + 1);
+          }
+        }
+        actual.window(actual.indexOf(movieId), period[0], period[1], window);
+        Assert.assertEquals(Arrays.toString(period), expected, window);
+      }
+    }
+  }
+
+  /**
+   * Writes a cube file with the cumulative histograms of the given movies.
+   *
+   * @param conf the configuration.
+   * @param path the cube file.
+   * @param movieIds the movie ids (ascending).
+   * @throws IOException when the file cannot be written.
+   */
+  private static void write(Configuration conf, Path path, long... movieIds) throws IOException {
+    TypeDescription schema = TypeDescription.fromString("struct<id:bigint,bucket:bigint,ratings:binary>");
+    Writer writer = OrcFile.createWriter(path, OrcFile.writerOptions(conf).setSchema(schema));
+    VectorizedRowBatch batch = schema.createRowBatch();
+    BytesWritable bytes = new BytesWritable();
+    for (long movieId : movieIds) {
+      RatingHistogramWritable cumulative = new RatingHistogramWritable();
+      for (int i = 0; i < BUCKETS.length; i++) {
+        cumulative.add(score(movieId, i), i + 1);
+        cumulative.writeTo(bytes);
+        int r = batch.size++;
+        ((LongColumnVector) batch.cols[0]).vector[r] = movieId;
+        ((LongColumnVector) batch.cols[1]).vector[r] = BUCKETS[i];
+        ((BytesColumnVector) batch.cols[2]).setVal(r, bytes.getBytes(), 0, bytes.getLength());
+      }
+    }
+    writer.addRowBatch(batch);
+    writer.close();
+  }
+
+  /**
+   * Returns the score of the i-th bucket of a movie.
+   *
+   * @param movieId the movie id.
+   * @param i the bucket index.
+   * @return the score.
+   */
+  private static double score(long movieId, int i) {
+    return RatingHistogramWritable.score((int) ((movieId + i) % RatingHistogramWritable.BUCKETS));
+  }
+}
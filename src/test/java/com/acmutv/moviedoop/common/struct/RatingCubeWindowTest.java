@@ -0,0 +1,70 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import com.acmutv.moviedoop.common.model.RatingHistogramWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link RatingCubeWindow}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class RatingCubeWindowTest {
+
+  /**
+   * Tests the window computed from cumulative histograms against the direct aggregation.
+   */
+  @Test
+  public void test_get() {
+    long[] buckets = {1, 3, 4, 7, 9};
+    double[] scores = {1.0, 2.5, 4.0, 5.0, 0.5};
+    long[][] periods = {{0, 10}, {3, 7}, {2, 2}, {5, 8}, {8, 100}, {-5, 0}};
+
+    for (long[] period : periods) {
+      RatingCubeWindow window = new RatingCubeWindow(period[0], period[1]);
+      RatingHistogramWritable cumulative = new RatingHistogramWritable();
+      RatingHistogramWritable expected = new RatingHistogramWritable();
+      for (int i = 0; i < buckets.length; i++) {
+        cumulative.add(scores[i], i + 1);
+        window.accept(buckets[i], cumulative);
+        if (buckets[i] >= period[0] && buckets[i] <= period[1]) {
+          expected.add(scores[i], i + 1);
+        }
+      }
+      RatingHistogramWritable actual = new RatingHistogramWritable();
+      window.get(actual);
+      Assert.assertEquals(expected, actual);
+
+      window.clear();
+      window.get(actual);
+      Assert.assertTrue(actual.isEmpty());
+    }
+  }
+}
@@ -36,7 +36,12 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-    BestMapTest.class
+    MovieFilterTest.class,
+    MovieIndexTest.class,
+    MovieRatingAggregatorTest.class,
+    RatingCubeTest.class,
+    RatingCubeWindowTest.class,
+    TopKTest.class
 })
 public class TestAllStruct {
 }
@@ -0,0 +1,130 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.struct;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Unit test for {@link TopK}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class TopKTest {
+
+  /**
+   * Tests rank construction, with ties broken by lower id.
+   */
+  @Test
+  public void test_add() {
+    TopK actual = new TopK(3);
+    actual.add(1L, 1.0);
+    actual.add(2L, 1.5);
+    actual.add(3L, 1.0);
+    actual.add(4L, 2.0);
+    actual.add(5L, 2.0);
+    Assert.assertFalse(actual.add(6L, 1.5));
+    Assert.assertTrue(actual.add(0L, 1.5));
+
+    Assert.assertEquals("[4=2.0,5=2.0,0=1.5]", actual.toString());
+  }
+
+  /**
+   * Tests that the rank keeps the true best pairs (the minimum is tracked after every eviction).
+   */
+  @Test
+  public void test_random() {
+    Random rnd = new Random(7);
+    int n = 1000;
+    double[] scores = new double[n];
+    TopK actual = new TopK(10);
+    for (int i = 0; i < n; i++) {
+      scores[i] = rnd.nextInt(20) / 2.0;
+      actual.add(i, scores[i]);
+    }
+
+    Assert.assertEquals(10, actual.size());
+    for (int p = 0; p < actual.size(); p++) {
+      long id = actual.getId(p);
+      double score = actual.getScore(p);
+      Assert.assertEquals(scores[(int) id], score, 0.0);
+      int better = 0;
+      for (int i = 0; i < n; i++) {
+        if (scores[i] > score || (scores[i] == score && i < id)) better++;
+      }
+      Assert.assertEquals(p, better);
+    }
+  }
+
+  /**
+   * Tests merging ranks.
+   */
+  @Test
+  public void test_merge() {
+    TopK actual = new TopK(3);
+    actual.add(1L, 4.0);
+    actual.add(2L, 1.0);
+    TopK other = new TopK(3);
+    other.add(3L, 3.0);
+    other.add(4L, 5.0);
+    other.add(5L, 0.5);
+    actual.merge(other);
+
+    Assert.assertEquals("[4=5.0,1=4.0,3=3.0]", actual.toString());
+  }
+
+  /**
+   * Tests the serialization of ranks.
+   *
+   * @throws IOException when the rank cannot be serialized.
+   */
+  @Test
+  public void test_serialization() throws IOException {
+    TopK expected = new TopK(4);
+    expected.add(10L, 3.5);
+    expected.add(20L, 4.0);
+    expected.add(30L, 2.5);
+
+    DataOutputBuffer out = new DataOutputBuffer();
+    expected.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    TopK actual = new TopK(1);
+    actual.readFields(in);
+
+    Assert.assertEquals(4, actual.getCapacity());
+    Assert.assertEquals(expected.toString(), actual.toString());
+    Assert.assertTrue(actual.add(40L, 1.0));
+    Assert.assertFalse(actual.add(50L, 0.5));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit test for {@link ColumnVectorParser}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class ColumnVectorParserTest {
+
+  /**
+   * Tests the parsing of longs and doubles from bytes.
+   */
+  @Test
+  public void test_parseBytes() {
+    String[] longs = {"0", "1", "-42", "+7", "1112486027", "9223372036854775807"};
+    for (String str : longs) {
+      byte[] bytes = ("x" + str + "x").getBytes(StandardCharsets.UTF_8);
+      Assert.assertEquals(Long.parseLong(str), ColumnVectorParser.parseLong(bytes, 1, str.length()));
+    }
+
+    String[] doubles = {"0.5", "3", "3.0", "4.5", "-0.25", ".5", "2.", "1e3", "123.456789", "3.8666666666666667"};
+    for (String str : doubles) {
+      byte[] bytes = ("x" + str + "x").getBytes(StandardCharsets.UTF_8);
+      Assert.assertEquals(Double.parseDouble(str), ColumnVectorParser.parseDouble(bytes, 1, str.length()), 0.0);
+    }
+  }
+
+  /**
+   * Tests the rejection of malformed bytes.
+   */
+  @Test(expected = NumberFormatException.class)
+  public void test_parseBytes_malformed() {
+    byte[] bytes = "12a4".getBytes(StandardCharsets.UTF_8);
+    ColumnVectorParser.parseLong(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Tests the reading of values from numeric and string column vectors.
+   */
+  @Test
+  public void test_getFromVector() {
+    LongColumnVector longs = new LongColumnVector();
+    longs.vector[3] = 17L;
+    DoubleColumnVector doubles = new DoubleColumnVector();
+    doubles.vector[3] = 2.5;
+    BytesColumnVector strings = new BytesColumnVector();
+    strings.initBuffer();
+    byte[] bytes = "3.5".getBytes(StandardCharsets.UTF_8);
+    strings.setVal(3, bytes, 0, bytes.length);
+
+    Assert.assertEquals(17L, ColumnVectorParser.getLong(longs, 3));
+    Assert.assertEquals(2.5, ColumnVectorParser.getDouble(doubles, 3), 0.0);
+    Assert.assertEquals(3.5, ColumnVectorParser.getDouble(strings, 3), 0.0);
+
+    longs.isRepeating = true;
+    longs.vector[0] = 5L;
+    Assert.assertEquals(5L, ColumnVectorParser.getLong(longs, 3));
+
+    Assert.assertFalse(ColumnVectorParser.isNull(longs, 3));
+    doubles.noNulls = false;
+    doubles.isNull[3] = true;
+    Assert.assertTrue(ColumnVectorParser.isNull(doubles, 3));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CsvTokenizer}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class CsvTokenizerTest {
+
+  /**
+   * Tests the tokenization.
+   * Unquoted case.
+   */
+  @Test
+  public void test_unquoted() {
+    CsvTokenizer tokenizer = new CsvTokenizer();
+    Assert.assertEquals(4, tokenizer.tokenize(new Text("1,31,2.5,1260759144")));
+    Assert.assertEquals(1L, tokenizer.getLong(0));
+    Assert.assertEquals(31L, tokenizer.getLong(1));
+    Assert.assertEquals(2.5, tokenizer.getDouble(2), 0.0);
+    Assert.assertEquals(1260759144L, tokenizer.getLong(3));
+    Assert.assertEquals("2.5", tokenizer.getString(2));
+  }
+
+  /**
+   * Tests the tokenization.
+   * Quoted case.
+   */
+  @Test
+  public void test_quoted() {
+    CsvTokenizer tokenizer = new CsvTokenizer();
+    Text title = new Text();
+
+    Assert.assertEquals(3, tokenizer.tokenize(new Text("val1,\"val2, val2bis, val2tris\",val3")));
+    Assert.assertEquals("val1", tokenizer.getString(0));
+    Assert.assertEquals("val2, val2bis, val2tris", tokenizer.getString(1));
+    Assert.assertEquals("val3", tokenizer.getString(2));
+
+    Assert.assertEquals(3, tokenizer.tokenize(new Text("1,\"\"\"Great Performances\"\" Cats (1998)\",Musical")));
+    tokenizer.getText(1, title);
+    Assert.assertEquals("\"Great Performances\" Cats (1998)", title.toString());
+    Assert.assertEquals("\"Great Performances\" Cats (1998)", tokenizer.getString(1));
+    tokenizer.getText(2, title);
+    Assert.assertEquals("Musical", title.toString());
+  }
+
+  /**
+   * Tests the tokenization.
+   * Empty fields, custom delimiters and many fields.
+   */
+  @Test
+  public void test_fields() {
+    CsvTokenizer tokenizer = new CsvTokenizer();
+    Assert.assertEquals(1, tokenizer.tokenize(new Text("")));
+    Assert.assertEquals(0, tokenizer.getLength(0));
+    Assert.assertEquals(3, tokenizer.tokenize(new Text(",\"\",")));
+    Assert.assertEquals("", tokenizer.getString(1));
+    Assert.assertEquals(0, tokenizer.getLength(2));
+
+    CsvTokenizer tabs = new CsvTokenizer((byte) '\t');
+    Assert.assertEquals(2, tabs.tokenize(new Text("5\t4.5")));
+    Assert.assertEquals(5L, tabs.getLong(0));
+    Assert.assertEquals(4.5, tabs.getDouble(1), 0.0);
+
+    StringBuilder line = new StringBuilder("0");
+    for (int i = 1; i < 20; i++) {
+      line.append(',').append(i);
+    }
+    Assert.assertEquals(20, tokenizer.tokenize(new Text(line.toString())));
+    Assert.assertEquals(19L, tokenizer.getLong(19));
+
+    byte[] bytes = "x7,8x".getBytes();
+    Assert.assertEquals(2, tokenizer.tokenize(bytes, 1, 3));
+    Assert.assertEquals(8L, tokenizer.getLong(1));
+    Assert.assertEquals(3, tokenizer.getStart(1));
+  }
+
+  /**
+   * Tests the access to a missing field.
+   */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void test_missingField() {
+    CsvTokenizer tokenizer = new CsvTokenizer();
+    tokenizer.tokenize(new Text("1,2"));
+    tokenizer.getLong(2);
+  }
+}
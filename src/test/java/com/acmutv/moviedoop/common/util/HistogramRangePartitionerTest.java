@@ -0,0 +1,150 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link HistogramRangePartitioner}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class HistogramRangePartitionerTest {
+
+  /**
+   * The temporary folder for histogram side files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests cutting a histogram into ranges.
+   */
+  @Test
+  public void test_cut() {
+    NavigableMap<Double,Long> histogram = new TreeMap<>(Collections.reverseOrder());
+    histogram.put(4.0, 6L);
+    histogram.put(3.5, 2L);
+    histogram.put(2.0, 2L);
+
+    Assert.assertEquals("4.0:" + (5.0 / 6), HistogramRangePartitioner.cut(histogram, 2));
+    Assert.assertEquals("4.0:" + (2.0 / 6) + ",4.0:" + (4.0 / 6) + ",4.0:1.0,3.5:1.0",
+        HistogramRangePartitioner.cut(histogram, 5));
+    Assert.assertEquals("", HistogramRangePartitioner.cut(histogram, 1));
+    Assert.assertEquals("", HistogramRangePartitioner.cut(new TreeMap<>(Collections.reverseOrder()), 4));
+  }
+
+  /**
+   * Tests that partitions are balanced and ordered, even with many ties.
+   */
+  @Test
+  public void test_getPartition() {
+    int partitions = 4;
+    NavigableMap<Double,Long> histogram = new TreeMap<>(Collections.reverseOrder());
+    histogram.put(4.0, 1000L);
+    histogram.put(3.0, 200L);
+    histogram.put(2.5, 200L);
+
+    Configuration conf = new Configuration();
+    conf.set(HistogramRangePartitioner.CUTS, HistogramRangePartitioner.cut(histogram, partitions));
+    HistogramRangePartitioner partitioner = new HistogramRangePartitioner();
+    partitioner.setConf(conf);
+
+    long[] load = new long[partitions];
+    double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+    double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+    long movieId = 1;
+    for (Map.Entry<Double,Long> entry : histogram.entrySet()) {
+      for (long i = 0; i < entry.getValue(); i++, movieId++) {
+        double score = entry.getKey();
+        int partition = partitioner.getPartition(new DoubleWritable(score), new Text(movieId + "," + score), partitions);
+        load[partition]++;
+        min[partition] = Math.min(min[partition], score);
+        max[partition] = Math.max(max[partition], score);
+      }
+    }
+
+    for (int p = 0; p < partitions; p++) {
+      Assert.assertEquals(350, load[p], 35);
+      if (p > 0) Assert.assertTrue(min[p - 1] >= max[p]);
+    }
+  }
+
+  /**
+   * Tests reading and merging histogram side files.
+   *
+   * @throws IOException when side files cannot be written or read.
+   */
+  @Test
+  public void test_readHistogram() throws IOException {
+    Configuration conf = new Configuration();
+    Path dir = new Path(folder.getRoot().getAbsolutePath());
+    write(conf, new Path(dir, HistogramRangePartitioner.HISTOGRAM_PREFIX + "m_000000"), new double[]{3.5, 4.0}, new long[]{2, 1});
+    write(conf, new Path(dir, HistogramRangePartitioner.HISTOGRAM_PREFIX + "m_000001"), new double[]{4.0, 1.5}, new long[]{3, 1});
+    write(conf, new Path(dir, "part-m-00000"), new double[]{0.5}, new long[]{7});
+
+    NavigableMap<Double,Long> histogram = HistogramRangePartitioner.readHistogram(conf, dir);
+    Assert.assertArrayEquals(new Double[]{4.0, 3.5, 1.5}, histogram.keySet().toArray(new Double[0]));
+    Assert.assertArrayEquals(new Long[]{4L, 2L, 1L}, histogram.values().toArray(new Long[0]));
+  }
+
+  /**
+   * Writes a histogram side file.
+   *
+   * @param conf the configuration.
+   * @param path the side file path.
+   * @param scores the average ratings.
+   * @param counts the number of movies.
+   * @throws IOException when the side file cannot be written.
+   */
+  private static void write(Configuration conf, Path path, double[] scores, long[] counts) throws IOException {
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+        SequenceFile.Writer.file(path),
+        SequenceFile.Writer.keyClass(DoubleWritable.class),
+        SequenceFile.Writer.valueClass(LongWritable.class))) {
+      for (int i = 0; i < scores.length; i++) {
+        writer.append(new DoubleWritable(scores[i]), new LongWritable(counts[i]));
+      }
+    }
+  }
+}
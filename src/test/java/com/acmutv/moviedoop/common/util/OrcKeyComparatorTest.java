@@ -0,0 +1,177 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.orc.OrcConf;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.mapred.OrcKey;
+import org.apache.orc.mapred.OrcStruct;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link OrcKeyComparator}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class OrcKeyComparatorTest {
+
+  /**
+   * Tests the raw comparison of movie id keys.
+   *
+   * @throws IOException when keys cannot be serialized.
+   */
+  @Test
+  public void test_id() throws IOException {
+    TypeDescription schema = TypeDescription.fromString("struct<id:bigint>");
+    List<OrcStruct> keys = new ArrayList<>();
+    for (long id : new long[]{0L, 1L, -1L, 255L, 256L, 9125L, Long.MIN_VALUE, Long.MAX_VALUE}) {
+      keys.add(struct(schema, new LongWritable(id)));
+    }
+    keys.add(struct(schema, (WritableComparable) null));
+    assertConsistent(new OrcKeyComparator(schema), keys);
+  }
+
+  /**
+   * Tests the raw comparison of genre keys.
+   *
+   * @throws IOException when keys cannot be serialized.
+   */
+  @Test
+  public void test_genre() throws IOException {
+    TypeDescription schema = TypeDescription.fromString("struct<genre:string>");
+    List<OrcStruct> keys = new ArrayList<>();
+    StringBuilder longGenre = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      longGenre.append('x');
+    }
+    for (String genre : new String[]{"", "Action", "Adventure", "Animation", "Film-Noir", "IMAX",
+        "(no genres listed)", "Ação", "Ä", longGenre.toString()}) {
+      keys.add(struct(schema, new Text(genre)));
+    }
+    keys.add(struct(schema, (WritableComparable) null));
+    assertConsistent(new OrcKeyComparator(schema), keys);
+  }
+
+  /**
+   * Tests the raw comparison of multi-field keys, with the schema read from the configuration.
+   *
+   * @throws IOException when keys cannot be serialized.
+   */
+  @Test
+  public void test_struct() throws IOException {
+    TypeDescription schema = TypeDescription.fromString("struct<id:bigint,bucket:int,score:double,genre:string>");
+    Configuration conf = new Configuration();
+    OrcConf.MAPRED_SHUFFLE_KEY_SCHEMA.setString(conf, schema.toString());
+    OrcKeyComparator comparator = ReflectionUtils.newInstance(OrcKeyComparator.class, conf);
+
+    List<OrcStruct> keys = new ArrayList<>();
+    for (long id : new long[]{1L, 2L}) {
+      for (int bucket : new int[]{-3, 0, 7}) {
+        for (double score : new double[]{-0.5, 2.5, 4.0}) {
+          for (String genre : new String[]{"Comedy", "Drama"}) {
+            keys.add(struct(schema, new LongWritable(id), new IntWritable(bucket),
+                new DoubleWritable(score), new Text(genre)));
+          }
+        }
+        keys.add(struct(schema, new LongWritable(id), new IntWritable(bucket), null, new Text("Drama")));
+      }
+    }
+    assertConsistent(comparator, keys);
+  }
+
+  /**
+   * Tests the rejection of unsupported schemas.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void test_unsupported() {
+    new OrcKeyComparator(TypeDescription.fromString("struct<ids:array<bigint>>"));
+  }
+
+  /**
+   * Checks that the raw comparison of every pair of keys agrees with {@link OrcKey#compareTo}.
+   *
+   * @param comparator the comparator.
+   * @param keys the keys.
+   * @throws IOException when keys cannot be serialized.
+   */
+  private static void assertConsistent(OrcKeyComparator comparator, List<OrcStruct> keys) throws IOException {
+    for (OrcStruct key1 : keys) {
+      byte[] bytes1 = serialize(key1);
+      for (OrcStruct key2 : keys) {
+        byte[] bytes2 = serialize(key2);
+        int expected = Integer.signum(new OrcKey(key1).compareTo(new OrcKey(key2)));
+        int actual = Integer.signum(comparator.compare(bytes1, 2, bytes1.length - 2, bytes2, 2, bytes2.length - 2));
+        Assert.assertEquals(key1 + " vs " + key2, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Creates a struct.
+   *
+   * @param schema the struct schema.
+   * @param values the field values.
+   * @return the struct.
+   */
+  private static OrcStruct struct(TypeDescription schema, WritableComparable... values) {
+    OrcStruct struct = (OrcStruct) OrcStruct.createValue(schema);
+    for (int i = 0; i < values.length; i++) {
+      struct.setFieldValue(i, values[i]);
+    }
+    return struct;
+  }
+
+  /**
+   * Serializes a key as the shuffle does, within a buffer with leading padding.
+   *
+   * @param key the key.
+   * @return the padded serialized key.
+   * @throws IOException when the key cannot be serialized.
+   */
+  private static byte[] serialize(OrcStruct key) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    out.write(new byte[]{-1, -1});
+    new OrcKey(key).write(out);
+    byte[] bytes = new byte[out.getLength()];
+    System.arraycopy(out.getData(), 0, bytes, 0, out.getLength());
+    return bytes;
+  }
+}
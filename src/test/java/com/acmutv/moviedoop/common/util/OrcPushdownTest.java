@@ -0,0 +1,190 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link OrcPushdown}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class OrcPushdownTest {
+
+  /**
+   * The temporary folder for ORC files.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that projected readers only read the requested columns.
+   *
+   * @throws IOException when the ORC file cannot be written or read.
+   */
+  @Test
+  public void test_project() throws IOException {
+    Configuration conf = new Configuration();
+    TypeDescription schema = TypeDescription.fromString("struct<id:string,title:string,genres:string>");
+    Path path = new Path(folder.getRoot().getAbsolutePath(), "movies.orc");
+    Writer writer = OrcFile.createWriter(path, OrcFile.writerOptions(conf).setSchema(schema));
+    VectorizedRowBatch batch = schema.createRowBatch();
+    String[] row = {"1", "Toy Story (1995)", "Animation|Children|Comedy"};
+    for (int c = 0; c < row.length; c++) {
+      ((BytesColumnVector) batch.cols[c]).setVal(0, row[c].getBytes(StandardCharsets.UTF_8));
+    }
+    batch.size = 1;
+    writer.addRowBatch(batch);
+    writer.close();
+
+    Assert.assertEquals(schema, OrcPushdown.readSchema(conf, new Path(folder.getRoot().getAbsolutePath())));
+
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf));
+    RecordReader rows = reader.rows(OrcPushdown.project(reader, 0, 2));
+    VectorizedRowBatch read = reader.getSchema().createRowBatch();
+    Assert.assertTrue(rows.nextBatch(read));
+    Assert.assertEquals(1, read.size);
+    Assert.assertEquals(row[0], ((BytesColumnVector) read.cols[0]).toString(0));
+    Assert.assertEquals(row[2], ((BytesColumnVector) read.cols[2]).toString(0));
+    Assert.assertNull(((BytesColumnVector) read.cols[1]).vector[0]);
+    rows.close();
+  }
+
+  /**
+   * Tests the search argument for long columns.
+   */
+  @Test
+  public void test_buildWindows_long() {
+    SearchArgument sarg = OrcPushdown.buildWindows("time", PredicateLeaf.Type.LONG,
+        new long[]{10, 20}, new long[]{30, 40}, new long[]{50, 0});
+    List<PredicateLeaf> leaves = sarg.getLeaves();
+    Assert.assertEquals(2, leaves.size());
+    Assert.assertEquals(PredicateLeaf.Operator.BETWEEN, leaves.get(0).getOperator());
+    Assert.assertEquals(10L, leaves.get(0).getLiteralList().get(0));
+    Assert.assertEquals(40L, leaves.get(1).getLiteralList().get(1));
+
+    Assert.assertNull(OrcPushdown.buildWindows("time", PredicateLeaf.Type.LONG, new long[]{50, 0}));
+  }
+
+  /**
+   * Tests that every value within the windows satisfies at least one string range.
+   */
+  @Test
+  public void test_buildWindows_string() {
+    long[][] windows = {{-5, 7}, {95, 1200}, {999_999_999, 1_000_000_001}};
+    SearchArgument sarg = OrcPushdown.buildWindows("time", PredicateLeaf.Type.STRING, windows);
+    List<PredicateLeaf> leaves = sarg.getLeaves();
+    Assert.assertEquals(7, leaves.size());
+
+    long[] values = {-5, -1, 0, 7, 95, 99, 100, 999, 1000, 1200, 999_999_999, 1_000_000_001};
+    for (long value : values) {
+      Assert.assertTrue(String.valueOf(value), matches(leaves, String.valueOf(value)));
+    }
+    Assert.assertEquals("0", leaves.get(0).getLiteral());
+    Assert.assertEquals(Arrays.asList("95", "99"), leaves.get(2).getLiteralList());
+    Assert.assertEquals(Arrays.asList("100", "999"), leaves.get(3).getLiteralList());
+    Assert.assertEquals(Arrays.asList("1000", "1200"), leaves.get(4).getLiteralList());
+    Assert.assertEquals(Arrays.asList("999999999", "999999999"), leaves.get(5).getLiteralList());
+    Assert.assertEquals(Arrays.asList("1000000000", "1000000001"), leaves.get(6).getLiteralList());
+  }
+
+  /**
+   * Tests the search argument for windows unbounded above.
+   */
+  @Test
+  public void test_buildWindows_string_unbounded() {
+    SearchArgument sarg = OrcPushdown.buildWindows("time", PredicateLeaf.Type.STRING,
+        new long[]{1_000_000_000, Long.MAX_VALUE});
+    List<PredicateLeaf> leaves = sarg.getLeaves();
+    Assert.assertEquals(10, leaves.size());
+    Assert.assertTrue(matches(leaves, "1112486027"));
+    Assert.assertTrue(matches(leaves, String.valueOf(Long.MAX_VALUE)));
+    Assert.assertEquals(Arrays.asList("1000000000", "9999999999"), leaves.get(0).getLiteralList());
+  }
+
+  /**
+   * Tests the search argument for a set of long values.
+   */
+  @Test
+  public void test_buildIn() {
+    SearchArgument sarg = OrcPushdown.buildIn("id", 3, 1, 2);
+    List<PredicateLeaf> leaves = sarg.getLeaves();
+    Assert.assertEquals(1, leaves.size());
+    Assert.assertEquals(PredicateLeaf.Operator.IN, leaves.get(0).getOperator());
+    Assert.assertEquals(Arrays.asList(3L, 1L, 2L), leaves.get(0).getLiteralList());
+
+    Assert.assertNull(OrcPushdown.buildIn("id"));
+  }
+
+  /**
+   * Evaluates the string leaves on a single value.
+   *
+   * @param leaves the leaves.
+   * @param value the value.
+   * @return true if at least one leaf is satisfied; false, otherwise.
+   */
+  private static boolean matches(List<PredicateLeaf> leaves, String value) {
+    for (PredicateLeaf leaf : leaves) {
+      List<Object> literals = leaf.getLiteralList();
+      switch (leaf.getOperator()) {
+        case BETWEEN:
+          if (value.compareTo((String) literals.get(0)) >= 0 && value.compareTo((String) literals.get(1)) <= 0) {
+            return true;
+          }
+          break;
+        case LESS_THAN:
+          if (value.compareTo((String) leaf.getLiteral()) < 0) {
+            return true;
+          }
+          break;
+        default:
+          Assert.fail("Unexpected operator: " + leaf.getOperator());
+      }
+    }
+    return false;
+  }
+}
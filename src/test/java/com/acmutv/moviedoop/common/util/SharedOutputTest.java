@@ -0,0 +1,159 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+/**
+ * Unit test for {@link SharedOutput}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class SharedOutputTest {
+
+  /**
+   * The temporary folder for outputs.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that the first output is published, and that a later one is discarded while fresh.
+   *
+   * @throws IOException when outputs cannot be written or read.
+   */
+  @Test
+  public void test_publish() throws IOException {
+    Configuration conf = new Configuration();
+    Path output = new Path(folder.getRoot().getAbsolutePath(), "index");
+    Path marker = new Path(output, "_SUCCESS");
+
+    Path tmp1 = SharedOutput.temporary(output);
+    Path tmp2 = SharedOutput.temporary(output);
+    Assert.assertNotEquals(tmp1, tmp2);
+    Assert.assertTrue(tmp1.getName().startsWith("_"));
+    write(conf, tmp1, 1);
+    write(conf, tmp2, 2);
+
+    Assert.assertFalse(SharedOutput.isFresh(conf, marker, 0));
+    Assert.assertTrue(SharedOutput.publish(conf, tmp1, output, marker, 0));
+    Assert.assertTrue(SharedOutput.isFresh(conf, marker, 0));
+    Assert.assertFalse(SharedOutput.publish(conf, tmp2, output, marker, 0));
+
+    FileSystem fs = output.getFileSystem(conf);
+    Assert.assertFalse(fs.exists(tmp1));
+    Assert.assertFalse(fs.exists(tmp2));
+    Assert.assertEquals(1, read(conf, output));
+  }
+
+  /**
+   * Tests that a stale output is replaced.
+   *
+   * @throws IOException when outputs cannot be written or read.
+   */
+  @Test
+  public void test_publish_stale() throws IOException {
+    Configuration conf = new Configuration();
+    Path output = new Path(folder.getRoot().getAbsolutePath(), "index");
+    Path marker = new Path(output, "_SUCCESS");
+
+    Path tmp1 = SharedOutput.temporary(output);
+    write(conf, tmp1, 1);
+    Assert.assertTrue(SharedOutput.publish(conf, tmp1, output, marker, 0));
+
+    long lastModified = Long.MAX_VALUE;
+    Assert.assertFalse(SharedOutput.isFresh(conf, marker, lastModified));
+    Path tmp2 = SharedOutput.temporary(output);
+    write(conf, tmp2, 2);
+    Assert.assertTrue(SharedOutput.publish(conf, tmp2, output, marker, lastModified));
+    Assert.assertEquals(2, read(conf, output));
+    Assert.assertEquals(1, output.getFileSystem(conf).listStatus(output.getParent()).length);
+  }
+
+  /**
+   * Tests that a single file is published with its checksum.
+   *
+   * @throws IOException when outputs cannot be written or read.
+   */
+  @Test
+  public void test_publish_file() throws IOException {
+    Configuration conf = new Configuration();
+    Path output = new Path(folder.getRoot().getAbsolutePath(), "genres.bloom");
+
+    Path tmp = SharedOutput.temporary(output);
+    FileSystem fs = output.getFileSystem(conf);
+    try (FSDataOutputStream out = fs.create(tmp)) {
+      out.writeInt(1);
+    }
+    Assert.assertTrue(SharedOutput.publish(conf, tmp, output, output, 0));
+    try (FSDataInputStream in = fs.open(output)) {
+      Assert.assertEquals(1, in.readInt());
+    }
+    Assert.assertEquals(2, folder.getRoot().list().length);
+  }
+
+  /**
+   * Writes a complete output holding {@code value}.
+   *
+   * @param conf the configuration.
+   * @param dir the output directory.
+   * @param value the value.
+   * @throws IOException when the output cannot be written.
+   */
+  private static void write(Configuration conf, Path dir, int value) throws IOException {
+    FileSystem fs = dir.getFileSystem(conf);
+    try (FSDataOutputStream out = fs.create(new Path(dir, "part"))) {
+      out.writeInt(value);
+    }
+    fs.create(new Path(dir, "_SUCCESS")).close();
+  }
+
+  /**
+   * Reads the value of an output.
+   *
+   * @param conf the configuration.
+   * @param dir the output directory.
+   * @return the value.
+   * @throws IOException when the output cannot be read.
+   */
+  private static int read(Configuration conf, Path dir) throws IOException {
+    try (FSDataInputStream in = dir.getFileSystem(conf).open(new Path(dir, "part"))) {
+      return in.readInt();
+    }
+  }
+}
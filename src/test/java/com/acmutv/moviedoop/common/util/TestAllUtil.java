@@ -36,8 +36,16 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    ColumnVectorParserTest.class,
+    CsvTokenizerTest.class,
     DateParserTest.class,
-    RecordParserTest.class
+    HistogramRangePartitionerTest.class,
+    OrcKeyComparatorTest.class,
+    OrcPushdownTest.class,
+    RecordParserTest.class,
+    SharedOutputTest.class,
+    TimeBucketTest.class,
+    ZipfDistributionTest.class
 })
 public class TestAllUtil {
 }
@@ -0,0 +1,80 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+/**
+ * Unit test for {@link TimeBucket}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class TimeBucketTest {
+
+  /**
+   * Tests the bucket of timestamps and the first second of buckets.
+   */
+  @Test
+  public void test_bucket() {
+    long t = DateParser.toSeconds(LocalDateTime.of(1990, 6, 27, 13, 45, 0));
+
+    long day = TimeBucket.DAY.of(t);
+    Assert.assertEquals(DateParser.toSeconds(LocalDateTime.of(1990, 6, 27, 0, 0, 0)), TimeBucket.DAY.start(day));
+    Assert.assertEquals(day + 1, TimeBucket.DAY.of(TimeBucket.DAY.start(day + 1)));
+    Assert.assertEquals(-1L, TimeBucket.DAY.of(-1L));
+
+    long month = TimeBucket.MONTH.of(t);
+    Assert.assertEquals(1990 * 12L + 5, month);
+    Assert.assertEquals(DateParser.toSeconds(LocalDateTime.of(1990, 6, 1, 0, 0, 0)), TimeBucket.MONTH.start(month));
+    Assert.assertEquals(DateParser.toSeconds(LocalDateTime.of(1991, 1, 1, 0, 0, 0)), TimeBucket.MONTH.start(1991 * 12L));
+    Assert.assertEquals(TimeBucket.MONTH, TimeBucket.parse(" month "));
+  }
+
+  /**
+   * Tests the check of periods made of whole buckets.
+   */
+  @Test
+  public void test_isAligned() {
+    long lb = DateParser.toSeconds(DateParser.parse("01/06/1990"));
+    long ub = DateParser.toSeconds(DateParser.parse("01/07/1990")) - 1;
+    long max = DateParser.toSeconds(DateParser.MAX);
+    long min = DateParser.toSeconds(DateParser.MIN);
+
+    Assert.assertTrue(TimeBucket.DAY.isAligned(lb, ub));
+    Assert.assertTrue(TimeBucket.MONTH.isAligned(lb, ub));
+    Assert.assertTrue(TimeBucket.MONTH.isAligned(min, max));
+    Assert.assertTrue(TimeBucket.DAY.isAligned(min, max));
+    Assert.assertTrue(TimeBucket.DAY.isAligned(lb + 86400, ub));
+    Assert.assertFalse(TimeBucket.MONTH.isAligned(lb + 86400, ub));
+    Assert.assertFalse(TimeBucket.DAY.isAligned(lb + 1, ub));
+    Assert.assertFalse(TimeBucket.DAY.isAligned(lb, ub - 1));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Giacomo Marciani and Michele Porretta
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy
+  of this software and associated documentation files (the "Software"), to deal
+  in the Software without restriction, including without limitation the rights
+  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+  copies of the Software, and to permit persons to whom the Software is
+  furnished to do so, subject to the following conditions:
+
+
+  The above copyright notice and this permission notice shall be included in
+  all copies or substantial portions of the Software.
+
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+  THE SOFTWARE.
+ */
+package com.acmutv.moviedoop.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit test for {@link ZipfDistribution}.
+ *
+ * @author Giacomo Marciani {@literal <gmarciani@acm.org>}
+ * @author Michele Porretta {@literal <mporretta@acm.org>}
+ * @since 1.0
+ */
+public class ZipfDistributionTest {
+
+  /**
+   * Tests the probabilities of ranks.
+   */
+  @Test
+  public void test_probability() {
+    ZipfDistribution zipf = new ZipfDistribution(3, 1.0);
+    double h = 1.0 + 1.0 / 2 + 1.0 / 3;
+    Assert.assertEquals(1.0 / h, zipf.probability(0), 1e-12);
+    Assert.assertEquals(0.5 / h, zipf.probability(1), 1e-12);
+    Assert.assertEquals((1.0 / 3) / h, zipf.probability(2), 1e-12);
+
+    ZipfDistribution uniform = new ZipfDistribution(4, 0.0);
+    for (int r = 0; r < 4; r++) {
+      Assert.assertEquals(0.25, uniform.probability(r), 1e-12);
+    }
+  }
+
+  /**
+   * Tests that sampled frequencies follow the probabilities of ranks.
+   */
+  @Test
+  public void test_sample() {
+    ZipfDistribution zipf = new ZipfDistribution(100, 1.2);
+    Random rnd = new Random(1L);
+    int samples = 200000;
+    int[] counts = new int[zipf.size()];
+    for (int i = 0; i < samples; i++) {
+      counts[zipf.sample(rnd)]++;
+    }
+    for (int r = 0; r < 5; r++) {
+      Assert.assertEquals(zipf.probability(r), counts[r] / (double) samples, 0.01);
+    }
+    Assert.assertTrue(counts[0] > counts[1] && counts[1] > counts[4]);
+  }
+
+  /**
+   * Tests that invalid parameters are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void test_invalid() {
+    new ZipfDistribution(0, 1.0);
+  }
+}